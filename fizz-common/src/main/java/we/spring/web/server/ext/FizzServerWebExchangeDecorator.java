@@ -28,19 +28,14 @@ import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.ServerWebExchangeDecorator;
 import reactor.core.publisher.Mono;
 import we.spring.http.server.reactive.ext.FizzServerHttpRequestDecorator;
-import we.util.Consts;
+import we.util.FormUrlEncodedCodec;
 import we.util.NettyDataBufferUtils;
-import we.util.ThreadContext;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * @author hongqiaowei
@@ -90,6 +85,13 @@ public class FizzServerWebExchangeDecorator extends ServerWebExchangeDecorator {
         MediaType ct = req.getHeaders().getContentType();
         if (MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(ct)) {
             Charset charset = getMediaTypeCharset(ct);
+            if (FormUrlEncodedCodec.isParsable(charset)) {
+                return
+                        req.getBody().collect(() -> new FormUrlEncodedCodec.Parser(charset), FormUrlEncodedCodec.Parser::write)
+                                     .map(
+                                             parser -> parser.isEmpty() ? EMPTY_FORM_DATA : parser.finish()
+                                     );
+            }
             return
                     req.getBody().defaultIfEmpty(NettyDataBufferUtils.EMPTY_DATA_BUFFER)
                                  .single()
@@ -109,7 +111,8 @@ public class FizzServerWebExchangeDecorator extends ServerWebExchangeDecorator {
     }
 
     /**
-     * @param dataMap can be {@link org.springframework.util.LinkedMultiValueMap}
+     * @param dataMap can be {@link org.springframework.util.LinkedMultiValueMap}, the values got from {@link #getFormData()}
+     *                in UTF-8 and not changed are written as they are received
      */
     public void setFormData(MultiValueMap<String, String> dataMap) {
         FizzServerHttpRequestDecorator req = (FizzServerHttpRequestDecorator) getDelegate().getRequest();
@@ -118,38 +121,6 @@ public class FizzServerWebExchangeDecorator extends ServerWebExchangeDecorator {
             req.setEmptyBody();
             return;
         }
-        StringBuilder b = ThreadContext.getStringBuilder();
-        Set<Map.Entry<String, List<String>>> fieldValuesEntries = dataMap.entrySet();
-        int fs = fieldValuesEntries.size(), cnt = 0;
-        try {
-            for (Map.Entry<String, List<String>> fieldValuesEntry : fieldValuesEntries) {
-                    String field = fieldValuesEntry.getKey();
-                    List<String> values = fieldValuesEntry.getValue();
-                    if (values.isEmpty()) {
-                            b.append(URLEncoder.encode(field, Consts.C.UTF8));
-                    } else {
-                            int vs = values.size();
-                            for (int i = 0; i < vs; ) {
-                                String v = values.get(i);
-                                b.append(URLEncoder.encode(field, Consts.C.UTF8));
-                                if (v != null) {
-                                    b.append(Consts.S.EQUAL);
-                                    if (!Consts.S.EMPTY.equals(v)) {
-                                        b.append(URLEncoder.encode(v, Consts.C.UTF8));
-                                    }
-                                }
-                                if ((++i) != vs) {
-                                    b.append(Consts.S.AND);
-                                }
-                            }
-                    }
-                    if ((++cnt) != fs) {
-                        b.append(Consts.S.AND);
-                    }
-            }
-            req.setBody(b.toString());
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException(e);
-        }
+        req.setBody(FormUrlEncodedCodec.encode(dataMap));
     }
 }
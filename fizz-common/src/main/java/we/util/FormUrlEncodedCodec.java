@@ -0,0 +1,501 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Parses and encodes {@code application/x-www-form-urlencoded} data on bytes,
+ * as {@link java.net.URLDecoder} and {@link java.net.URLEncoder} do on strings.
+ * <p>
+ * A form is parsed from the body buffers as they come, into one byte array and the boundaries of the pairs,
+ * the names are decoded then, and the values are decoded when they are got.
+ * A value parsed and not changed is encoded by copying its bytes.
+ *
+ * @author zhongjie
+ */
+
+public abstract class FormUrlEncodedCodec {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The bytes which are not escaped by {@link java.net.URLEncoder}
+     */
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+            UNRESERVED[c - 32] = true;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['*'] = true;
+    }
+
+    private FormUrlEncodedCodec() {
+    }
+
+    /**
+     * @return true if the '&amp;', '=', '+' and '%' of the charset are the ascii bytes and never the part of another char,
+     * so a form in the charset can be parsed on bytes
+     */
+    public static boolean isParsable(Charset charset) {
+        return charset == StandardCharsets.UTF_8 || charset == StandardCharsets.ISO_8859_1 || charset == StandardCharsets.US_ASCII;
+    }
+
+    /**
+     * Parses a form from the body buffers one by one, the buffers are read and not released.
+     */
+    public static final class Parser {
+
+        private final Charset charset;
+
+        private byte[]        bytes    = new byte[256];
+
+        private int           size;
+
+        /**
+         * The from, '=' and to indexes of the pairs
+         */
+        private int[]         pairs    = new int[3 * 16];
+
+        private int           pairCount;
+
+        private int           pairFrom;
+
+        private int           eq       = -1;
+
+        /**
+         * The hex digits pending for the last '%'
+         */
+        private int           pendingHex;
+
+        public Parser(Charset charset) {
+            this.charset = charset;
+        }
+
+        public Parser write(DataBuffer buffer) {
+            ByteBuffer bb = buffer.asByteBuffer();
+            int n = bb.remaining();
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + n));
+            }
+            bb.get(bytes, size, n);
+            scan(size, size + n);
+            size += n;
+            return this;
+        }
+
+        public Parser write(byte[] src, int from, int to) {
+            int n = to - from;
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + n));
+            }
+            System.arraycopy(src, from, bytes, size, n);
+            scan(size, size + n);
+            size += n;
+            return this;
+        }
+
+        private void scan(int from, int to) {
+            byte[] bs = bytes;
+            for (int i = from; i < to; i++) {
+                byte b = bs[i];
+                if (pendingHex > 0) {
+                    if (Character.digit(b, 16) == -1) {
+                        throw new IllegalArgumentException("URLDecoder: Illegal hex characters in escape (%) pattern");
+                    }
+                    pendingHex--;
+                } else if (b == '&') {
+                    addPair(pairFrom, eq, i);
+                    pairFrom = i + 1;
+                    eq = -1;
+                } else if (b == '=') {
+                    if (eq == -1) {
+                        eq = i;
+                    }
+                } else if (b == '%') {
+                    pendingHex = 2;
+                }
+            }
+        }
+
+        private void addPair(int from, int eq, int to) {
+            if (pairCount * 3 == pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length << 1);
+            }
+            int i = pairCount * 3;
+            pairs[i] = from;
+            pairs[i + 1] = eq;
+            pairs[i + 2] = to;
+            pairCount++;
+        }
+
+        /**
+         * @return true if no byte is written
+         */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return the form, the values of a field is a list which decodes a value when it's got
+         */
+        public MultiValueMap<String, String> finish() {
+            if (pendingHex > 0) {
+                throw new IllegalArgumentException("URLDecoder: Incomplete trailing escape (%) pattern");
+            }
+            addPair(pairFrom, eq, size);
+            MultiValueMap<String, String> form = new LinkedMultiValueMap<>(pairCount);
+            byte[] bs = bytes;
+            for (int p = 0; p < pairCount; p++) {
+                int from = pairs[p * 3], eq = pairs[p * 3 + 1], to = pairs[p * 3 + 2];
+                // the pair is trimmed as String.trim does
+                while (from < to && (bs[from] & 0xFF) <= ' ') {
+                    from++;
+                }
+                while (to > from && (bs[to - 1] & 0xFF) <= ' ') {
+                    to--;
+                }
+                if (from == to) {
+                    continue;
+                }
+                String name = decode(bs, from, eq == -1 ? to : eq, charset);
+                FormValues values = (FormValues) form.get(name);
+                if (values == null) {
+                    values = new FormValues(bs, charset);
+                    form.put(name, values);
+                }
+                if (eq == -1) {
+                    values.add(null);
+                } else {
+                    values.addRaw(eq + 1, to);
+                }
+            }
+            return form;
+        }
+    }
+
+    /**
+     * The values of a form field, which keeps a value parsed as the bytes until it's got.
+     */
+    static final class FormValues extends AbstractList<String> implements RandomAccess {
+
+        final byte[]    src;
+
+        final Charset   charset;
+
+        private String[] values = new String[2];
+
+        /**
+         * The (from &lt;&lt; 32 | to) of a value in {@link #src}, or -1 if the value is not parsed or is changed
+         */
+        private long[]   ranges = new long[2];
+
+        private int      size;
+
+        FormValues(byte[] src, Charset charset) {
+            this.src     = src;
+            this.charset = charset;
+        }
+
+        void addRaw(int from, int to) {
+            add(size, null);
+            ranges[size - 1] = (long) from << 32 | to;
+        }
+
+        /**
+         * @return the range of the value parsed and not changed, or -1
+         */
+        long range(int index) {
+            return ranges[index];
+        }
+
+        @Override
+        public String get(int index) {
+            checkIndex(index);
+            String v = values[index];
+            long r = ranges[index];
+            if (v == null && r != -1) {
+                v = decode(src, (int) (r >>> 32), (int) r, charset);
+                values[index] = v;
+            }
+            return v;
+        }
+
+        @Override
+        public String set(int index, String element) {
+            String prev = get(index);
+            values[index] = element;
+            ranges[index] = -1;
+            return prev;
+        }
+
+        @Override
+        public void add(int index, String element) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+                ranges = Arrays.copyOf(ranges, size << 1);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            System.arraycopy(ranges, index, ranges, index + 1, size - index);
+            values[index] = element;
+            ranges[index] = -1;
+            size++;
+            modCount++;
+        }
+
+        @Override
+        public String remove(int index) {
+            String prev = get(index);
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            System.arraycopy(ranges, index + 1, ranges, index, size - index - 1);
+            size--;
+            values[size] = null;
+            modCount++;
+            return prev;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+    }
+
+    /**
+     * Decodes the bytes as {@link java.net.URLDecoder} decodes the string of them, the escapes are checked already.
+     */
+    static String decode(byte[] src, int from, int to, Charset charset) {
+        int i = from;
+        while (i < to && src[i] != '%' && src[i] != '+') {
+            i++;
+        }
+        if (i == to) {
+            return new String(src, from, to - from, charset);
+        }
+        byte[] dst = new byte[to - from];
+        int n = i - from;
+        System.arraycopy(src, from, dst, 0, n);
+        for (; i < to; i++) {
+            byte b = src[i];
+            if (b == '+') {
+                dst[n++] = ' ';
+            } else if (b == '%') {
+                dst[n++] = (byte) (Character.digit(src[i + 1], 16) << 4 | Character.digit(src[i + 2], 16));
+                i += 2;
+            } else {
+                dst[n++] = b;
+            }
+        }
+        return new String(dst, 0, n, charset);
+    }
+
+    /**
+     * Appends the string decoded by {@link java.net.URLDecoder} in the charset to the builder.
+     */
+    public static StringBuilder appendDecoded(StringBuilder b, String s, Charset charset) {
+        int n = s.length(), i = 0;
+        while (i < n && s.charAt(i) != '%' && s.charAt(i) != '+') {
+            i++;
+        }
+        b.append(s, 0, i);
+        byte[] bytes = null;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '+') {
+                b.append(' ');
+                i++;
+            } else if (c == '%') {
+                if (bytes == null) {
+                    bytes = new byte[(n - i) / 3];
+                }
+                int cnt = 0;
+                while (i + 2 < n && s.charAt(i) == '%') {
+                    int v = Character.digit(s.charAt(i + 1), 16) << 4 | Character.digit(s.charAt(i + 2), 16);
+                    if (v < 0) {
+                        throw new IllegalArgumentException("URLDecoder: Illegal hex characters in escape (%) pattern - " + s.substring(i + 1, i + 3));
+                    }
+                    bytes[cnt++] = (byte) v;
+                    i += 3;
+                }
+                if (i < n && s.charAt(i) == '%') {
+                    throw new IllegalArgumentException("URLDecoder: Incomplete trailing escape (%) pattern");
+                }
+                b.append(new String(bytes, 0, cnt, charset));
+            } else {
+                b.append(c);
+                i++;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * @return the form encoded in UTF-8 as {@link java.net.URLEncoder} does, the fields are joined by '&amp;',
+     * a null value is encoded as the field only and an empty list of values as the field only too
+     */
+    public static byte[] encode(MultiValueMap<String, String> form) {
+        byte[] dst = new byte[write(form, null)];
+        write(form, dst);
+        return dst;
+    }
+
+    /**
+     * Writes the form to the bytes, or only counts them if the bytes is null.
+     *
+     * @return the count of the bytes
+     */
+    private static int write(MultiValueMap<String, String> form, byte[] dst) {
+        int pos = 0;
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : form.entrySet()) {
+            String field = entry.getKey();
+            List<String> values = entry.getValue();
+            int vs = values.size();
+            if (vs == 0) {
+                pos = separate(dst, pos, first);
+                pos = encode(field, dst, pos);
+                first = false;
+                continue;
+            }
+            FormValues raw = values instanceof FormValues && ((FormValues) values).charset == StandardCharsets.UTF_8 ? (FormValues) values : null;
+            for (int i = 0; i < vs; i++) {
+                pos = separate(dst, pos, first);
+                first = false;
+                pos = encode(field, dst, pos);
+                long r = raw == null ? -1 : raw.range(i);
+                if (r != -1 && isEncoded(raw.src, (int) (r >>> 32), (int) r)) {
+                    int from = (int) (r >>> 32), n = (int) r - from;
+                    if (dst != null) {
+                        dst[pos] = '=';
+                        System.arraycopy(raw.src, from, dst, pos + 1, n);
+                    }
+                    pos += n + 1;
+                    continue;
+                }
+                String v = values.get(i);
+                if (v != null) {
+                    if (dst != null) {
+                        dst[pos] = '=';
+                    }
+                    pos = encode(v, dst, pos + 1);
+                }
+            }
+        }
+        return pos;
+    }
+
+    private static int separate(byte[] dst, int pos, boolean first) {
+        if (first) {
+            return pos;
+        }
+        if (dst != null) {
+            dst[pos] = '&';
+        }
+        return pos + 1;
+    }
+
+    /**
+     * @return true if the bytes are what {@link java.net.URLEncoder} may produce
+     */
+    private static boolean isEncoded(byte[] src, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = src[i];
+            if (b < 0 || !(UNRESERVED[b] || b == '+' || b == '%')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int encode(String s, byte[] dst, int pos) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    if (dst != null) {
+                        dst[pos] = (byte) c;
+                    }
+                    pos++;
+                } else if (c == ' ') {
+                    if (dst != null) {
+                        dst[pos] = '+';
+                    }
+                    pos++;
+                } else {
+                    pos = escape(c, dst, pos);
+                }
+            } else if (c < 0x800) {
+                pos = escape(0xC0 | c >> 6, dst, pos);
+                pos = escape(0x80 | c & 0x3F, dst, pos);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    pos = escape(0xF0 | cp >> 18, dst, pos);
+                    pos = escape(0x80 | cp >> 12 & 0x3F, dst, pos);
+                    pos = escape(0x80 | cp >> 6 & 0x3F, dst, pos);
+                    pos = escape(0x80 | cp & 0x3F, dst, pos);
+                } else {
+                    // a malformed char is encoded as '?' by String.getBytes
+                    pos = escape('?', dst, pos);
+                }
+            } else {
+                pos = escape(0xE0 | c >> 12, dst, pos);
+                pos = escape(0x80 | c >> 6 & 0x3F, dst, pos);
+                pos = escape(0x80 | c & 0x3F, dst, pos);
+            }
+        }
+        return pos;
+    }
+
+    private static int escape(int b, byte[] dst, int pos) {
+        if (dst != null) {
+            dst[pos]     = '%';
+            dst[pos + 1] = HEX[b >> 4 & 0xF];
+            dst[pos + 2] = HEX[b & 0xF];
+        }
+        return pos + 3;
+    }
+}
@@ -16,8 +16,10 @@
  */
 package we.util;
 
+import com.alibaba.fastjson.JSON;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.networknt.schema.JsonSchema;
 import com.networknt.schema.JsonSchemaFactory;
 import com.networknt.schema.SchemaValidatorsConfig;
@@ -113,51 +115,86 @@ public class JsonSchemaUtils {
         return internalValidate(jsonSchema, inputJson, Boolean.TRUE);
     }
 
-    private static List<String> internalValidate(String jsonSchema, String inputJson, boolean typeLoose) {
-        CheckJsonResult checkJsonResult = checkJson(jsonSchema, inputJson, typeLoose);
-        if (checkJsonResult.errorList != null) {
-            return checkJsonResult.errorList;
-        }
-
-        Set<ValidationMessage> validationMessageSet = checkJsonResult.schema.validate(checkJsonResult.json);
-        if (CollectionUtils.isEmpty(validationMessageSet)) {
-            return null;
+    /**
+     * 编译JSON Schema，编译结果可缓存并重复用于验证
+     * @param jsonSchema JSON Schema
+     * @param typeLoose 是否允许数字\布尔类型 是字符串格式
+     * @return 编译后的JSON Schema
+     */
+    public static CompiledSchema compile(String jsonSchema, boolean typeLoose) {
+        CompiledSchema compiledSchema = new CompiledSchema();
+        try {
+            compiledSchema.schema = getJsonSchemaFromStringContent(jsonSchema, typeLoose);
+        } catch (Exception e) {
+            compiledSchema.errorList = new ArrayList<>(1);
+            compiledSchema.errorList.add(String.format("JSON Schema格式错误，提示信息[%s]", e.getMessage()));
         }
-
-        return validationMessageSet.stream().map(validationMessage -> {
-            String message = validationMessage.getMessage();
-            if (message != null) {
-                return message;
-            }
-            return validationMessage.getCode();
-        }).collect(Collectors.toList());
+        return compiledSchema;
     }
 
-    private static CheckJsonResult checkJson(String jsonSchema, String inputJson, boolean typeLoose) {
-        CheckJsonResult checkJsonResult = new CheckJsonResult();
-        try {
-            checkJsonResult.schema = getJsonSchemaFromStringContent(jsonSchema, typeLoose);
-        } catch (Exception e) {
-            checkJsonResult.errorList = new ArrayList<>(1);
-            checkJsonResult.errorList.add(String.format("JSON Schema格式错误，提示信息[%s]", e.getMessage()));
-            return checkJsonResult;
+    private static List<String> internalValidate(String jsonSchema, String inputJson, boolean typeLoose) {
+        CompiledSchema compiledSchema = compile(jsonSchema, typeLoose);
+        if (compiledSchema.errorList != null) {
+            return compiledSchema.errorList;
         }
 
+        JsonNode json;
         try {
-            checkJsonResult.json = getJsonNodeFromStringContent(inputJson);
+            json = getJsonNodeFromStringContent(inputJson);
         } catch (Exception e) {
-            checkJsonResult.errorList = new ArrayList<>(1);
-            checkJsonResult.errorList.add(String.format("待验证JSON格式错误，提示信息[%s]", e.getMessage()));
-            return checkJsonResult;
+            List<String> errorList = new ArrayList<>(1);
+            errorList.add(String.format("待验证JSON格式错误，提示信息[%s]", e.getMessage()));
+            return errorList;
         }
 
-        return checkJsonResult;
+        return compiledSchema.validate(json);
     }
 
-    private static class CheckJsonResult {
+    /**
+     * 编译后的JSON Schema，线程安全
+     */
+    public static class CompiledSchema {
         JsonSchema schema;
-        JsonNode json;
         List<String> errorList;
+
+        private CompiledSchema() {
+        }
+
+        /**
+         * 验证对象是否符合JSON Schema要求，对象直接转换为JsonNode，无需先序列化为JSON字符串
+         * @param input 待验证对象，如Map、List、String、Number等
+         * @return null：验证通过，List：报错信息列表
+         */
+        public List<String> validate(Object input) {
+            if (errorList != null) {
+                return errorList;
+            }
+
+            JsonNode json;
+            try {
+                json = getJsonNodeFromObject(input);
+            } catch (Exception e) {
+                List<String> errors = new ArrayList<>(1);
+                errors.add(String.format("待验证JSON格式错误，提示信息[%s]", e.getMessage()));
+                return errors;
+            }
+            return validate(json);
+        }
+
+        private List<String> validate(JsonNode json) {
+            Set<ValidationMessage> validationMessageSet = schema.validate(json);
+            if (CollectionUtils.isEmpty(validationMessageSet)) {
+                return null;
+            }
+
+            return validationMessageSet.stream().map(validationMessage -> {
+                String message = validationMessage.getMessage();
+                if (message != null) {
+                    return message;
+                }
+                return validationMessage.getCode();
+            }).collect(Collectors.toList());
+        }
     }
 
     private static final JsonSchemaFactory JSON_SCHEMA_FACTORY = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V7);
@@ -178,4 +215,19 @@ public class JsonSchemaUtils {
     private static JsonNode getJsonNodeFromStringContent(String content) throws Exception {
         return OBJECT_MAPPER.readTree(content);
     }
+
+    private static JsonNode getJsonNodeFromObject(Object input) throws Exception {
+        if (input == null) {
+            return NullNode.getInstance();
+        }
+        if (input instanceof JsonNode) {
+            return (JsonNode) input;
+        }
+        try {
+            return OBJECT_MAPPER.valueToTree(input);
+        } catch (IllegalArgumentException e) {
+            // the object can't be converted directly, such as a bean without getters, fall back to fastjson
+            return getJsonNodeFromStringContent(JSON.toJSONString(input));
+        }
+    }
 }
@@ -19,6 +19,7 @@ package we.util;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.buffer.DataBuffer;
@@ -54,11 +55,11 @@ public abstract class NettyDataBufferUtils extends org.springframework.core.io.b
         return (NettyDataBuffer) dataBufferFactory.wrap(bytes);
     }
 
-    /*public static NettyDataBuffer from(ByteBuffer byteBuffer) {
+    public static NettyDataBuffer from(ByteBuffer byteBuffer) {
         return dataBufferFactory.wrap(byteBuffer);
     }
 
-    public static NettyDataBuffer from(ByteBuf byteBuf) {
+    /*public static NettyDataBuffer from(ByteBuf byteBuf) {
         return dataBufferFactory.wrap(byteBuf);
     }*/
 
@@ -72,6 +73,35 @@ public abstract class NettyDataBufferUtils extends org.springframework.core.io.b
         return from(copyBytes(dataBuffer));
     }
 
+    /**
+     * @return view of the readable bytes of the data buffer, which shares the memory with the data buffer but has its own
+     * read and write positions; if the data buffer is a NettyDataBuffer, the view is retained and should be released separately
+     */
+    public static DataBuffer retainedSlice(@Nullable DataBuffer dataBuffer) {
+        if (dataBuffer == null) {
+            return null;
+        }
+        if (dataBuffer instanceof NettyDataBuffer) {
+            return ((NettyDataBuffer) dataBuffer).retainedSlice(dataBuffer.readPosition(), dataBuffer.readableByteCount());
+        }
+        return dataBuffer.slice(dataBuffer.readPosition(), dataBuffer.readableByteCount());
+    }
+
+    /**
+     * @return view of the readable bytes of the data buffer like {@link #retainedSlice}, but not retained and can't be released,
+     * for sharing the data buffer with the consumers which release what they consume, the data buffer should outlive the consumers
+     */
+    public static DataBuffer unreleasableSlice(@Nullable DataBuffer dataBuffer) {
+        if (dataBuffer == null) {
+            return null;
+        }
+        if (dataBuffer instanceof NettyDataBuffer) {
+            ByteBuf byteBuf = ((NettyDataBuffer) dataBuffer).getNativeBuffer();
+            return dataBufferFactory.wrap(Unpooled.unreleasableBuffer(byteBuf.slice(byteBuf.readerIndex(), byteBuf.readableBytes())));
+        }
+        return dataBuffer.slice(dataBuffer.readPosition(), dataBuffer.readableByteCount());
+    }
+
     /*public static boolean release(@Nullable String traceId, @Nullable DataBuffer dataBuffer) {
         if (dataBuffer instanceof PooledDataBuffer) {
             PooledDataBuffer pooledDataBuffer = (PooledDataBuffer) dataBuffer;
@@ -0,0 +1,155 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An immutable set of path patterns, which tells if a path matches one of them by {@link UrlTransformUtils#ANT_PATH_MATCHER}.
+ * <p>
+ * A path equal to a pattern matches without matching, the other patterns are indexed by a trie of their literal prefixes,
+ * the chars before the first {@code * ? { #}, which a path must start with to match the pattern,
+ * so a path is only matched with the patterns whose prefixes it starts with, not with all the patterns.
+ *
+ * @author zhongjie
+ */
+
+public final class PathPatternIndex {
+
+    public static final PathPatternIndex EMPTY = new PathPatternIndex(Collections.emptySet());
+
+    private static final class Node {
+
+        final char[]   chars;
+
+        final Node[]   children;
+
+        /** the patterns whose literal prefix ends at this node */
+        final String[] patterns;
+
+        Node(char[] chars, Node[] children, String[] patterns) {
+            this.chars = chars;
+            this.children = children;
+            this.patterns = patterns;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    private static final class NodeBuilder {
+
+        final TreeMap<Character, NodeBuilder> children = new TreeMap<>();
+
+        final List<String>                    patterns = new ArrayList<>(2);
+
+        Node build() {
+            char[] chars = new char[children.size()];
+            Node[] nodes = new Node[chars.length];
+            int i = 0;
+            for (Map.Entry<Character, NodeBuilder> e : children.entrySet()) {
+                chars[i] = e.getKey();
+                nodes[i] = e.getValue().build();
+                i++;
+            }
+            return new Node(chars, nodes, patterns.toArray(new String[0]));
+        }
+    }
+
+    private final Set<String> patterns;
+
+    private final Node        root;
+
+    private final String[]    matchables;
+
+    public PathPatternIndex(Collection<String> patterns) {
+        this.patterns = Collections.unmodifiableSet(new HashSet<>(patterns));
+        NodeBuilder rootBuilder = new NodeBuilder();
+        List<String> matchables = new ArrayList<>();
+        for (String pattern : this.patterns) {
+            int prefix = literalPrefix(pattern);
+            if (prefix == pattern.length()) {
+                // can only match a path equal to it
+                continue;
+            }
+            matchables.add(pattern);
+            NodeBuilder node = rootBuilder;
+            for (int i = 0; i < prefix; i++) {
+                node = node.children.computeIfAbsent(pattern.charAt(i), c -> new NodeBuilder());
+            }
+            node.patterns.add(pattern);
+        }
+        root = rootBuilder.build();
+        this.matchables = matchables.toArray(new String[0]);
+    }
+
+    private static int literalPrefix(String pattern) {
+        int n = pattern.length();
+        for (int i = 0; i < n; i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '{' || c == '#') {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    public boolean matches(String path) {
+        if (patterns.contains(path)) {
+            return true;
+        }
+        if (matchables.length == 0) {
+            return false;
+        }
+        if (path.isEmpty() || path.indexOf('#') > -1) {
+            // the matcher splits the path by #, the prefix of a pattern may not be the prefix of the path
+            for (String pattern : matchables) {
+                if (UrlTransformUtils.ANT_PATH_MATCHER.match(pattern, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        Node node = root;
+        int n = path.length();
+        for (int i = 0; ; i++) {
+            for (String pattern : node.patterns) {
+                if (UrlTransformUtils.ANT_PATH_MATCHER.match(pattern, path)) {
+                    return true;
+                }
+            }
+            if (i == n || (node = node.child(path.charAt(i))) == null) {
+                return false;
+            }
+        }
+    }
+
+    public Set<String> getPatterns() {
+        return patterns;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the (id, timestamp, sign) of the signed requests until the timestamps expire, to reject a request replayed.
+ * <p>
+ * If the cache is full of the unexpired ones, it's cleared, so it never blocks a request but may miss a replay then.
+ *
+ * @author zhongjie
+ */
+
+public final class ReplayCache {
+
+    private final int                     maxSize;
+
+    /**
+     * The millis a timestamp is valid for
+     */
+    private final long                    ttl;
+
+    private final Map<String, Long>       expirations = new ConcurrentHashMap<>();
+
+    public ReplayCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl     = ttl;
+    }
+
+    /**
+     * @param timestamp the millis
+     * @return true if the (id, timestamp, sign) is not seen before
+     */
+    public boolean firstSeen(String id, String timestamp, String sign, long now) {
+        StringBuilder b = ThreadContext.getStringBuilder();
+        String key = b.append(id).append(Consts.S.UNDER_LINE).append(timestamp).append(Consts.S.UNDER_LINE).append(sign).toString();
+        if (expirations.size() >= maxSize) {
+            evict(now);
+        }
+        return expirations.putIfAbsent(key, Long.parseLong(timestamp) + ttl) == null;
+    }
+
+    private void evict(long now) {
+        Iterator<Long> it = expirations.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() < now) {
+                it.remove();
+            }
+        }
+        if (expirations.size() >= maxSize) {
+            expirations.clear();
+        }
+    }
+
+    public int size() {
+        return expirations.size();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Signs and checks the {@code id_timestamp_secretKey} digests, like the app sign and the dedicated line sign.
+ * <p>
+ * The fragments are hashed by a per thread digest directly, not joined into a string first,
+ * and a sign is checked against the digest bytes in constant time, not against a hex string of them.
+ *
+ * @author zhongjie
+ */
+
+public abstract class SignUtils {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final class Digests {
+
+        final MessageDigest md5    = org.apache.commons.codec.digest.DigestUtils.getMd5Digest();
+
+        final MessageDigest sha256 = org.apache.commons.codec.digest.DigestUtils.getSha256Digest();
+
+        final byte[]        buf    = new byte[256];
+
+        final byte[]        out    = new byte[32];
+
+        final char[]        hex    = new char[64];
+    }
+
+    private static final FastThreadLocal<Digests> digests = new FastThreadLocal<Digests>() {
+        @Override
+        protected Digests initialValue() {
+            return new Digests();
+        }
+    };
+
+    private SignUtils() {
+    }
+
+    /**
+     * @return the lowercase hex of SHA-256(id_timestamp_secretKey) in UTF-8, the same as {@code DigestUtils.sha256Hex}
+     */
+    public static String sha256Hex(String id, String timestamp, String secretKey) {
+        Digests d = digests.get();
+        int len = digest(d, d.sha256, StandardCharsets.UTF_8, id, timestamp, secretKey);
+        for (int i = 0; i < len; i++) {
+            d.hex[i << 1]       = HEX[(d.out[i] >> 4) & 0xF];
+            d.hex[(i << 1) + 1] = HEX[d.out[i] & 0xF];
+        }
+        return new String(d.hex, 0, len << 1);
+    }
+
+    /**
+     * @param sign the lowercase hex of SHA-256(id_timestamp_secretKey) in UTF-8
+     */
+    public static boolean checkSha256(String id, String timestamp, String secretKey, String sign) {
+        if (sign == null || sign.length() != 64) {
+            return false;
+        }
+        Digests d = digests.get();
+        int len = digest(d, d.sha256, StandardCharsets.UTF_8, id, timestamp, secretKey);
+        return hexEquals(d.out, len, sign, false);
+    }
+
+    /**
+     * @param sign the hex of MD5(id_timestamp_secretKey) in the default charset, the same as {@code DigestUtils.md532}, case insensitive
+     */
+    public static boolean checkMd5IgnoreCase(String id, String timestamp, String secretKey, String sign) {
+        if (sign == null || sign.length() != 32) {
+            return false;
+        }
+        Digests d = digests.get();
+        int len = digest(d, d.md5, Charset.defaultCharset(), id, timestamp, secretKey);
+        return hexEquals(d.out, len, sign, true);
+    }
+
+    /**
+     * @return true if the timestamp is the millis within {@code offset} of {@code now}
+     */
+    public static boolean isTimestampValid(String timestamp, long now, long offset) {
+        long t = parseMillis(timestamp);
+        return t != Long.MIN_VALUE && t >= now - offset && t <= now + offset;
+    }
+
+    /**
+     * @return the long value, or {@code Long.MIN_VALUE} if not a long
+     */
+    private static long parseMillis(String s) {
+        int n = s.length();
+        if (n == 0 || n > 18) {
+            return parseLong(s);
+        }
+        int i = s.charAt(0) == '+' && n > 1 ? 1 : 0;
+        long v = 0;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                // a sign or digits of other scripts
+                return c < 0x80 && c != '-' ? Long.MIN_VALUE : parseLong(s);
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int digest(Digests d, MessageDigest md, Charset charset, String id, String timestamp, String secretKey) {
+        md.reset();
+        int n = id.length() + timestamp.length() + secretKey.length() + 2;
+        if (n <= d.buf.length && isAscii(id) && isAscii(timestamp) && isAscii(secretKey)) {
+            byte[] buf = d.buf;
+            int pos = copy(id, buf, 0);
+            buf[pos++] = (byte) Consts.S.UNDER_LINE;
+            pos = copy(timestamp, buf, pos);
+            buf[pos++] = (byte) Consts.S.UNDER_LINE;
+            pos = copy(secretKey, buf, pos);
+            md.update(buf, 0, pos);
+        } else {
+            md.update(id.getBytes(charset));
+            md.update((byte) Consts.S.UNDER_LINE);
+            md.update(timestamp.getBytes(charset));
+            md.update((byte) Consts.S.UNDER_LINE);
+            md.update(secretKey.getBytes(charset));
+        }
+        int len = md.getDigestLength();
+        try {
+            md.digest(d.out, 0, len);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        return len;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int copy(String ascii, byte[] buf, int pos) {
+        int n = ascii.length();
+        ascii.getBytes(0, n, buf, pos);
+        return pos + n;
+    }
+
+    private static boolean hexEquals(byte[] digest, int len, String hex, boolean ignoreCase) {
+        int diff = 0;
+        for (int i = 0; i < len; i++) {
+            diff |= lower(hex.charAt(i << 1), ignoreCase)       ^ HEX[(digest[i] >> 4) & 0xF];
+            diff |= lower(hex.charAt((i << 1) + 1), ignoreCase) ^ HEX[digest[i] & 0xF];
+        }
+        return diff == 0;
+    }
+
+    private static char lower(char c, boolean ignoreCase) {
+        return ignoreCase && c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads the subclasses of a {@link SubTypeIndexed} type from the index written by {@link SubTypeIndexProcessor},
+ * which is much cheaper than scanning the classpath on startup.
+ *
+ * @author hongqiaowei
+ */
+
+public abstract class SubTypeIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SubTypeIndex.class);
+
+    public  static final String INDEX_LOCATION = "META-INF/fizz-index/";
+
+    private SubTypeIndex() {
+    }
+
+    /**
+     * @param type        the {@link SubTypeIndexed} type
+     * @param packageName only the subclasses in the package or its sub packages are returned
+     * @return the indexed subclasses of the type, or null if no index of the type found or the index is stale,
+     * then the caller should fall back to scanning the classpath
+     */
+    public static <T> Set<Class<? extends T>> getSubTypes(Class<T> type, String packageName) {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if (cl == null) {
+            cl = type.getClassLoader();
+        }
+        String prefix = packageName + '.';
+        Set<Class<? extends T>> result = new LinkedHashSet<>();
+        String name = null;
+        try {
+            Enumeration<URL> indexes = cl.getResources(INDEX_LOCATION + type.getName());
+            if (!indexes.hasMoreElements()) {
+                return null;
+            }
+            while (indexes.hasMoreElements()) {
+                URL index = indexes.nextElement();
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+                    while ((name = r.readLine()) != null) {
+                        name = name.trim();
+                        if (name.startsWith(prefix)) {
+                            result.add(Class.forName(name, false, cl).asSubclass(type));
+                        }
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("fail to read " + type.getName() + " index, class: " + name, t);
+            return null;
+        }
+        return result;
+    }
+}
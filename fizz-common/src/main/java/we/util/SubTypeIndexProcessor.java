@@ -0,0 +1,120 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes the names of the classes compiled in the module, which extend or implement a {@link SubTypeIndexed} type,
+ * to {@code META-INF/fizz-index/<indexed type>}, one class per line.
+ * <p>
+ * The processor is registered in {@code META-INF/services}, so it runs on any compilation with fizz-common on the classpath.
+ *
+ * @author hongqiaowei
+ */
+
+@SupportedAnnotationTypes("*")
+public class SubTypeIndexProcessor extends AbstractProcessor {
+
+    private final Map<String, Set<String>> index = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            write();
+        } else {
+            for (Element e : roundEnv.getRootElements()) {
+                collect(e);
+            }
+        }
+        return false;
+    }
+
+    private void collect(Element e) {
+        if (!(e instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) e;
+        if (type.getKind() == ElementKind.CLASS) {
+            Set<String> indexedTypes = new HashSet<>();
+            collectIndexedSuperTypes(type, indexedTypes, new HashSet<>());
+            if (!indexedTypes.isEmpty()) {
+                String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+                for (String indexedType : indexedTypes) {
+                    index.computeIfAbsent(indexedType, k -> new TreeSet<>()).add(name);
+                }
+            }
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            collect(enclosed);
+        }
+    }
+
+    private void collectIndexedSuperTypes(TypeElement type, Set<String> result, Set<String> visited) {
+        for (TypeMirror superType : processingEnv.getTypeUtils().directSupertypes(type.asType())) {
+            Element e = processingEnv.getTypeUtils().asElement(superType);
+            if (e instanceof TypeElement) {
+                TypeElement te = (TypeElement) e;
+                String name = processingEnv.getElementUtils().getBinaryName(te).toString();
+                if (visited.add(name)) {
+                    if (te.getAnnotation(SubTypeIndexed.class) != null) {
+                        result.add(name);
+                    }
+                    collectIndexedSuperTypes(te, result, visited);
+                }
+            }
+        }
+    }
+
+    private void write() {
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            String location = SubTypeIndex.INDEX_LOCATION + entry.getKey();
+            try {
+                FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", location);
+                try (Writer w = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                    for (String name : entry.getValue()) {
+                        w.write(name);
+                        w.write('\n');
+                    }
+                }
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "fail to write " + location + ": " + e);
+            }
+        }
+    }
+}
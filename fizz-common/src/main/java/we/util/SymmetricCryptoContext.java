@@ -0,0 +1,284 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import cn.hutool.crypto.KeyUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.symmetric.SymmetricAlgorithm;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.lang.Nullable;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encrypts and decrypts with a cipher transformation and string keys, such as the dedicated line crypto keys.
+ * <p>
+ * The key material of a string key is generated once and cached, at most {@value #MAX_KEYS} keys, the cache is cleared when full.
+ * Each thread keeps the ciphers initialized with its recent {@value #MAX_THREAD_CIPHERS} keys for each mode,
+ * a cipher evicted is initialized with the next key, not created again,
+ * so requests alternating among keys on an event loop don't create a cipher each.
+ * <p>
+ * A context holds a {@link FastThreadLocal}, so it should be a constant.
+ *
+ * @author zhongjie
+ */
+
+public final class SymmetricCryptoContext {
+
+    public interface KeyGenerator {
+        SecretKey generate(String key) throws GeneralSecurityException;
+    }
+
+    private static final int MAX_KEYS           = 10_000;
+
+    private static final int MAX_THREAD_CIPHERS = 32;
+
+    /** the scratch buffers larger than it are not kept by the thread */
+    private static final int MAX_SCRATCH        = 64 * 1024;
+
+    private static final Map<SymmetricAlgorithm, SymmetricCryptoContext> hutoolContexts = new EnumMap<>(SymmetricAlgorithm.class);
+
+    static {
+        for (SymmetricAlgorithm algorithm : SymmetricAlgorithm.values()) {
+            if (!algorithm.getValue().startsWith("PBE")) {
+                String name = algorithm.getValue();
+                hutoolContexts.put(algorithm, new SymmetricCryptoContext(name, key -> KeyUtil.generateKey(name, SecureUtil.decode(key)), null));
+            }
+        }
+    }
+
+    private final class Ciphers extends LinkedHashMap<String, Cipher> {
+
+        final int mode;
+
+        Cipher    evicted;
+
+        Ciphers(int mode) {
+            super(MAX_THREAD_CIPHERS * 2, 0.75f, true);
+            this.mode = mode;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cipher> eldest) {
+            if (size() > MAX_THREAD_CIPHERS) {
+                evicted = eldest.getValue();
+                return true;
+            }
+            return false;
+        }
+
+        Cipher get(String key) {
+            Cipher cipher = super.get(key);
+            if (cipher == null) {
+                SecretKey secretKey = secretKey(key);
+                try {
+                    cipher = evicted == null ? Cipher.getInstance(transformation) : evicted;
+                    evicted = null;
+                    if (iv == null) {
+                        cipher.init(mode, secretKey);
+                    } else {
+                        cipher.init(mode, secretKey, iv);
+                    }
+                } catch (GeneralSecurityException e) {
+                    throw new RuntimeException(e);
+                }
+                put(key, cipher);
+            }
+            return cipher;
+        }
+    }
+
+    private static final class Scratch {
+
+        byte[] in  = new byte[256];
+
+        byte[] out = new byte[256];
+    }
+
+    private final class ThreadCiphers {
+
+        final Ciphers encryptors = new Ciphers(Cipher.ENCRYPT_MODE);
+
+        final Ciphers decryptors = new Ciphers(Cipher.DECRYPT_MODE);
+
+        final Scratch scratch    = new Scratch();
+    }
+
+    public  final String                 transformation;
+
+    private final KeyGenerator           keyGenerator;
+
+    private final IvParameterSpec        iv;
+
+    private final Map<String, SecretKey> secretKeys = new ConcurrentHashMap<>();
+
+    private final FastThreadLocal<ThreadCiphers> threadCiphers = new FastThreadLocal<ThreadCiphers>() {
+        @Override
+        protected ThreadCiphers initialValue() {
+            return new ThreadCiphers();
+        }
+    };
+
+    /**
+     * @param transformation like {@code AES/ECB/PKCS5Padding}
+     * @param keyGenerator   generates the key material of a string key
+     * @param iv             the initialization vector of all the keys, or null
+     */
+    public SymmetricCryptoContext(String transformation, KeyGenerator keyGenerator, @Nullable byte[] iv) {
+        this.transformation = transformation;
+        this.keyGenerator = keyGenerator;
+        this.iv = iv == null ? null : new IvParameterSpec(iv);
+    }
+
+    /**
+     * @return the context which works like the hutool {@code SymmetricCrypto} of the algorithm, whose keys are hex or base64 strings
+     * @throws IllegalArgumentException if the algorithm is PBE, whose salt is random
+     */
+    public static SymmetricCryptoContext of(SymmetricAlgorithm algorithm) {
+        SymmetricCryptoContext context = hutoolContexts.get(algorithm);
+        if (context == null) {
+            throw new IllegalArgumentException("unsupported algorithm " + algorithm);
+        }
+        return context;
+    }
+
+    SecretKey secretKey(String key) {
+        SecretKey secretKey = secretKeys.get(key);
+        if (secretKey == null) {
+            try {
+                secretKey = keyGenerator.generate(key);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+            if (secretKeys.size() >= MAX_KEYS) {
+                secretKeys.clear();
+            }
+            secretKeys.put(key, secretKey);
+        }
+        return secretKey;
+    }
+
+    public byte[] encrypt(String key, byte[] data) {
+        return doFinal(threadCiphers.get().encryptors, key, data);
+    }
+
+    public byte[] decrypt(String key, byte[] data) {
+        return doFinal(threadCiphers.get().decryptors, key, data);
+    }
+
+    /**
+     * @param data the readable bytes of it are encrypted, it's not released
+     */
+    public DataBuffer encrypt(String key, DataBuffer data) {
+        return doFinal(threadCiphers.get().encryptors, key, data);
+    }
+
+    /**
+     * @param data the readable bytes of it are decrypted, it's not released
+     */
+    public DataBuffer decrypt(String key, DataBuffer data) {
+        return doFinal(threadCiphers.get().decryptors, key, data);
+    }
+
+    /**
+     * @return the base64 of the encrypted UTF-8 bytes of the data
+     */
+    public String encryptBase64(String key, String data) {
+        ThreadCiphers tc = threadCiphers.get();
+        byte[] in = data.getBytes(StandardCharsets.UTF_8);
+        Cipher cipher = tc.encryptors.get(key);
+        byte[] out = tc.scratch.out = ensure(tc.scratch.out, cipher.getOutputSize(in.length));
+        int n = doFinal(tc.encryptors, key, cipher, in, in.length, out);
+        ByteBuffer b64 = Base64.getEncoder().encode(ByteBuffer.wrap(out, 0, n));
+        release(tc.scratch);
+        return new String(b64.array(), 0, b64.remaining(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param data the base64 of the encrypted UTF-8 bytes
+     */
+    public String decryptBase64(String key, String data) {
+        ThreadCiphers tc = threadCiphers.get();
+        byte[] b64 = data.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] in = tc.scratch.in = ensure(tc.scratch.in, b64.length / 4 * 3 + 3);
+        int len = Base64.getDecoder().decode(b64, in);
+        Cipher cipher = tc.decryptors.get(key);
+        byte[] out = tc.scratch.out = ensure(tc.scratch.out, cipher.getOutputSize(len));
+        int n = doFinal(tc.decryptors, key, cipher, in, len, out);
+        String s = new String(out, 0, n, StandardCharsets.UTF_8);
+        release(tc.scratch);
+        return s;
+    }
+
+    private static byte[] doFinal(Ciphers ciphers, String key, byte[] data) {
+        Cipher cipher = ciphers.get(key);
+        try {
+            return cipher.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            ciphers.remove(key);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int doFinal(Ciphers ciphers, String key, Cipher cipher, byte[] data, int len, byte[] out) {
+        try {
+            return cipher.doFinal(data, 0, len, out, 0);
+        } catch (GeneralSecurityException e) {
+            ciphers.remove(key);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static DataBuffer doFinal(Ciphers ciphers, String key, DataBuffer data) {
+        Cipher cipher = ciphers.get(key);
+        ByteBuffer in = data.asByteBuffer();
+        byte[] out = new byte[cipher.getOutputSize(in.remaining())];
+        int n;
+        try {
+            n = cipher.doFinal(in, ByteBuffer.wrap(out));
+        } catch (GeneralSecurityException e) {
+            ciphers.remove(key);
+            throw new RuntimeException(e);
+        }
+        return NettyDataBufferUtils.from(ByteBuffer.wrap(out, 0, n));
+    }
+
+    private static byte[] ensure(byte[] buf, int len) {
+        return buf.length >= len ? buf : new byte[Math.max(len, buf.length * 2)];
+    }
+
+    private static void release(Scratch scratch) {
+        if (scratch.in.length > MAX_SCRATCH) {
+            scratch.in = new byte[256];
+        }
+        if (scratch.out.length > MAX_SCRATCH) {
+            scratch.out = new byte[256];
+        }
+    }
+}
@@ -17,6 +17,8 @@
 
 package we.util;
 
+import io.netty.util.concurrent.FastThreadLocal;
+
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -24,12 +26,49 @@ import java.util.HashSet;
 import java.util.Map;
 
 /**
+ * Per thread scratch objects.
+ * <p>
+ * The common ones are kept in the fields of a per thread {@link Slots} rather than a string keyed map,
+ * which is held by a {@link FastThreadLocal}, so it's an array index on event loop threads.
+ * A key is of a slot if it's the constant, or equals it, such as one read from config or concatenated at runtime.
+ * <p>
+ * A string builder or array list can be borrowed and returned, if {@code -Dfizz.thread-context.debug=true},
+ * getting or borrowing it again before it's returned throws {@link IllegalStateException},
+ * which catches two callers in one call stack using the same object.
+ *
  * @author hongqiaowei
  */
 
 public abstract class ThreadContext {
 
-	private static       ThreadLocal<Map<String, Object>> tl     = new ThreadLocal<>();
+	private static final class Slots {
+
+		StringBuilder       sb;
+		StringBuilder       sb0;
+		ArrayList<?>        arrayList;
+		ArrayList<?>        arrayList0;
+		HashMap<?, ?>       hashMap;
+		HashSet<?>          hashSet;
+		String              traceId;
+		Map<String, Object> map;
+
+		/** bits of the borrowed slots, only in debug mode */
+		int                 borrowed;
+
+		Map<String, Object> getMap() {
+			if (map == null) {
+				map = new HashMap<>(mapCap);
+			}
+			return map;
+		}
+	}
+
+	private static final FastThreadLocal<Slots> slots = new FastThreadLocal<Slots>() {
+		@Override
+		protected Slots initialValue() {
+			return new Slots();
+		}
+	};
 
 	private static final int     mapCap      = 32;
 
@@ -44,15 +83,29 @@ public abstract class ThreadContext {
 
 	private static final String  traId       = "traIdT";
 
+	private static final int     SB_BIT      = 1;
+	private static final int     SB0_BIT     = 2;
+	private static final int     LIST_BIT    = 4;
+	private static final int     LIST0_BIT   = 8;
+	private static final int     MAP_BIT     = 16;
+	private static final int     SET_BIT     = 32;
+	private static final int     TRACE_BIT   = 64;
+
+	private static       boolean debug       = Boolean.getBoolean("fizz.thread-context.debug");
+
 	private ThreadContext() {
 	}
 
+	static void setDebug(boolean d) {
+		debug = d;
+	}
+
 	public static void setTraceId(String traceId) {
-		set(traId, traceId);
+		slots.get().traceId = traceId;
 	}
 
-	public String getTraceId() {
-		return (String) get(traId);
+	public static String getTraceId() {
+		return slots.get().traceId;
 	}
 
 	/** use me carefully! */
@@ -62,34 +115,100 @@ public abstract class ThreadContext {
 
 	/** use me carefully! */
 	public static StringBuilder getStringBuilder(boolean clean) {
-		Map<String, Object> m = getMap();
-		StringBuilder b = (StringBuilder) m.get(sb);
+		Slots s = slots.get();
+		if (debug) {
+			check(s, SB_BIT, sb);
+		}
+		StringBuilder b = s.sb;
 		if (b == null) {
 			b = new StringBuilder(sbCap);
-			m.put(sb, b);
-		} else {
-			if (clean) {
-				b.delete(0, b.length());
-			}
+			s.sb = b;
+		} else if (clean) {
+			b.setLength(0);
 		}
 		return b;
 	}
-	
+
 	public static StringBuilder getStringBuilder(String key) {
-		StringBuilder b = (StringBuilder) get(key);
+		int slot = slot(key);
+		if (slot == SB0_BIT) {
+			Slots s = slots.get();
+			if (debug) {
+				check(s, SB0_BIT, sb0);
+			}
+			StringBuilder b = s.sb0;
+			if (b == null) {
+				b = new StringBuilder(sbCap);
+				s.sb0 = b;
+			} else {
+				b.setLength(0);
+			}
+			return b;
+		}
+		if (slot == SB_BIT) {
+			return getStringBuilder(true);
+		}
+		Map<String, Object> m = slots.get().getMap();
+		StringBuilder b = (StringBuilder) m.get(key);
 		if (b == null) {
 			b = new StringBuilder(sbCap);
-			Map<String, Object> m = getMap();
 			m.put(key, b);
 		} else {
-			b.delete(0, b.length());
+			b.setLength(0);
+		}
+		return b;
+	}
+
+	/**
+	 * Borrow the cleaned string builder of the thread, which should be returned by {@link #returnStringBuilder(StringBuilder)}.
+	 */
+	public static StringBuilder borrowStringBuilder() {
+		StringBuilder b = getStringBuilder(true);
+		if (debug) {
+			slots.get().borrowed |= SB_BIT;
 		}
 		return b;
 	}
-	
+
+	public static void returnStringBuilder(StringBuilder b) {
+		if (debug) {
+			giveBack(slots.get(), SB_BIT, b, slots.get().sb);
+		}
+	}
+
+	/**
+	 * Borrow the cleared array list of the thread, which should be returned by {@link #returnArrayList(ArrayList)}.
+	 */
+	public static <T> ArrayList<T> borrowArrayList() {
+		ArrayList<T> l = getArrayList(arrayList, true);
+		if (debug) {
+			slots.get().borrowed |= LIST_BIT;
+		}
+		return l;
+	}
+
+	public static void returnArrayList(ArrayList<?> l) {
+		if (debug) {
+			giveBack(slots.get(), LIST_BIT, l, slots.get().arrayList);
+		}
+	}
+
+	private static void check(Slots s, int bit, String name) {
+		if ((s.borrowed & bit) != 0) {
+			throw new IllegalStateException(name + " is borrowed and not returned yet");
+		}
+	}
+
+	private static void giveBack(Slots s, int bit, Object returned, Object slot) {
+		if (returned != slot || (s.borrowed & bit) == 0) {
+			throw new IllegalStateException("return object not borrowed from thread context");
+		}
+		s.borrowed &= ~bit;
+	}
+
 	/** for legacy code. */
 	public static SimpleDateFormat getSimpleDateFormat(String pattern) {
-		Map<String, Object> m = getMap();
+		Map<String, Object> m = slots.get().getMap();
 		SimpleDateFormat sdf = (SimpleDateFormat) m.get(pattern);
 		if (sdf == null) {
 			sdf = new SimpleDateFormat(pattern);
@@ -98,19 +217,73 @@ public abstract class ThreadContext {
 		return sdf;
 	}
 
-	private static Map<String, Object> getMap() {
-		Map<String, Object> m = tl.get();
-		if (m == null) {
-			m = new HashMap<>(mapCap);
-			tl.set(m);
+	public static Object get(String key) {
+		Slots s = slots.get();
+		switch (slot(key)) {
+			case SB_BIT:    return s.sb;
+			case SB0_BIT:   return s.sb0;
+			case LIST_BIT:  return s.arrayList;
+			case LIST0_BIT: return s.arrayList0;
+			case MAP_BIT:   return s.hashMap;
+			case SET_BIT:   return s.hashSet;
+			case TRACE_BIT: return s.traceId;
+			default:        return s.getMap().get(key);
 		}
-		return m;
 	}
-	
-	public static Object get(String key) {
-		return getMap().get(key);
+
+	/**
+	 * @return the bit of the slot if the key is of a slot, otherwise 0
+	 */
+	private static int slot(String key) {
+		int slot = slotByIdentity(key);
+		if (slot == 0 && key != null) {
+			slot = slotByValue(key);
+		}
+		return slot;
 	}
-	
+
+	private static int slotByIdentity(String key) {
+		if (key == sb) {
+			return SB_BIT;
+		} else if (key == sb0) {
+			return SB0_BIT;
+		} else if (key == arrayList) {
+			return LIST_BIT;
+		} else if (key == arrayList0) {
+			return LIST0_BIT;
+		} else if (key == hashMap) {
+			return MAP_BIT;
+		} else if (key == hashSet) {
+			return SET_BIT;
+		} else if (key == traId) {
+			return TRACE_BIT;
+		}
+		return 0;
+	}
+
+	/**
+	 * For a key not the constant, the length rules out most keys before {@code equals}.
+	 */
+	private static int slotByValue(String key) {
+		switch (key.length()) {
+			case 3:  return sb.equals(key)         ? SB_BIT    : 0;
+			case 4:  return sb0.equals(key)        ? SB0_BIT   : 0;
+			case 7:  return arrayList0.equals(key) ? LIST0_BIT : 0;
+			case 6:
+				if (arrayList.equals(key)) {
+					return LIST_BIT;
+				} else if (hashMap.equals(key)) {
+					return MAP_BIT;
+				} else if (hashSet.equals(key)) {
+					return SET_BIT;
+				} else if (traId.equals(key)) {
+					return TRACE_BIT;
+				}
+				return 0;
+			default: return 0;
+		}
+	}
+
 	public static <T> T get(String key, Class<T> clz) {
 		T t = (T) get(key);
 		if (t == null) {
@@ -125,11 +298,27 @@ public abstract class ThreadContext {
 	}
 
 	public static void set(String key, Object obj) {
-		getMap().put(key, obj);
+		Slots s = slots.get();
+		switch (slot(key)) {
+			case SB_BIT:    s.sb         = (StringBuilder) obj; break;
+			case SB0_BIT:   s.sb0        = (StringBuilder) obj; break;
+			case LIST_BIT:  s.arrayList  = (ArrayList<?>)  obj; break;
+			case LIST0_BIT: s.arrayList0 = (ArrayList<?>)  obj; break;
+			case MAP_BIT:   s.hashMap    = (HashMap<?, ?>) obj; break;
+			case SET_BIT:   s.hashSet    = (HashSet<?>)    obj; break;
+			case TRACE_BIT: s.traceId    = (String)        obj; break;
+			default:        s.getMap().put(key, obj);
+		}
 	}
-	
+
 	public static Object remove(String key) {
-		return getMap().remove(key);
+		Object o = get(key);
+		if (slot(key) == 0) {
+			slots.get().getMap().remove(key);
+		} else {
+			set(key, null);
+		}
+		return o;
 	}
 
 	public static <T> ArrayList<T> getArrayList() {
@@ -141,18 +330,49 @@ public abstract class ThreadContext {
 	}
 
 	public static <T> ArrayList<T> getArrayList(String key, boolean clear) {
-		ArrayList<T> l = (ArrayList<T>) get(key);
-		if (l == null) {
-			l = new ArrayList<T>();
-			set(key, l);
-		} else if (clear) {
+		ArrayList<T> l;
+		int slot = slot(key);
+		if (slot == LIST_BIT || slot == LIST0_BIT) {
+			Slots s = slots.get();
+			boolean first = slot == LIST_BIT;
+			if (debug) {
+				check(s, slot, key);
+			}
+			l = (ArrayList<T>) (first ? s.arrayList : s.arrayList0);
+			if (l == null) {
+				l = new ArrayList<T>();
+				if (first) {
+					s.arrayList = l;
+				} else {
+					s.arrayList0 = l;
+				}
+				return l;
+			}
+		} else {
+			Map<String, Object> m = slots.get().getMap();
+			l = (ArrayList<T>) m.get(key);
+			if (l == null) {
+				l = new ArrayList<T>();
+				m.put(key, l);
+				return l;
+			}
+		}
+		if (clear) {
 			l.clear();
 		}
 		return l;
 	}
 
 	public static <K, V> HashMap<K, V> getHashMap() {
-		return getHashMap(hashMap, true);
+		Slots s = slots.get();
+		HashMap<K, V> m = (HashMap<K, V>) s.hashMap;
+		if (m == null) {
+			m = new HashMap<K, V>();
+			s.hashMap = m;
+		} else {
+			m.clear();
+		}
+		return m;
 	}
 
 	public static <K, V> HashMap<K, V> getHashMap(String key) {
@@ -160,6 +380,9 @@ public abstract class ThreadContext {
 	}
 
 	public static <K, V> HashMap<K, V> getHashMap(String key, boolean clear) {
+		if (clear && slot(key) == MAP_BIT) {
+			return getHashMap();
+		}
 		HashMap<K, V> m = (HashMap<K, V>) get(key);
 		if (m == null) {
 			m = new HashMap<K, V>();
@@ -171,7 +394,15 @@ public abstract class ThreadContext {
 	}
 
 	public static <E> HashSet<E> getHashSet() {
-		return getHashSet(hashSet, true);
+		Slots s = slots.get();
+		HashSet<E> hs = (HashSet<E>) s.hashSet;
+		if (hs == null) {
+			hs = new HashSet<E>();
+			s.hashSet = hs;
+		} else {
+			hs.clear();
+		}
+		return hs;
 	}
 
 	public static <E> HashSet<E> getHashSet(String key) {
@@ -179,6 +410,9 @@ public abstract class ThreadContext {
 	}
 
 	public static <E> HashSet<E> getHashSet(String key, boolean clear) {
+		if (clear && slot(key) == SET_BIT) {
+			return getHashSet();
+		}
 		HashSet<E> s = (HashSet<E>) get(key);
 		if (s == null) {
 			s = new HashSet<E>();
@@ -6,6 +6,7 @@ import org.springframework.lang.Nullable;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -55,24 +56,174 @@ public class UrlTransformUtils {
 	 * @throws IllegalArgumentException The number of capturing groups in the pattern segment does not match the number of URI template variables it defines
 	 */
 	public static String transform(String frontendPath, String backendPath, String reqPath) {
-//		Assert.hasText(frontendPath, "frontend path cannot be null");
-//		Assert.hasText(backendPath, "backend path cannot be null");
-//		Assert.hasText(reqPath, "req path cannot be null");
-		String bp = backendPath;
+		return transform(frontendPath, BackendPathTemplate.compile(backendPath), reqPath);
+	}
+
+	/**
+	 * transform the compiled backend path to the real backend request path
+	 * @see #transform(String, String, String)
+	 */
+	public static String transform(String frontendPath, BackendPathTemplate backendPathTemplate, String reqPath) {
 		Map<String, String> variables = ANT_PATH_MATCHER.extractUriTemplateVariables(frontendPath, reqPath);
-		for (Map.Entry<String, String> entry : variables.entrySet()) {
-			backendPath = backendPath.replaceAll("\\{" + Matcher.quoteReplacement(entry.getKey()) + "}", Matcher.quoteReplacement(entry.getValue()));
+		return backendPathTemplate.render(variables);
+	}
+
+	/**
+	 * Backend path compiled into literal segments and variable slots, e.g. /a/{id}/b is compiled into literals [/a/, /b] and slot [id],
+	 * so the backend request path can be rendered in one pass without regex.
+	 * <p>
+	 * The rendered path is the same as replacing every {name} of backend path with the variable value,
+	 * then removing the {...} left in a path segment.
+	 */
+	public static final class BackendPathTemplate {
+
+		private final String   backendPath;
+
+		private final String[] literals;
+
+		private final String[] slots;
+
+		private final boolean  literalHasBrace;
+
+		/**
+		 * render with regex like before if the backend path contains nested braces
+		 */
+		private final boolean  legacy;
+
+		private BackendPathTemplate(String backendPath, String[] literals, String[] slots, boolean literalHasBrace, boolean legacy) {
+			this.backendPath     = backendPath;
+			this.literals        = literals;
+			this.slots           = slots;
+			this.literalHasBrace = literalHasBrace;
+			this.legacy          = legacy;
+		}
+
+		public static BackendPathTemplate compile(String backendPath) {
+			List<String> literals = new ArrayList<>(4);
+			List<String> slots = new ArrayList<>(4);
+			boolean literalHasBrace = false, legacy = false;
+			int n = backendPath.length(), start = 0, i = 0;
+			while (i < n) {
+				char c = backendPath.charAt(i);
+				if (c == '{') {
+					int end = backendPath.indexOf('}', i + 1);
+					if (end == -1) {
+						break;
+					}
+					String name = backendPath.substring(i + 1, end);
+					if (name.indexOf('{') != -1) {
+						legacy = true;
+						break;
+					}
+					literals.add(backendPath.substring(start, i));
+					slots.add(name);
+					start = end + 1;
+					i = start;
+				} else {
+					if (c == '}') {
+						literalHasBrace = true;
+					}
+					i++;
+				}
+			}
+			String tail = backendPath.substring(start);
+			if (tail.indexOf('{') != -1 || tail.indexOf('}') != -1) {
+				literalHasBrace = true;
+			}
+			literals.add(tail);
+			return new BackendPathTemplate(backendPath, literals.toArray(new String[0]), slots.toArray(new String[0]), literalHasBrace, legacy);
+		}
+
+		public String getBackendPath() {
+			return backendPath;
 		}
 
-		if (backendPath.indexOf('{') != -1) {
-			backendPath = backendPath.replaceAll("\\{[^/]*}", "");
+		public String render(Map<String, String> variables) {
+			if (legacy || !plain(variables)) {
+				return legacyRender(backendPath, variables);
+			}
+			if (slots.length == 0 && !literalHasBrace) {
+				return backendPath;
+			}
+			StringBuilder b = ThreadContext.getStringBuilder();
+			boolean unresolved = literalHasBrace;
+			b.append(literals[0]);
+			for (int i = 0; i < slots.length; i++) {
+				String v = variables.get(slots[i]);
+				if (v == null) {
+					b.append('{').append(slots[i]).append('}');
+					unresolved = true;
+				} else {
+					b.append(v);
+				}
+				b.append(literals[i + 1]);
+			}
+			if (unresolved) {
+				return removeUnresolved(b);
+			}
+			return b.toString();
 		}
 
-//		if (log.isDebugEnabled()) {
-//			log.debug("req path: " + reqPath + ", frontend path: " + frontendPath + ", backend path: " + bp + ", target path: " + backendPath);
-//		}
+		/**
+		 * @return false if a variable value contains { or a variable name isn't literal in regex,
+		 * which may make the path different from the one replaced one by one with regex
+		 */
+		private static boolean plain(Map<String, String> variables) {
+			for (Map.Entry<String, String> e : variables.entrySet()) {
+				if (e.getValue().indexOf('{') != -1) {
+					return false;
+				}
+				String name = e.getKey();
+				for (int i = 0; i < name.length(); i++) {
+					char c = name.charAt(i);
+					if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '$')) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
 
-		return backendPath;
+		/**
+		 * same as replaceAll("\\{[^/]*}", "")
+		 */
+		private static String removeUnresolved(CharSequence path) {
+			int n = path.length();
+			StringBuilder b = new StringBuilder(n);
+			int i = 0;
+			while (i < n) {
+				char c = path.charAt(i);
+				if (c == '{') {
+					int last = -1, j = i + 1;
+					for (; j < n; j++) {
+						char cj = path.charAt(j);
+						if (cj == '/') {
+							break;
+						}
+						if (cj == '}') {
+							last = j;
+						}
+					}
+					if (last != -1) {
+						i = last + 1;
+						continue;
+					}
+				}
+				b.append(c);
+				i++;
+			}
+			return b.toString();
+		}
+
+		private static String legacyRender(String backendPath, Map<String, String> variables) {
+			for (Map.Entry<String, String> entry : variables.entrySet()) {
+				backendPath = backendPath.replaceAll("\\{" + Matcher.quoteReplacement(entry.getKey()) + "}", Matcher.quoteReplacement(entry.getValue()));
+			}
+			if (backendPath.indexOf('{') != -1) {
+				backendPath = backendPath.replaceAll("\\{[^/]*}", "");
+			}
+			return backendPath;
+		}
 	}
 
 	/**
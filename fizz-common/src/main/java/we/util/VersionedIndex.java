@@ -0,0 +1,105 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A map read by the request threads and changed by the config listener, without locking the readers.
+ * <p>
+ * The readers read an immutable {@link Snapshot}, a change copies the snapshot, applies to the copy
+ * and swaps it in with a new version, so the readers see all or none of a change, and never a map being resized.
+ * The changes are serialized, which are rare, such as a config pushed.
+ *
+ * @author zhongjie
+ */
+
+public final class VersionedIndex<K, V> {
+
+    public static final class Snapshot<K, V> {
+
+        public  final long      version;
+
+        private final Map<K, V> map;
+
+        Snapshot(long version, Map<K, V> map) {
+            this.version = version;
+            this.map = map;
+        }
+
+        public V get(K key) {
+            return map.get(key);
+        }
+
+        public int size() {
+            return map.size();
+        }
+
+        public Map<K, V> asMap() {
+            return Collections.unmodifiableMap(map);
+        }
+    }
+
+    private volatile Snapshot<K, V> snapshot = new Snapshot<>(0, Collections.emptyMap());
+
+    public Snapshot<K, V> snapshot() {
+        return snapshot;
+    }
+
+    public V get(K key) {
+        return snapshot.map.get(key);
+    }
+
+    public long version() {
+        return snapshot.version;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Object[] prev = new Object[1];
+        update(m -> prev[0] = m.put(key, value));
+        return (V) prev[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        Object[] prev = new Object[1];
+        update(m -> prev[0] = m.remove(key));
+        return (V) prev[0];
+    }
+
+    /**
+     * @param change applied to a copy of the current map, which is the next snapshot then
+     */
+    public synchronized void update(Consumer<Map<K, V>> change) {
+        Snapshot<K, V> current = snapshot;
+        Map<K, V> map = new HashMap<>(current.map);
+        change.accept(map);
+        snapshot = new Snapshot<>(current.version + 1, map);
+    }
+
+    /**
+     * Replaces all the entries, such as those loaded on startup.
+     */
+    public synchronized void replace(Map<K, V> map) {
+        snapshot = new Snapshot<>(snapshot.version + 1, new HashMap<>(map));
+    }
+}
@@ -17,6 +17,7 @@ package we.xml;
 
 //import android.util.Xml;
 
+import com.alibaba.fastjson.JSON;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -27,11 +28,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
@@ -45,18 +53,24 @@ import javax.xml.transform.stream.StreamSource;
  * <br/>
  * Add default tag prefix(-) by Francis Dong<br/>
  * Change default content name to #text by Francis Dong<br/>
+ * Write XML in a streaming way without intermediate Node tree<br/>
  */
 
 public class JsonToXml {
 
 	private static final String DEFAULT_TAG_PREFIX = "-";
+	private static final String DEFAULT_CONTENT_NAME = "#text";
     private static final int DEFAULT_INDENTATION = 3;
     // TODO: Set up Locale in the builder
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+    private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT = ThreadLocal.withInitial(() -> {
+        DecimalFormat format = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+        format.setMaximumFractionDigits(20);
+        return format;
+    });
 
     public static class Builder {
 
-        private JSONObject mJson;
+        private Map<String, Object> mJson;
         private HashSet<String> mForcedAttributes = new HashSet<>();
         private HashSet<String> mForcedContent = new HashSet<>();
 
@@ -65,7 +79,15 @@ public class JsonToXml {
          * @param jsonObject a JSON object
          */
         public Builder(JSONObject jsonObject) {
-            mJson = jsonObject;
+            mJson = jsonObject == null ? null : new JSONObjectMap(jsonObject);
+        }
+
+        /**
+         * Constructor, the map is converted directly without serializing it to a JSON string
+         * @param map a map, such as a fastjson JSONObject, nested objects can be maps and lists
+         */
+        public Builder(Map<String, Object> map) {
+            mJson = map;
         }
 
         /**
@@ -82,7 +104,7 @@ public class JsonToXml {
          */
         public Builder(String jsonString) {
             try {
-                mJson = new JSONObject(jsonString);
+                mJson = new JSONObjectMap(new JSONObject(jsonString));
             } catch (JSONException exception) {
                 exception.printStackTrace();
             }
@@ -117,14 +139,17 @@ public class JsonToXml {
         }
     }
 
-    private JSONObject mJson;
+    private Map<String, Object> mJson;
     private HashSet<String> mForcedAttributes;
     private HashSet<String> mForcedContent;
+    // paths are only needed to match the forced attributes and contents
+    private boolean mNeedPath;
 
-    private JsonToXml(JSONObject jsonObject, HashSet<String> forcedAttributes, HashSet<String> forcedContent) {
-        mJson = jsonObject;
+    private JsonToXml(Map<String, Object> json, HashSet<String> forcedAttributes, HashSet<String> forcedContent) {
+        mJson = json;
         mForcedAttributes = forcedAttributes;
         mForcedContent = forcedContent;
+        mNeedPath = !forcedAttributes.isEmpty() || !forcedContent.isEmpty();
     }
 
     /**
@@ -133,9 +158,19 @@ public class JsonToXml {
      */
     @Override
     public String toString() {
-        Node rootNode = new Node(null, "");
-        prepareObject(rootNode, mJson);
-        return nodeToXML(rootNode);
+        try {
+            XmlSerializer serializer = new KXmlSerializer();
+            StringWriter writer = new StringWriter();
+            serializer.setOutput(writer);
+            serializer.startDocument("UTF-8", true);
+
+            writeObject(serializer, mNeedPath ? "" : null, mJson, true);
+
+            serializer.endDocument();
+            return writer.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(e);  // TODO: do my own
+        }
     }
 
     /**
@@ -168,144 +203,227 @@ public class JsonToXml {
         }
     }
 
-    private String nodeToXML(Node node) {
-//        XmlSerializer serializer = Xml.newSerializer();
-        try {
-        	XmlSerializer serializer = new KXmlSerializer();
-        			
-        	StringWriter writer = new StringWriter();
-            serializer.setOutput(writer);
-            serializer.startDocument("UTF-8", true);
-
-            nodeToXml(serializer, node);
-
-            serializer.endDocument();
-            return writer.toString();
-        } catch (Exception e) {
-            throw new RuntimeException(e);  // TODO: do my own
+    /**
+     * Writes the attributes and content of the tag first, then the children, so no intermediate tree is needed
+     */
+    private void writeObject(XmlSerializer serializer, String path, Map<?, ?> json, boolean root) throws IOException {
+        // there is no root tag, so attributes and content of root are ignored
+        if (!root) {
+            for (Map.Entry<?, ?> e : json.entrySet()) {
+                Object object = e.getValue();
+                if (isScalar(object)) {
+                    String key = String.valueOf(e.getKey());
+                    if (isAttribute(path, key)) {
+                        if (key.startsWith(DEFAULT_TAG_PREFIX)) {
+                            key = key.substring(1);
+                        }
+                        serializer.attribute("", key, toText(object, false));
+                    }
+                }
+            }
+            String content = null;
+            for (Map.Entry<?, ?> e : json.entrySet()) {
+                Object object = e.getValue();
+                if (isScalar(object)) {
+                    String key = String.valueOf(e.getKey());
+                    if (!isAttribute(path, key) && isContent(path, key)) {
+                        content = toText(object, false);
+                    }
+                }
+            }
+            if (content != null) {
+                serializer.text(content);
+            }
         }
-    }
 
-    private void nodeToXml(XmlSerializer serializer, Node node) throws IOException {
-        String nodeName = node.getName();
-        if (nodeName != null) {
-            serializer.startTag("", nodeName);
-
-            for (Node.Attribute attribute : node.getAttributes()) {
-                serializer.attribute("", attribute.mKey, attribute.mValue);
+        for (Map.Entry<?, ?> e : json.entrySet()) {
+            Object object = e.getValue();
+            if (object == null) {
+                continue;
             }
-            String nodeContent = node.getContent();
-            if (nodeContent != null) {
-                serializer.text(nodeContent);
+            String key = String.valueOf(e.getKey());
+            object = normalize(object);
+            if (object instanceof Map) {
+                serializer.startTag("", key);
+                writeObject(serializer, childPath(path, key), (Map<?, ?>) object, false);
+                serializer.endTag("", key);
+            } else if (object instanceof List) {
+                writeArray(serializer, childPath(path, key), key, (List<?>) object);
+            } else if (!isAttribute(path, key) && !isContent(path, key)) {
+                serializer.startTag("", key);
+                serializer.text(toText(object, false));
+                serializer.endTag("", key);
             }
         }
+    }
 
-        for (Node subNode : node.getChildren()) {
-            nodeToXml(serializer, subNode);
+    private void writeArray(XmlSerializer serializer, String path, String key, List<?> array) throws IOException {
+        for (Object object : array) {
+            serializer.startTag("", key);
+            object = normalize(object);
+            if (object instanceof Map) {
+                writeObject(serializer, path, (Map<?, ?>) object, false);
+            } else if (object instanceof List) {
+                writeArray(serializer, childPath(path, key), key, (List<?>) object);
+            } else {
+                serializer.text(toText(object, true));
+            }
+            serializer.endTag("", key);
         }
+    }
+
+    private String childPath(String path, String key) {
+        return path == null ? null : path + "/" + key;
+    }
 
-        if (nodeName != null) {
-            serializer.endTag("", nodeName);
+    private boolean isScalar(Object object) {
+        if (object == null) {
+            return false;
         }
+        object = normalize(object);
+        return !(object instanceof Map) && !(object instanceof List);
     }
 
-    private void prepareObject(Node node, JSONObject json) {
-        Iterator<String> keyterator = json.keys();
-        while (keyterator.hasNext()) {
-            String key = keyterator.next();
-            Object object = json.opt(key);
-            if (object != null) {
-                if (object instanceof JSONObject) {
-                    JSONObject subObject = (JSONObject) object;
-                    String path = node.getPath() + "/" + key;
-                    Node subNode = new Node(key, path);
-                    node.addChild(subNode);
-                    prepareObject(subNode, subObject);
-                } else if (object instanceof JSONArray) {
-                    JSONArray array = (JSONArray) object;
-                    prepareArray(node, key, array);
-                } else {
-                    String path = node.getPath() + "/" + key;
-                    // JSON numbers are represented either Integer or Double (IEEE 754)
-                    // Long may be represented in scientific notation because they are stored as Double
-                    // This workaround attempts to represent Long and Double objects accordingly
-                    String value;
-                    if (object instanceof Double) {
-                        double d = (double) object;
-                        // If it is a Long
-                        if (d % 1 == 0) {
-                            value = Long.toString((long) d);
-                        } else {
-                            // TODO: Set up number of decimal digits per attribute in the builder
-                            // Set only once. Represent all double numbers up to 20 decimal digits
-                            if (DECIMAL_FORMAT.getMaximumFractionDigits() == 0) {
-                                DECIMAL_FORMAT.setMaximumFractionDigits(20);
-                            }
-                            value = DECIMAL_FORMAT.format(d);
-                        }
-                    } else {
-                        // Integer, Boolean and String are handled here
-                        value = object.toString();
-                    }
-                    if (isAttribute(path)) {
-                    	if(key.startsWith(DEFAULT_TAG_PREFIX)) {
-                    		key = key.substring(1, key.length());
-                    	}
-                        node.addAttribute(key, value);
-                    } else if (isContent(path) ) {
-                        node.setContent(value);
-                    } else {
-                        Node subNode = new Node(key, node.getPath());
-                        subNode.setContent(value);
-                        node.addChild(subNode);
-                    }
-                }
-            }
+    /**
+     * Converts the object which is not a JSON type to JSON type, as it's serialized to a JSON string
+     */
+    private Object normalize(Object object) {
+        if (object == null || object instanceof Map || object instanceof List || object instanceof String
+                || object instanceof Number || object instanceof Boolean || object == JSONObject.NULL) {
+            return object;
+        }
+        if (object instanceof JSONObject) {
+            return new JSONObjectMap((JSONObject) object);
         }
+        if (object instanceof JSONArray) {
+            return new JSONArrayList((JSONArray) object);
+        }
+        return JSON.parse(JSON.toJSONString(object));
     }
 
-    private void prepareArray(Node node, String key, JSONArray array) {
-        int count = array.length();
-        String path = node.getPath() + "/" + key;
-        for (int i = 0; i < count; ++i) {
-            Node subNode = new Node(key, path);
-            Object object = array.opt(i);
-            if (object != null) {
-                if (object instanceof JSONObject) {
-                    JSONObject jsonObject = (JSONObject) object;
-                    prepareObject(subNode, jsonObject);
-                } else if (object instanceof JSONArray) {
-                    JSONArray subArray = (JSONArray) object;
-                    prepareArray(subNode, key, subArray);
-                } else {
-                    String value = object.toString();
-                    subNode.setName(key);
-                    subNode.setContent(value);
-                }
+    /**
+     * JSON numbers are represented either Integer or Double (IEEE 754),
+     * Long may be represented in scientific notation because they are stored as Double,
+     * this workaround attempts to represent Long and Double objects accordingly
+     */
+    private String toText(Object object, boolean arrayItem) {
+        if (object == null) {
+            return "null";
+        }
+        object = normalize(object);
+        Double d = null;
+        if (object instanceof Double) {
+            d = (Double) object;
+        } else if (object instanceof Float) {
+            d = Double.valueOf(object.toString());
+        } else if (object instanceof BigDecimal) {
+            String s = object.toString();
+            if (s.indexOf('.') > -1 || s.indexOf('e') > -1 || s.indexOf('E') > -1 || "-0".equals(s)) {
+                d = Double.valueOf(s);
+            } else {
+                return s;
             }
-            node.addChild(subNode);
         }
+        if (d == null) {
+            // Integer, Boolean and String are handled here
+            return object.toString();
+        }
+        if (arrayItem) {
+            return d.toString();
+        }
+        // If it is a Long
+        if (d % 1 == 0) {
+            return Long.toString(d.longValue());
+        }
+        // TODO: Set up number of decimal digits per attribute in the builder
+        // Represent all double numbers up to 20 decimal digits
+        return DECIMAL_FORMAT.get().format(d);
     }
 
-	private boolean isAttribute(String path) {
-		if (mForcedAttributes.contains(path)) {
+	private boolean isAttribute(String path, String key) {
+		if (path != null && mForcedAttributes.contains(path + "/" + key)) {
 			return true;
 		}
-		String[] paths = path.split("/");
-		if (paths[paths.length - 1].startsWith(DEFAULT_TAG_PREFIX)) {
-			return true;
-		}
-		return false;
+		return lastName(key).startsWith(DEFAULT_TAG_PREFIX);
 	}
 
-    private boolean isContent(String path) {
-        if (mForcedContent.contains(path)) {
-			return true;
-		}
-		String[] paths = path.split("/");
-		if ("#text".equals(paths[paths.length - 1])) {
+    private boolean isContent(String path, String key) {
+        if (path != null && mForcedContent.contains(path + "/" + key)) {
 			return true;
 		}
-		return false;
+		return DEFAULT_CONTENT_NAME.equals(lastName(key));
+    }
+
+    /**
+     * @return the last name of the path ends with the key
+     */
+    private static String lastName(String key) {
+        if (key.indexOf('/') < 0) {
+            return key;
+        }
+        int end = key.length();
+        while (end > 0 && key.charAt(end - 1) == '/') {
+            end--;
+        }
+        return key.substring(key.lastIndexOf('/', end - 1) + 1, end);
+    }
+
+    /**
+     * Read only map view of a org.json JSONObject
+     */
+    private static class JSONObjectMap extends AbstractMap<String, Object> {
+        private final JSONObject mJsonObject;
+
+        JSONObjectMap(JSONObject jsonObject) {
+            mJsonObject = jsonObject;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<String> keys = mJsonObject.keys();
+                    return new Iterator<Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            String key = keys.next();
+                            return new SimpleImmutableEntry<>(key, mJsonObject.opt(key));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return mJsonObject.length();
+                }
+            };
+        }
+    }
+
+    /**
+     * Read only list view of a org.json JSONArray
+     */
+    private static class JSONArrayList extends AbstractList<Object> {
+        private final JSONArray mJsonArray;
+
+        JSONArrayList(JSONArray jsonArray) {
+            mJsonArray = jsonArray;
+        }
+
+        @Override
+        public Object get(int index) {
+            return mJsonArray.opt(index);
+        }
+
+        @Override
+        public int size() {
+            return mJsonArray.length();
+        }
     }
 }
@@ -17,21 +17,25 @@ package we.xml;
  */
 
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
+import org.kxml2.io.KXmlParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
+import we.util.ThreadContext;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,6 +47,7 @@ import static java.util.regex.Pattern.DOTALL;
  * Add default tag prefix(-) by Francis Dong<br/>
  * Change default content name to #text by Francis Dong<br/>
  * Add handerListItem method to handler list item by Francis Dong<br/>
+ * Convert in a streaming way without intermediate Tag tree<br/>
  */
 
 public class XmlToJson {
@@ -80,6 +85,12 @@ public class XmlToJson {
         private HashSet<String> mSkippedAttributes = new HashSet<>();
         private HashSet<String> mSkippedTags = new HashSet<>();
 
+        /**
+         * Constructor for building a reusable {@link Converter}
+         */
+        public Builder() {
+        }
+
         /**
          * Constructor
          *
@@ -219,327 +230,533 @@ public class XmlToJson {
         public XmlToJson build() {
             return new XmlToJson(this);
         }
+
+        /**
+         * Creates a reusable and thread safe Converter with the rules of the Builder, the XML source is ignored
+         *
+         * @return a Converter instance
+         */
+        public Converter converter() {
+            return new Converter(this);
+        }
     }
 
-    private StringReader mStringSource;
-    private InputStream mInputStreamSource;
-    private String mInputEncoding;
-    private HashSet<String> mForceListPaths;
-    private HashSet<Pattern> mForceListPatterns = new HashSet<>();
-    private HashMap<String, String> mAttributeNameReplacements;
-    private HashMap<String, String> mContentNameReplacements;
-    private HashMap<String, Class> mForceClassForPath;
-    private HashSet<String> mSkippedAttributes = new HashSet<>();
-    private HashSet<String> mSkippedTags = new HashSet<>();
     private JSONObject mJsonObject; // Used for caching the result
+    private Map<String, Object> mMap;
 
     private XmlToJson(Builder builder) {
-        mStringSource = builder.mStringSource;
-        mInputStreamSource = builder.mInputStreamSource;
-        mInputEncoding = builder.mInputEncoding;
-        mForceListPaths = builder.mForceListPaths;
-        mForceListPatterns = builder.mForceListPatterns;
-        mAttributeNameReplacements = builder.mAttributeNameReplacements;
-        mContentNameReplacements = builder.mContentNameReplacements;
-        mForceClassForPath = builder.mForceClassForPath;
-        mSkippedAttributes = builder.mSkippedAttributes;
-        mSkippedTags = builder.mSkippedTags;
-
-        mJsonObject = convertToJSONObject(); // Build now so that the InputStream can be closed just after
+        Converter converter = builder.converter();
+        // Build now so that the InputStream can be closed just after
+        if (builder.mStringSource != null) {
+            try {
+                mMap = converter.convert(builder.mStringSource);
+            } finally {
+                builder.mStringSource.close();
+            }
+        } else {
+            // the InputStream has been given by the user, it is not our role to close it
+            mMap = converter.convert(builder.mInputStreamSource, builder.mInputEncoding);
+        }
     }
 
     /**
      * @return the JSONObject built from the XML
      */
     public JSONObject toJson() {
+        if (mJsonObject == null && mMap != null) {
+            mJsonObject = new JSONObject(mMap);
+        }
         return mJsonObject;
     }
 
-    private JSONObject convertToJSONObject() {
-        try {
-            Tag parentTag = new Tag("", "xml");
+    /**
+     * @return the map built from the XML, nested objects are maps and lists
+     */
+    public Map<String, Object> toMap() {
+        return mMap;
+    }
 
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            factory.setNamespaceAware(false);   // tags with namespace are taken as-is ("namespace:tagname")
-            XmlPullParser xpp = factory.newPullParser();
+    /**
+     * Returns a reusable converter for the given force list paths, the converter is cached by the paths
+     *
+     * @param forceListPaths comma separated paths of tags which should be interpreted as a list, can be null
+     * @return the converter
+     */
+    public static Converter converter(String forceListPaths) {
+        if (forceListPaths == null || forceListPaths.isEmpty()) {
+            return DEFAULT_CONVERTER;
+        }
+        Converter converter = FORCE_LIST_CONVERTERS.get(forceListPaths);
+        if (converter == null) {
+            Builder builder = new Builder();
+            for (String path : forceListPaths.split(",")) {
+                builder.forceList(path);
+            }
+            converter = builder.converter();
+            if (FORCE_LIST_CONVERTERS.size() >= MAX_CACHED_CONVERTERS) {
+                FORCE_LIST_CONVERTERS.clear();
+            }
+            FORCE_LIST_CONVERTERS.put(forceListPaths, converter);
+        }
+        return converter;
+    }
 
-            setInput(xpp);
+    private static final int MAX_CACHED_CONVERTERS = 1024;
+    private static final Map<String, Converter> FORCE_LIST_CONVERTERS = new ConcurrentHashMap<>();
+    private static final Converter DEFAULT_CONVERTER = new Builder().converter();
 
-            int eventType = xpp.getEventType();
-            while (eventType != XmlPullParser.START_DOCUMENT) {
-                eventType = xpp.next();
-            }
-            readTags(parentTag, xpp);
+    /**
+     * Immutable and thread safe XML to JSON converter, the tag and attribute paths of the rules are compiled
+     * into a tree, so no path string is built while converting unless force list patterns are set.<br/>
+     * The XML is converted in a streaming way with a reused pull parser of current thread,
+     * only the tags from the root to the current one are kept besides the result.
+     */
+    public static class Converter {
 
-            unsetInput();
+        private static final String PARSER = "$xmlToJsonParser";
 
-            return convertTagToJson(parentTag, false);
-        } catch (XmlPullParserException | IOException e) {
-            e.printStackTrace();
-            return null;
+        private final PathRule mRootRule;
+        private final Pattern[] mForceListPatterns;
+
+        private Converter(Builder builder) {
+            mRootRule = new PathRule();
+            for (String path : builder.mForceListPaths) {
+                PathRule rule = mRootRule.compile(path);
+                if (rule != null) {
+                    rule.forceList = true;
+                }
+            }
+            for (Map.Entry<String, String> e : builder.mAttributeNameReplacements.entrySet()) {
+                PathRule rule = mRootRule.compile(e.getKey());
+                if (rule != null) {
+                    rule.attributeName = e.getValue();
+                }
+            }
+            for (Map.Entry<String, String> e : builder.mContentNameReplacements.entrySet()) {
+                PathRule rule = mRootRule.compile(e.getKey());
+                if (rule != null) {
+                    rule.contentName = e.getValue();
+                }
+            }
+            for (Map.Entry<String, Class> e : builder.mForceClassForPath.entrySet()) {
+                PathRule rule = mRootRule.compile(e.getKey());
+                if (rule != null) {
+                    rule.forcedClass = e.getValue();
+                }
+            }
+            for (String path : builder.mSkippedAttributes) {
+                PathRule rule = mRootRule.compile(path);
+                if (rule != null) {
+                    rule.skipAttribute = true;
+                }
+            }
+            for (String path : builder.mSkippedTags) {
+                PathRule rule = mRootRule.compile(path);
+                if (rule != null) {
+                    rule.skipTag = true;
+                }
+            }
+            mForceListPatterns = builder.mForceListPatterns.toArray(new Pattern[0]);
         }
-    }
 
-    private void setInput(XmlPullParser xpp) {
-        if (mStringSource != null) {
+        /**
+         * @param xml XML source
+         * @return the map built from the XML
+         */
+        public Map<String, Object> convert(String xml) {
+            return convert(new StringReader(xml));
+        }
+
+        /**
+         * @param reader XML source, which is not closed by this method
+         * @return the map built from the XML
+         */
+        public Map<String, Object> convert(Reader reader) {
+            XmlPullParser xpp = ThreadContext.get(PARSER, KXmlParser.class);
             try {
-                xpp.setInput(mStringSource);
+                xpp.setInput(reader);
+                return convert(xpp);
             } catch (XmlPullParserException e) {
-                e.printStackTrace();
+                LOGGER.warn("{} convert xml error", TAG, e);
+                return null;
+            } finally {
+                releaseInput(xpp);
             }
-        } else {
+        }
+
+        /**
+         * @param inputStream   XML source, which is not closed by this method
+         * @param inputEncoding XML encoding format, can be null (uses UTF-8 if null).
+         * @return the map built from the XML
+         */
+        public Map<String, Object> convert(InputStream inputStream, String inputEncoding) {
+            XmlPullParser xpp = ThreadContext.get(PARSER, KXmlParser.class);
             try {
-                xpp.setInput(mInputStreamSource, mInputEncoding);
+                xpp.setInput(inputStream, (inputEncoding != null) ? inputEncoding : DEFAULT_ENCODING);
+                return convert(xpp);
             } catch (XmlPullParserException e) {
-                e.printStackTrace();
+                LOGGER.warn("{} convert xml error", TAG, e);
+                return null;
+            } finally {
+                releaseInput(xpp);
             }
         }
-    }
 
-    private void unsetInput() {
-        if (mStringSource != null) {
-            mStringSource.close();
+        private void releaseInput(XmlPullParser xpp) {
+            try {
+                // don't hold the source after converting
+                xpp.setInput(null);
+            } catch (XmlPullParserException e) {
+                // ignore
+            }
         }
-        // else the InputStream has been given by the user, it is not our role to close it
-    }
-
-    private void readTags(Tag parent, XmlPullParser xpp) {
-        try {
-            int eventType;
-            do {
-                eventType = xpp.next();
-                if (eventType == XmlPullParser.START_TAG) {
-                    String tagName = xpp.getName();
-                    String path = parent.getPath() + "/" + tagName;
-
-                    boolean skipTag = mSkippedTags.contains(path);
-
-                    Tag child = new Tag(path, tagName);
-                    if (!skipTag) {
-                        parent.addChild(child);
-                    }
 
-                    // Attributes are taken into account as key/values in the child
-                    int attrCount = xpp.getAttributeCount();
-                    for (int i = 0; i < attrCount; ++i) {
-                        String attrName = xpp.getAttributeName(i);
-                        String attrValue = xpp.getAttributeValue(i);
-                        String attrPath = parent.getPath() + "/" + child.getName() + "/" + attrName;
-
-                        // Skip Attributes
-                        if (mSkippedAttributes.contains(attrPath)) {
+        private Map<String, Object> convert(XmlPullParser xpp) throws XmlPullParserException {
+            StringBuilder path = mForceListPatterns.length == 0 ? null : new StringBuilder();
+            ArrayList<Frame> stack = new ArrayList<>();
+            Frame current = new Frame(null, mRootRule, 0);
+            stack.add(current);
+            try {
+                int eventType = xpp.getEventType();
+                while (eventType != XmlPullParser.START_DOCUMENT) {
+                    eventType = xpp.next();
+                }
+                do {
+                    eventType = xpp.next();
+                    if (eventType == XmlPullParser.START_TAG) {
+                        String tagName = xpp.getName();
+                        PathRule rule = current.rule == null ? null : current.rule.child(tagName);
+                        if (rule != null && rule.skipTag) {
+                            skipTag(xpp);
                             continue;
                         }
-
-                        attrName = getAttributeNameReplacement(attrPath, attrName);
-                        Tag attribute = new Tag(attrPath, attrName);
-                        attribute.setContent(attrValue);
-                        child.addChild(attribute);
+                        int pathLength = 0;
+                        if (path != null) {
+                            pathLength = path.length();
+                            path.append('/').append(tagName);
+                        }
+                        Frame child = new Frame(tagName, rule, pathLength);
+                        readAttributes(xpp, child, path);
+                        stack.add(child);
+                        current = child;
+                    } else if (eventType == XmlPullParser.TEXT) {
+                        current.setContent(xpp.getText());
+                    } else if (eventType == XmlPullParser.END_TAG) {
+                        current = endTag(stack, path);
+                    } else if (eventType != XmlPullParser.END_DOCUMENT) {
+                        LOGGER.info("{} unknown xml eventType {}", TAG, eventType);
                     }
+                } while (eventType != XmlPullParser.END_DOCUMENT);
+            } catch (XmlPullParserException | IOException e) {
+                LOGGER.warn("{} read xml error", TAG, e);
+            }
+            // the tags not closed are kept as they are
+            while (stack.size() > 1) {
+                endTag(stack, path);
+            }
+            return stack.get(0).toMap();
+        }
 
-                    readTags(child, xpp);
-                } else if (eventType == XmlPullParser.TEXT) {
-                    String text = xpp.getText();
-                    parent.setContent(text);
+        private void skipTag(XmlPullParser xpp) throws XmlPullParserException, IOException {
+            int depth = 1;
+            while (depth > 0) {
+                int eventType = xpp.next();
+                if (eventType == XmlPullParser.START_TAG) {
+                    depth++;
                 } else if (eventType == XmlPullParser.END_TAG) {
-                    return;
+                    depth--;
                 } else if (eventType == XmlPullParser.END_DOCUMENT) {
                     return;
-                } else {
-                	LOGGER.info("{} unknown xml eventType {}", TAG, eventType);
                 }
-            } while (eventType != XmlPullParser.END_DOCUMENT);
-        } catch (XmlPullParserException | IOException | NullPointerException e) {
-            e.printStackTrace();
+            }
         }
-    }
-
-    private JSONObject convertTagToJson(Tag tag, boolean isListElement) {
-        JSONObject json = new JSONObject();
 
-        // Content is injected as a key/value
-        if (tag.getContent() != null) {
-            String path = tag.getPath();
-            String name = getContentNameReplacement(path, DEFAULT_CONTENT_NAME);
-            putContent(path, json, name, tag.getContent());
+        private void readAttributes(XmlPullParser xpp, Frame tag, StringBuilder path) {
+            // Attributes are taken into account as key/values in the tag
+            int attrCount = xpp.getAttributeCount();
+            for (int i = 0; i < attrCount; ++i) {
+                String attrName = xpp.getAttributeName(i);
+                PathRule rule = tag.rule == null ? null : tag.rule.child(attrName);
+                // Skip Attributes
+                if (rule != null && rule.skipAttribute) {
+                    continue;
+                }
+                boolean forceList = false;
+                if (path != null) {
+                    int pathLength = path.length();
+                    path.append('/').append(attrName);
+                    forceList = isForcedList(rule, path);
+                    path.setLength(pathLength);
+                } else if (rule != null) {
+                    forceList = rule.forceList;
+                }
+                String name = (rule != null && rule.attributeName != null) ? rule.attributeName : DEFAULT_TAG_PREFIX + attrName;
+                Item attribute = new Item(rule, forceList);
+                attribute.content = Frame.contentOf(xpp.getAttributeValue(i));
+                tag.addChild(name, attribute);
+            }
         }
 
-        try {
-
-            HashMap<String, ArrayList<Tag>> groups = tag.getGroupedElements(); // groups by tag names so that we can detect lists or single elements
-            for (ArrayList<Tag> group : groups.values()) {
+        private Frame endTag(ArrayList<Frame> stack, StringBuilder path) {
+            Frame tag = stack.remove(stack.size() - 1);
+            Frame parent = stack.get(stack.size() - 1);
+            Item item = new Item(tag.rule, isForcedList(tag.rule, path));
+            item.content = tag.content;
+            if (tag.hasChildren()) {
+                item.object = tag.toMap();
+            }
+            parent.addChild(tag.name, item);
+            if (path != null) {
+                path.setLength(tag.pathLength);
+            }
+            return parent;
+        }
 
-                if (group.size() == 1) {    // element, or list of 1
-                    Tag child = group.get(0);
-                    if (isForcedList(child)) {  // list of 1
-                        JSONArray list = new JSONArray();
-                        list.put(handerListItem(child.getPath(), convertTagToJson(child, true)));
-                        String childrenNames = child.getName();
-                        json.put(childrenNames, list);
-                    } else {    // stand alone element
-                        if (child.hasChildren()) {
-                            JSONObject jsonChild = convertTagToJson(child, false);
-                            json.put(child.getName(), jsonChild);
-                        } else {
-                            String path = child.getPath();
-                            putContent(path, json, child.getName(), child.getContent());
-                        }
-                    }
-                } else {    // list
-                    JSONArray list = new JSONArray();
-                    for (Tag child : group) {
-                        list.put(handerListItem(child.getPath(), convertTagToJson(child, true)));
+        private boolean isForcedList(PathRule rule, StringBuilder path) {
+            if (rule != null && rule.forceList) {
+                return true;
+            }
+            if (path != null) {
+                for (Pattern pattern : mForceListPatterns) {
+                    if (pattern.matcher(path).find()) {
+                        return true;
                     }
-                    String childrenNames = group.get(0).getName();
-                    json.put(childrenNames, list);
                 }
             }
-            return json;
-
-        } catch (JSONException e) {
-            e.printStackTrace();
+            return false;
         }
-        return null;
     }
-    
+
     /**
-     * Convert to single value if JSONObject only contain content key <br/>
-     * Returns "abc" if JSONObject is {"#text": "abc"} <br/>
+     * Rules of a tag or attribute path, children are keyed by tag or attribute name
      */
-    @SuppressWarnings({ "rawtypes", "unused" })
-	private Object handerListItem(String path, JSONObject json) {
-    	if(json.length() == 1 && json.has(DEFAULT_CONTENT_NAME)) {
-    		Object val = json.get(DEFAULT_CONTENT_NAME);
-    		if(val == null) {
-    			return val;
-    		}
-    		String content =  String.valueOf(val);
-    		try {
-                // checks if the user wants to force a class (Int, Double... for a given path)
-                Class forcedClass = mForceClassForPath.get(path);
-                if (forcedClass == null) {  // default behaviour, put it as a String
-                    return content;
-                } else {
-                    if (forcedClass == Integer.class) {
-                        try {
-                            return Integer.parseInt(content);
-                        } catch (NumberFormatException exception) {
-                        	return DEFAULT_EMPTY_INTEGER;
-                        }
-                    } else if (forcedClass == Long.class) {
-                        try {
-                        	return Long.parseLong(content);
-                        } catch (NumberFormatException exception) {
-                        	return DEFAULT_EMPTY_LONG;
-                        }
-                    } else if (forcedClass == Double.class) {
-                        try {
-                        	return Double.parseDouble(content);
-                        } catch (NumberFormatException exception) {
-                        	return DEFAULT_EMPTY_DOUBLE;
-                        }
-                    } else if (forcedClass == Boolean.class) {
-                        if (content == null) {
-                        	return DEFAULT_EMPTY_BOOLEAN;
-                        } else if (content.equalsIgnoreCase("true")) {
-                        	return true;
-                        } else if (content.equalsIgnoreCase("false")) {
-                        	return false;
-                        } else {
-                        	return DEFAULT_EMPTY_BOOLEAN;
-                        }
-                    }
+    private static class PathRule {
+        HashMap<String, PathRule> children;
+        boolean forceList;
+        String attributeName;
+        String contentName;
+        Class forcedClass;
+        boolean skipAttribute;
+        boolean skipTag;
+
+        PathRule child(String name) {
+            return children == null ? null : children.get(name);
+        }
+
+        /**
+         * @param path path like "/parentTag/childTag"
+         * @return rule of the path, null if the path never matches
+         */
+        PathRule compile(String path) {
+            if (path == null || !path.startsWith("/")) {
+                return null;
+            }
+            PathRule rule = this;
+            for (String name : path.substring(1).split("/", -1)) {
+                if (rule.children == null) {
+                    rule.children = new HashMap<>();
                 }
-            } catch (JSONException exception) {
-                // keep continue in case of error
+                rule = rule.children.computeIfAbsent(name, n -> new PathRule());
             }
-    	}
-    	return json;
+            return rule;
+        }
     }
 
-    private void putContent(String path, JSONObject json, String tag, String content) {
-        try {
-            // checks if the user wants to force a class (Int, Double... for a given path)
-            Class forcedClass = mForceClassForPath.get(path);
-            if (forcedClass == null) {  // default behaviour, put it as a String
-                if (content == null) {
-                    content = DEFAULT_EMPTY_STRING;
+    /**
+     * A converted tag or attribute, waiting for its parent to know whether it's a list item or not
+     */
+    private static class Item {
+        final PathRule rule;
+        final boolean forceList;
+        String content;
+        Map<String, Object> object;
+
+        Item(PathRule rule, boolean forceList) {
+            this.rule = rule;
+            this.forceList = forceList;
+        }
+
+        Class forcedClass() {
+            return rule == null ? null : rule.forcedClass;
+        }
+
+        /**
+         * @return value as a stand alone element
+         */
+        Object value() {
+            if (object != null) {
+                return object;
+            }
+            return convertContent(forcedClass(), content);
+        }
+
+        /**
+         * @return value as a list item, convert to single value if it only contains content
+         */
+        Object listItem() {
+            if (object != null) {
+                if (object.size() == 1 && object.containsKey(DEFAULT_CONTENT_NAME)) {
+                    return object.get(DEFAULT_CONTENT_NAME);
                 }
-                json.put(tag, content);
-            } else {
-                if (forcedClass == Integer.class) {
-                    try {
-                        Integer number = Integer.parseInt(content);
-                        json.put(tag, number);
-                    } catch (NumberFormatException exception) {
-                        json.put(tag, DEFAULT_EMPTY_INTEGER);
-                    }
-                } else if (forcedClass == Long.class) {
-                    try {
-                        Long number = Long.parseLong(content);
-                        json.put(tag, number);
-                    } catch (NumberFormatException exception) {
-                        json.put(tag, DEFAULT_EMPTY_LONG);
-                    }
-                } else if (forcedClass == Double.class) {
-                    try {
-                        Double number = Double.parseDouble(content);
-                        json.put(tag, number);
-                    } catch (NumberFormatException exception) {
-                        json.put(tag, DEFAULT_EMPTY_DOUBLE);
-                    }
-                } else if (forcedClass == Boolean.class) {
-                    if (content == null) {
-                        json.put(tag, DEFAULT_EMPTY_BOOLEAN);
-                    } else if (content.equalsIgnoreCase("true")) {
-                        json.put(tag, true);
-                    } else if (content.equalsIgnoreCase("false")) {
-                        json.put(tag, false);
-                    } else {
-                        json.put(tag, DEFAULT_EMPTY_BOOLEAN);
+                return object;
+            }
+            if (content == null) {
+                return new HashMap<String, Object>(2);
+            }
+            Object value = convertContent(forcedClass(), content);
+            String contentName = (rule != null && rule.contentName != null) ? rule.contentName : DEFAULT_CONTENT_NAME;
+            if (DEFAULT_CONTENT_NAME.equals(contentName)) {
+                return value;
+            }
+            Map<String, Object> m = new HashMap<>(2);
+            m.put(contentName, value);
+            return m;
+        }
+    }
+
+    /**
+     * An open tag
+     */
+    private static class Frame {
+        final String name;
+        final PathRule rule;
+        final int pathLength;
+        String content;
+        // child name -> Item or list of Item
+        HashMap<String, Object> children;
+
+        Frame(String name, PathRule rule, int pathLength) {
+            this.name = name;
+            this.rule = rule;
+            this.pathLength = pathLength;
+        }
+
+        void setContent(String text) {
+            String c = contentOf(text);
+            if (c != null) {
+                content = c;
+            }
+        }
+
+        /**
+         * checks that there is a relevant content (not only spaces or \n)
+         */
+        static String contentOf(String text) {
+            if (text != null) {
+                for (int i = 0; i < text.length(); ++i) {
+                    char c = text.charAt(i);
+                    if ((c != ' ') && (c != '\n')) {
+                        return text;
                     }
                 }
             }
-
-        } catch (JSONException exception) {
-            // keep continue in case of error
+            return null;
         }
-    }
 
-    private boolean isForcedList(Tag tag) {
-        String path = tag.getPath();
-        if (mForceListPaths.contains(path)) {
-            return true;
+        boolean hasChildren() {
+            return children != null;
         }
-        for(Pattern pattern : mForceListPatterns) {
-            Matcher matcher = pattern.matcher(path);
-            if (matcher.find()) {
-                return true;
+
+        @SuppressWarnings("unchecked")
+        void addChild(String childName, Item item) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            Object exist = children.putIfAbsent(childName, item);
+            if (exist != null) {
+                ArrayList<Item> group;
+                if (exist instanceof ArrayList) {
+                    group = (ArrayList<Item>) exist;
+                } else {
+                    group = new ArrayList<>();
+                    group.add((Item) exist);
+                    children.put(childName, group);
+                }
+                group.add(item);
             }
         }
-        return false;
-    }
 
-    private String getAttributeNameReplacement(String path, String defaultValue) {
-        String result = mAttributeNameReplacements.get(path);
-        if (result != null) {
-            return result;
+        @SuppressWarnings("unchecked")
+        Map<String, Object> toMap() {
+            Map<String, Object> json = new HashMap<>();
+            // Content is injected as a key/value
+            if (content != null) {
+                String contentName = (rule != null && rule.contentName != null) ? rule.contentName : DEFAULT_CONTENT_NAME;
+                json.put(contentName, convertContent(rule == null ? null : rule.forcedClass, content));
+            }
+            if (children != null) {
+                for (Map.Entry<String, Object> e : children.entrySet()) {
+                    Object group = e.getValue();
+                    if (group instanceof Item) {    // element, or list of 1
+                        Item child = (Item) group;
+                        if (child.forceList) {
+                            List<Object> list = new ArrayList<>(1);
+                            list.add(child.listItem());
+                            json.put(e.getKey(), list);
+                        } else {
+                            json.put(e.getKey(), child.value());
+                        }
+                    } else {    // list
+                        ArrayList<Item> items = (ArrayList<Item>) group;
+                        List<Object> list = new ArrayList<>(items.size());
+                        for (Item child : items) {
+                            list.add(child.listItem());
+                        }
+                        json.put(e.getKey(), list);
+                    }
+                }
+            }
+            return json;
         }
-        return DEFAULT_TAG_PREFIX + defaultValue;
     }
 
-    private String getContentNameReplacement(String path, String defaultValue) {
-        String result = mContentNameReplacements.get(path);
-        if (result != null) {
-            return result;
+    /**
+     * checks if the user wants to force a class (Int, Double... for a given path)
+     */
+    private static Object convertContent(Class forcedClass, String content) {
+        if (forcedClass == null) {  // default behaviour, put it as a String
+            return content == null ? DEFAULT_EMPTY_STRING : content;
+        }
+        if (forcedClass == Integer.class) {
+            try {
+                return Integer.parseInt(content);
+            } catch (NumberFormatException exception) {
+                return DEFAULT_EMPTY_INTEGER;
+            }
+        } else if (forcedClass == Long.class) {
+            try {
+                return Long.parseLong(content);
+            } catch (NumberFormatException exception) {
+                return DEFAULT_EMPTY_LONG;
+            }
+        } else if (forcedClass == Double.class) {
+            if (content == null) {
+                return DEFAULT_EMPTY_DOUBLE;
+            }
+            try {
+                return Double.parseDouble(content);
+            } catch (NumberFormatException exception) {
+                return DEFAULT_EMPTY_DOUBLE;
+            }
+        } else if (forcedClass == Boolean.class) {
+            if (content == null) {
+                return DEFAULT_EMPTY_BOOLEAN;
+            } else if (content.equalsIgnoreCase("true")) {
+                return true;
+            } else if (content.equalsIgnoreCase("false")) {
+                return false;
+            } else {
+                return DEFAULT_EMPTY_BOOLEAN;
+            }
         }
-        return defaultValue;
+        return content == null ? DEFAULT_EMPTY_STRING : content;
     }
 
     @Override
     public String toString() {
-        if (mJsonObject != null) {
-            return mJsonObject.toString();
+        JSONObject jsonObject = toJson();
+        if (jsonObject != null) {
+            return jsonObject.toString();
         }
         return null;
     }
@@ -567,11 +784,12 @@ public class XmlToJson {
      * @return the Builder
      */
     public String toFormattedString() {
-        if (mJsonObject != null) {
+        JSONObject jsonObject = toJson();
+        if (jsonObject != null) {
             String indent = "";
             StringBuilder builder = new StringBuilder();
             builder.append("{\n");
-            format(mJsonObject, builder, indent);
+            format(jsonObject, builder, indent);
             builder.append("}\n");
             return builder.toString();
         }
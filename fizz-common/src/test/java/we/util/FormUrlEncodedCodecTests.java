@@ -0,0 +1,279 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class FormUrlEncodedCodecTests {
+
+    private static final Logger   LOGGER = LoggerFactory.getLogger(FormUrlEncodedCodecTests.class);
+
+    private static final String[] TOKENS = {"a", "b", "name", "", " ", "+", "%20", "%2B", "%E5%BA%94", "应用", "=", "*", "-._", "😀", "%F0%9F%98%80", "\t"};
+
+    @Test
+    void parseTest() throws UnsupportedEncodingException {
+        Random random = new Random(7);
+        for (int t = 0; t < 2_000; t++) {
+            StringBuilder b = new StringBuilder();
+            int pairs = random.nextInt(6);
+            for (int p = 0; p < pairs; p++) {
+                if (p > 0) {
+                    b.append(random.nextInt(8) == 0 ? "&&" : "&");
+                }
+                b.append(tokens(random));
+                if (random.nextInt(4) != 0) {
+                    b.append('=').append(tokens(random));
+                }
+            }
+            for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1}) {
+                byte[] body = b.toString().getBytes(charset);
+                assertEquals(legacyParse(new String(body, charset), charset), toLinkedMap(parse(body, charset, random)), b.toString());
+            }
+        }
+        assertTrue(parse(new byte[0], StandardCharsets.UTF_8, random).isEmpty());
+        for (String bad : new String[]{"a=%", "a=%2", "a=%zz&b=1", "a%=1", "a=%2&b"}) {
+            assertThrows(IllegalArgumentException.class, () -> legacyParse(bad, StandardCharsets.UTF_8), bad);
+            assertThrows(IllegalArgumentException.class, () -> parse(bad.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, random), bad);
+        }
+    }
+
+    @Test
+    void encodeTest() throws UnsupportedEncodingException {
+        Random random = new Random(11);
+        for (int t = 0; t < 2_000; t++) {
+            MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+            int fields = random.nextInt(5);
+            for (int f = 0; f < fields; f++) {
+                String field = tokens(random) + f;
+                int vs = random.nextInt(3);
+                form.put(field, new java.util.ArrayList<>());
+                for (int v = 0; v < vs; v++) {
+                    form.add(field, random.nextInt(5) == 0 ? null : tokens(random) + "\ud83d" + (random.nextBoolean() ? "\ude00" : "x") + "~!'()\"<>");
+                }
+            }
+            assertEquals(legacyEncode(form), new String(FormUrlEncodedCodec.encode(form), StandardCharsets.UTF_8));
+        }
+
+        // the values parsed and not changed are copied, the others are encoded
+        String body = "a=%e5%ba%94+1&a=x%20y&b=raw~&c&d=";
+        MultiValueMap<String, String> form = parse(body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, random);
+        assertEquals("a=%e5%ba%94+1&a=x%20y&b=raw%7E&c&d=", new String(FormUrlEncodedCodec.encode(form), StandardCharsets.UTF_8));
+        form.get("a").set(1, "z z");
+        form.add("a", "应");
+        form.get("c").remove(0);
+        assertEquals("应 1", form.getFirst("a"));
+        assertEquals(Arrays.asList("应 1", "z z", "应"), form.get("a"));
+        assertEquals("a=%e5%ba%94+1&a=z+z&a=%E5%BA%94&b=raw%7E&c&d=", new String(FormUrlEncodedCodec.encode(form), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void appendDecodedTest() throws UnsupportedEncodingException {
+        for (String s : new String[]{"", "abc", "a+b", "%E5%BA%94%E7%94%A8x", "应%20用", "%F0%9F%98%80+", "%2b%2F"}) {
+            assertEquals(URLDecoder.decode(s, "UTF-8"), FormUrlEncodedCodec.appendDecoded(new StringBuilder("_"), s, StandardCharsets.UTF_8).substring(1));
+        }
+        for (String s : new String[]{"%", "a%2", "%g0", "%2%41"}) {
+            assertThrows(IllegalArgumentException.class, () -> URLDecoder.decode(s, "UTF-8"), s);
+            assertThrows(IllegalArgumentException.class, () -> FormUrlEncodedCodec.appendDecoded(new StringBuilder(), s, StandardCharsets.UTF_8), s);
+        }
+    }
+
+    @Test
+    void chunkedParityTest() throws UnsupportedEncodingException {
+        for (String body : new String[]{form(200, 20), form(1_000, 1_000)}) {
+            MultiValueMap<String, String> legacy = legacyParse(body, StandardCharsets.UTF_8);
+            MultiValueMap<String, String> form = parseChunked(body.getBytes(StandardCharsets.UTF_8));
+            assertEquals(legacy, form);
+            legacy.set("f0", "changed");
+            form.set("f0", "changed");
+            assertEquals(legacyEncode(legacy), new String(FormUrlEncodedCodec.encode(form), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() throws UnsupportedEncodingException {
+        bench("200 fields", form(200, 20), 5_000);
+        bench("1MB", form(1_000, 1_000), 40);
+    }
+
+    private static void bench(String name, String body, int n) throws UnsupportedEncodingException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        for (int round = 0; round < 2; round++) {
+            long sink = 0;
+            long alloc = threads.getThreadAllocatedBytes(tid);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                MultiValueMap<String, String> form = legacyParse(new String(bytes, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                form.set("f0", "changed");
+                sink += legacyEncode(form).getBytes(StandardCharsets.UTF_8).length;
+            }
+            long legacy = System.nanoTime() - start;
+            long legacyAlloc = threads.getThreadAllocatedBytes(tid) - alloc;
+
+            alloc = threads.getThreadAllocatedBytes(tid);
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                MultiValueMap<String, String> form = parseChunked(bytes);
+                form.set("f0", "changed");
+                sink += FormUrlEncodedCodec.encode(form).length;
+            }
+            long codec = System.nanoTime() - start;
+            long codecAlloc = threads.getThreadAllocatedBytes(tid) - alloc;
+
+            LOGGER.info("round {}, {} form parsed and re-encoded, legacy / codec: {}us / {}us, allocated {}KB / {}KB, {}",
+                        round, name, legacy / n / 1000, codec / n / 1000, legacyAlloc / n / 1024, codecAlloc / n / 1024, sink);
+        }
+    }
+
+    /**
+     * Parses the body coming in the 8K buffers.
+     */
+    private static MultiValueMap<String, String> parseChunked(byte[] bytes) {
+        int chunk = 8192;
+        FormUrlEncodedCodec.Parser parser = new FormUrlEncodedCodec.Parser(StandardCharsets.UTF_8);
+        for (int from = 0; from < bytes.length; from += chunk) {
+            parser.write(NettyDataBufferUtils.from(Arrays.copyOfRange(bytes, from, Math.min(from + chunk, bytes.length))));
+        }
+        return parser.finish();
+    }
+
+    private static String form(int fields, int valueLength) {
+        StringBuilder b = new StringBuilder();
+        Random random = new Random(fields);
+        for (int f = 0; f < fields; f++) {
+            if (f > 0) {
+                b.append('&');
+            }
+            b.append('f').append(f).append('=');
+            for (int i = 0; i < valueLength; i++) {
+                int r = random.nextInt(20);
+                b.append(r == 0 ? "%E5%BA%94" : r == 1 ? "+" : r == 2 ? "%2F" : String.valueOf((char) ('a' + r)));
+            }
+        }
+        return b.toString();
+    }
+
+    private static String tokens(Random random) {
+        StringBuilder b = new StringBuilder();
+        int n = random.nextInt(4);
+        for (int i = 0; i < n; i++) {
+            b.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Parses the body written in random chunks
+     */
+    private static MultiValueMap<String, String> parse(byte[] body, Charset charset, Random random) {
+        FormUrlEncodedCodec.Parser parser = new FormUrlEncodedCodec.Parser(charset);
+        int from = 0;
+        while (from < body.length) {
+            int to = Math.min(body.length, from + 1 + random.nextInt(5));
+            if (random.nextBoolean()) {
+                parser.write(NettyDataBufferUtils.from(Arrays.copyOfRange(body, from, to)));
+            } else {
+                parser.write(body, from, to);
+            }
+            from = to;
+        }
+        return parser.finish();
+    }
+
+    private static MultiValueMap<String, String> toLinkedMap(MultiValueMap<String, String> form) {
+        MultiValueMap<String, String> m = new LinkedMultiValueMap<>();
+        form.forEach((k, vs) -> m.put(k, new java.util.ArrayList<>(vs)));
+        return m;
+    }
+
+    /**
+     * What FizzServerWebExchangeDecorator.getFormData did
+     */
+    private static MultiValueMap<String, String> legacyParse(String source, Charset charset) throws UnsupportedEncodingException {
+        String[] pairs = StringUtils.tokenizeToStringArray(source, "&");
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>(pairs.length);
+        for (String pair : pairs) {
+            int idx = pair.indexOf('=');
+            if (idx == -1) {
+                result.add(URLDecoder.decode(pair, charset.name()), null);
+            } else {
+                result.add(URLDecoder.decode(pair.substring(0, idx), charset.name()), URLDecoder.decode(pair.substring(idx + 1), charset.name()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * What FizzServerWebExchangeDecorator.setFormData did
+     */
+    private static String legacyEncode(MultiValueMap<String, String> dataMap) throws UnsupportedEncodingException {
+        StringBuilder b = new StringBuilder();
+        int fs = dataMap.size(), cnt = 0;
+        for (Map.Entry<String, List<String>> entry : dataMap.entrySet()) {
+            String field = entry.getKey();
+            List<String> values = entry.getValue();
+            if (values.isEmpty()) {
+                b.append(URLEncoder.encode(field, Consts.C.UTF8));
+            } else {
+                int vs = values.size();
+                for (int i = 0; i < vs; ) {
+                    String v = values.get(i);
+                    b.append(URLEncoder.encode(field, Consts.C.UTF8));
+                    if (v != null) {
+                        b.append(Consts.S.EQUAL);
+                        if (!Consts.S.EMPTY.equals(v)) {
+                            b.append(URLEncoder.encode(v, Consts.C.UTF8));
+                        }
+                    }
+                    if ((++i) != vs) {
+                        b.append(Consts.S.AND);
+                    }
+                }
+            }
+            if ((++cnt) != fs) {
+                b.append(Consts.S.AND);
+            }
+        }
+        return b.toString();
+    }
+}
@@ -18,15 +18,22 @@
 package we.util;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import we.schema.util.I18nUtils;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class JsonSchemaUtilsTest {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonSchemaUtilsTest.class);
+
     @Test
     void validateRequiredPropertyWithoutAssignedTitleAndTitleEn() {
         I18nUtils.setContextLocale(new Locale("zh"));
@@ -65,4 +72,64 @@ class JsonSchemaUtilsTest {
             I18nUtils.removeContextLocale();
         }
     }
+
+    private static final String LIBRARY_SCHEMA = "{\"properties\":{\"library\":{\"type\":\"string\"},"
+            + "\"count\":{\"type\":\"integer\",\"minimum\":1}},\"required\":[\"library\"],\"type\":\"object\"}";
+
+    @Test
+    void validateCompiledSchemaWithObject() {
+        JsonSchemaUtils.CompiledSchema schema = JsonSchemaUtils.compile(LIBRARY_SCHEMA, false);
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("library", "fizz");
+        input.put("count", 2);
+        assertNull(schema.validate(input));
+        assertNull(JsonSchemaUtils.validate(LIBRARY_SCHEMA, "{\"library\":\"fizz\",\"count\":2}"));
+
+        input.put("count", 0);
+        List<String> errors = schema.validate(input);
+        assertNotNull(errors);
+        assertEquals(JsonSchemaUtils.validate(LIBRARY_SCHEMA, "{\"library\":\"fizz\",\"count\":0}"), errors);
+
+        assertNotNull(schema.validate(null));
+        assertNotNull(schema.validate("fizz"));
+
+        JsonSchemaUtils.CompiledSchema typeLooseSchema = JsonSchemaUtils.compile(LIBRARY_SCHEMA, true);
+        input.put("count", "3");
+        assertNull(typeLooseSchema.validate(input));
+    }
+
+    @Test
+    void validateWithIllegalSchema() {
+        JsonSchemaUtils.CompiledSchema schema = JsonSchemaUtils.compile("{", false);
+        List<String> errors = schema.validate(new HashMap<>());
+        assertNotNull(errors);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).startsWith("JSON Schema格式错误"));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void validateThroughputBenchmark() {
+        Map<String, Object> input = new HashMap<>();
+        input.put("library", "fizz");
+        input.put("count", 2);
+        String inputJson = "{\"library\":\"fizz\",\"count\":2}";
+        int loops = 2000;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < loops; i++) {
+            JsonSchemaUtils.validate(LIBRARY_SCHEMA, inputJson);
+        }
+        long uncached = System.nanoTime() - start;
+
+        JsonSchemaUtils.CompiledSchema schema = JsonSchemaUtils.compile(LIBRARY_SCHEMA, false);
+        start = System.nanoTime();
+        for (int i = 0; i < loops; i++) {
+            schema.validate(input);
+        }
+        long compiled = System.nanoTime() - start;
+
+        LOGGER.info("validate {} times, compile per call: {}ms, compiled: {}ms", loops, uncached / 1000000, compiled / 1000000);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class PathPatternIndexTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PathPatternIndexTests.class);
+
+    private static final String[] SEGMENTS = {"/a", "/b", "/ab", "/*", "/**", "/{id}", "/x?", "/a*", "/", "#", "/a#b", "/c.json", "/{v:[0-9]+}"};
+
+    @Test
+    void matchTest() {
+        Random random = new Random(5);
+        for (int t = 0; t < 300; t++) {
+            Set<String> patterns = new HashSet<>();
+            int n = random.nextInt(8);
+            for (int i = 0; i < n; i++) {
+                patterns.add(path(random));
+            }
+            PathPatternIndex index = new PathPatternIndex(patterns);
+            for (int i = 0; i < 200; i++) {
+                String path = path(random).replace("*", "z").replace("?", "q").replace("{", "").replace("}", "");
+                assertEquals(legacyMatch(path, patterns), index.matches(path), patterns + " " + path);
+            }
+            for (String pattern : patterns) {
+                assertTrue(index.matches(pattern), pattern);
+            }
+        }
+        assertFalse(PathPatternIndex.EMPTY.matches("/a"));
+        PathPatternIndex index = new PathPatternIndex(Arrays.asList("/user/{id}", "/order/**", "/item/*/detail", "/ping"));
+        assertTrue(index.matches("/user/1"));
+        assertTrue(index.matches("/order/1/2"));
+        assertTrue(index.matches("/item/1/detail"));
+        assertTrue(index.matches("/ping"));
+        assertFalse(index.matches("/user/1/2"));
+        assertFalse(index.matches("/item/1/list"));
+        assertFalse(index.matches("/pong"));
+    }
+
+    /**
+     * An auth of a dedicated line matches a path with the 200 path patterns of a service.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        Set<String> patterns = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            patterns.add("/api" + i + "/resource/{id}/items/**");
+        }
+        PathPatternIndex index = new PathPatternIndex(patterns);
+        String[] paths = new String[100];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/api" + (i * 2) + "/resource/" + i + "/items/x";
+        }
+        int n = 20_000;
+        for (int round = 0; round < 2; round++) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink += legacyMatch(paths[i % paths.length], patterns) ? 1 : 0;
+            }
+            long legacy = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink += index.matches(paths[i % paths.length]) ? 1 : 0;
+            }
+            long indexed = System.nanoTime() - start;
+            LOGGER.info("round {}, path matched with 200 patterns, linear / index: {}ns / {}ns, {}", round, legacy / n, indexed / n, sink);
+        }
+    }
+
+    private static String path(Random random) {
+        StringBuilder b = new StringBuilder();
+        int n = 1 + random.nextInt(3);
+        for (int i = 0; i < n; i++) {
+            b.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * What DedicatedLineService.auth did with the patterns of a service and method
+     */
+    private static boolean legacyMatch(String path, Set<String> pathPatterns) {
+        if (pathPatterns.contains(path)) {
+            return true;
+        }
+        for (String pathPattern : pathPatterns) {
+            if (UrlTransformUtils.ANT_PATH_MATCHER.match(pathPattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
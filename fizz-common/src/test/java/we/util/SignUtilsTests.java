@@ -0,0 +1,176 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class SignUtilsTests {
+
+    private static final Logger   LOGGER    = LoggerFactory.getLogger(SignUtilsTests.class);
+
+    private static final String[] FRAGMENTS = {"", "a", "app_1", "1650000000000", "fb3c057fe6134796acf33d53f240f2a9", "应用", "x\u0080y", "😀"};
+
+    @Test
+    void signTest() {
+        Random random = new Random(7);
+        for (String id : FRAGMENTS) {
+            for (String ts : FRAGMENTS) {
+                for (String key : FRAGMENTS) {
+                    String data = id + '_' + ts + '_' + key;
+                    String sha256 = DigestUtils.sha256Hex(data);
+                    String md5 = DigestUtils.md532(data);
+                    assertEquals(sha256, SignUtils.sha256Hex(id, ts, key));
+                    assertTrue(SignUtils.checkSha256(id, ts, key, sha256));
+                    assertFalse(SignUtils.checkSha256(id, ts, key, sha256.toUpperCase()));
+                    assertFalse(SignUtils.checkSha256(id, ts, key, flip(sha256, random)));
+                    assertFalse(SignUtils.checkSha256(id, ts, key, sha256.substring(1)));
+                    assertTrue(SignUtils.checkMd5IgnoreCase(id, ts, key, md5));
+                    assertTrue(SignUtils.checkMd5IgnoreCase(id, ts, key, md5.toUpperCase()));
+                    assertFalse(SignUtils.checkMd5IgnoreCase(id, ts, key, flip(md5, random)));
+                    assertFalse(SignUtils.checkMd5IgnoreCase(id, ts, key, md5 + '0'));
+                }
+            }
+        }
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            b.append((char) ('a' + i % 26));
+        }
+        String longKey = b.toString();
+        assertEquals(DigestUtils.sha256Hex("id_1_" + longKey), SignUtils.sha256Hex("id", "1", longKey));
+    }
+
+    @Test
+    void timestampTest() {
+        long now = 1650000000000L, offset = 300_000;
+        assertTrue(SignUtils.isTimestampValid("1650000000000", now, offset));
+        assertTrue(SignUtils.isTimestampValid("+1650000300000", now, offset));
+        assertTrue(SignUtils.isTimestampValid("1649999700000", now, offset));
+        assertTrue(SignUtils.isTimestampValid("١٦٥٠٠٠٠٠٠٠٠٠٠", now, offset));
+        assertFalse(SignUtils.isTimestampValid("1650000300001", now, offset));
+        assertFalse(SignUtils.isTimestampValid("1649999699999", now, offset));
+        assertFalse(SignUtils.isTimestampValid("-1650000000000", now, offset));
+        assertFalse(SignUtils.isTimestampValid("16500000000x0", now, offset));
+        assertFalse(SignUtils.isTimestampValid("+", now, offset));
+        assertFalse(SignUtils.isTimestampValid("", now, offset));
+        assertFalse(SignUtils.isTimestampValid("99999999999999999999", now, offset));
+    }
+
+    @Test
+    void replayCacheTest() {
+        ReplayCache cache = new ReplayCache(3, 1000);
+        assertTrue(cache.firstSeen("a", "1000", "s", 1000));
+        assertFalse(cache.firstSeen("a", "1000", "s", 1000));
+        assertTrue(cache.firstSeen("a", "1001", "s", 1001));
+        assertTrue(cache.firstSeen("b", "1000", "s", 1001));
+        // full, the first two expired
+        assertTrue(cache.firstSeen("c", "2500", "s", 2001));
+        assertEquals(2, cache.size());
+        assertFalse(cache.firstSeen("a", "1001", "s", 2001));
+        assertTrue(cache.firstSeen("d", "2500", "s", 2001));
+        // full of the unexpired ones
+        assertTrue(cache.firstSeen("e", "2500", "s", 2001));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void validateTest() {
+        String id = "dedicated-line-1", key = "fb3c057fe6134796acf33d53f240f2a9";
+        long now = System.currentTimeMillis(), offset = 300_000;
+        String ts = String.valueOf(now), expired = String.valueOf(now - 2 * offset);
+        String valid = DigestUtils.sha256Hex(id + '_' + ts + '_' + key), invalid = flip(valid, new Random(1));
+        String expiredSign = DigestUtils.sha256Hex(id + '_' + expired + '_' + key);
+        assertTrue(validate(id, ts, valid, key, now, offset));
+        assertFalse(validate(id, ts, invalid, key, now, offset));
+        assertFalse(validate(id, expired, expiredSign, key, now, offset));
+        String[][] cases = {{ts, valid}, {ts, invalid}, {expired, expiredSign}};
+        for (String[] c : cases) {
+            assertEquals(legacyValidate(id, c[0], c[1], key, now, offset), validate(id, c[0], c[1], key, now, offset));
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        int n = 300_000;
+        String id = "dedicated-line-1", key = "fb3c057fe6134796acf33d53f240f2a9";
+        long now = System.currentTimeMillis(), offset = 300_000;
+        String ts = String.valueOf(now), expired = String.valueOf(now - 2 * offset);
+        String valid = DigestUtils.sha256Hex(id + '_' + ts + '_' + key), invalid = flip(valid, new Random(1));
+        String expiredSign = DigestUtils.sha256Hex(id + '_' + expired + '_' + key);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        for (int round = 0; round < 2; round++) {
+            long[] legacy = new long[3], current = new long[3];
+            long legacyBytes = 0, currentBytes = 0;
+            int ok = 0;
+            String[][] cases = {{ts, valid}, {ts, invalid}, {expired, expiredSign}};
+            for (int c = 0; c < cases.length; c++) {
+                long bytes = threads.getThreadAllocatedBytes(tid);
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    ok += legacyValidate(id, cases[c][0], cases[c][1], key, now, offset) ? 1 : 0;
+                }
+                legacy[c] = (System.nanoTime() - start) / n;
+                legacyBytes += threads.getThreadAllocatedBytes(tid) - bytes;
+                bytes = threads.getThreadAllocatedBytes(tid);
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    ok += validate(id, cases[c][0], cases[c][1], key, now, offset) ? 1 : 0;
+                }
+                current[c] = (System.nanoTime() - start) / n;
+                currentBytes += threads.getThreadAllocatedBytes(tid) - bytes;
+            }
+            LOGGER.info("round {}, verify per call, legacy / now: valid {}ns / {}ns, bad sign {}ns / {}ns, expired {}ns / {}ns, allocated {}B / {}B",
+                        round, legacy[0], current[0], legacy[1], current[1], legacy[2], current[2], legacyBytes / (3 * n), currentBytes / (3 * n));
+            assertEquals(2 * n, ok);
+        }
+    }
+
+    private static boolean validate(String id, String ts, String sign, String key, long now, long offset) {
+        return SignUtils.isTimestampValid(ts, now, offset) && SignUtils.checkSha256(id, ts, key, sign);
+    }
+
+    private static boolean legacyValidate(String id, String ts, String sign, String key, long now, long offset) {
+        String data = id + "_" + ts + "_" + key;
+        if (!DigestUtils.sha256Hex(data).equals(sign)) {
+            return false;
+        }
+        long t = Long.valueOf(ts).longValue();
+        return t >= now - offset && t <= now + offset;
+    }
+
+    private static String flip(String hex, Random random) {
+        char[] cs = hex.toCharArray();
+        int i = random.nextInt(cs.length);
+        cs[i] = cs[i] == '0' ? '1' : '0';
+        return new String(cs);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.symmetric.SymmetricAlgorithm;
+import cn.hutool.crypto.symmetric.SymmetricCrypto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class SymmetricCryptoContextTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SymmetricCryptoContextTests.class);
+
+    private static final SymmetricCryptoContext aes = SymmetricCryptoContext.of(SymmetricAlgorithm.AES);
+
+    @Test
+    void hutoolCompatibleTest() {
+        Random random = new Random(3);
+        for (SymmetricAlgorithm algorithm : new SymmetricAlgorithm[]{SymmetricAlgorithm.AES, SymmetricAlgorithm.DES, SymmetricAlgorithm.DESede}) {
+            SymmetricCryptoContext context = SymmetricCryptoContext.of(algorithm);
+            // more keys than a thread keeps ciphers for
+            for (int i = 0; i < 100; i++) {
+                byte[] keyBytes = SecureUtil.generateKey(algorithm.getValue()).getEncoded();
+                String key = i % 2 == 0 ? Base64.getEncoder().encodeToString(keyBytes) : cn.hutool.core.util.HexUtil.encodeHexStr(keyBytes);
+                SymmetricCrypto hutool = new SymmetricCrypto(algorithm, keyBytes);
+                byte[] data = new byte[random.nextInt(100)];
+                random.nextBytes(data);
+
+                byte[] encrypted = hutool.encrypt(data);
+                assertArrayEquals(encrypted, context.encrypt(key, data));
+                assertArrayEquals(data, context.decrypt(key, encrypted));
+
+                DataBuffer buffer = context.encrypt(key, NettyDataBufferUtils.from(data));
+                assertArrayEquals(encrypted, NettyDataBufferUtils.copyBytes(buffer));
+                buffer = context.decrypt(key, NettyDataBufferUtils.from(encrypted));
+                assertArrayEquals(data, NettyDataBufferUtils.copyBytes(buffer));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> SymmetricCryptoContext.of(SymmetricAlgorithm.PBEWithMD5AndDES));
+    }
+
+    @Test
+    void base64Test() {
+        SymmetricCryptoContext context = new SymmetricCryptoContext("AES/ECB/PKCS5Padding",
+                key -> new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "AES"), null);
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 3_000; i++) {
+            String key = "12345678" + String.format("%08d", i % 40);
+            String s = data.toString();
+            String encrypted = context.encryptBase64(key, s);
+            SymmetricCrypto hutool = new SymmetricCrypto(SymmetricAlgorithm.AES, key.getBytes(StandardCharsets.UTF_8));
+            if (i % 100 == 0) {
+                assertEquals(hutool.encryptBase64(s), encrypted);
+            }
+            assertEquals(s, context.decryptBase64(key, encrypted));
+            data.append(i % 7 == 0 ? "应" : "a");
+        }
+        assertEquals("ucSL5R/jQigQ1dxzsWi2kg==", context.encryptBase64("1234567812345678", "abc"));
+    }
+
+    @Test
+    void errorTest() {
+        String key = Base64.getEncoder().encodeToString(SecureUtil.generateKey("AES").getEncoded());
+        byte[] encrypted = aes.encrypt(key, "abc".getBytes());
+        assertThrows(RuntimeException.class, () -> aes.decrypt(key, new byte[]{1, 2, 3}));
+        assertThrows(RuntimeException.class, () -> aes.decrypt(key, "abcd".getBytes()));
+        // the cipher of a failed call is not reused
+        assertEquals("abc", new String(aes.decrypt(key, encrypted)));
+        assertThrows(RuntimeException.class, () -> aes.encrypt("AAAA", "abc".getBytes()));
+    }
+
+    /**
+     * Requests of 1,000 dedicated lines alternate on one thread, each encrypts and decrypts a 1K body with the key of its line,
+     * compared with a hutool {@code SymmetricCrypto} each time as before.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        String[] keys = new String[1_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Base64.getEncoder().encodeToString(SecureUtil.generateKey("AES").getEncoded());
+        }
+        byte[] body = new byte[1024];
+        new Random(1).nextBytes(body);
+        bench("1000 alternating keys", keys, body, 20_000);
+        bench("2 alternating keys", new String[]{keys[0], keys[1]}, body, 20_000);
+    }
+
+    private static void bench(String name, String[] keys, byte[] body, int n) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        for (int round = 0; round < 2; round++) {
+            long sink = 0;
+            long alloc = threads.getThreadAllocatedBytes(tid);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                String key = keys[i % keys.length];
+                SymmetricCrypto encryptor = new SymmetricCrypto(SymmetricAlgorithm.AES, SecureUtil.decode(key));
+                byte[] encrypted = encryptor.encrypt(body);
+                SymmetricCrypto decryptor = new SymmetricCrypto(SymmetricAlgorithm.AES, SecureUtil.decode(key));
+                sink += decryptor.decrypt(encrypted).length;
+            }
+            long legacy = System.nanoTime() - start;
+            long legacyAlloc = threads.getThreadAllocatedBytes(tid) - alloc;
+
+            alloc = threads.getThreadAllocatedBytes(tid);
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                String key = keys[i % keys.length];
+                sink += aes.decrypt(key, aes.encrypt(key, body)).length;
+            }
+            long context = System.nanoTime() - start;
+            long contextAlloc = threads.getThreadAllocatedBytes(tid) - alloc;
+
+            LOGGER.info("round {}, {}, 1K body encrypted and decrypted, hutool / context: {}ns / {}ns, allocated {}B / {}B, {}",
+                        round, name, legacy / n, context / n, legacyAlloc / n, contextAlloc / n, sink);
+        }
+    }
+}
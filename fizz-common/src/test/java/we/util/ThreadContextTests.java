@@ -0,0 +1,189 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import io.netty.util.concurrent.FastThreadLocalThread;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hongqiaowei
+ */
+
+public class ThreadContextTests {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ThreadContextTests.class);
+
+	@Test
+	void slotTest() {
+		StringBuilder b = ThreadContext.getStringBuilder();
+		b.append("x");
+		assertSame(b, ThreadContext.get("$sb"));
+		assertSame(b, ThreadContext.getStringBuilder(false));
+		assertEquals("x", b.toString());
+		assertEquals(0, ThreadContext.getStringBuilder().length());
+
+		StringBuilder b0 = ThreadContext.getStringBuilder(ThreadContext.sb0);
+		assertNotSame(b, b0);
+		assertSame(b0, ThreadContext.get(ThreadContext.sb0));
+
+		ArrayList<String> l0 = ThreadContext.getArrayList(ThreadContext.arrayList0);
+		l0.add("a");
+		assertNotSame(l0, ThreadContext.getArrayList());
+		assertSame(l0, ThreadContext.getArrayList(ThreadContext.arrayList0, false));
+		assertEquals(1, l0.size());
+
+		ThreadContext.setTraceId("t1");
+		assertEquals("t1", ThreadContext.getTraceId());
+
+		ThreadContext.set("k", 1);
+		assertEquals(1, ThreadContext.get("k"));
+		assertEquals(1, ThreadContext.remove("k"));
+		assertNull(ThreadContext.get("k"));
+		assertSame(ThreadContext.getStringBuilder("k"), ThreadContext.get("k"));
+	}
+
+	@Test
+	void equalKeyTest() {
+		String sb = new String("$sb");
+		String sb0 = new StringBuilder("$sb").append('0').toString();
+		assertNotSame(ThreadContext.sb0, sb0);
+
+		StringBuilder b = ThreadContext.getStringBuilder();
+		assertSame(b, ThreadContext.get(sb));
+		assertSame(b, ThreadContext.getStringBuilder(sb));
+		StringBuilder b0 = ThreadContext.getStringBuilder(ThreadContext.sb0);
+		assertSame(b0, ThreadContext.getStringBuilder(sb0));
+		assertSame(b0, ThreadContext.get(sb0));
+
+		ArrayList<Object> l0 = ThreadContext.getArrayList(ThreadContext.arrayList0);
+		assertSame(l0, ThreadContext.getArrayList(new String(ThreadContext.arrayList0)));
+		assertSame(ThreadContext.getArrayList(), ThreadContext.get(new String("arlstT")));
+		assertSame(ThreadContext.getHashMap(), ThreadContext.getHashMap(new String("hsMapT")));
+		assertSame(ThreadContext.getHashSet(), ThreadContext.getHashSet(new String("hsSetT")));
+
+		ThreadContext.set(new String("traIdT"), "t2");
+		assertEquals("t2", ThreadContext.getTraceId());
+		assertEquals("t2", ThreadContext.remove(new String("traIdT")));
+		assertNull(ThreadContext.getTraceId());
+
+		// same length, not a slot key
+		ThreadContext.set("$sc", 1);
+		assertEquals(1, ThreadContext.get(new String("$sc")));
+		assertSame(b, ThreadContext.get("$sb"));
+		assertEquals(1, ThreadContext.remove("$sc"));
+	}
+
+	@Test
+	void borrowTest() {
+		ThreadContext.setDebug(true);
+		try {
+			StringBuilder b = ThreadContext.borrowStringBuilder();
+			assertThrows(IllegalStateException.class, ThreadContext::getStringBuilder);
+			assertThrows(IllegalStateException.class, ThreadContext::borrowStringBuilder);
+			ThreadContext.getStringBuilder(ThreadContext.sb0);
+			assertThrows(IllegalStateException.class, () -> ThreadContext.returnStringBuilder(new StringBuilder()));
+			ThreadContext.returnStringBuilder(b);
+			assertThrows(IllegalStateException.class, () -> ThreadContext.returnStringBuilder(b));
+			assertSame(b, ThreadContext.getStringBuilder());
+
+			ArrayList<Object> l = ThreadContext.borrowArrayList();
+			assertThrows(IllegalStateException.class, ThreadContext::getArrayList);
+			ThreadContext.getArrayList(ThreadContext.arrayList0);
+			ThreadContext.returnArrayList(l);
+			assertSame(l, ThreadContext.getArrayList());
+		} finally {
+			ThreadContext.setDebug(false);
+		}
+
+		StringBuilder b = ThreadContext.borrowStringBuilder();
+		assertSame(b, ThreadContext.getStringBuilder());
+		ThreadContext.returnStringBuilder(b);
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmark() throws Throwable {
+		Runnable bench = () -> {
+			int n = 5_000_000;
+			long legacy = 0, typed = 0;
+			for (int round = 0; round < 2; round++) {
+				long start = System.nanoTime();
+				for (int i = 0; i < n; i++) {
+					legacyStringBuilder().append('x');
+					legacyArrayList().add(i);
+				}
+				legacy = System.nanoTime() - start;
+				start = System.nanoTime();
+				for (int i = 0; i < n; i++) {
+					ThreadContext.getStringBuilder().append('x');
+					ThreadContext.getArrayList().add(i);
+				}
+				typed = System.nanoTime() - start;
+			}
+			LOGGER.info("{}, get string builder and array list {} times, string keyed map: {}ns/op, slots: {}ns/op",
+					Thread.currentThread().getClass().getSimpleName(), n, legacy / n, typed / n);
+		};
+		bench.run();
+		Thread eventLoop = new FastThreadLocalThread(bench);
+		eventLoop.start();
+		eventLoop.join();
+	}
+
+	private static final ThreadLocal<Map<String, Object>> legacy = new ThreadLocal<>();
+
+	private static Map<String, Object> legacyMap() {
+		Map<String, Object> m = legacy.get();
+		if (m == null) {
+			m = new HashMap<>(32);
+			legacy.set(m);
+		}
+		return m;
+	}
+
+	private static StringBuilder legacyStringBuilder() {
+		Map<String, Object> m = legacyMap();
+		StringBuilder b = (StringBuilder) m.get("$sb");
+		if (b == null) {
+			b = new StringBuilder(256);
+			m.put("$sb", b);
+		} else {
+			b.delete(0, b.length());
+		}
+		return b;
+	}
+
+	private static ArrayList<Object> legacyArrayList() {
+		ArrayList<Object> l = (ArrayList<Object>) legacyMap().get("arlstT");
+		if (l == null) {
+			l = new ArrayList<>();
+			legacyMap().put("arlstT", l);
+		} else {
+			l.clear();
+		}
+		return l;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright (C) 2021 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author zhongjie
+ *
+ */
+public class UrlTransformUtilsTests {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(UrlTransformUtilsTests.class);
+
+	private static final String[][] CASES = {
+			// frontend path, backend path, request path
+			{"/a/{id}",                "/b/{id}",                  "/a/1"},
+			{"/a/{id}/{name}",         "/b/{name}/c/{id}",         "/a/1/x"},
+			{"/a/{id}",                "/b/{id}/{id}",             "/a/1"},
+			{"/a/{id}",                "/b/{unknown}/c",           "/a/1"},
+			{"/a/{id}",                "/b/{unknown}x{id}/c",      "/a/1"},
+			{"/a/{id}",                "/b/{unknown}/{id}}",       "/a/1"},
+			{"/a/{id}",                "/b/{id",                   "/a/1"},
+			{"/a/{id}",                "/b/x}{id}",                "/a/1"},
+			{"/a/{id}",                "/b/{{id}}",                "/a/1"},
+			{"/a/{id}",                "/b/{id}",                  "/a/{x}"},
+			{"/a/{id}",                "/b/{id}/c",                "/a/$1"},
+			{"/a/*",                   "/b/{$1}",                  "/a/xyz"},
+			{"/a/*/c/*",               "/b/{$2}/{$1}",             "/a/x/c/y"},
+			{"/a/**",                  "/b/{$1}",                  "/a/x/y/z"},
+			{"/a/**/c",                "/b/{$1}/d",                "/a/x/y/c"},
+			{"/a/?c",                  "/b/{$1}",                  "/a/bc"},
+			{"/a/{id:[0-9]+}",         "/b/{id}",                  "/a/123"},
+			{"/a/{id}.json",           "/b/{id}.xml",              "/a/1.json"},
+			{"/a/{id}",                "/b/c",                     "/a/1"},
+			{"/a/{id}",                "",                         "/a/1"},
+			{"/a/{id}",                "{id}",                     "/a/1"},
+			{"/a/{id}",                "/b/{id}?q={$1}",           "/a/1"},
+			{"/a/{a-b}",               "/b/{a-b}",                 "/a/1"},
+			{"/proxy/{service}/{id}/**", "/api/{service}/v1/{id}/{$1}", "/proxy/order/12345/detail/items"},
+	};
+
+	@Test
+	public void transformParityTest() {
+		for (String[] c : CASES) {
+			String expected = legacyTransform(c[0], c[1], c[2]);
+			assertEquals(expected, UrlTransformUtils.transform(c[0], c[1], c[2]), String.join(" ", c));
+			UrlTransformUtils.BackendPathTemplate t = UrlTransformUtils.BackendPathTemplate.compile(c[1]);
+			for (int i = 0; i < 3; i++) {
+				assertEquals(expected, UrlTransformUtils.transform(c[0], t, c[2]), String.join(" ", c));
+			}
+		}
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	public void transformBenchmark() {
+		String frontendPath = "/proxy/{service}/{id}/**";
+		String backendPath = "/api/{service}/v1/{id}/{$1}";
+		String reqPath = "/proxy/order/12345/detail/items";
+		UrlTransformUtils.BackendPathTemplate t = UrlTransformUtils.BackendPathTemplate.compile(backendPath);
+
+		int n = 200_000;
+		for (int i = 0; i < n; i++) {
+			legacyTransform(frontendPath, backendPath, reqPath);
+			UrlTransformUtils.transform(frontendPath, t, reqPath);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			legacyTransform(frontendPath, backendPath, reqPath);
+		}
+		long legacy = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			UrlTransformUtils.transform(frontendPath, t, reqPath);
+		}
+		long compiled = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			t.render(UrlTransformUtils.ANT_PATH_MATCHER.extractUriTemplateVariables(frontendPath, reqPath));
+		}
+		long total = System.nanoTime() - start;
+		Map<String, String> variables = UrlTransformUtils.ANT_PATH_MATCHER.extractUriTemplateVariables(frontendPath, reqPath);
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			t.render(variables);
+		}
+		long render = System.nanoTime() - start;
+		LOGGER.info("transform {} times, regex: {}ns/op, compiled: {}ns/op ({}ns/op incl. match), render only: {}ns/op",
+				n, legacy / n, compiled / n, total / n, render / n);
+	}
+
+	private static String legacyTransform(String frontendPath, String backendPath, String reqPath) {
+		Map<String, String> variables = UrlTransformUtils.ANT_PATH_MATCHER.extractUriTemplateVariables(frontendPath, reqPath);
+		for (Map.Entry<String, String> entry : variables.entrySet()) {
+			backendPath = backendPath.replaceAll("\\{" + Matcher.quoteReplacement(entry.getKey()) + "}", Matcher.quoteReplacement(entry.getValue()));
+		}
+		if (backendPath.indexOf('{') != -1) {
+			backendPath = backendPath.replaceAll("\\{[^/]*}", "");
+		}
+		return backendPath;
+	}
+}
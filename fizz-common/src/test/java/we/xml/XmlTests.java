@@ -20,11 +20,23 @@ package we.xml;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
+import java.util.Map;
+
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
 
 public class XmlTests {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(XmlTests.class);
+
+	private static final String SOAP_ORDER_PATH = "/soap:Envelope/soap:Body/GetOrdersResponse/order";
+
 	private String xmlStr = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" + "<library>\n"
 			+ "    <book id=\"007\">James Bond</book>\n" + "</library>";
 
@@ -168,4 +180,86 @@ public class XmlTests {
 		assertEquals(2, jsonObj.getJSONObject("library").getJSONArray("book").getInt(1));
 	}
 
+	@Test
+	public void TestConverter() {
+		XmlToJson.Converter converter = XmlToJson.converter("/library/book");
+		assertTrue(converter == XmlToJson.converter("/library/book"));
+
+		Map<String, Object> m = converter.convert(xmlStr);
+		Map<String, Object> book = (Map<String, Object>) ((List<Object>) ((Map<String, Object>) m.get("library")).get("book")).get(0);
+		assertEquals("007", book.get("-id"));
+		assertEquals("James Bond", book.get("#text"));
+		assertEquals(new XmlToJson.Builder(xmlStr).forceList("/library/book").build().toJson().toMap(), m);
+
+		String xml = "<a><b> </b><b>2</b><c x=\"1\"><d>t</d></c><e/></a>";
+		m = new XmlToJson.Builder().forceIntegerForPath("/a/c/x").skipTag("/a/e").converter().convert(xml);
+		Map<String, Object> a = (Map<String, Object>) m.get("a");
+		List<Object> bs = (List<Object>) a.get("b");
+		assertEquals(0, ((Map<String, Object>) bs.get(0)).size());
+		assertEquals("2", bs.get(1));
+		assertEquals(1, ((Map<String, Object>) a.get("c")).get("-x"));
+		assertEquals("t", ((Map<String, Object>) a.get("c")).get("d"));
+		assertTrue(!a.containsKey("e"));
+	}
+
+	@Test
+	public void TestJsonToXmlFromMap() {
+		Map<String, Object> m = JSON.parseObject(jsonStr4);
+		String xml = new JsonToXml.Builder(m).build().toString();
+		assertEquals(new XmlToJson.Builder(new JsonToXml.Builder(jsonStr4).build().toString()).build().toMap(),
+				new XmlToJson.Builder(xml).build().toMap());
+
+		m = JSON.parseObject("{\"a\":{\"-id\":1.50,\"v\":2.0,\"l\":[1.5,null]}}");
+		xml = new JsonToXml.Builder(m).build().toString();
+		assertTrue(xml.endsWith("<a id=\"1.5\"><v>2</v><l>1.5</l><l>null</l></a>"), xml);
+	}
+
+	@Test
+	public void TestConvertSoap() {
+		Map<String, Object> m = XmlToJson.converter(SOAP_ORDER_PATH).convert(soap(100));
+		assertEquals(100, orders(m).size());
+		String xml = new JsonToXml.Builder(m).build().toString();
+		assertEquals(m, XmlToJson.converter(SOAP_ORDER_PATH).convert(xml));
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	public void TestConvertSoapBenchmark() {
+		for (int items : new int[] { 140, 140 * 1024 }) {
+			String xml = soap(items);
+			XmlToJson.Converter converter = XmlToJson.converter(SOAP_ORDER_PATH);
+			int loops = items > 1024 ? 2 : 200;
+			Map<String, Object> m = null;
+			long start = System.nanoTime();
+			for (int i = 0; i < loops; i++) {
+				m = converter.convert(xml);
+			}
+			long xmlToJson = (System.nanoTime() - start) / loops;
+
+			start = System.nanoTime();
+			for (int i = 0; i < loops; i++) {
+				new JsonToXml.Builder(m).build().toString();
+			}
+			long jsonToXml = (System.nanoTime() - start) / loops;
+
+			LOGGER.info("{}KB SOAP payload, xml to json: {}us, json to xml: {}us", xml.length() / 1024, xmlToJson / 1000, jsonToXml / 1000);
+		}
+	}
+
+	private static String soap(int items) {
+		StringBuilder b = new StringBuilder(items * 100 + 512);
+		b.append("<?xml version=\"1.0\" encoding=\"utf-8\"?><soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">")
+				.append("<soap:Body><GetOrdersResponse>");
+		for (int i = 0; i < items; i++) {
+			b.append("<order id=\"").append(i).append("\"><sku>SKU-").append(i)
+					.append("</sku><qty>").append(i % 10).append("</qty><price>").append(i % 100).append(".5</price></order>");
+		}
+		b.append("</GetOrdersResponse></soap:Body></soap:Envelope>");
+		return b.toString();
+	}
+
+	private static List<Object> orders(Map<String, Object> m) {
+		Map<String, Object> body = (Map<String, Object>) ((Map<String, Object>) m.get("soap:Envelope")).get("soap:Body");
+		return (List<Object>) ((Map<String, Object>) body.get("GetOrdersResponse")).get("order");
+	}
 }
@@ -35,6 +35,7 @@ import org.springframework.session.data.redis.config.annotation.SpringSessionRed
 import we.log.LogSendAppender;
 import we.log.RedisLogSendServiceImpl;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 /**
@@ -97,6 +98,14 @@ public class AggregateRedisConfig extends RedisReactiveConfig {
         return reactiveStringRedisTemplate;
     }
 
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (LogSendAppender.logSendService instanceof RedisLogSendServiceImpl) {
+            // publish the logs buffered
+            ((RedisLogSendServiceImpl) LogSendAppender.logSendService).close(5000);
+        }
+    }
+
     @Bean(AGGREGATE_REACTIVE_REDIS_MESSAGE_LISTENER_CONTAINER)
     public ReactiveRedisMessageListenerContainer aggregateReactiveRedisMessageListenerContainer(
             @Qualifier(AGGREGATE_REACTIVE_REDIS_CONNECTION_FACTORY) ReactiveRedisConnectionFactory factory) {
@@ -43,4 +43,41 @@ public class AggregateRedisConfigProperties {
     @Value("${send-log.type:redis}")
     private String sendLogType;
 
+    /**
+     * max logs buffered before sent, read on startup like max-buffered-bytes, batch-size and linger-millis,
+     * which take effect after a restart, the other send-log properties are refreshed
+     */
+    @Value("${send-log.buffer-size:8192}")
+    private int sendLogBufferSize;
+
+    @Value("${send-log.max-buffered-bytes:16777216}")
+    private long sendLogMaxBufferedBytes;
+
+    @Value("${send-log.batch-size:256}")
+    private int sendLogBatchSize;
+
+    @Value("${send-log.linger-millis:20}")
+    private long sendLogLingerMillis;
+
+    /**
+     * logs per message, a message per log if not greater than 1, otherwise a JSON array of logs per message
+     */
+    @Value("${send-log.frame-size:1}")
+    private int sendLogFrameSize;
+
+    @Value("${send-log.publish-timeout-millis:5000}")
+    private long sendLogPublishTimeoutMillis;
+
+    /**
+     * send one of every n INFO logs
+     */
+    @Value("${send-log.sample-rate.info:1}")
+    private int sendLogInfoSampleRate;
+
+    @Value("${send-log.sample-rate.debug:1}")
+    private int sendLogDebugSampleRate;
+
+    @Value("${send-log.sample-rate.trace:1}")
+    private int sendLogTraceSampleRate;
+
 }
@@ -0,0 +1,221 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-diff reconciliation of the local cache of the configs in a redis hash with the hash.
+ * <p>
+ * The whole hash is fetched by HGETALL on every reconciliation and compared with the local cache by content,
+ * only the added, changed and removed entries are passed to the {@link Handler},
+ * so unchanged configs are not deserialized and rebuilt again.
+ * <p>
+ * The reconciler is seeded by {@link #loaded(Map)} after a full reload of the local cache.
+ *
+ * @author zhongjie
+ */
+public class ConfigDeltaReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigDeltaReconciler.class);
+
+    private static final Map<String, ConfigDeltaReconciler> reconcilers = new ConcurrentHashMap<>(8);
+
+    public interface Handler {
+
+        /**
+         * @param field the hash field of the added or changed config
+         * @param json  the new config
+         */
+        void onChange(String field, String json) throws Throwable;
+
+        /**
+         * @param field the hash field of the removed config
+         * @param json  the last known config
+         */
+        void onRemove(String field, String json) throws Throwable;
+    }
+
+    private final String                      hashKey;
+
+    private final ReactiveStringRedisTemplate rt;
+
+    private final Handler                     handler;
+
+    private volatile Map<String, String>      values              = Collections.emptyMap();
+
+    private boolean                           loaded              = false;
+
+    private volatile long                     reconciles          = 0;
+
+    private volatile long                     fullReloads         = 0;
+
+    private volatile long                     lastReconcileMillis = 0;
+
+    private volatile int                      lastFetched         = 0;
+
+    private volatile int                      lastChanged         = 0;
+
+    private volatile int                      lastRemoved         = 0;
+
+    private volatile long                     totalChanged        = 0;
+
+    private volatile long                     totalRemoved        = 0;
+
+    public ConfigDeltaReconciler(String hashKey, ReactiveStringRedisTemplate rt, Handler handler) {
+        this.hashKey = hashKey;
+        this.rt      = rt;
+        this.handler = handler;
+        reconcilers.put(hashKey, this);
+    }
+
+    /**
+     * @return the last created reconciler of each hash
+     */
+    public static Collection<ConfigDeltaReconciler> getReconcilers() {
+        return reconcilers.values();
+    }
+
+    /**
+     * @return the last created reconciler of the hash, or null
+     */
+    public static ConfigDeltaReconciler getReconciler(String hashKey) {
+        return reconcilers.get(hashKey);
+    }
+
+    /**
+     * @param values field to config of the hash, which the local cache is fully reloaded from
+     */
+    public synchronized void loaded(Map<String, String> values) {
+        this.values = new HashMap<>(values);
+        loaded = true;
+        fullReloads++;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Apply the changes of the hash since last reconciliation or full reload to the local cache,
+     * the caller should fully reload the local cache if exception thrown.
+     */
+    public synchronized void reconcile() throws Throwable {
+        if (!loaded) {
+            throw new IllegalStateException(hashKey + " local cache not loaded");
+        }
+        long start = System.currentTimeMillis();
+
+        Map<String, String> changed      = new LinkedHashMap<>();
+        List<String>        removed      = new ArrayList<>();
+        Map<String, String> remoteValues = entries(hashKey);
+        int fetched = remoteValues.size();
+        remoteValues.forEach(
+                (f, v) -> {
+                    if (!v.equals(values.get(f))) {
+                        changed.put(f, v);
+                    }
+                }
+        );
+        for (String f : values.keySet()) {
+            if (!remoteValues.containsKey(f)) {
+                removed.add(f);
+            }
+        }
+
+        for (Map.Entry<String, String> e : changed.entrySet()) {
+            handler.onChange(e.getKey(), e.getValue());
+            values.put(e.getKey(), e.getValue());
+        }
+        for (String f : removed) {
+            handler.onRemove(f, values.get(f));
+            values.remove(f);
+        }
+
+        reconciles++;
+        lastReconcileMillis = System.currentTimeMillis() - start;
+        lastFetched   = fetched;
+        lastChanged   = changed.size();
+        lastRemoved   = removed.size();
+        totalChanged += lastChanged;
+        totalRemoved += lastRemoved;
+        log.info("reconcile {} in {} millis, {} fetched, {} changed, {} removed", hashKey, lastReconcileMillis, fetched, lastChanged, lastRemoved);
+    }
+
+    private Map<String, String> entries(String key) {
+        Map<String, String> m = rt.opsForHash().entries(key)
+                                  .collectMap(e -> (String) e.getKey(), e -> (String) e.getValue(), HashMap::new)
+                                  .block();
+        return m == null ? new HashMap<>() : m;
+    }
+
+    /**
+     * @return copy of the field to config map of the hash, as the local cache is
+     */
+    public synchronized Map<String, String> getValues() {
+        return new HashMap<>(values);
+    }
+
+    public String getHashKey() {
+        return hashKey;
+    }
+
+    /**
+     * @return number of configs in local cache
+     */
+    public int getSize() {
+        return values.size();
+    }
+
+    public long getReconciles() {
+        return reconciles;
+    }
+
+    public long getFullReloads() {
+        return fullReloads;
+    }
+
+    public long getLastReconcileMillis() {
+        return lastReconcileMillis;
+    }
+
+    public int getLastFetched() {
+        return lastFetched;
+    }
+
+    public int getLastChanged() {
+        return lastChanged;
+    }
+
+    public int getLastRemoved() {
+        return lastRemoved;
+    }
+
+    public long getTotalChanged() {
+        return totalChanged;
+    }
+
+    public long getTotalRemoved() {
+        return totalRemoved;
+    }
+}
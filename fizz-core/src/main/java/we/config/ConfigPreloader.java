@@ -0,0 +1,279 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import we.plugin.auth.ApiConfigServiceProperties;
+import we.util.JacksonUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fetches the config hashes, which the local caches are loaded from on startup, from redis concurrently,
+ * so the services' {@code @PostConstruct} inits, which run one by one, don't wait for redis in turn.
+ * <p>
+ * If {@code fizz.config-snapshot.enabled} is true, the configs are saved to a local gzipped snapshot file after startup and periodically,
+ * if a hash can't be fetched from redis in {@code fizz.config-snapshot.redis-timeout-millis} on startup,
+ * or {@code fizz.config-snapshot.start-from-snapshot} is true, the local cache is loaded from the snapshot,
+ * and reconciled with redis in background once the application is ready and redis is available.
+ * <p>
+ * The snapshot holds the configs as they are in redis, app secrets and keys included, in plaintext,
+ * the file is created readable by its owner only, and should be kept so.
+ *
+ * @author hongqiaowei
+ */
+
+@Component
+public class ConfigPreloader {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigPreloader.class);
+
+    /**
+     * Reloads or reconciles the local cache with redis.
+     */
+    public interface Reloader {
+        void reload() throws Throwable;
+    }
+
+    private static final String[] HASH_KEYS = {
+            "fizz_app", "fizz_gateway_group", "fizz_rate_limit", "fizz_rpc_service", "fizz_aggregate_config",
+            "fizz_global_resource", "fizz_degrade_rule", "fizz_registry"
+    };
+
+    @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
+    private ReactiveStringRedisTemplate rt;
+
+    @Resource
+    private ApiConfigServiceProperties apiConfigServiceProperties;
+
+    @Value("${fizz.config-snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+
+    @Value("${fizz.config-snapshot.file:${user.home}/.fizz/config-snapshot.json.gz}")
+    private String snapshotFile;
+
+    @Value("${fizz.config-snapshot.start-from-snapshot:false}")
+    private boolean startFromSnapshot;
+
+    @Value("${fizz.config-snapshot.redis-timeout-millis:10000}")
+    private long redisTimeoutMillis;
+
+    @Value("${fizz.config-snapshot.reconcile-retry-millis:10000}")
+    private long reconcileRetryMillis;
+
+    private final Map<String, Mono<Map<String, String>>> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * the hashes the local caches are loaded from, and how to reconcile them with redis
+     */
+    private final Map<String, Reloader> reloaders = new ConcurrentHashMap<>();
+
+    private final Map<String, Reloader> fromSnapshot = new ConcurrentHashMap<>();
+
+    private Map<String, Map<String, String>> snapshot;
+
+    private long startTime;
+
+    private volatile Disposable reconciling;
+
+    @PostConstruct
+    public void init() {
+        startTime = System.currentTimeMillis();
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(apiConfigServiceProperties.getFizzApiConfig());
+        keys.add(apiConfigServiceProperties.getFizzPluginConfig());
+        Collections.addAll(keys, HASH_KEYS);
+        for (String key : keys) {
+            Mono<Map<String, String>> entries = fetch(key).cache();
+            entries.subscribe(null, t -> {});
+            prefetched.put(key, entries);
+        }
+        log.info("prefetch {} config hashes", keys.size());
+    }
+
+    /**
+     * @param preloader null if absent, then the hash is fetched from redis
+     * @param reloader  how to reconcile the local cache loaded from the hash with redis,
+     *                  null if the local cache can't be loaded from snapshot
+     * @return the prefetched entries of the hash if it's the first fetch, otherwise the entries fetched from redis
+     */
+    public static Flux<Map.Entry<Object, Object>> entries(@Nullable ConfigPreloader preloader, ReactiveStringRedisTemplate rt, String hashKey,
+                                                          @Nullable Reloader reloader) {
+        if (preloader == null) {
+            return rt.opsForHash().entries(hashKey);
+        }
+        return preloader.entries(hashKey, reloader);
+    }
+
+    public Flux<Map.Entry<Object, Object>> entries(String hashKey, @Nullable Reloader reloader) {
+        Mono<Map<String, String>> entries = prefetched.remove(hashKey);
+        if (entries == null) {
+            return rt.opsForHash().entries(hashKey);
+        }
+        if (reloader != null && snapshotEnabled) {
+            reloaders.put(hashKey, reloader);
+            Map<String, String> s = getSnapshot().get(hashKey);
+            if (s != null) {
+                if (startFromSnapshot) {
+                    entries = Mono.just(s);
+                    fromSnapshot.put(hashKey, reloader);
+                    log.info("load {} from snapshot", hashKey);
+                } else {
+                    entries = entries.timeout(Duration.ofMillis(redisTimeoutMillis))
+                                     .onErrorResume(
+                                             t -> {
+                                                 log.warn("fail to fetch " + hashKey + " from redis, load from snapshot", t);
+                                                 fromSnapshot.put(hashKey, reloader);
+                                                 return Mono.just(s);
+                                             }
+                                     );
+                }
+            }
+        }
+        return entries.flatMapMany(m -> Flux.fromIterable(m.entrySet()))
+                      .<Map.Entry<Object, Object>>map(e -> new AbstractMap.SimpleEntry<>(e.getKey(), e.getValue()));
+    }
+
+    private Mono<Map<String, String>> fetch(String hashKey) {
+        return rt.opsForHash().entries(hashKey)
+                 .collectMap(e -> (String) e.getKey(), e -> (String) e.getValue(), HashMap::new);
+    }
+
+    public boolean isLoadedFromSnapshot(String hashKey) {
+        return fromSnapshot.containsKey(hashKey);
+    }
+
+    @EventListener
+    public void applicationReady(ApplicationReadyEvent event) {
+        prefetched.clear();
+        log.info("config loaded in {} millis since prefetch, {} hashes loaded from snapshot", System.currentTimeMillis() - startTime, fromSnapshot.size());
+        if (fromSnapshot.isEmpty()) {
+            Schedulers.boundedElastic().schedule(this::saveSnapshot);
+        } else {
+            reconciling = Schedulers.boundedElastic().schedulePeriodically(this::reconcile, 0, reconcileRetryMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * reconcile the local caches loaded from snapshot with redis, until redis available
+     */
+    void reconcile() {
+        Iterator<Map.Entry<String, Reloader>> it = fromSnapshot.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Reloader> e = it.next();
+            try {
+                e.getValue().reload();
+                it.remove();
+                log.info("reconcile {} loaded from snapshot with redis", e.getKey());
+            } catch (Throwable t) {
+                log.warn("fail to reconcile " + e.getKey() + " loaded from snapshot with redis, retry later", t);
+                return;
+            }
+        }
+        Disposable d = reconciling;
+        if (d != null) {
+            d.dispose();
+        }
+        saveSnapshot();
+    }
+
+    @Scheduled(initialDelayString = "${fizz.config-snapshot.save-interval-millis:600000}",
+               fixedRateString     = "${fizz.config-snapshot.save-interval-millis:600000}")
+    public void saveSnapshot() {
+        if (!snapshotEnabled || !fromSnapshot.isEmpty() || reloaders.isEmpty()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Map<String, Map<String, String>> hashes = new HashMap<>();
+            for (String key : reloaders.keySet()) {
+                ConfigDeltaReconciler reconciler = ConfigDeltaReconciler.getReconciler(key);
+                if (reconciler != null && reconciler.isLoaded()) {
+                    hashes.put(key, reconciler.getValues());
+                } else {
+                    hashes.put(key, fetch(key).block(Duration.ofMillis(redisTimeoutMillis)));
+                }
+            }
+            writeSnapshot(Paths.get(snapshotFile), hashes);
+            log.info("save config snapshot to {} in {} millis", snapshotFile, System.currentTimeMillis() - start);
+        } catch (Throwable t) {
+            log.warn("fail to save config snapshot to " + snapshotFile, t);
+        }
+    }
+
+    private synchronized Map<String, Map<String, String>> getSnapshot() {
+        if (snapshot == null) {
+            Path file = Paths.get(snapshotFile);
+            snapshot = Collections.emptyMap();
+            if (Files.exists(file)) {
+                try {
+                    snapshot = readSnapshot(file);
+                    log.info("read config snapshot from {}, last modified at {}", file, Files.getLastModifiedTime(file));
+                } catch (Throwable t) {
+                    log.warn("fail to read config snapshot from " + file, t);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    static void writeSnapshot(Path file, Map<String, Map<String, String>> hashes) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                JacksonUtils.getObjectMapper().writeValue(out, hashes);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    static Map<String, Map<String, String>> readSnapshot(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return JacksonUtils.getObjectMapper().readValue(in, new TypeReference<Map<String, Map<String, String>>>() {});
+        }
+    }
+}
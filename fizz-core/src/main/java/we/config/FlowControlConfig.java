@@ -17,6 +17,7 @@
 
 package we.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,7 +33,9 @@ import we.stats.circuitbreaker.CircuitBreakManager;
 public class FlowControlConfig {
 
     @Bean
-    public FlowStat flowStat(CircuitBreakManager circuitBreakManager) {
-        return new FlowStat(circuitBreakManager);
+    public FlowStat flowStat(CircuitBreakManager circuitBreakManager, @Value("${fizz.flow-stat.heavy-hitters:0}") int heavyHitters) {
+        FlowStat flowStat = new FlowStat(circuitBreakManager);
+        flowStat.setHeavyHitters(heavyHitters);
+        return flowStat;
     }
 }
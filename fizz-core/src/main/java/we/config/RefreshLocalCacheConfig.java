@@ -32,7 +32,8 @@ import we.stats.ratelimit.ResourceRateLimitConfigService;
 import javax.annotation.Resource;
 
 /**
- * refresh config local cache config
+ * refresh config local cache config, only the changed configs are applied to local cache,
+ * all configs are reloaded every {@link RefreshLocalCacheConfigProperties#getFullReloadRounds()} rounds or if reconciliation fails
  * @see ApiConfigService#refreshLocalCache() refresh api config local cache
  * @see ApiConfig2appsService#refreshLocalCache() refresh api config to apps local cache
  * @see ConfigLoader#refreshLocalCache()  refresh aggregate config local cache
@@ -75,19 +76,21 @@ public class RefreshLocalCacheConfig {
     @Resource
     private FizzMangerConfig fizzMangerConfig;
 
+    private long rounds = 0;
+
 //    @Resource
 //    private DegradeRuleService degradeRuleService;
 
     @Scheduled(initialDelayString = "${refresh-local-cache.initial-delay-millis:300000}",
             fixedRateString = "${refresh-local-cache.fixed-rate-millis:300000}")
     public void refreshLocalCache() {
+        rounds++;
+        int fullReloadRounds = refreshLocalCacheConfigProperties.getFullReloadRounds();
+        boolean fullReload = !refreshLocalCacheConfigProperties.isDeltaEnabled() || (fullReloadRounds > 0 && rounds % fullReloadRounds == 0);
+
         if (refreshLocalCacheConfigProperties.isApiConfigCacheRefreshEnabled()) {
             LOGGER.debug("refresh api config local cache");
-            try {
-                apiConfigService.refreshLocalCache();
-            } catch (Throwable t) {
-                LOGGER.warn("refresh api config local cache exception", t);
-            }
+            refreshLocalCache("api config", apiConfigService::reconcileLocalCache, apiConfigService::refreshLocalCache, fullReload);
         }
 
         if (refreshLocalCacheConfigProperties.isApiConfig2AppsCacheRefreshEnabled()) {
@@ -101,38 +104,22 @@ public class RefreshLocalCacheConfig {
 
         if (refreshLocalCacheConfigProperties.isAggregateConfigCacheRefreshEnabled()) {
             LOGGER.debug("refresh aggregate config local cache");
-            try {
-                configLoader.refreshLocalCache();
-            } catch (Exception e) {
-                LOGGER.warn("refresh aggregate config local cache exception", e);
-            }
+            refreshLocalCache("aggregate config", configLoader::reconcileLocalCache, configLoader::refreshLocalCache, fullReload);
         }
 
         if (refreshLocalCacheConfigProperties.isGatewayGroupCacheRefreshEnabled()) {
             LOGGER.debug("refresh gateway group local cache");
-            try {
-                gatewayGroupService.refreshLocalCache();
-            } catch (Throwable t) {
-                LOGGER.warn("refresh gateway group local cache exception", t);
-            }
+            refreshLocalCache("gateway group", gatewayGroupService::reconcileLocalCache, gatewayGroupService::refreshLocalCache, fullReload);
         }
 
         if (refreshLocalCacheConfigProperties.isAppAuthCacheRefreshEnabled()) {
             LOGGER.debug("refresh app auth local cache");
-            try {
-                appService.refreshLocalCache();
-            } catch (Throwable t) {
-                LOGGER.warn("refresh app auth local cache exception", t);
-            }
+            refreshLocalCache("app auth", appService::reconcileLocalCache, appService::refreshLocalCache, fullReload);
         }
 
         if (refreshLocalCacheConfigProperties.isFlowControlRuleCacheRefreshEnabled()) {
             LOGGER.debug("refresh flow control rule local cache");
-            try {
-                resourceRateLimitConfigService.refreshLocalCache();
-            } catch (Throwable t) {
-                LOGGER.warn("refresh flow control rule local cache exception", t);
-            }
+            refreshLocalCache("flow control rule", resourceRateLimitConfigService::reconcileLocalCache, resourceRateLimitConfigService::refreshLocalCache, fullReload);
         }
 
         if (refreshLocalCacheConfigProperties.isRpcServiceCacheRefreshEnabled()) {
@@ -155,4 +142,27 @@ public class RefreshLocalCacheConfig {
 
         fizzMangerConfig.updateMangerUrl();
     }
+
+    /**
+     * reconcile the changed configs if possible, otherwise reload all configs
+     */
+    private void refreshLocalCache(String name, LocalCacheRefresher deltaRefresher, LocalCacheRefresher fullRefresher, boolean fullReload) {
+        if (!fullReload) {
+            try {
+                deltaRefresher.refresh();
+                return;
+            } catch (Throwable t) {
+                LOGGER.warn("reconcile " + name + " local cache exception, reload all", t);
+            }
+        }
+        try {
+            fullRefresher.refresh();
+        } catch (Throwable t) {
+            LOGGER.warn("refresh " + name + " local cache exception", t);
+        }
+    }
+
+    private interface LocalCacheRefresher {
+        void refresh() throws Throwable;
+    }
 }
@@ -54,4 +54,16 @@ public class RefreshLocalCacheConfigProperties {
 
     @Value("${refresh-local-cache.degrade-rule-enabled:false}")
     private boolean degradeRuleCacheRefreshEnabled;
+
+    /**
+     * only reconcile the configs changed by content instead of reloading all configs from redis
+     */
+    @Value("${refresh-local-cache.delta-enabled:true}")
+    private boolean deltaEnabled;
+
+    /**
+     * reload all configs every N refresh rounds even if delta enabled, 0 means never
+     */
+    @Value("${refresh-local-cache.full-reload-rounds:12}")
+    private int fullReloadRounds;
 }
@@ -122,6 +122,9 @@ public class SystemConfig {
 
     private String fizzDedicatedLineClientId;
 
+    @Value("${fizz.dedicated-line.server.request.replay-check:false}")
+    private boolean fizzDedicatedLineServerRequestReplayCheck;
+
     public int fizzDedicatedLineClientRequestTimeout() {
         return fizzDedicatedLineClientRequestTimeout;
     }
@@ -142,6 +145,10 @@ public class SystemConfig {
         return fizzDedicatedLineClientRequestCrypto;
     }
 
+    public boolean fizzDedicatedLineServerRequestReplayCheck() {
+        return fizzDedicatedLineServerRequestReplayCheck;
+    }
+
     @Value("${fizz.dedicated-line.client.id:}")
     public void setFizzDedicatedLineClientId(String id) {
         if (StringUtils.isBlank(id)) {
@@ -0,0 +1,51 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import we.stats.MetricsExporter;
+
+import javax.annotation.Resource;
+
+/**
+ * @author Francis Dong
+ */
+
+@RestController
+@RequestMapping("/admin")
+public class MetricsController {
+
+    @Resource
+    private MetricsExporter metricsExporter;
+
+    /**
+     * @return metrics in Prometheus text format
+     */
+    @GetMapping("/metrics")
+    public Mono<Void> metrics(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().set(HttpHeaders.CONTENT_TYPE, MetricsExporter.CONTENT_TYPE);
+        return response.writeWith(metricsExporter.scrape(response.bufferFactory()));
+    }
+}
@@ -21,6 +21,7 @@ import cn.hutool.core.codec.Base64;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.util.CollectionUtils;
 import we.util.JacksonUtils;
+import we.util.PathPatternIndex;
 
 import java.util.*;
 
@@ -42,9 +43,12 @@ public class DedicatedLine {
 
     public List<ApiDoc> apiDocs           = Collections.emptyList();
 
+    /**
+     * the path patterns of a service and method are indexed when the docs are set, so an auth only matches a few of them
+     */
     @JsonIgnore
     public Map<String/*service*/,
-                                  Map<Object/*method*/, Set<String/*pathPattern*/>>
+                                  Map<Object/*method*/, PathPatternIndex>
            >
            apiDocMap = Collections.emptyMap();
 
@@ -68,14 +72,23 @@ public class DedicatedLine {
         if (CollectionUtils.isEmpty(apiDocs)) {
             apiDocMap = Collections.emptyMap();
         } else {
-            apiDocMap = new HashMap<>();
+            Map<String, Map<Object, Set<String>>> service2methodPathsMap = new HashMap<>();
             for (ApiDoc apiDoc : apiDocs) {
-                Map<Object, Set<String>> methodPathsMap = apiDocMap.computeIfAbsent(apiDoc.service, k -> new HashMap<>());
+                Map<Object, Set<String>> methodPathsMap = service2methodPathsMap.computeIfAbsent(apiDoc.service, k -> new HashMap<>());
                 for (MethodAndPath methodAndPath : apiDoc.methodAndPaths) {
                     Set<String> paths = methodPathsMap.computeIfAbsent(methodAndPath.method, k -> new HashSet<>());
                     paths.add(methodAndPath.path);
                 }
             }
+            Map<String, Map<Object, PathPatternIndex>> m = new HashMap<>();
+            service2methodPathsMap.forEach(
+                    (service, methodPathsMap) -> {
+                        Map<Object, PathPatternIndex> method2index = new HashMap<>();
+                        methodPathsMap.forEach((method, paths) -> method2index.put(method, new PathPatternIndex(paths)));
+                        m.put(service, method2index);
+                    }
+            );
+            apiDocMap = m;
         }
     }
 
@@ -64,9 +64,7 @@ class DedicatedLineHttpHandler implements HttpHandler {
 
     private static final Set<String> disconnected_client_exceptions   = new HashSet<>(Arrays.asList("AbortedException", "ClientAbortException", "EOFException", "EofException"));
 
-    private static final String      symmetricEncryptor               = "symmEncpT";
-
-    private static final String      symmetricDecryptor               = "symmDecpT";
+    private static final SymmetricCryptoContext aes                   = SymmetricCryptoContext.of(SymmetricAlgorithm.AES);
 
     private WebSessionManager           sessionManager;
     private ServerCodecConfigurer       serverCodecConfigurer;
@@ -175,69 +173,27 @@ class DedicatedLineHttpHandler implements HttpHandler {
     }
 
     private Flux<DataBuffer> encrypt(Flux<DataBuffer> bodyFlux, String cryptoKey) {
-        return NettyDataBufferUtils.join(bodyFlux).defaultIfEmpty(NettyDataBufferUtils.EMPTY_DATA_BUFFER)
-                                   .flatMap(
-                                           body -> {
-                                               if (body == NettyDataBufferUtils.EMPTY_DATA_BUFFER) {
-                                                   return Mono.empty();
-                                               } else {
-                                                   byte[] bytes = null;
-                                                   if (body instanceof PooledDataBuffer) {
-                                                       try {
-                                                           bytes = NettyDataBufferUtils.copyBytes(body);
-                                                       } finally {
-                                                           NettyDataBufferUtils.release(body);
-                                                       }
-                                                   } else {
-                                                       bytes = body.asByteBuffer().array();
-                                                   }
-                                                   SymmetricEncryptor encryptor = (SymmetricEncryptor) ThreadContext.get(symmetricEncryptor);
-                                                   if (encryptor == null) {
-                                                       encryptor = new SymmetricEncryptor(SymmetricAlgorithm.AES, cryptoKey);
-                                                       ThreadContext.set(symmetricEncryptor, encryptor);
-                                                   } else {
-                                                       if (!encryptor.secretKey.equals(cryptoKey)) {
-                                                           encryptor = new SymmetricEncryptor(SymmetricAlgorithm.AES, cryptoKey);
-                                                           ThreadContext.set(symmetricEncryptor, encryptor);
-                                                       }
-                                                   }
-                                                   DataBuffer from = NettyDataBufferUtils.from(encryptor.encrypt(bytes));
-                                                   return Mono.just(from);
-                                               }
-                                           }
-                                   )
-                                   .flux();
+        return crypt(bodyFlux, cryptoKey, true);
     }
 
     private Flux<DataBuffer> decrypt(Flux<DataBuffer> bodyFlux, String cryptoKey) {
+        return crypt(bodyFlux, cryptoKey, false);
+    }
+
+    private Flux<DataBuffer> crypt(Flux<DataBuffer> bodyFlux, String cryptoKey, boolean encrypt) {
         return NettyDataBufferUtils.join(bodyFlux).defaultIfEmpty(NettyDataBufferUtils.EMPTY_DATA_BUFFER)
                                    .flatMap(
                                            body -> {
                                                if (body == NettyDataBufferUtils.EMPTY_DATA_BUFFER) {
                                                    return Mono.empty();
-                                               } else {
-                                                   byte[] bytes = null;
+                                               }
+                                               try {
+                                                   // the cipher reads the body buffer in place, the key and the cipher of it are reused
+                                                   return Mono.just(encrypt ? aes.encrypt(cryptoKey, body) : aes.decrypt(cryptoKey, body));
+                                               } finally {
                                                    if (body instanceof PooledDataBuffer) {
-                                                       try {
-                                                           bytes = NettyDataBufferUtils.copyBytes(body);
-                                                       } finally {
-                                                           NettyDataBufferUtils.release(body);
-                                                       }
-                                                   } else {
-                                                       bytes = body.asByteBuffer().array();
-                                                   }
-                                                   SymmetricDecryptor decryptor = (SymmetricDecryptor) ThreadContext.get(symmetricDecryptor);
-                                                   if (decryptor == null) {
-                                                       decryptor = new SymmetricDecryptor(SymmetricAlgorithm.AES, cryptoKey);
-                                                       ThreadContext.set(symmetricDecryptor, decryptor);
-                                                   } else {
-                                                       if (!decryptor.secretKey.equals(cryptoKey)) {
-                                                           decryptor = new SymmetricDecryptor(SymmetricAlgorithm.AES, cryptoKey);
-                                                           ThreadContext.set(symmetricDecryptor, decryptor);
-                                                       }
+                                                       NettyDataBufferUtils.release(body);
                                                    }
-                                                   DataBuffer from = NettyDataBufferUtils.from(decryptor.decrypt(bytes));
-                                                   return Mono.just(from);
                                                }
                                            }
                                    )
@@ -28,6 +28,7 @@ import we.config.AggregateRedisConfig;
 import we.config.SystemConfig;
 import we.util.JacksonUtils;
 import we.util.Result;
+import we.util.VersionedIndex;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -45,7 +46,10 @@ public class DedicatedLineInfoService {
 
     private static final Logger log = LoggerFactory.getLogger(DedicatedLineInfoService.class);
 
-    private Map<String , DedicatedLineInfo> serviceDedicatedLineInfoMap = new HashMap<>(32);
+    /**
+     * service -> dedicated line info, the services of an info are changed in one swap
+     */
+    private final VersionedIndex<String, DedicatedLineInfo> serviceDedicatedLineInfoMap = new VersionedIndex<>();
 
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
@@ -72,14 +76,16 @@ public class DedicatedLineInfoService {
                              if (!es.isEmpty()) {
                                  String json = null;
                                  try {
+                                     Map<String, DedicatedLineInfo> service2info = new HashMap<>(32);
                                      for (Map.Entry<Object, Object> e : es) {
                                          json = (String) e.getValue();
                                          DedicatedLineInfo info = JacksonUtils.readValue(json, DedicatedLineInfo.class);
                                          for (String service : info.services) {
-                                             serviceDedicatedLineInfoMap.put(service, info);
+                                             service2info.put(service, info);
                                          }
                                          log.info("init dedicated line info: {}", info);
                                      }
+                                     serviceDedicatedLineInfoMap.replace(service2info);
                                  } catch (Throwable t) {
                                      result.code = Result.FAIL;
                                      result.msg  = "init dedicated line info error, info: " + json;
@@ -126,17 +132,7 @@ public class DedicatedLineInfoService {
                       String message = msg.getMessage();
                       try {
                           DedicatedLineInfo info = JacksonUtils.readValue(message, DedicatedLineInfo.class);
-                          if (info.isDeleted) {
-                              for (String service : info.services) {
-                                  serviceDedicatedLineInfoMap.remove(service);
-                              }
-                              log.info("remove dedicated line info: {}", info);
-                          } else {
-                              for (String service : info.services) {
-                                  serviceDedicatedLineInfoMap.put(service, info);
-                              }
-                              log.info("update dedicated line info: {}", info);
-                          }
+                          update(info);
                       } catch (Throwable t) {
                           log.error("update dedicated line info error, {}", message, t);
                       }
@@ -146,6 +142,28 @@ public class DedicatedLineInfoService {
         return result;
     }
 
+    void update(DedicatedLineInfo info) {
+        if (info.isDeleted) {
+            serviceDedicatedLineInfoMap.update(
+                    m -> {
+                        for (String service : info.services) {
+                            m.remove(service);
+                        }
+                    }
+            );
+            log.info("remove dedicated line info: {}", info);
+        } else {
+            serviceDedicatedLineInfoMap.update(
+                    m -> {
+                        for (String service : info.services) {
+                            m.put(service, info);
+                        }
+                    }
+            );
+            log.info("update dedicated line info: {}", info);
+        }
+    }
+
     public DedicatedLineInfo get(String service) {
         return serviceDedicatedLineInfoMap.get(service);
     }
@@ -29,15 +29,15 @@ import we.config.AggregateRedisConfig;
 import we.config.SystemConfig;
 import we.plugin.auth.ApiConfig;
 import we.util.JacksonUtils;
+import we.util.PathPatternIndex;
 import we.util.Result;
-import we.util.UrlTransformUtils;
+import we.util.VersionedIndex;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * @author hongqiaowei
@@ -49,7 +49,10 @@ public class DedicatedLineService {
 
     private static final Logger log = LoggerFactory.getLogger(DedicatedLineService.class);
 
-    private Map<String, DedicatedLine> dedicatedLineMap = new HashMap<>(32);
+    /**
+     * pair code id -> dedicated line, swapped as a whole when a line changes
+     */
+    private final VersionedIndex<String, DedicatedLine> dedicatedLineMap = new VersionedIndex<>();
 
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
@@ -76,11 +79,13 @@ public class DedicatedLineService {
                              if (!es.isEmpty()) {
                                  String json = null;
                                  try {
+                                     Map<String, DedicatedLine> dedicatedLines = new HashMap<>(es.size() * 4 / 3 + 1);
                                      for (Map.Entry<Object, Object> e : es) {
                                          json = (String) e.getValue();
                                          DedicatedLine dl = JacksonUtils.readValue(json, DedicatedLine.class);
-                                         dedicatedLineMap.put(dl.pairCodeId, dl);
+                                         dedicatedLines.put(dl.pairCodeId, dl);
                                      }
+                                     dedicatedLineMap.replace(dedicatedLines);
                                  } catch (Throwable t) {
                                      result.code = Result.FAIL;
                                      result.msg  = "init dedicated line error, json: " + json;
@@ -127,11 +132,7 @@ public class DedicatedLineService {
                       String message = msg.getMessage();
                       try {
                           DedicatedLine dl = JacksonUtils.readValue(message, DedicatedLine.class);
-                          if (dl.isDeleted) {
-                              dedicatedLineMap.remove(dl.pairCodeId);
-                          } else {
-                              dedicatedLineMap.put(dl.pairCodeId, dl);
-                          }
+                          update(dl);
                       } catch (Throwable t) {
                           log.error("update dedicated line error, {}", message, t);
                       }
@@ -141,6 +142,14 @@ public class DedicatedLineService {
         return result;
     }
 
+    void update(DedicatedLine dl) {
+        if (dl.isDeleted) {
+            dedicatedLineMap.remove(dl.pairCodeId);
+        } else {
+            dedicatedLineMap.put(dl.pairCodeId, dl);
+        }
+    }
+
     public boolean auth(String pairCodeId, HttpMethod method, String service, String path) {
         DedicatedLine dedicatedLine = dedicatedLineMap.get(pairCodeId);
         if (dedicatedLine == null) {
@@ -149,33 +158,28 @@ public class DedicatedLineService {
         if (dedicatedLine.servicesWithoutApiDocs.contains(service)) {
             return true;
         }
-        Map<Object, Set<String>> methodPathsMap = dedicatedLine.apiDocMap.get(service);
+        Map<Object, PathPatternIndex> methodPathsMap = dedicatedLine.apiDocMap.get(service);
         if (methodPathsMap == null) {
             return false;
         }
-        Set<String> pathPatterns = methodPathsMap.get(method);
+        PathPatternIndex pathPatterns = methodPathsMap.get(method);
         if (pathPatterns != null) {
-            if (pathPatternMatch(path, pathPatterns)) {
+            if (pathPatterns.matches(path)) {
                 return true;
             }
         }
         pathPatterns = methodPathsMap.get(ApiConfig.ALL_METHOD);
         if (pathPatterns != null) {
-            return pathPatternMatch(path, pathPatterns);
+            return pathPatterns.matches(path);
         }
         return false;
     }
 
-    private boolean pathPatternMatch(String path, Set<String> pathPatterns) {
-        if (pathPatterns.contains(path)) {
-            return true;
-        }
-        for (String pathPattern : pathPatterns) {
-            if (UrlTransformUtils.ANT_PATH_MATCHER.match(pathPattern, path)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * @return the version of the dedicated lines, which is increased by each change
+     */
+    public long getVersion() {
+        return dedicatedLineMap.version();
     }
 
     public String getSignSecretKey(String pairCodeId) {
@@ -17,8 +17,7 @@
 
 package we.dedicated_line;
 
-import we.util.Consts;
-import we.util.ThreadContext;
+import we.util.SignUtils;
 
 /**
  * @author hongqiaowei
@@ -30,11 +29,7 @@ public abstract class DedicatedLineUtils extends org.apache.commons.codec.digest
     }
 
     public static String sign(String pairCodeId, String timestamp, String secretKey) {
-        StringBuilder b = ThreadContext.getStringBuilder(ThreadContext.sb0);
-        b.append(pairCodeId).append(Consts.S.UNDER_LINE)
-         .append(timestamp) .append(Consts.S.UNDER_LINE)
-         .append(secretKey);
-        return sha256Hex(b.toString());
+        return SignUtils.sha256Hex(pairCodeId, timestamp, secretKey);
     }
 
     public static String sign(String pairCodeId, long timestamp, String secretKey) {
@@ -42,8 +37,7 @@ public abstract class DedicatedLineUtils extends org.apache.commons.codec.digest
     }
 
     public static boolean checkSign(String pairCodeId, String timestamp, String secretKey, String sign) {
-        String s = sign(pairCodeId, timestamp, secretKey);
-        return s.equals(sign);
+        return SignUtils.checkSha256(pairCodeId, timestamp, secretKey, sign);
     }
 
     public static boolean checkSign(String pairCodeId, long timestamp, String secretKey, String sign) {
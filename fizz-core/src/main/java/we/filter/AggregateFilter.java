@@ -57,6 +57,7 @@ import we.fizz.Pipeline;
 import we.fizz.input.Input;
 import we.flume.clients.log4j2appender.LogService;
 import we.plugin.auth.ApiConfig;
+import we.util.FizzRequestContext;
 import we.util.MapUtil;
 import we.util.NettyDataBufferUtils;
 import we.util.WebUtils;
@@ -130,10 +131,10 @@ public class AggregateFilter implements WebFilter {
 		Input input = aggregateResource.getInput();
 
 		Map<String, Object> headers = MapUtil.headerToHashMap(request.getHeaders());
-		Map<String, Object> fizzHeaders = (Map<String, Object>) exchange.getAttributes().get(WebUtils.APPEND_HEADERS);
+		Map<String, String> fizzHeaders = FizzRequestContext.get(exchange).getAppendHeaders();
 		if (fizzHeaders != null && !fizzHeaders.isEmpty()) {
-			Set<Entry<String, Object>> entrys = fizzHeaders.entrySet();
-			for (Entry<String, Object> entry : entrys) {
+			Set<Entry<String, String>> entrys = fizzHeaders.entrySet();
+			for (Entry<String, String> entry : entrys) {
 				headers.put(entry.getKey().toUpperCase(), entry.getValue());
 			}
 		}
@@ -36,4 +36,28 @@ public class AggregateFilterProperties {
     
     @Value("${fizz.aggregate.writeMapNullValue:false}")
     private boolean writeMapNullValue;
+
+    /**
+     * an aggregate API in debug mode traces one of every {@code trace-sample-every} requests
+     */
+    @Value("${fizz.aggregate.trace.sample-every:1}")
+    private int traceSampleEvery = 1;
+
+    /**
+     * max requests traced per second for an aggregate API, not limited if less than 1
+     */
+    @Value("${fizz.aggregate.trace.max-per-second:10}")
+    private int traceMaxPerSecond = 10;
+
+    /**
+     * the headers, bodies and results traced are truncated to the chars
+     */
+    @Value("${fizz.aggregate.trace.max-payload-length:4096}")
+    private int traceMaxPayloadLength = 4096;
+
+    /**
+     * max traces waiting to be logged, the ones beyond are dropped
+     */
+    @Value("${fizz.aggregate.trace.queue-size:1024}")
+    private int traceQueueSize = 1024;
 }
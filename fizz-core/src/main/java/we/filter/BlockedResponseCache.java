@@ -0,0 +1,212 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.filter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Mono;
+import we.stats.circuitbreaker.CircuitBreakManager;
+import we.stats.circuitbreaker.CircuitBreaker;
+import we.stats.ratelimit.ResourceRateLimitConfig;
+import we.stats.ratelimit.ResourceRateLimitConfigService;
+import we.util.ResourceIdUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Responses to the requests blocked by rate limit or circuit breaker, rendered once per resource and config version,
+ * so a blocked request is answered by writing a retained duplicate of the rendered content.
+ * <p>
+ * The rendered responses are dropped when the rate limit configs or circuit breakers change.
+ *
+ * @author zhongjie
+ */
+public class BlockedResponseCache {
+
+	private static final int MAX_RESOURCES = 10_000;
+
+	public static class BlockedResponse {
+
+		public  final HttpStatus status;
+
+		@Nullable
+		public  final String     contentType;
+
+		private final String     contentLength;
+
+		private final byte[]     bytes;
+
+		private final ByteBuf    content;
+
+		BlockedResponse(HttpStatus status, @Nullable String contentType, @Nullable String content) {
+			this.status        = status;
+			this.contentType   = contentType;
+			this.bytes         = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+			this.contentLength = String.valueOf(bytes.length);
+			this.content       = Unpooled.wrappedBuffer(bytes);
+		}
+
+		public Mono<Void> writeTo(ServerHttpResponse resp, @Nullable String traceId) {
+			resp.setStatusCode(status);
+			HttpHeaders headers = resp.getHeaders();
+			if (contentType != null) {
+				headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+			}
+			headers.set(HttpHeaders.CONTENT_LENGTH, contentLength);
+			if (traceId != null) {
+				headers.set("traceId", traceId);
+			}
+			return resp.writeWith(Mono.just(body(resp.bufferFactory())));
+		}
+
+		DataBuffer body(DataBufferFactory f) {
+			if (f instanceof NettyDataBufferFactory) {
+				// the content is never released by the cache, so it can be duplicated after dropped
+				return ((NettyDataBufferFactory) f).wrap(content.retainedDuplicate());
+			}
+			return f.wrap(bytes);
+		}
+
+		public String getContent() {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static class Rendered {
+
+		final long                                       version;
+
+		final String                                     defaultContentType;
+
+		final String                                     defaultContent;
+
+		final ConcurrentHashMap<String, BlockedResponse> responses = new ConcurrentHashMap<>();
+
+		Rendered(long version, String defaultContentType, String defaultContent) {
+			this.version            = version;
+			this.defaultContentType = defaultContentType;
+			this.defaultContent     = defaultContent;
+		}
+	}
+
+	private final ResourceRateLimitConfigService resourceRateLimitConfigService;
+
+	private final CircuitBreakManager            circuitBreakManager;
+
+	private final FlowControlFilterProperties    flowControlFilterProperties;
+
+	private volatile Rendered                    rateLimitResponses    = new Rendered(-1, null, null);
+
+	private volatile Rendered                    circuitBreakResponses = new Rendered(-1, null, null);
+
+	public BlockedResponseCache(ResourceRateLimitConfigService resourceRateLimitConfigService, CircuitBreakManager circuitBreakManager,
+	                            FlowControlFilterProperties flowControlFilterProperties) {
+		this.resourceRateLimitConfigService = resourceRateLimitConfigService;
+		this.circuitBreakManager            = circuitBreakManager;
+		this.flowControlFilterProperties    = flowControlFilterProperties;
+	}
+
+	/**
+	 * @param blockedResourceId the resource whose rate limit is exceeded
+	 */
+	public BlockedResponse getRateLimitResponse(String blockedResourceId) {
+		Rendered r = rateLimitResponses;
+		long version = resourceRateLimitConfigService.getVersion();
+		if (r.version != version) {
+			r = new Rendered(version, null, null);
+			rateLimitResponses = r;
+		}
+		BlockedResponse resp = r.responses.get(blockedResourceId);
+		if (resp == null) {
+			resp = renderRateLimitResponse(blockedResourceId);
+			put(r, blockedResourceId, resp);
+		}
+		return resp;
+	}
+
+	private BlockedResponse renderRateLimitResponse(String blockedResourceId) {
+		String rt = null, rc = null;
+		ResourceRateLimitConfig c = resourceRateLimitConfigService.getResourceRateLimitConfig(ResourceIdUtils.NODE_RESOURCE);
+		if (c != null) {
+			rt = c.responseType;
+			rc = c.responseContent;
+		}
+		c = resourceRateLimitConfigService.getResourceRateLimitConfig(blockedResourceId);
+		if (c != null) {
+			if (StringUtils.isNotBlank(c.responseType)) {
+				rt = c.responseType;
+			}
+			if (StringUtils.isNotBlank(c.responseContent)) {
+				rc = c.responseContent;
+			}
+		}
+		return new BlockedResponse(HttpStatus.OK, rt, rc);
+	}
+
+	/**
+	 * @param blockedResourceId the resource whose circuit breaker is open
+	 * @param service           the service of the request
+	 */
+	public BlockedResponse getCircuitBreakResponse(String blockedResourceId, String service) {
+		Rendered r = circuitBreakResponses;
+		long version = circuitBreakManager.getVersion();
+		String defaultContentType = flowControlFilterProperties.getDegradeDefaultResponseContentType();
+		String defaultContent     = flowControlFilterProperties.getDegradeDefaultResponseContent();
+		if (r.version != version || r.defaultContentType != defaultContentType || r.defaultContent != defaultContent) {
+			r = new Rendered(version, defaultContentType, defaultContent);
+			circuitBreakResponses = r;
+		}
+		BlockedResponse resp = r.responses.get(blockedResourceId);
+		if (resp == null) {
+			resp = renderCircuitBreakResponse(blockedResourceId, service, defaultContentType, defaultContent);
+			put(r, blockedResourceId, resp);
+		}
+		return resp;
+	}
+
+	private BlockedResponse renderCircuitBreakResponse(String blockedResourceId, String service, String contentType, String content) {
+		CircuitBreaker cb = circuitBreakManager.getCircuitBreaker(blockedResourceId);
+		if (cb == null) {
+			cb = circuitBreakManager.getCircuitBreaker(ResourceIdUtils.buildResourceId(null, null, null, service, null));
+		}
+		if (cb == null || cb.responseContentType == null) {
+			cb = circuitBreakManager.getCircuitBreaker(ResourceIdUtils.SERVICE_DEFAULT_RESOURCE);
+		}
+		if (cb != null && cb.responseContentType != null) {
+			contentType = cb.responseContentType;
+			content     = cb.responseContent;
+		}
+		return new BlockedResponse(HttpStatus.FORBIDDEN, contentType, content);
+	}
+
+	private static void put(Rendered r, String resource, BlockedResponse resp) {
+		if (r.responses.size() >= MAX_RESOURCES) {
+			r.responses.clear();
+		}
+		r.responses.put(resource, resp);
+	}
+}
@@ -18,17 +18,16 @@
 package we.filter;
 
 import com.alibaba.fastjson.JSON;
+import io.netty.buffer.ByteBuf;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.PooledDataBuffer;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
@@ -49,7 +48,10 @@ import we.util.NettyDataBufferUtils;
 import we.util.ThreadContext;
 import we.util.WebUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
@@ -68,8 +70,6 @@ public class CallbackFilter extends FizzWebFilter {
 
     private static final String     s2im            = "s2imT";
 
-    private static final String     json            = "json";
-
     @Resource
     private DiscoveryClientUriSelector discoveryClientSelector;
 
@@ -88,6 +88,32 @@ public class CallbackFilter extends FizzWebFilter {
     @Resource
     private GatewayGroupService gatewayGroupService;
 
+    private CallbackReqPusher callbackReqPusher;
+
+    @PostConstruct
+    public void init() {
+        callbackReqPusher = new CallbackReqPusher(callbackFilterProperties.getQueueSize(), callbackFilterProperties.getMaxBufferedBytes(),
+                                                  callbackFilterProperties.getBodyEncoding(), this::publish);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        callbackReqPusher.close(5000);
+    }
+
+    private Mono<?> publish(ByteBuf message) {
+        if ("kafka".equals(callbackFilterProperties.getDest())) { // for internal use
+            log.warn(message.toString(StandardCharsets.UTF_8), LogService.HANDLE_STGY, LogService.toKF(callbackFilterProperties.getQueue()));
+            return Mono.empty();
+        }
+        ByteBuffer channel = StandardCharsets.UTF_8.encode(callbackFilterProperties.getQueue());
+        return rt.execute(connection -> connection.pubSubCommands().publish(channel, message.nioBuffer())).then();
+    }
+
+    public CallbackReqPusher getCallbackReqPusher() {
+        return callbackReqPusher;
+    }
+
     @Override
     public Mono<Void> doFilter(ServerWebExchange exchange, WebFilterChain chain) {
 
@@ -104,26 +130,26 @@ public class CallbackFilter extends FizzWebFilter {
                     DataBufferUtils.join(req.getBody()).defaultIfEmpty(NettyDataBufferUtils.EMPTY_DATA_BUFFER)
                             .flatMap(
                                     b -> {
-                                        DataBuffer body = null;
-                                        if (b != NettyDataBufferUtils.EMPTY_DATA_BUFFER) {
-                                            if (b instanceof PooledDataBuffer) {
-                                                try {
-                                                    body = NettyDataBufferUtils.copy2heap(b);
-                                                } finally {
-                                                    NettyDataBufferUtils.release(b);
+                                        // the pusher and the receivers get their own retained slices of the body, so it is released here however the request ends
+                                        return Mono.using(
+                                                () -> b,
+                                                joined -> {
+                                                    DataBuffer body = joined == NettyDataBufferUtils.EMPTY_DATA_BUFFER ? null : joined;
+                                                    HashMap<String, ServiceInstance> service2instMap = getService2instMap(ac);
+                                                    HttpHeaders headers = WebUtils.mergeAppendHeaders(exchange);
+                                                    pushReq2manager(exchange, headers, body, service2instMap, cc.id, ac.gatewayGroups.iterator().next());
+                                                    if (cc.type == CallbackConfig.Type.ASYNC || StringUtils.isNotBlank(cc.respBody)) {
+                                                        return directResponse(exchange, cc);
+                                                    } else {
+                                                        return callbackService.requestBackends(exchange, headers, body, cc, service2instMap);
+                                                    }
+                                                },
+                                                joined -> {
+                                                    if (joined != NettyDataBufferUtils.EMPTY_DATA_BUFFER) {
+                                                        NettyDataBufferUtils.release(joined);
+                                                    }
                                                 }
-                                            } else {
-                                                body = b;
-                                            }
-                                        }
-                                        HashMap<String, ServiceInstance> service2instMap = getService2instMap(ac);
-                                        HttpHeaders headers = WebUtils.mergeAppendHeaders(exchange);
-                                        pushReq2manager(exchange, headers, body, service2instMap, cc.id, ac.gatewayGroups.iterator().next());
-                                        if (cc.type == CallbackConfig.Type.ASYNC || StringUtils.isNotBlank(cc.respBody)) {
-                                            return directResponse(exchange, cc);
-                                        } else {
-                                            return callbackService.requestBackends(exchange, headers, body, cc, service2instMap);
-                                        }
+                                        );
                                     }
                             )
                     ;
@@ -169,7 +195,6 @@ public class CallbackFilter extends FizzWebFilter {
     private static final String _path              = "\"path\":";
     private static final String _query             = "\"query\":";
     private static final String _headers           = "\"headers\":";
-    private static final String _body              = "\"body\":";
     private static final String _callbackConfigId  = "\"callbackConfigId\":";
     private static final String _receivers         = "\"receivers\":";
     private static final String _gatewayGroup      = "\"gatewayGroup\":";
@@ -212,27 +237,12 @@ public class CallbackFilter extends FizzWebFilter {
         // String gg = gatewayGroupService.currentGatewayGroupSet.iterator().next();
         b.append(_gatewayGroup);           toJsonStringValue(b, gatewayGroup);
 
-        if (body != null) {
-                                                                                                                                   b.append(Consts.S.COMMA);
-        String bodyStr = body.toString(StandardCharsets.UTF_8);
-        MediaType contentType = req.getHeaders().getContentType();
-        if (contentType != null && contentType.getSubtype().equalsIgnoreCase(json)) {
-        b.append(_body);                   b.append(JSON.toJSONString(bodyStr));
-        } else {
-        b.append(_body);                   toJsonStringValue(b, bodyStr);
-        }
-        }
-
-        b.append(Consts.S.RIGHT_BRACE);
-        String msg = b.toString();
-        if ("kafka".equals(callbackFilterProperties.getDest())) { // for internal use
-            log.warn(msg, LogService.HANDLE_STGY, LogService.toKF(callbackFilterProperties.getQueue()));
-        } else {
-            rt.convertAndSend(callbackFilterProperties.getQueue(), msg).subscribe();
-        }
+        // body and closing brace are written by pusher
+        String head = b.toString();
         if (log.isDebugEnabled()) {
-            log.debug("push callback req: " + msg);
+            log.debug("push callback req: " + head + (body == null ? "}" : ",\"body\":...}"));
         }
+        callbackReqPusher.push(head, NettyDataBufferUtils.retainedSlice(body));
     }
 
     private static void toJsonStringValue(StringBuilder b, String value) {
@@ -36,4 +36,22 @@ public class CallbackFilterProperties {
     @Value("${callback.push.queue:fizz_callback_channel}")
     private String queue;
 
+    /**
+     * max callback requests waiting to be pushed, the ones beyond are not pushed
+     */
+    @Value("${callback.push.queue-size:1024}")
+    private int queueSize;
+
+    /**
+     * max size of callback requests waiting to be pushed or being pushed
+     */
+    @Value("${callback.push.max-buffered-bytes:67108864}")
+    private long maxBufferedBytes;
+
+    /**
+     * text: request body is pushed as JSON string, base64: pushed as base64 string with "bodyEncoding":"base64", for binary body
+     */
+    @Value("${callback.push.body-encoding:text}")
+    private String bodyEncoding;
+
 }
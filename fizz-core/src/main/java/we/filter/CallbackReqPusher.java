@@ -0,0 +1,292 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.filter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.util.ByteProcessor;
+import io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Mono;
+import we.util.NettyDataBufferUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes the callback requests to fizz-manager in a background thread, so the request thread doesn't encode the request body
+ * and send it to redis itself.
+ * <p>
+ * The request body is not copied to heap or decoded to string, it's retained until the message is built,
+ * then written to the message as a JSON string byte by byte, or as base64 if the body encoding is {@link #BODY_ENCODING_BASE64}.
+ * <p>
+ * The requests are buffered in a bounded queue, the ones beyond the queue size or the max buffered bytes are dropped and counted,
+ * the buffered bytes include the messages being published.
+ *
+ * @author zhongjie
+ */
+public class CallbackReqPusher {
+
+    /**
+     * Publishes a message, called in the background thread only.
+     */
+    public interface Publisher {
+
+        /**
+         * @param message JSON message in UTF-8, released after the returned mono terminated
+         */
+        Mono<?> publish(ByteBuf message);
+    }
+
+    public  static final String BODY_ENCODING_TEXT   = "text";
+
+    public  static final String BODY_ENCODING_BASE64 = "base64";
+
+    private static final Logger log                  = LoggerFactory.getLogger(CallbackReqPusher.class);
+
+    private static final int    REQ_OVERHEAD_BYTES   = 128;
+
+    private static final byte[] _body                = ",\"body\":".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] _bodyEncoding        = ",\"bodyEncoding\":\"base64\"".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] HEX                  = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    private static final ByteProcessor NO_ESCAPE     = b -> (b & 0xff) >= 0x20 && b != '"' && b != '\\';
+
+    private static class Req {
+
+        final String     head;
+
+        final DataBuffer body;
+
+        final long       size;
+
+        Req(String head, DataBuffer body) {
+            this.head = head;
+            this.body = body;
+            size = REQ_OVERHEAD_BYTES + head.length() + (body == null ? 0 : body.readableByteCount());
+        }
+    }
+
+    private final Queue<Req>       queue;
+
+    private final long             maxBufferedBytes;
+
+    private final boolean          base64;
+
+    private final Publisher        publisher;
+
+    private final ByteBufAllocator allocator     = ByteBufAllocator.DEFAULT;
+
+    private final AtomicLong       bufferedBytes = new AtomicLong();
+
+    private final AtomicLong       dropped       = new AtomicLong();
+
+    private final AtomicLong       published     = new AtomicLong();
+
+    private final AtomicLong       publishFailed = new AtomicLong();
+
+    private final Thread           thread;
+
+    private volatile boolean       closed        = false;
+
+    /** the background thread is parked or about to park, and should be unparked by a push */
+    private volatile boolean       waiting       = false;
+
+    /**
+     * @param queueSize        max requests buffered, rounded up to power of 2
+     * @param maxBufferedBytes max size of requests buffered or being published
+     * @param bodyEncoding     {@link #BODY_ENCODING_TEXT} or {@link #BODY_ENCODING_BASE64}
+     */
+    public CallbackReqPusher(int queueSize, long maxBufferedBytes, String bodyEncoding, Publisher publisher) {
+        this.queue            = PlatformDependent.newFixedMpscQueue(queueSize);
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.base64           = BODY_ENCODING_BASE64.equalsIgnoreCase(bodyEncoding);
+        this.publisher        = publisher;
+        thread = new Thread(this::run, "fizz-callback-push");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param head the JSON object of the request without body and the closing brace
+     * @param body retained by the caller and released by the pusher, can be shared with others by {@link NettyDataBufferUtils#retainedSlice}
+     * @return false if the request is dropped because the queue is full
+     */
+    public boolean push(String head, @Nullable DataBuffer body) {
+        Req req = new Req(head, body);
+        if (closed || bufferedBytes.addAndGet(req.size) > maxBufferedBytes || !queue.offer(req)) {
+            bufferedBytes.addAndGet(-req.size);
+            dropped.incrementAndGet();
+            NettyDataBufferUtils.release(body);
+            return false;
+        }
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            Req req = queue.poll();
+            if (req == null) {
+                // a push after the waiting flag is set sees it and unparks the thread, one before is seen by the check here
+                waiting = true;
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+            } else {
+                publish(req);
+            }
+        }
+    }
+
+    private void publish(Req req) {
+        ByteBuf message = null;
+        try {
+            message = toMessage(req);
+        } catch (Throwable t) {
+            log.warn("build callback message", t);
+            publishFailed.incrementAndGet();
+        } finally {
+            NettyDataBufferUtils.release(req.body);
+        }
+        if (message == null) {
+            bufferedBytes.addAndGet(-req.size);
+            return;
+        }
+        ByteBuf m = message;
+        Mono<?> mono;
+        try {
+            mono = publisher.publish(m);
+        } catch (Throwable t) {
+            mono = Mono.error(t);
+        }
+        mono.doFinally(
+                    s -> {
+                        m.release();
+                        bufferedBytes.addAndGet(-req.size);
+                    }
+            )
+            .subscribe(
+                    r -> {},
+                    t -> {
+                        log.warn("push callback request", t);
+                        publishFailed.incrementAndGet();
+                    },
+                    published::incrementAndGet
+            );
+    }
+
+    private ByteBuf toMessage(Req req) {
+        DataBuffer body = req.body;
+        int bodyLen = body == null ? 0 : body.readableByteCount();
+        ByteBuf message = allocator.buffer(req.head.length() + (base64 ? bodyLen / 3 * 4 + 4 : bodyLen + (bodyLen >> 4)) + 64);
+        try {
+            message.writeCharSequence(req.head, StandardCharsets.UTF_8);
+            if (body != null) {
+                ByteBuf src = body instanceof NettyDataBuffer ? ((NettyDataBuffer) body).getNativeBuffer() : Unpooled.wrappedBuffer(body.asByteBuffer());
+                message.writeBytes(_body);
+                message.writeByte('"');
+                if (base64) {
+                    ByteBuf encoded = Base64.encode(src, src.readerIndex(), src.readableBytes(), false);
+                    try {
+                        message.writeBytes(encoded);
+                    } finally {
+                        encoded.release();
+                    }
+                    message.writeByte('"');
+                    message.writeBytes(_bodyEncoding);
+                } else {
+                    writeJsonString(src, message);
+                    message.writeByte('"');
+                }
+            }
+            message.writeByte('}');
+            return message;
+        } catch (Throwable t) {
+            message.release();
+            throw t;
+        }
+    }
+
+    /**
+     * Escape the quotation mark, reverse solidus and control characters of the UTF-8 bytes, the others are copied as is.
+     */
+    static void writeJsonString(ByteBuf src, ByteBuf dst) {
+        int from = src.readerIndex(), end = src.writerIndex();
+        while (from < end) {
+            int i = src.forEachByte(from, end - from, NO_ESCAPE);
+            if (i == -1) {
+                break;
+            }
+            dst.writeBytes(src, from, i - from);
+            int c = src.getByte(i) & 0xff;
+            dst.writeByte('\\');
+            switch (c) {
+                case '"':  dst.writeByte('"');  break;
+                case '\\': dst.writeByte('\\'); break;
+                case '\n': dst.writeByte('n');  break;
+                case '\r': dst.writeByte('r');  break;
+                case '\t': dst.writeByte('t');  break;
+                case '\b': dst.writeByte('b');  break;
+                case '\f': dst.writeByte('f');  break;
+                default:
+                    dst.writeByte('u').writeByte('0').writeByte('0').writeByte(HEX[c >> 4]).writeByte(HEX[c & 0xf]);
+            }
+            from = i + 1;
+        }
+        dst.writeBytes(src, from, end - from);
+    }
+
+    /**
+     * Stop accepting requests and publish the buffered ones.
+     */
+    public void close(long timeoutMillis) throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(thread);
+        thread.join(timeoutMillis);
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getPublishFailed() {
+        return publishFailed.get();
+    }
+}
@@ -40,6 +40,7 @@ import we.fizz.exception.FizzRuntimeException;
 import we.flume.clients.log4j2appender.LogService;
 import we.legacy.RespEntity;
 import we.util.Consts;
+import we.util.FizzRequestContext;
 import we.util.JacksonUtils;
 import we.util.ThreadContext;
 import we.util.WebUtils;
@@ -126,8 +127,7 @@ public class FilterExceptionHandlerConfig {
             }
 
             Mono<Void> vm;
-            Object fc = exchange.getAttribute(WebUtils.FILTER_CONTEXT);
-            if (fc == null) { // t came from flow control filter
+            if (FizzRequestContext.get(exchange).getPrevFilterResult() == null) { // t came from flow control filter
                 StringBuilder b = ThreadContext.getStringBuilder();
                 WebUtils.request2stringBuilder(exchange, b);
                 log.error(b.toString(), LogService.BIZ_ID, traceId, t);
@@ -21,7 +21,7 @@ import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
-import we.util.WebUtils;
+import we.util.FizzRequestContext;
 
 /**
  * @author hongqiaowei
@@ -31,7 +31,8 @@ public abstract class FizzWebFilter implements WebFilter {
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-        if (WebUtils.isAdminReq(exchange) || WebUtils.isFizzReq(exchange)) {
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        if (ctx.isAdminReq() || ctx.isFizzReq()) {
             return chain.filter(exchange);
         } else {
             return doFilter(exchange, chain);
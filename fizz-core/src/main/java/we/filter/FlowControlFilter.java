@@ -25,7 +25,6 @@ import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
-import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilterChain;
@@ -47,6 +46,7 @@ import we.stats.ratelimit.ResourceRateLimitConfig;
 import we.stats.ratelimit.ResourceRateLimitConfigService;
 import we.util.*;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
@@ -106,6 +106,13 @@ public class FlowControlFilter extends FizzWebFilter {
 	@Resource
 	private FizzMonitorService  fizzMonitorService;
 
+	private BlockedResponseCache blockedResponseCache;
+
+	@PostConstruct
+	public void init() {
+		blockedResponseCache = new BlockedResponseCache(resourceRateLimitConfigService, circuitBreakManager, flowControlFilterProperties);
+	}
+
 	@Override
 	public Mono<Void> doFilter(ServerWebExchange exchange, WebFilterChain chain) {
 
@@ -119,14 +126,14 @@ public class FlowControlFilter extends FizzWebFilter {
 		boolean adminReq = false, proxyTestReq = false, fizzApiReq = false;
 		if (service.equals(admin) || service.equals(actuator)) {
 			adminReq = true;
-			exchange.getAttributes().put(WebUtils.ADMIN_REQUEST, Consts.S.EMPTY);
+			WebUtils.setAdminReq(exchange);
 		} else if (service.equals(SystemConfig.DEFAULT_GATEWAY_TEST)) {
 			proxyTestReq = true;
 		} else {
 			service = WebUtils.getClientService(exchange);
 			if (service.startsWith(_fizz)) {
 				fizzApiReq = true;
-				exchange.getAttributes().put(WebUtils.FIZZ_REQUEST, Consts.S.EMPTY);
+				WebUtils.setFizzReq(exchange);
 			}
 		}
 
@@ -156,33 +163,7 @@ public class FlowControlFilter extends FizzWebFilter {
 				if (BlockType.CIRCUIT_BREAK == result.getBlockType()) {
 					fizzMonitorService.sendAlarm(service, path, FizzMonitorService.CIRCUIT_BREAK_ALARM, null, currentTimeMillis);
 					log.info("{} trigger {} circuit breaker limit", traceId, blockedResourceId, LogService.BIZ_ID, traceId);
-
-					String responseContentType = flowControlFilterProperties.getDegradeDefaultResponseContentType();
-					String responseContent = flowControlFilterProperties.getDegradeDefaultResponseContent();
-
-					CircuitBreaker cb = circuitBreakManager.getCircuitBreaker(blockedResourceId);
-					if (cb == null) {
-						cb = circuitBreakManager.getCircuitBreaker(ResourceIdUtils.buildResourceId(null, null, null, service, null));
-					}
-
-					if (cb.responseContentType != null) {
-						responseContentType = cb.responseContentType;
-						responseContent = cb.responseContent;
-					} else {
-						cb = circuitBreakManager.getCircuitBreaker(ResourceIdUtils.SERVICE_DEFAULT_RESOURCE);
-						if (cb.responseContentType != null) {
-							responseContentType = cb.responseContentType;
-							responseContent = cb.responseContent;
-						}
-					}
-
-					ServerHttpResponse resp = exchange.getResponse();
-					resp.setStatusCode(HttpStatus.FORBIDDEN);
-					HttpHeaders headers = resp.getHeaders();
-					headers.set(HttpHeaders.CONTENT_TYPE, responseContentType);
-					headers.set("traceId", traceId);
-					return resp.writeWith(Mono.just(resp.bufferFactory().wrap(responseContent.getBytes())));
-
+					return blockedResponseCache.getCircuitBreakResponse(blockedResourceId, service).writeTo(exchange.getResponse(), traceId);
 				} else {
 					if (BlockType.CONCURRENT_REQUEST == result.getBlockType()) {
 						fizzMonitorService.sendAlarm(service, path, FizzMonitorService.RATE_LIMIT_ALARM, concurrents, currentTimeMillis);
@@ -192,22 +173,7 @@ public class FlowControlFilter extends FizzWebFilter {
 						log.info("{} exceed {} flow limit, blocked by maximum QPS", traceId, blockedResourceId, LogService.BIZ_ID, traceId);
 					}
 
-					ResourceRateLimitConfig c = resourceRateLimitConfigService.getResourceRateLimitConfig(ResourceIdUtils.NODE_RESOURCE);
-					String rt = c.responseType, rc = c.responseContent;
-					c = resourceRateLimitConfigService.getResourceRateLimitConfig(blockedResourceId);
-					if (c != null) {
-						if (StringUtils.isNotBlank(c.responseType)) {
-							rt = c.responseType;
-						}
-						if (StringUtils.isNotBlank(c.responseContent)) {
-							rc = c.responseContent;
-						}
-					}
-
-					ServerHttpResponse resp = exchange.getResponse();
-					resp.setStatusCode(HttpStatus.OK);
-					resp.getHeaders().add(HttpHeaders.CONTENT_TYPE, rt);
-					return resp.writeWith(Mono.just(resp.bufferFactory().wrap(rc.getBytes())));
+					return blockedResponseCache.getRateLimitResponse(blockedResourceId).writeTo(exchange.getResponse(), null);
 				}
 			} else {
 				long start = System.currentTimeMillis();
@@ -264,7 +230,7 @@ public class FlowControlFilter extends FizzWebFilter {
 		if (StringUtils.isNotBlank(fizzTraceIdValuePrefix)) {
 			traceId = fizzTraceIdValuePrefix + Consts.S.DASH + traceId;
 		}
-		exchange.getAttributes().put(WebUtils.TRACE_ID, traceId);
+		WebUtils.setTraceId(exchange, traceId);
 	}
 
 	private List<ResourceConfig> getResourceConfigItselfAndParents(ResourceConfig rc, List<ResourceConfig> rcs) {
@@ -322,27 +288,30 @@ public class FlowControlFilter extends FizzWebFilter {
 		boolean hasHost = (StringUtils.isNotBlank(node) && !node.equals(ResourceIdUtils.NODE));
 		int sz = hasHost ? 10 : 9;
 		List<ResourceConfig> resourceConfigs = new ArrayList<>(sz);
-		StringBuilder b = ThreadContext.getStringBuilder();
-
-		checkRateLimitConfigAndAddTo(resourceConfigs, b, null, null, ResourceIdUtils.NODE, null, null, null);
-		if (hasHost) {
-			String resourceId = ResourceIdUtils.buildResourceId(app, ip, node, service, path);
-			ResourceConfig resourceConfig = new ResourceConfig(resourceId, 0, 0);
-			resourceConfigs.add(resourceConfig);
-		}
-		checkRateLimitConfigAndAddTo(resourceConfigs, b, null, null, null, service, null, ResourceIdUtils.SERVICE_DEFAULT);
-		checkRateLimitConfigAndAddTo(resourceConfigs, b, null, null, null, service, path, null);
+		StringBuilder b = ThreadContext.borrowStringBuilder();
+		try {
+			checkRateLimitConfigAndAddTo(resourceConfigs, b, null, null, ResourceIdUtils.NODE, null, null, null);
+			if (hasHost) {
+				String resourceId = ResourceIdUtils.buildResourceId(app, ip, node, service, path);
+				ResourceConfig resourceConfig = new ResourceConfig(resourceId, 0, 0);
+				resourceConfigs.add(resourceConfig);
+			}
+			checkRateLimitConfigAndAddTo(resourceConfigs, b, null, null, null, service, null, ResourceIdUtils.SERVICE_DEFAULT);
+			checkRateLimitConfigAndAddTo(resourceConfigs, b, null, null, null, service, path, null);
 
-		if (app != null) {
-			checkRateLimitConfigAndAddTo(resourceConfigs, b, app, null, null, null, null, ResourceIdUtils.APP_DEFAULT);
-			checkRateLimitConfigAndAddTo(resourceConfigs, b, app, null, null, service, null, null);
-			checkRateLimitConfigAndAddTo(resourceConfigs, b, app, null, null, service, path, null);
-		}
+			if (app != null) {
+				checkRateLimitConfigAndAddTo(resourceConfigs, b, app, null, null, null, null, ResourceIdUtils.APP_DEFAULT);
+				checkRateLimitConfigAndAddTo(resourceConfigs, b, app, null, null, service, null, null);
+				checkRateLimitConfigAndAddTo(resourceConfigs, b, app, null, null, service, path, null);
+			}
 
-		if (ip != null) {
-			checkRateLimitConfigAndAddTo(resourceConfigs, b, null, ip, null, null, null, null);
-			checkRateLimitConfigAndAddTo(resourceConfigs, b, null, ip, null, service, null, null);
-			checkRateLimitConfigAndAddTo(resourceConfigs, b, null, ip, null, service, path, null);
+			if (ip != null) {
+				checkRateLimitConfigAndAddTo(resourceConfigs, b, null, ip, null, null, null, null);
+				checkRateLimitConfigAndAddTo(resourceConfigs, b, null, ip, null, service, null, null);
+				checkRateLimitConfigAndAddTo(resourceConfigs, b, null, ip, null, service, path, null);
+			}
+		} finally {
+			ThreadContext.returnStringBuilder(b);
 		}
 
 		if (log.isDebugEnabled()) {
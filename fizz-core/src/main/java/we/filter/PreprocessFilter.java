@@ -19,6 +19,7 @@ package we.filter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
@@ -34,7 +35,9 @@ import we.plugin.auth.AuthPluginFilter;
 import we.plugin.auth.GatewayGroup;
 import we.plugin.auth.GatewayGroupService;
 import we.plugin.stat.StatPluginFilter;
+import we.proxy.OutlierDetector;
 import we.proxy.Route;
+import we.util.FizzRequestContext;
 import we.util.ReactorUtils;
 import we.util.Result;
 import we.util.ThreadContext;
@@ -67,13 +70,13 @@ public class PreprocessFilter extends FizzWebFilter {
     @Resource
     private GatewayGroupService gatewayGroupService;
 
+    @Autowired(required = false)
+    private OutlierDetector     outlierDetector;
+
     @Override
     public Mono<Void> doFilter(ServerWebExchange exchange, WebFilterChain chain) {
 
-        Map<String, FilterResult> fc         = new HashMap<>();                  fc.put(WebUtils.PREV_FILTER_RESULT, succFr);
-        Map<String, String>       appendHdrs = new HashMap<>(8);
-        Map<String, Object>       eas        = exchange.getAttributes();        eas.put(WebUtils.FILTER_CONTEXT,     fc);
-                                                                                eas.put(WebUtils.APPEND_HEADERS,     appendHdrs);
+        FizzRequestContext.get(exchange).setPrevFilterResult(succFr);
 
         return
         statPluginFilter.filter(exchange, null, null)
@@ -83,7 +86,7 @@ public class PreprocessFilter extends FizzWebFilter {
         .thenReturn(ReactorUtils.Void)
         .flatMap(
                 v -> {
-                    Result<ApiConfig> auth = (Result<ApiConfig>) WebUtils.getFilterResultDataItem(exchange, AuthPluginFilter.AUTH_PLUGIN_FILTER, AuthPluginFilter.RESULT);
+                    Result<ApiConfig> auth = WebUtils.getAuthResult(exchange);
                     if (auth.code == Result.FAIL) {
                         return WebUtils.responseError(exchange, HttpStatus.FORBIDDEN.value(), auth.msg);
                     }
@@ -99,7 +102,11 @@ public class PreprocessFilter extends FizzWebFilter {
                         gatewayGroupPluginConfigs = gatewayGroup.pluginConfigs;
                     }
                     Route route = ac.getRoute(exchange, gatewayGroupPluginConfigs);
-                    eas.put(WebUtils.ROUTE, route);
+                    if (outlierDetector != null && route.type == ApiConfig.Type.REVERSE_PROXY && outlierDetector.getEjectedCount() > 0
+                            && outlierDetector.isEjected(OutlierDetector.address(route.nextHttpHostPort))) {
+                        route.nextHttpHostPort(ac.getNextHttpHostPort(outlierDetector));
+                    }
+                    WebUtils.setRoute(exchange, route);
                     afterAuth(exchange, ac, route);
 
                     return
@@ -109,7 +116,7 @@ public class PreprocessFilter extends FizzWebFilter {
                                                                if (route.pluginConfigs.isEmpty()) {
                                                                    return checkDirectRespOrChainFilter(exchange, chain).apply(ReactorUtils.NULL);
                                                                } else {
-                                                                   eas.put(FizzPluginFilterChain.WEB_FILTER_CHAIN, chain);
+                                                                   exchange.getAttributes().put(FizzPluginFilterChain.WEB_FILTER_CHAIN, chain);
                                                                    return FizzPluginFilterChain.next(exchange);
                                                                }
                                                            }
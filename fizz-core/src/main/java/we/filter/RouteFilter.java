@@ -102,7 +102,7 @@ public class RouteFilter extends FizzWebFilter {
 
         ServerHttpRequest req = exchange.getRequest();
         String traceId = WebUtils.getTraceId(exchange);
-        Route route = exchange.getAttribute(WebUtils.ROUTE);
+        Route route = WebUtils.getRoute(exchange);
         HttpHeaders hdrs = null;
 
         if (route != null && route.type != ApiConfig.Type.DUBBO) {
@@ -0,0 +1,244 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz;
+
+import com.alibaba.fastjson.JSON;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import we.filter.AggregateFilterProperties;
+import we.flume.clients.log4j2appender.LogService;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs the requests, responses and results of the aggregate APIs in debug mode, to the logger of this class.
+ * <p>
+ * The requests of an API are sampled, one of every {@code sample-every} and at most {@code max-per-second} are traced,
+ * so a hot API doesn't flood the logs, and the APIs are sampled separately.
+ * <p>
+ * The caller only queues the objects, which are serialized and truncated and logged in a background thread,
+ * the traces beyond the queue are dropped and counted, so tracing never blocks the event loop.
+ * <p>
+ * The top level of a map or collection arg is copied when queued, the nested objects are still shared with the request,
+ * so a trace is best-effort, one failed to serialize because of a concurrent change is counted as failed, not dropped.
+ *
+ * @author zhongjie
+ */
+@Component
+public class AggregateTracer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AggregateTracer.class);
+
+	private static final int    MAX_SAMPLERS = 10_000;
+
+	private static class Sampler {
+
+		final AtomicLong    count    = new AtomicLong();
+
+		final AtomicInteger inSecond = new AtomicInteger();
+
+		volatile long       second;
+
+		boolean sample(int every, int maxPerSecond, long now) {
+			if (every > 1 && count.getAndIncrement() % every != 0) {
+				return false;
+			}
+			if (maxPerSecond < 1) {
+				return true;
+			}
+			long s = now / 1000;
+			if (s != second) {
+				second = s;
+				inSecond.set(0);
+			}
+			return inSecond.incrementAndGet() <= maxPerSecond;
+		}
+	}
+
+	private static final class DefaultHolder {
+		static final AggregateTracer INSTANCE = new AggregateTracer(new AggregateFilterProperties());
+	}
+
+	private final AggregateFilterProperties properties;
+
+	private final Map<String, Sampler>      samplers = new ConcurrentHashMap<>();
+
+	private final ThreadPoolExecutor        executor;
+
+	private final BlockingQueue<Runnable>   queue;
+
+	private final AtomicLong                dropped  = new AtomicLong();
+
+	private final AtomicLong                traced   = new AtomicLong();
+
+	private final AtomicLong                failed   = new AtomicLong();
+
+	@Autowired
+	public AggregateTracer(AggregateFilterProperties properties) {
+		this.properties = properties;
+		int queueSize = properties.getTraceQueueSize() < 1 ? 1024 : properties.getTraceQueueSize();
+		queue = new ArrayBlockingQueue<>(queueSize);
+		executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue,
+				r -> {
+					Thread t = new Thread(r, "fizz-aggregate-trace");
+					t.setDaemon(true);
+					return t;
+				}
+		);
+		// the traces are offered to the queue directly, so the caller knows if one is dropped without an exception
+		executor.prestartCoreThread();
+	}
+
+	/**
+	 * @return the tracer bean of the context, or a default one if the context has no tracer, like in tests
+	 */
+	public static AggregateTracer of(ApplicationContext context) {
+		if (context != null) {
+			AggregateTracer tracer = context.getBeanProvider(AggregateTracer.class).getIfAvailable();
+			if (tracer != null) {
+				return tracer;
+			}
+		}
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * @param api the method and path of the aggregate API in debug mode
+	 * @return true if the request is traced
+	 */
+	public boolean sample(String api) {
+		return sample(api, System.currentTimeMillis());
+	}
+
+	boolean sample(String api, long now) {
+		Sampler sampler = samplers.get(api);
+		if (sampler == null) {
+			if (samplers.size() >= MAX_SAMPLERS) {
+				samplers.clear();
+			}
+			sampler = samplers.computeIfAbsent(api, k -> new Sampler());
+		}
+		return sampler.sample(properties.getTraceSampleEvery(), properties.getTraceMaxPerSecond(), now);
+	}
+
+	/**
+	 * Logs the message in background, the args which are not string or primitive are serialized to JSON then,
+	 * the maps and collections are copied shallowly now.
+	 *
+	 * @param format the slf4j message format
+	 * @return false if the trace is dropped because the queue is full, or failed because an arg can't be copied
+	 */
+	public boolean trace(String traceId, String format, Object... args) {
+		if (executor.isShutdown() || queue.remainingCapacity() == 0) {
+			// don't copy the args of a trace to drop
+			dropped.incrementAndGet();
+			return false;
+		}
+		try {
+			for (int i = 0; i < args.length; i++) {
+				args[i] = snapshot(args[i]);
+			}
+		} catch (RuntimeException e) {
+			// a map or collection changed by another thread meanwhile, like a ConcurrentModificationException
+			failed.incrementAndGet();
+			return false;
+		}
+		if (!queue.offer(() -> log(traceId, format, args))) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	private void log(String traceId, String format, Object[] args) {
+		int max = properties.getTraceMaxPayloadLength();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				args[i] = truncate(toString(args[i]), max);
+			}
+			LogService.setBizId(traceId);
+			LOGGER.info(format, args);
+			traced.incrementAndGet();
+		} catch (Throwable t) {
+			// the nested objects may be changed by the request meanwhile
+			failed.incrementAndGet();
+			LOGGER.warn("{} trace {}", traceId, format, t);
+		} finally {
+			LogService.cleanBizId();
+		}
+	}
+
+	private static Object snapshot(Object arg) {
+		if (arg instanceof Map) {
+			return arg instanceof LinkedHashMap ? new LinkedHashMap<>((Map<?, ?>) arg) : new HashMap<>((Map<?, ?>) arg);
+		}
+		if (arg instanceof Collection) {
+			return new ArrayList<>((Collection<?>) arg);
+		}
+		return arg;
+	}
+
+	private static String toString(Object arg) {
+		if (arg == null || arg instanceof CharSequence || arg instanceof Number || arg instanceof Boolean || arg instanceof Character) {
+			return String.valueOf(arg);
+		}
+		return JSON.toJSONString(arg);
+	}
+
+	static String truncate(String s, int max) {
+		if (max < 1 || s.length() <= max) {
+			return s;
+		}
+		return s.substring(0, max) + "...(" + s.length() + " chars)";
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	public long getTraced() {
+		return traced.get();
+	}
+
+	/**
+	 * @return traces queued but failed to serialize, which are not counted as dropped
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
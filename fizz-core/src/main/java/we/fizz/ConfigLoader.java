@@ -25,6 +25,8 @@ import org.springframework.context.ConfigurableApplicationContext;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AppConfigProperties;
+import we.config.ConfigDeltaReconciler;
+import we.config.ConfigPreloader;
 import we.fizz.input.*;
 
 import org.apache.commons.io.FileUtils;
@@ -37,6 +39,7 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import we.flume.clients.log4j2appender.LogService;
 import we.util.Consts;
+import we.util.JsonSchemaUtils;
 import we.util.ReactorUtils;
 
 import javax.annotation.PostConstruct;
@@ -91,6 +94,10 @@ public class ConfigLoader {
 	private static Map<String, String> aggregateResources = null;
 	private static Map<String, ConfigInfo> resourceKey2ConfigInfoMap = null;
 	private static Map<String, String> aggregateId2ResourceKeyMap = null;
+	/**
+	 * compiled input validation schemas of aggregate config, key is the resource key
+	 */
+	private static Map<String, InputSchemas> resourceKey2InputSchemasMap = new ConcurrentHashMap<>(1024);
 
 	@Resource
 	private AppConfigProperties appConfigProperties;
@@ -98,12 +105,17 @@ public class ConfigLoader {
 	@Resource(name = AGGREGATE_REACTIVE_REDIS_TEMPLATE)
 	private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
 
+	@Resource
+	private ConfigPreloader configPreloader;
+
 	@Resource
 	private ConfigLoaderProperties configLoaderProperties;
 
 	private String formalPathPrefix;
 	private int formalPathServiceNameStartIndex;
 
+	private ConfigDeltaReconciler configDeltaReconciler;
+
 	public Input createInput(String configStr) throws IOException {
 		ONode cfgNode = ONode.loadStr(configStr);
 
@@ -219,6 +231,7 @@ public class ConfigLoader {
         Map<String, String> aggregateResourcesTmp = new ConcurrentHashMap<>(1024);
         Map<String, ConfigInfo> resourceKey2ConfigInfoMapTmp = new ConcurrentHashMap<>(1024);
         Map<String, String> aggregateId2ResourceKeyMapTmp = new ConcurrentHashMap<>(1024);
+        Map<String, String> configStrMapTmp = new HashMap<>(1024);
 
 		if (configLoaderProperties.getReadLocalConfigFlag()) {
 			File dir = new File("json");
@@ -237,7 +250,7 @@ public class ConfigLoader {
 		} else {
 			// 从Redis缓存中获取配置
 			final Throwable[] throwable = new Throwable[1];
-			Throwable error = Mono.just(Objects.requireNonNull(reactiveStringRedisTemplate.opsForHash().entries(AGGREGATE_HASH_KEY)
+			Throwable error = Mono.just(Objects.requireNonNull(ConfigPreloader.entries(configPreloader, reactiveStringRedisTemplate, AGGREGATE_HASH_KEY, this::reconcileLocalCache)
 					.defaultIfEmpty(new AbstractMap.SimpleEntry<>(ReactorUtils.OBJ, ReactorUtils.OBJ)).onErrorStop().doOnError(t -> LOGGER.info(null, t))
 					.concatMap(entry -> {
 						Object k = entry.getKey();
@@ -249,6 +262,7 @@ public class ConfigLoader {
 
 						try {
 							this.addConfig(configStr, aggregateResourcesTmp, resourceKey2ConfigInfoMapTmp, aggregateId2ResourceKeyMapTmp);
+							configStrMapTmp.put(k.toString(), configStr);
 							return Flux.just(entry);
 						} catch (Throwable t) {
 							throwable[0] = t;
@@ -272,8 +286,50 @@ public class ConfigLoader {
         aggregateResources = aggregateResourcesTmp;
         resourceKey2ConfigInfoMap = resourceKey2ConfigInfoMapTmp;
         aggregateId2ResourceKeyMap = aggregateId2ResourceKeyMapTmp;
+        resourceKey2InputSchemasMap = new ConcurrentHashMap<>(1024);
+		if (!configLoaderProperties.getReadLocalConfigFlag()) {
+			this.getConfigDeltaReconciler().loaded(configStrMapTmp);
+		}
     }
 
+	/**
+	 * apply the changed configs in redis to local cache, reload all configs if they are read from local files
+	 */
+	public void reconcileLocalCache() throws Throwable {
+		ConfigDeltaReconciler reconciler = this.getConfigDeltaReconciler();
+		if (reconciler == null) {
+			this.refreshLocalCache();
+		} else {
+			reconciler.reconcile();
+		}
+	}
+
+	/**
+	 * @return null if aggregate configs are read from local files
+	 */
+	public ConfigDeltaReconciler getConfigDeltaReconciler() {
+		if (configLoaderProperties.getReadLocalConfigFlag()) {
+			return null;
+		}
+		if (configDeltaReconciler == null) {
+			configDeltaReconciler = new ConfigDeltaReconciler(AGGREGATE_HASH_KEY, reactiveStringRedisTemplate,
+					new ConfigDeltaReconciler.Handler() {
+						@Override
+						public void onChange(String field, String json) {
+							LOGGER.info("reconcile aggregate config: " + field + Consts.S.COLON + json, LogService.BIZ_ID, field);
+							addConfig(json);
+						}
+						@Override
+						public void onRemove(String field, String json) {
+							LOGGER.info("reconcile removed aggregate config: " + field + Consts.S.COLON + json, LogService.BIZ_ID, field);
+							String configId = ONode.loadStr(json).select("$.id").getString();
+							deleteConfig(JSON.toJSONString(Collections.singletonList(configId)));
+						}
+					});
+		}
+		return configDeltaReconciler;
+	}
+
 	public synchronized void addConfig(String configStr) {
         if (aggregateResources == null) {
             try {
@@ -332,10 +388,12 @@ public class ConfigLoader {
 				// 删除旧有的配置
 				aggregateResources.remove(existResourceKey);
 				resourceKey2ConfigInfoMap.remove(existResourceKey);
+				resourceKey2InputSchemasMap.remove(existResourceKey);
 			}
 			aggregateId2ResourceKeyMap.put(configId, resourceKey);
 		}
 		aggregateResources.put(resourceKey, configStr);
+		resourceKey2InputSchemasMap.remove(resourceKey);
 		resourceKey2ConfigInfoMap.put(resourceKey, this.buildConfigInfo(configId, configName, method, path, version));
 	}
 
@@ -352,6 +410,7 @@ public class ConfigLoader {
 				LOGGER.debug("delete aggregation config: {}", existResourceKey);
 				aggregateResources.remove(existResourceKey);
 				resourceKey2ConfigInfoMap.remove(existResourceKey);
+				resourceKey2InputSchemasMap.remove(existResourceKey);
 				aggregateId2ResourceKeyMap.remove(configId);
 			}
 		});
@@ -382,12 +441,29 @@ public class ConfigLoader {
 			}
 			if (pipeline != null && input != null) {
 				ClientInputConfig cfg = (ClientInputConfig) input.getConfig();
+				this.bindInputSchemas(key, configStr, cfg);
 				return new AggregateResource(pipeline, input);
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * reuse the compiled input validation schemas of the config, compile and cache them if the config is new or changed
+	 */
+	private void bindInputSchemas(String resourceKey, String configStr, ClientInputConfig cfg) {
+		InputSchemas schemas = resourceKey2InputSchemasMap.get(resourceKey);
+		// the config string instance changes whenever the config is reloaded or updated
+		if (schemas != null && schemas.configStr == configStr) {
+			cfg.setHeadersSchema(schemas.headersSchema);
+			cfg.setParamsSchema(schemas.paramsSchema);
+			cfg.setBodySchema(schemas.bodySchema);
+		} else {
+			schemas = new InputSchemas(configStr, cfg.getHeadersSchema(), cfg.getParamsSchema(), cfg.getBodySchema());
+			resourceKey2InputSchemasMap.put(resourceKey, schemas);
+		}
+	}
+
 	private ConfigInfo buildConfigInfo(String configId, String configName, String method, String path, long version) {
 		String serviceName = this.extractServiceName(path);
 		ConfigInfo configInfo = new ConfigInfo();
@@ -417,6 +493,21 @@ public class ConfigLoader {
 		return null;
 	}
 
+	private static class InputSchemas {
+		private final String configStr;
+		private final JsonSchemaUtils.CompiledSchema headersSchema;
+		private final JsonSchemaUtils.CompiledSchema paramsSchema;
+		private final JsonSchemaUtils.CompiledSchema bodySchema;
+
+		InputSchemas(String configStr, JsonSchemaUtils.CompiledSchema headersSchema,
+				JsonSchemaUtils.CompiledSchema paramsSchema, JsonSchemaUtils.CompiledSchema bodySchema) {
+			this.configStr = configStr;
+			this.headersSchema = headersSchema;
+			this.paramsSchema = paramsSchema;
+			this.bodySchema = bodySchema;
+		}
+	}
+
 	public static class ConfigInfo implements Serializable {
 		private static final long serialVersionUID = 1L;
 		/**
@@ -57,14 +57,12 @@ import we.fizz.input.Input;
 import we.fizz.input.InputConfig;
 import we.fizz.input.PathMapping;
 import we.fizz.input.ScriptHelper;
-import we.flume.clients.log4j2appender.LogService;
 import we.schema.util.PropertiesSupportUtils;
 import we.util.JacksonUtils;
 import we.util.JsonSchemaUtils;
 import we.util.MapUtil;
 import we.xml.JsonToXml;
 import we.xml.XmlToJson;
-import we.xml.XmlToJson.Builder;
 
 /**
  * 
@@ -125,7 +123,7 @@ public class Pipeline {
 	public Mono<AggregateResult> runPipeline(Input input, Map<String, Object> clientInput, String traceId) {
 		ClientInputConfig config = (ClientInputConfig)input.getConfig();
 		this.initialStepContext(clientInput, config);
-		this.stepContext.setDebug(config.isDebug());
+		this.stepContext.setDebug(config.isDebug() && AggregateTracer.of(applicationContext).sample(config.getMethod() + ' ' + config.getPath()));
 		this.stepContext.setApplicationContext(applicationContext);
 		
 		if(traceId != null) {
@@ -197,15 +195,7 @@ public class Pipeline {
 		AggregateResult aggResult = this.doInputDataMapping(input, null);
 		this.stepContext.addElapsedTime(input.getName()+"聚合接口响应结果数据转换", System.currentTimeMillis() - t3);
 		if(this.stepContext.isDebug() || LOGGER.isDebugEnabled()) {
-			LogService.setBizId(this.stepContext.getTraceId());
-			String jsonString = JSON.toJSONString(aggResult);
-			if(LOGGER.isDebugEnabled()) {
-				LOGGER.debug("aggResult {}", jsonString);
-				LOGGER.debug("stepContext {}", JSON.toJSONString(stepContext));	
-			}else {				
-				LOGGER.info("aggResult {}", jsonString);
-				LOGGER.info("stepContext {}", JSON.toJSONString(stepContext));			
-			}
+			AggregateTracer.of(applicationContext).trace(this.stepContext.getTraceId(), "aggResult {} stepContext {}", aggResult, stepContext);
 		}
 		return Mono.just(aggResult);
 	}
@@ -255,18 +245,7 @@ public class Pipeline {
 			
 			if (CONTENT_TYPE_XML.equals(config.getContentType()) || (StringUtils.isEmpty(config.getContentType())
 					&& isXmlContentType((String) clientInput.get("contentType")))) {
-				String[] paths = null;
-				if (!StringUtils.isEmpty(config.getXmlArrPaths())) {
-					paths = config.getXmlArrPaths().split(",");
-				}
-				Builder builder = new XmlToJson.Builder((String) clientInput.get("body"));
-				if (paths != null && paths.length > 0) {
-					for (int j = 0; j < paths.length; j++) {
-						String p = paths[j];
-						builder = builder.forceList(p);
-					}
-				}
-				inputRequest.put("body", builder.build().toJson().toMap());
+				inputRequest.put("body", XmlToJson.converter(config.getXmlArrPaths()).convert((String) clientInput.get("body")));
 			} else if (clientInput.get("body") instanceof Map) {
 				inputRequest.put("body", clientInput.get("body"));
 			} else {
@@ -415,7 +394,8 @@ public class Pipeline {
 		if(CONTENT_TYPE_XML.equals(respContentType)) {
 			Object respBody = response.get("body");
 			response.put("jsonBody", respBody);
-			JsonToXml jsonToXml = new JsonToXml.Builder(JSON.toJSONString(respBody)).build();
+			JsonToXml jsonToXml = respBody instanceof Map ? new JsonToXml.Builder((Map<String, Object>) respBody).build()
+					: new JsonToXml.Builder(JSON.toJSONString(respBody)).build();
 			response.put("body", jsonToXml.toString());
 		}
 		
@@ -493,14 +473,13 @@ public class Pipeline {
 	}
 
 	private Pair<ValidateType, List<String>> doInputValidate(ClientInputConfig config, Map<String, Object> clientInput) {
-		Map<String, Object> headersDef = config.getHeadersDef();
-		if (!CollectionUtils.isEmpty(headersDef)) {
+		JsonSchemaUtils.CompiledSchema headersSchema = config.getHeadersSchema();
+		if (headersSchema != null) {
 			// 验证headers入参是否符合要求
 			List<String> errorList;
 			PropertiesSupportUtils.setContextSupportPropertyUpperCase();
 			try {
-				errorList = JsonSchemaUtils.validateAllowValueStr(JSON.toJSONString(headersDef),
-						JSON.toJSONString(clientInput.get("headers")));
+				errorList = headersSchema.validate(clientInput.get("headers"));
 			} finally {
 				PropertiesSupportUtils.removeContextSupportPropertyUpperCase();
 			}
@@ -510,21 +489,19 @@ public class Pipeline {
 			}
 		}
 
-		Map<String, Object> paramsDef = config.getParamsDef();
-		if (!CollectionUtils.isEmpty(paramsDef)) {
+		JsonSchemaUtils.CompiledSchema paramsSchema = config.getParamsSchema();
+		if (paramsSchema != null) {
 			// 验证params入参是否符合要求
-			List<String> errorList = JsonSchemaUtils.validateAllowValueStr(JSON.toJSONString(paramsDef),
-					JSON.toJSONString(clientInput.get("params")));
+			List<String> errorList = paramsSchema.validate(clientInput.get("params"));
 			if (!CollectionUtils.isEmpty(errorList)) {
 				return Pair.of(ValidateType.QUERY_PARAM, errorList);
 			}
 		}
 
-		Map<String, Object> bodyDef = config.getBodyDef();
-		if (!CollectionUtils.isEmpty(bodyDef)) {
+		JsonSchemaUtils.CompiledSchema bodySchema = config.getBodySchema();
+		if (bodySchema != null) {
 			// 验证body入参是否符合要求
-			List<String> errorList = JsonSchemaUtils.validate(JSON.toJSONString(bodyDef),
-					JSON.toJSONString(clientInput.get("body")));
+			List<String> errorList = bodySchema.validate(clientInput.get("body"));
 			if (!CollectionUtils.isEmpty(errorList)) {
 				return Pair.of(ValidateType.BODY, errorList);
 			}
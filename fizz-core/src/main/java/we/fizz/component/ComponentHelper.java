@@ -17,8 +17,10 @@
 package we.fizz.component;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 import org.noear.snack.ONode;
@@ -29,6 +31,7 @@ import reactor.core.publisher.Mono;
 import we.fizz.StepContext;
 import we.fizz.component.circle.Circle;
 import we.fizz.component.condition.Condition;
+import we.fizz.component.condition.ConditionContext;
 
 /**
  * Condition component
@@ -38,6 +41,13 @@ import we.fizz.component.condition.Condition;
  */
 public class ComponentHelper {
 
+	private static final int MAX_CACHED_CONDITIONS = 10_000;
+
+	/**
+	 * Compiled conditions by config, the conditions are immutable and shared by the requests
+	 */
+	private static final Map<Map<String, Object>, Condition> compiledConditions = new ConcurrentHashMap<>();
+
 	/**
 	 * Converts step context to ONode
 	 * 
@@ -59,8 +69,7 @@ public class ComponentHelper {
 			for (Map<String, Object> m : componentConfig) {
 				// condition
 				if (ComponentTypeEnum.CONDITION.getCode().equals(m.get("type"))) {
-					Condition c = JSON.parseObject(JSON.toJSONString(m), Condition.class);
-					components.add(c);
+					components.add(getCondition(m));
 				}
 
 				// circle
@@ -74,6 +83,19 @@ public class ComponentHelper {
 		return components;
 	}
 
+	private static Condition getCondition(Map<String, Object> config) {
+		Condition c = compiledConditions.get(config);
+		if (c == null) {
+			c = JSON.parseObject(JSON.toJSONString(config), Condition.class);
+			c.compile();
+			if (compiledConditions.size() >= MAX_CACHED_CONDITIONS) {
+				compiledConditions.clear();
+			}
+			compiledConditions.put(new HashMap<>(config), c);
+		}
+		return c;
+	}
+
 	/**
 	 * 
 	 * @param components
@@ -96,9 +118,9 @@ public class ComponentHelper {
 			}
 
 			if (conditions != null && conditions.size() > 0) {
-				ONode ctxNode = toONode(stepContext);
+				ConditionContext ctx = new ConditionContext(stepContext);
 				for (Condition c : conditions) {
-					boolean rs = c.exec(ctxNode);
+					boolean rs = c.exec(ctx);
 					stepContext.addConditionResult(stepCtxPos.getStepName(), stepCtxPos.getRequestName(), c.getDesc(),
 							rs);
 					if (!rs) {
@@ -0,0 +1,337 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz.component.condition;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.CollectionUtils;
+
+import we.fizz.component.OperatorEnum;
+import we.fizz.exception.FizzRuntimeException;
+import we.fizz.field.RefDataTypeEnum;
+import we.fizz.field.ValueTypeEnum;
+
+/**
+ * {@link Condition} compiled once: the fixed values are prepared, the reference paths are resolved,
+ * the comparison is chosen by the value types, and the result is folded if both values are fixed.
+ * <p>
+ * Immutable and shared by the requests.
+ *
+ * @author zhongjie
+ */
+final class CompiledCondition {
+
+	private enum Comparison {
+		BOOLEAN, NUMBER, STRING, ANY
+	}
+
+	private static abstract class Operand {
+
+		/**
+		 * The type of the value if it's known before evaluation, BOOLEAN, NUMBER, STRING or null
+		 */
+		abstract Comparison type();
+
+		abstract Object get(ConditionContext ctx);
+
+		/**
+		 * @return the value to find in a collection
+		 */
+		Object element(ConditionContext ctx) {
+			return toElement(get(ctx));
+		}
+	}
+
+	private static final class Fixed extends Operand {
+
+		private final Object value;
+
+		private final Object element;
+
+		Fixed(Object value) {
+			this.value   = value;
+			this.element = toElement(value);
+		}
+
+		@Override
+		Comparison type() {
+			return typeOf(value);
+		}
+
+		@Override
+		Object get(ConditionContext ctx) {
+			return value;
+		}
+
+		@Override
+		Object element(ConditionContext ctx) {
+			return element;
+		}
+	}
+
+	private static final class Ref extends Operand {
+
+		private final Object          path;
+
+		private final ContextPath     compiled;
+
+		private final RefDataTypeEnum dataType;
+
+		Ref(Object path, RefDataTypeEnum dataType) {
+			this.path     = path;
+			this.compiled = path instanceof String ? ContextPath.compile((String) path) : null;
+			this.dataType = dataType;
+		}
+
+		@Override
+		Comparison type() {
+			if (dataType == null) {
+				return null;
+			}
+			switch (dataType) {
+			case INT:
+			case LONG:
+			case FLOAT:
+			case DOUBLE:
+				return Comparison.NUMBER;
+			case BOOLEAN:
+				return Comparison.BOOLEAN;
+			case STRING:
+				return Comparison.STRING;
+			default:
+				return null;
+			}
+		}
+
+		@Override
+		Object get(ConditionContext ctx) {
+			return cast(dataType, ctx.getValue(compiled, (String) path));
+		}
+	}
+
+	private static final Operand NULL = new Fixed(null);
+
+	private final OperatorEnum   operator;
+
+	private final Operand        operand1;
+
+	private final Operand        operand2;
+
+	private final Comparison     comparison;
+
+	/**
+	 * The result if both values are fixed, null otherwise
+	 */
+	private final Boolean        folded;
+
+	CompiledCondition(ConditionValue value1, OperatorEnum operator, ConditionValue value2) {
+		this.operator = operator;
+		operand1      = operand(value1);
+		operand2      = value2 != null && value2.getType() != null ? operand(value2) : NULL;
+		Comparison t1 = operand1.type(), t2 = operand2.type();
+		comparison    = t1 != null && t1 == t2 ? t1 : Comparison.ANY;
+		Boolean rs = null;
+		if (operand1 instanceof Fixed && operand2 instanceof Fixed) {
+			try {
+				rs = eval(null);
+			} catch (FizzRuntimeException e) {
+				// thrown on each evaluation
+			}
+		}
+		folded = rs;
+	}
+
+	private static Operand operand(ConditionValue value) {
+		if (ValueTypeEnum.FIXED.equals(value.getType())) {
+			return new Fixed(value.getValue());
+		}
+		return new Ref(value.getValue(), value.getRefDataType());
+	}
+
+	boolean test(ConditionContext ctx) {
+		if (folded != null) {
+			return folded;
+		}
+		return eval(ctx);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private boolean eval(ConditionContext ctx) {
+		Object v1 = operand1.get(ctx);
+		switch (operator) {
+		case EQ: {
+			Object v2 = operand2.get(ctx);
+			if (v1 == null && v2 == null) {
+				return true;
+			}
+			return v1 != null && v2 != null && compare(v1, v2) == 0;
+		}
+		case NE: {
+			Object v2 = operand2.get(ctx);
+			if (v1 == null && v2 == null) {
+				return false;
+			}
+			return v1 == null || v2 == null || compare(v1, v2) != 0;
+		}
+		case GT:
+			return compare(v1, operand2.get(ctx)) > 0;
+		case GE:
+			return compare(v1, operand2.get(ctx)) >= 0;
+		case LT:
+			return compare(v1, operand2.get(ctx)) < 0;
+		case LE:
+			return compare(v1, operand2.get(ctx)) <= 0;
+		case CONTAINS:
+		case NOTCONTAIN: {
+			Object el = operand2.element(ctx);
+			if (v1 == null) {
+				return operator == OperatorEnum.NOTCONTAIN;
+			}
+			if (!(v1 instanceof Collection)) {
+				throw new FizzRuntimeException("value1 must be a collection");
+			}
+			if (el instanceof Collection) {
+				throw new FizzRuntimeException("value2 can not be a collection");
+			}
+			boolean contains = CollectionUtils.contains(((Collection) v1).iterator(), el);
+			return operator == OperatorEnum.CONTAINS ? contains : !contains;
+		}
+		case CONTAINSANY: {
+			Object v2 = operand2.get(ctx);
+			if (v1 == null || v2 == null) {
+				return false;
+			}
+			if (!(v1 instanceof Collection)) {
+				throw new FizzRuntimeException("value1 must be a collection");
+			}
+			if (!(v2 instanceof Collection)) {
+				throw new FizzRuntimeException("value2 must be a collection");
+			}
+			return CollectionUtils.containsAny((Collection) v1, (Collection) v2);
+		}
+		default:
+			break;
+		}
+		// the unary operators ignore value2, but it's still read as before
+		operand2.get(ctx);
+		switch (operator) {
+		case ISNULL:
+			return v1 == null;
+		case ISNOTNULL:
+			return v1 != null;
+		case ISBLANK:
+			return v1 == null || StringUtils.isBlank(v1.toString());
+		case ISNOTBLANK:
+			return v1 != null && StringUtils.isNotBlank(v1.toString());
+		case ISEMPTY:
+			return v1 == null || (v1 instanceof Collection && ((Collection) v1).isEmpty())
+					|| (v1 instanceof Map && ((Map) v1).isEmpty());
+		case ISNOTEMPTY:
+			return (v1 instanceof Collection && !((Collection) v1).isEmpty())
+					|| (v1 instanceof Map && !((Map) v1).isEmpty());
+		default:
+			return false;
+		}
+	}
+
+	private int compare(Object v1, Object v2) {
+		if (v1 == null || v2 == null) {
+			throw new FizzRuntimeException("value1 and value2 can not be null");
+		}
+		switch (comparison) {
+		case NUMBER:
+			return Double.compare(toDouble(v1), toDouble(v2));
+		case BOOLEAN:
+			return ((Boolean) v1).compareTo((Boolean) v2);
+		case STRING:
+			return ((String) v1).compareTo((String) v2);
+		default:
+			Comparison t1 = typeOf(v1);
+			if (t1 == null || t1 != typeOf(v2)) {
+				throw new FizzRuntimeException(
+						"types of value1 and value2 are not consistent or not supported for comparision");
+			}
+			switch (t1) {
+			case NUMBER:
+				return Double.compare(toDouble(v1), toDouble(v2));
+			case BOOLEAN:
+				return ((Boolean) v1).compareTo((Boolean) v2);
+			default:
+				return ((String) v1).compareTo((String) v2);
+			}
+		}
+	}
+
+	private static Comparison typeOf(Object v) {
+		if (v instanceof Boolean) {
+			return Comparison.BOOLEAN;
+		}
+		if (v instanceof Integer || v instanceof Long || v instanceof Float || v instanceof Double) {
+			return Comparison.NUMBER;
+		}
+		if (v instanceof String) {
+			return Comparison.STRING;
+		}
+		return null;
+	}
+
+	private static double toDouble(Object n) {
+		// a float is compared by its decimal form, 3.1f equals 3.1
+		if (n instanceof Float) {
+			return Double.parseDouble(n.toString());
+		}
+		return ((Number) n).doubleValue();
+	}
+
+	private static Object toElement(Object v) {
+		if (v instanceof Integer) {
+			return Long.valueOf(((Integer) v).longValue());
+		}
+		if (v instanceof Float) {
+			return Double.valueOf(v.toString());
+		}
+		return v;
+	}
+
+	private static Object cast(RefDataTypeEnum type, Object val) {
+		if (type == null || val == null) {
+			return val;
+		}
+		switch (type) {
+		case INT:
+			if (val instanceof Long && (Long) val == ((Long) val).intValue()) {
+				return Integer.valueOf(((Long) val).intValue());
+			}
+			return Integer.valueOf(val.toString());
+		case LONG:
+			return val instanceof Long ? val : Long.valueOf(val.toString());
+		case FLOAT:
+			return Float.valueOf(val.toString());
+		case DOUBLE:
+			return val instanceof Double ? val : Double.valueOf(val.toString());
+		case BOOLEAN:
+			return val instanceof Boolean ? val : Boolean.valueOf(val.toString());
+		case STRING:
+			return val.toString();
+		default:
+			return val;
+		}
+	}
+}
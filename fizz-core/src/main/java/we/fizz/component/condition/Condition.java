@@ -17,28 +17,22 @@
 
 package we.fizz.component.condition;
 
-import java.util.Collection;
-import java.util.Map;
-
-import org.apache.commons.lang3.StringUtils;
 import org.noear.snack.ONode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.CollectionUtils;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.annotation.JSONField;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import we.fizz.component.ComponentTypeEnum;
 import we.fizz.component.IComponent;
 import we.fizz.component.OperatorEnum;
 import we.fizz.exception.FizzRuntimeException;
-import we.fizz.field.RefDataTypeEnum;
-import we.fizz.field.ValueTypeEnum;
-import we.fizz.input.PathMapping;
-import we.fizz.input.extension.request.RequestInput;
 
 /**
  * Condition component
@@ -60,6 +54,12 @@ public class Condition implements IComponent {
 	private OperatorEnum operator;
 
 	private ConditionValue value2;
+
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@ToString.Exclude
+	@JSONField(serialize = false, deserialize = false)
+	private transient volatile CompiledCondition compiled;
 	
 	public Condition(String desc, ConditionValue value1, OperatorEnum operator, ConditionValue value2) {
 		this.desc = desc;
@@ -78,201 +78,39 @@ public class Condition implements IComponent {
 	 * 
 	 * @return
 	 */
-	@SuppressWarnings({ "rawtypes" })
 	public boolean exec(ONode ctxNode) {
+		return exec(new ConditionContext(ctxNode));
+	}
+
+	/**
+	 * Execute condition, the referenced values are read from the context directly if possible
+	 * 
+	 * @return
+	 */
+	public boolean exec(ConditionContext ctx) {
 		if (value1 == null || operator == null) {
 			return false;
 		}
-
-		boolean rs = false;
+		CompiledCondition c = compiled;
+		if (c == null) {
+			compile();
+			c = compiled;
+		}
 		try {
-			Object v1 = null;
-			if (ValueTypeEnum.FIXED.equals(value1.getType())) {
-				v1 = value1.getValue();
-			} else {
-				v1 = PathMapping.getValueByPath(ctxNode, (String) value1.getValue());
-				v1 = this.cast(value1.getRefDataType(), v1);
-			}
-
-			Object v2 = null;
-			if (value2 != null && value2.getType() != null) {
-				if (ValueTypeEnum.FIXED.equals(value2.getType())) {
-					v2 = value2.getValue();
-				} else {
-					v2 = PathMapping.getValueByPath(ctxNode, (String) value2.getValue());
-					v2 = this.cast(value2.getRefDataType(), v2);
-				}
-			}
-
-			switch (operator) {
-			case EQ:
-				if (v1 == null && v2 == null) {
-					rs = true;
-				} else if (v1 != null && v2 != null) {
-					rs = this.compare(v1, v2) == 0;
-				}
-				break;
-			case NE:
-				if (v1 == null && v2 == null) {
-					rs = false;
-				} else if ((v1 == null && v2 != null) || (v1 != null && v2 == null)) {
-					rs = true;
-				} else if (v1 != null && v2 != null) {
-					rs = this.compare(v1, v2) != 0;
-				}
-				break;
-			case GT:
-				rs = this.compare(v1, v2) > 0;
-				break;
-			case GE:
-				rs = this.compare(v1, v2) >= 0;
-				break;
-			case LT:
-				rs = this.compare(v1, v2) < 0;
-				break;
-			case LE:
-				rs = this.compare(v1, v2) <= 0;
-				break;
-			case CONTAINS:
-				if (v1 == null) {
-					rs = false;
-					break;
-				}
-				if (v1 instanceof Collection && !(v2 instanceof Collection)) {
-					Collection coll1 = (Collection) v1;
-					Object el = v2;
-					if (v2 instanceof Integer || v2 instanceof Long) {
-						el = Long.valueOf(v2.toString());
-					} else if (v2 instanceof Float || v2 instanceof Double) {
-						el = Double.valueOf(v2.toString());
-					}
-					rs = CollectionUtils.contains(coll1.iterator(), el);
-				} else if (!(v1 instanceof Collection)) {
-					throw new FizzRuntimeException("value1 must be a collection");
-				} else if (v2 instanceof Collection) {
-					throw new FizzRuntimeException("value2 can not be a collection");
-				}
-				break;
-			case NOTCONTAIN:
-				if (v1 == null) {
-					rs = true;
-					break;
-				}
-				if (v1 instanceof Collection && !(v2 instanceof Collection)) {
-					Collection coll1 = (Collection) v1;
-					Object el = v2;
-					if (v2 instanceof Integer || v2 instanceof Long) {
-						el = Long.valueOf(v2.toString());
-					} else if (v2 instanceof Float || v2 instanceof Double) {
-						el = Double.valueOf(v2.toString());
-					}
-					rs = !CollectionUtils.contains(coll1.iterator(), el);
-				} else if (!(v1 instanceof Collection)) {
-					throw new FizzRuntimeException("value1 must be a collection");
-				} else if (v2 instanceof Collection) {
-					throw new FizzRuntimeException("value2 can not be a collection");
-				}
-				break;
-			case CONTAINSANY:
-				if (v1 == null || v2 == null) {
-					rs = false;
-					break;
-				}
-				if (v1 instanceof Collection && v2 instanceof Collection) {
-					Collection coll1 = (Collection) v1;
-					Collection coll2 = (Collection) v2;
-					rs = CollectionUtils.containsAny(coll1, coll2);
-				} else if (!(v1 instanceof Collection)) {
-					throw new FizzRuntimeException("value1 must be a collection");
-				} else if (!(v2 instanceof Collection)) {
-					throw new FizzRuntimeException("value2 must be a collection");
-				}
-				break;
-			case ISNULL:
-				rs = v1 == null;
-				break;
-			case ISNOTNULL:
-				rs = v1 != null;
-				break;
-			case ISBLANK:
-				rs = v1 == null || StringUtils.isBlank(v1.toString());
-				break;
-			case ISNOTBLANK:
-				rs = v1 != null && StringUtils.isNotBlank(v1.toString());
-				break;
-			case ISEMPTY:
-				rs = v1 == null || (v1 instanceof Collection && ((Collection) v1).isEmpty())
-						|| (v1 instanceof Map && ((Map) v1).isEmpty());
-				break;
-			case ISNOTEMPTY:
-				if (v1 != null) {
-					if (v1 instanceof Collection) {
-						rs = !((Collection) v1).isEmpty();
-					} else if (v1 instanceof Map) {
-						rs = !((Map) v1).isEmpty();
-					}
-				}
-				break;
-			default:
-				break;
-			}
+			return c.test(ctx);
 		} catch (FizzRuntimeException e) {
 			String message = type + ": " + e.getMessage() + ", data=" + JSON.toJSONString(this);
 			LOGGER.error(message, e);
 			throw new FizzRuntimeException(message, e.getCause());
 		}
-
-		return rs;
 	}
 
-	@SuppressWarnings("rawtypes")
-	private int compare(Object v1, Object v2) {
-		if (v1 == null || v2 == null) {
-			throw new FizzRuntimeException("value1 and value2 can not be null");
-		}
-		if (v1 instanceof Boolean && v2 instanceof Boolean) {
-			Boolean n1 = (Boolean) v1;
-			Boolean n2 = (Boolean) v2;
-			return n1.compareTo(n2);
-		} else if ((v1 instanceof Integer || v1 instanceof Long || v1 instanceof Float || v1 instanceof Double)
-				&& (v2 instanceof Integer || v2 instanceof Long || v2 instanceof Float || v2 instanceof Double)) {
-			// compare value if both are numbers
-			Double n1 = Double.valueOf(v1.toString());
-			Double n2 = Double.valueOf(v2.toString());
-			return n1.compareTo(n2);
-		} else if (v1 instanceof String && v2 instanceof String) {
-			String s1 = v1.toString();
-			String s2 = v2.toString();
-			return s1.compareTo(s2);
-		} else {
-			throw new FizzRuntimeException(
-					"types of value1 and value2 are not consistent or not supported for comparision");
-		}
-	}
-
-	private Object cast(RefDataTypeEnum type, Object val) {
-		if (type != null && val != null) {
-			switch (type) {
-			case INT:
-				val = Integer.valueOf(val.toString());
-				break;
-			case LONG:
-				val = Long.valueOf(val.toString());
-				break;
-			case FLOAT:
-				val = Float.valueOf(val.toString());
-				break;
-			case DOUBLE:
-				val = Double.valueOf(val.toString());
-				break;
-			case BOOLEAN:
-				val = Boolean.valueOf(val.toString());
-				break;
-			case STRING:
-				val = val.toString();
-				break;
-			}
+	/**
+	 * Compiles the condition, which should not be changed after executed
+	 */
+	public void compile() {
+		if (value1 != null && operator != null) {
+			compiled = new CompiledCondition(value1, operator, value2);
 		}
-		return val;
 	}
 }
@@ -0,0 +1,65 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz.component.condition;
+
+import org.noear.snack.ONode;
+
+import we.fizz.StepContext;
+import we.fizz.component.ComponentHelper;
+import we.fizz.input.PathMapping;
+
+/**
+ * The data the conditions are evaluated against, the referenced values are read from the step context directly,
+ * and the context is converted to ONode only if some path can not be resolved directly, once for all the conditions.
+ *
+ * @author zhongjie
+ */
+public final class ConditionContext {
+
+	private final StepContext<String, Object> stepContext;
+
+	private ONode                             ctxNode;
+
+	public ConditionContext(StepContext<String, Object> stepContext) {
+		this.stepContext = stepContext;
+	}
+
+	ConditionContext(ONode ctxNode) {
+		this.stepContext = null;
+		this.ctxNode     = ctxNode;
+	}
+
+	/**
+	 * @param compiled the compiled path, null if the path can not be resolved directly
+	 */
+	Object getValue(ContextPath compiled, String path) {
+		if (compiled != null && stepContext != null) {
+			Object val;
+			synchronized (stepContext) {
+				val = compiled.read(stepContext);
+			}
+			if (val != ContextPath.UNRESOLVED) {
+				return val;
+			}
+		}
+		if (ctxNode == null) {
+			ctxNode = ComponentHelper.toONode(stepContext);
+		}
+		return PathMapping.getValueByPath(ctxNode, path);
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz.component.condition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import we.fizz.StepResponse;
+import we.fizz.function.IFunc;
+import we.fizz.input.PathMapping;
+
+/**
+ * A reference path resolved against the step context directly, like step1.request1.responseBody.id|0,
+ * the path is normalized and split once, and the value is read without converting the context to ONode.
+ * <p>
+ * Only the maps, lists and step responses of the context are walked, and only the scalars and the lists of scalars
+ * are returned, normalized the same way as ONode does, otherwise {@link #UNRESOLVED} is returned and the value should
+ * be selected from the context ONode.
+ *
+ * @author zhongjie
+ */
+final class ContextPath {
+
+	static final Object     UNRESOLVED = new Object();
+
+	private final String[]  names;
+
+	/**
+	 * Indexes following the names, like list[0], null if none
+	 */
+	private final int[][]   indexes;
+
+	private final String    defaultValue;
+
+	private ContextPath(String[] names, int[][] indexes, String defaultValue) {
+		this.names        = names;
+		this.indexes      = indexes;
+		this.defaultValue = defaultValue;
+	}
+
+	/**
+	 * @return null if the path can not be resolved directly, like function, global resource and filter expression
+	 */
+	static ContextPath compile(String path) {
+		if (StringUtils.isBlank(path) || path.startsWith(IFunc.NAME_SPACE_PREFIX)) {
+			return null;
+		}
+		String p = path, dv = null;
+		int i = path.indexOf('|');
+		if (i != -1) {
+			p  = path.substring(0, i);
+			dv = path.substring(i + 1);
+		}
+		if (p.startsWith(PathMapping.GLOBAL_RESOURCE_PREFIX)) {
+			return null;
+		}
+		String[] segments = PathMapping.handlePath(p).split("\\.", -1);
+		// the header may be a single value, which is selected by ONode
+		if ((segments.length == 6 && "headers".equals(segments[4]) && segments[5].endsWith("[0]"))
+				|| (segments.length == 4 && "headers".equals(segments[2]) && segments[3].endsWith("[0]"))) {
+			return null;
+		}
+		String[] names = new String[segments.length];
+		int[][] indexes = null;
+		for (int s = 0; s < segments.length; s++) {
+			String segment = segments[s];
+			int b = segment.indexOf('[');
+			String name = b == -1 ? segment : segment.substring(0, b);
+			if (!isName(name)) {
+				return null;
+			}
+			names[s] = name;
+			if (b != -1) {
+				int[] idx = parseIndexes(segment, b);
+				if (idx == null) {
+					return null;
+				}
+				if (indexes == null) {
+					indexes = new int[segments.length][];
+				}
+				indexes[s] = idx;
+			}
+		}
+		return new ContextPath(names, indexes, dv);
+	}
+
+	private static boolean isName(String name) {
+		if (name.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] parseIndexes(String segment, int b) {
+		List<Integer> idx = new ArrayList<>(2);
+		int i = b;
+		while (i < segment.length()) {
+			int e = segment.indexOf(']', i);
+			if (segment.charAt(i) != '[' || e == -1 || e == i + 1 || e - i > 10) {
+				return null;
+			}
+			for (int j = i + 1; j < e; j++) {
+				if (!Character.isDigit(segment.charAt(j))) {
+					return null;
+				}
+			}
+			idx.add(Integer.valueOf(segment.substring(i + 1, e)));
+			i = e + 1;
+		}
+		int[] arr = new int[idx.size()];
+		for (int j = 0; j < arr.length; j++) {
+			arr[j] = idx.get(j);
+		}
+		return arr;
+	}
+
+	/**
+	 * @param ctx the step context, which should be locked by the caller
+	 * @return the value or the default value, or {@link #UNRESOLVED}
+	 */
+	@SuppressWarnings("rawtypes")
+	Object read(Object ctx) {
+		Object cur = ctx;
+		for (int s = 0; s < names.length && cur != null; s++) {
+			cur = child(cur, names[s]);
+			if (cur == UNRESOLVED) {
+				return UNRESOLVED;
+			}
+			if (indexes != null && indexes[s] != null) {
+				for (int i : indexes[s]) {
+					if (cur == null) {
+						break;
+					}
+					if (!(cur instanceof List)) {
+						return UNRESOLVED;
+					}
+					List list = (List) cur;
+					cur = i < list.size() ? list.get(i) : null;
+				}
+			}
+		}
+		Object val = value(cur);
+		if (val == null) {
+			return defaultValue;
+		}
+		return val;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Object child(Object obj, String name) {
+		if (obj instanceof HashMap || obj instanceof ConcurrentHashMap || obj instanceof JSONObject) {
+			return ((Map) obj).get(name);
+		}
+		if (obj instanceof StepResponse) {
+			StepResponse sr = (StepResponse) obj;
+			switch (name) {
+			case "stepName":
+				return sr.getStepName();
+			case "requests":
+				return sr.getRequests();
+			case "result":
+				return sr.getResult();
+			case "stop":
+				return sr.isStop();
+			case "item":
+				return sr.getItem();
+			case "index":
+				return sr.getIndex();
+			case "circle":
+				return sr.getCircle();
+			case "conditionResults":
+				return sr.getConditionResults();
+			default:
+				return null;
+			}
+		}
+		return UNRESOLVED;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Object value(Object obj) {
+		if (obj instanceof List && (obj instanceof ArrayList || obj instanceof JSONArray)) {
+			List list = (List) obj;
+			List<Object> values = new ArrayList<>(list.size());
+			for (int i = 0; i < list.size(); i++) {
+				Object v = scalar(list.get(i));
+				if (v == UNRESOLVED) {
+					return UNRESOLVED;
+				}
+				values.add(v);
+			}
+			return values;
+		}
+		return scalar(obj);
+	}
+
+	private static Object scalar(Object obj) {
+		if (obj == null || obj instanceof String || obj instanceof Boolean || obj instanceof Long || obj instanceof Double) {
+			return obj;
+		}
+		if (obj instanceof Integer || obj instanceof Short || obj instanceof Byte) {
+			return ((Number) obj).longValue();
+		}
+		return UNRESOLVED;
+	}
+}
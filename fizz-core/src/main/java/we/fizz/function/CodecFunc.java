@@ -18,13 +18,11 @@
 package we.fizz.function;
 
 import java.io.UnsupportedEncodingException;
-import java.security.Key;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
-import javax.crypto.Cipher;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.DESKeySpec;
-import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.lang3.StringUtils;
@@ -32,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import we.util.DigestUtils;
+import we.util.SymmetricCryptoContext;
 
 /**
  * Codec Functions
@@ -47,6 +46,13 @@ public class CodecFunc implements IFunc {
 
 	private static final String IV = "12345678";
 
+	private static final SymmetricCryptoContext AES = new SymmetricCryptoContext("AES/ECB/PKCS5Padding",
+			key -> new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "AES"), null);
+
+	private static final SymmetricCryptoContext DES = new SymmetricCryptoContext("DES/CBC/PKCS5Padding",
+			key -> SecretKeyFactory.getInstance("DES").generateSecret(new DESKeySpec(key.getBytes(StandardCharsets.UTF_8))),
+			IV.getBytes(StandardCharsets.UTF_8));
+
 	private static CodecFunc singleton;
 
 	public static CodecFunc getInstance() {
@@ -117,11 +123,7 @@ public class CodecFunc implements IFunc {
 			return null;
 		}
 		try {
-			Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-			SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(CHARSET_UTF8), "AES");
-			cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
-			byte[] result = cipher.doFinal(data.getBytes(CHARSET_UTF8));
-			return Base64.getEncoder().encodeToString(result);
+			return AES.encryptBase64(key, data);
 		} catch (Exception e) {
 			LOGGER.error("AES encrypt error, data={}", data, e);
 			throw e;
@@ -133,11 +135,7 @@ public class CodecFunc implements IFunc {
 			return null;
 		}
 		try {
-			Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-			SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(CHARSET_UTF8), "AES");
-			cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
-			byte[] result = Base64.getDecoder().decode(data);
-			return new String(cipher.doFinal(result));
+			return AES.decryptBase64(key, data);
 		} catch (Exception e) {
 			LOGGER.error("AES decrypt error, data={}", data, e);
 			throw e;
@@ -149,14 +147,7 @@ public class CodecFunc implements IFunc {
 			return null;
 		}
 		try {
-			DESKeySpec dks = new DESKeySpec(key.getBytes(CHARSET_UTF8));
-			SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("DES");
-			Key secretKey = keyFactory.generateSecret(dks);
-			Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
-			IvParameterSpec iv = new IvParameterSpec(IV.getBytes(CHARSET_UTF8));
-			cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
-			byte[] bytes = cipher.doFinal(data.getBytes(CHARSET_UTF8));
-			return new String(Base64.getEncoder().encode(bytes));
+			return DES.encryptBase64(key, data);
 		} catch (Exception e) {
 			LOGGER.error("DES eecrypt error, data={}", data, e);
 			throw e;
@@ -168,13 +159,7 @@ public class CodecFunc implements IFunc {
 			return null;
 		}
 		try {
-			DESKeySpec dks = new DESKeySpec(key.getBytes(CHARSET_UTF8));
-			SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("DES");
-			Key secretKey = keyFactory.generateSecret(dks);
-			Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
-			IvParameterSpec iv = new IvParameterSpec(IV.getBytes(CHARSET_UTF8));
-			cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
-			return new String(cipher.doFinal(Base64.getDecoder().decode(data.getBytes(CHARSET_UTF8))), CHARSET_UTF8);
+			return DES.decryptBase64(key, data);
 		} catch (Exception e) {
 			LOGGER.error("DES decrypt error, data={}", data, e);
 			throw e;
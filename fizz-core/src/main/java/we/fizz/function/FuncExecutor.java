@@ -40,6 +40,7 @@ import lombok.NoArgsConstructor;
 import we.fizz.exception.FizzRuntimeException;
 import we.fizz.input.Input;
 import we.fizz.input.PathMapping;
+import we.util.SubTypeIndex;
 
 /**
  * Function Register
@@ -77,8 +78,10 @@ public class FuncExecutor {
 
 	public static void init() {
 		try {
-			Reflections reflections = new Reflections("we.fizz.function");
-			Set<Class<? extends IFunc>> types = reflections.getSubTypesOf(IFunc.class);
+			Set<Class<? extends IFunc>> types = SubTypeIndex.getSubTypes(IFunc.class, "we.fizz.function");
+			if (types == null) {
+				types = new Reflections("we.fizz.function").getSubTypesOf(IFunc.class);
+			}
 			for (Class<? extends IFunc> fnType : types) {
 				Method method = fnType.getMethod("getInstance");
 				method.invoke(fnType);
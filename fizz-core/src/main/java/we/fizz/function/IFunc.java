@@ -16,12 +16,15 @@
  */
 package we.fizz.function;
 
+import we.util.SubTypeIndexed;
+
 /**
  * Function interface
  * 
  * @author Francis Dong
  *
  */
+@SubTypeIndexed
 public interface IFunc {
 	
 	public final static String NAME_SPACE_PREFIX = "fn.";
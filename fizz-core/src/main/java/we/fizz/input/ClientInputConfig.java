@@ -20,6 +20,12 @@ package we.fizz.input;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.util.CollectionUtils;
+
+import com.alibaba.fastjson.JSON;
+
+import we.util.JsonSchemaUtils;
+
 /**
  * 
  * @author linwaiwai
@@ -40,6 +46,9 @@ public class ClientInputConfig extends InputConfig {
     private Map<String, Object> validateResponse;
     private String contentType;
     private String xmlArrPaths;
+    private JsonSchemaUtils.CompiledSchema headersSchema;
+    private JsonSchemaUtils.CompiledSchema paramsSchema;
+    private JsonSchemaUtils.CompiledSchema bodySchema;
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public ClientInputConfig(Map configBody) {
@@ -134,6 +143,7 @@ public class ClientInputConfig extends InputConfig {
 
 	public void setBodyDef(Map<String, Object> bodyDef) {
 		this.bodyDef = bodyDef;
+		this.bodySchema = null;
 	}
 
     public Map<String, Object> getHeadersDef() {
@@ -142,6 +152,7 @@ public class ClientInputConfig extends InputConfig {
 
     public void setHeadersDef(Map<String, Object> headersDef) {
         this.headersDef = headersDef;
+        this.headersSchema = null;
     }
 
     public Map<String, Object> getParamsDef() {
@@ -150,6 +161,7 @@ public class ClientInputConfig extends InputConfig {
 
     public void setParamsDef(Map<String, Object> paramsDef) {
         this.paramsDef = paramsDef;
+        this.paramsSchema = null;
     }
 
     public Map<String, Object> getScriptValidate() {
@@ -183,5 +195,47 @@ public class ClientInputConfig extends InputConfig {
 	public void setXmlArrPaths(String xmlArrPaths) {
 		this.xmlArrPaths = xmlArrPaths;
 	}
-    
+
+	/**
+	 * @return compiled schema of headersDef, null if headersDef is empty
+	 */
+	public JsonSchemaUtils.CompiledSchema getHeadersSchema() {
+		if (headersSchema == null && !CollectionUtils.isEmpty(headersDef)) {
+			headersSchema = JsonSchemaUtils.compile(JSON.toJSONString(headersDef), true);
+		}
+		return headersSchema;
+	}
+
+	public void setHeadersSchema(JsonSchemaUtils.CompiledSchema headersSchema) {
+		this.headersSchema = headersSchema;
+	}
+
+	/**
+	 * @return compiled schema of paramsDef, null if paramsDef is empty
+	 */
+	public JsonSchemaUtils.CompiledSchema getParamsSchema() {
+		if (paramsSchema == null && !CollectionUtils.isEmpty(paramsDef)) {
+			paramsSchema = JsonSchemaUtils.compile(JSON.toJSONString(paramsDef), true);
+		}
+		return paramsSchema;
+	}
+
+	public void setParamsSchema(JsonSchemaUtils.CompiledSchema paramsSchema) {
+		this.paramsSchema = paramsSchema;
+	}
+
+	/**
+	 * @return compiled schema of bodyDef, null if bodyDef is empty
+	 */
+	public JsonSchemaUtils.CompiledSchema getBodySchema() {
+		if (bodySchema == null && !CollectionUtils.isEmpty(bodyDef)) {
+			bodySchema = JsonSchemaUtils.compile(JSON.toJSONString(bodyDef), false);
+		}
+		return bodySchema;
+	}
+
+	public void setBodySchema(JsonSchemaUtils.CompiledSchema bodySchema) {
+		this.bodySchema = bodySchema;
+	}
+
 }
@@ -27,12 +27,14 @@ import reactor.core.publisher.Mono;
 import we.fizz.Step;
 import we.fizz.StepContext;
 import we.fizz.StepResponse;
+import we.util.SubTypeIndexed;
 
 /**
  * 
  * @author linwaiwai
  *
  */
+@SubTypeIndexed
 public class Input {
 	protected String name;
 	protected InputConfig config;
@@ -21,6 +21,7 @@ import we.fizz.component.ComponentHelper;
 import org.reflections.Reflections;
 import we.fizz.exception.FizzRuntimeException;
 import we.fizz.input.extension.request.RequestInput;
+import we.util.SubTypeIndex;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -96,8 +97,10 @@ public class InputFactory {
 	}
 
 	 public static void loadInputClasses() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-		Reflections reflections = new Reflections("we.fizz.input");
-		Set<Class<? extends Input>> subTypes = reflections.getSubTypesOf(Input.class);
+		Set<Class<? extends Input>> subTypes = SubTypeIndex.getSubTypes(Input.class, "we.fizz.input");
+		if (subTypes == null) {
+			subTypes = new Reflections("we.fizz.input").getSubTypesOf(Input.class);
+		}
 		for (Class<?>inputType : subTypes){
 			Method initializeMethod = inputType.getMethod("initialize", Class.class);
 			initializeMethod.invoke(null, inputType);
@@ -0,0 +1,267 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz.input;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+import org.noear.snack.ONode;
+
+import we.constants.CommonConstants;
+import we.fizz.exception.FizzRuntimeException;
+import we.fizz.function.FuncExecutor;
+import we.fizz.function.IFunc;
+import we.global_resource.GlobalResourceService;
+
+/**
+ * Mapping rules compiled by {@link PathMapping}: the type prefixes and default values are stripped, the step and input paths
+ * are normalized and the target keys are split once, the plan is immutable and shared by the requests.
+ *
+ * @author zhongjie
+ */
+final class MappingPlan {
+
+	private static final String[] TYPES = {"Integer", "int", "Boolean", "boolean", "Float", "float",
+			"Double", "double", "String", "string", "Long", "long", "Number", "number"};
+
+	/**
+	 * A compiled value reference, like int step1.request1.responseBody.id|0
+	 */
+	static final class Selector {
+
+		private final String  type;
+
+		/**
+		 * The path without type, for error messages and functions
+		 */
+		private final String  path;
+
+		private final boolean blank;
+
+		private final boolean func;
+
+		private final boolean global;
+
+		private final String  jpath;
+
+		/**
+		 * The path without the trailing [0] of a header, which may be a single value
+		 */
+		private final String  headerJpath;
+
+		private final String  defaultValue;
+
+		private Selector(String type, String path) {
+			this.type = type;
+			this.path = path;
+			blank = StringUtils.isBlank(path);
+			func  = !blank && path.startsWith(IFunc.NAME_SPACE_PREFIX);
+			String p = path, dv = null;
+			if (!blank && !func) {
+				int i = path.indexOf('|');
+				if (i != -1) {
+					p  = path.substring(0, i);
+					dv = path.substring(i + 1);
+				}
+			}
+			defaultValue = dv;
+			global = !blank && !func && p.startsWith(PathMapping.GLOBAL_RESOURCE_PREFIX);
+			if (blank || func) {
+				jpath       = null;
+				headerJpath = null;
+			} else {
+				String sp   = global ? p.substring(PathMapping.GLOBAL_RESOURCE_PREFIX.length()) : PathMapping.handlePath(p);
+				jpath       = "$." + sp;
+				headerJpath = headerPath(sp);
+			}
+		}
+
+		private static String headerPath(String path) {
+			String[] arr = path.split("\\.");
+			if ((arr.length == 6 && "headers".equals(arr[4]) && arr[5].endsWith("[0]"))
+					|| (arr.length == 4 && "headers".equals(arr[2]) && arr[3].endsWith("[0]"))) {
+				return "$." + path.substring(0, path.length() - 3);
+			}
+			return null;
+		}
+
+		/**
+		 * @param rule path with optional type prefix, like int step1.request1.responseBody.id
+		 */
+		static Selector ofRule(String rule) {
+			for (String t : TYPES) {
+				if (rule.length() > t.length() && rule.charAt(t.length()) == ' ' && rule.startsWith(t)) {
+					return new Selector(t, rule.substring(t.length() + 1));
+				}
+			}
+			return new Selector(null, rule);
+		}
+
+		static Selector of(String type, String path) {
+			return new Selector(type, path);
+		}
+
+		Object get(ONode ctxNode) {
+			if (blank) {
+				return null;
+			}
+			Object obj = null;
+			if (func) {
+				obj = FuncExecutor.getInstance().exec(ctxNode, path);
+				if (obj != null && type != null) {
+					obj = PathMapping.cast(obj, type, path);
+				}
+			} else {
+				try {
+					ONode val = select(global ? GlobalResourceService.resNode : ctxNode);
+					if (val != null && !val.isNull()) {
+						obj = val;
+					} else {
+						obj = defaultValue;
+					}
+					if (obj != null && type != null) {
+						obj = PathMapping.cast(obj, type, path);
+					}
+				} catch (Exception e) {
+					throw new FizzRuntimeException(String.format("path mapping errer: %s , path mapping data: %s %s", e.getMessage(), type, path), e);
+				}
+			}
+			return obj;
+		}
+
+		private ONode select(ONode node) {
+			ONode val = node.select(jpath);
+			if (val != null && !val.isNull()) {
+				return val;
+			}
+			if (headerJpath != null) {
+				ONode v = node.select(headerJpath);
+				if (!v.isArray()) {
+					return v;
+				}
+			}
+			return val;
+		}
+	}
+
+	private static final class Rule {
+
+		final String     key;
+
+		final String[]   keys;
+
+		final Selector   selector;
+
+		final Selector[] selectors;
+
+		Rule(String key, Selector selector, Selector[] selectors) {
+			this.key       = key;
+			this.keys      = key.split("\\.");
+			this.selector  = selector;
+			this.selectors = selectors;
+		}
+
+		String[] keys(boolean supportMultiLevels) {
+			return supportMultiLevels ? keys : new String[] {key};
+		}
+	}
+
+	private final List<Rule>          rules;
+
+	/**
+	 * The wildcard star rule, which is applied last
+	 */
+	private final Rule                starRule;
+
+	private final Map<String, Object> scriptRules;
+
+	private MappingPlan(List<Rule> rules, Rule starRule, Map<String, Object> scriptRules) {
+		this.rules       = rules;
+		this.starRule    = starRule;
+		this.scriptRules = scriptRules;
+	}
+
+	@SuppressWarnings("unchecked")
+	static MappingPlan compile(Map<String, Object> mappingRules) {
+		// same order as the rules are put in a hash map
+		Map<String, Object> rs = new HashMap<>();
+		for (Entry<String, Object> entry : mappingRules.entrySet()) {
+			Object v = entry.getValue();
+			if (v instanceof String) {
+				rs.put(entry.getKey(), Selector.ofRule((String) v));
+			} else if (v instanceof List) {
+				List<Selector> selectors = new ArrayList<>();
+				for (Object o : (List<Object>) v) {
+					if (o instanceof String) {
+						selectors.add(Selector.ofRule((String) o));
+					}
+				}
+				rs.put(entry.getKey(), selectors.toArray(new Selector[0]));
+			}
+		}
+		List<Rule> rules = new ArrayList<>(rs.size());
+		Rule starRule = null;
+		for (Entry<String, Object> entry : rs.entrySet()) {
+			Object v = entry.getValue();
+			Rule rule = v instanceof Selector ? new Rule(entry.getKey(), (Selector) v, null) : new Rule(entry.getKey(), null, (Selector[]) v);
+			if (rule.selector != null && CommonConstants.WILDCARD_STAR.equals(rule.key)) {
+				starRule = rule;
+			} else {
+				rules.add(rule);
+			}
+		}
+		return new MappingPlan(rules, starRule, Collections.unmodifiableMap(PathMapping.getScriptRules(mappingRules)));
+	}
+
+	@SuppressWarnings("unchecked")
+	ONode transform(ONode ctxNode, boolean supportMultiLevels) {
+		ONode target = ONode.load(new HashMap());
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = rules.get(i);
+			if (rule.selector != null) {
+				PathMapping.setByPath(target, rule.key, rule.keys(supportMultiLevels), rule.selector.get(ctxNode));
+			} else {
+				List<Object> refValList = new ArrayList<>();
+				for (Selector s : rule.selectors) {
+					Object obj = s.get(ctxNode);
+					// Only header form-data and query Parameter support multiple values, merge result into
+					// one a list
+					if (obj instanceof List) {
+						refValList.addAll((List<Object>) obj);
+					} else {
+						refValList.add(obj);
+					}
+				}
+				PathMapping.setByPath(target, rule.key, rule.keys(supportMultiLevels), refValList);
+			}
+		}
+		if (starRule != null) {
+			PathMapping.setByPath(target, starRule.key, starRule.keys(supportMultiLevels), starRule.selector.get(ctxNode));
+		}
+		return target;
+	}
+
+	Map<String, Object> getScriptRules() {
+		return scriptRules;
+	}
+}
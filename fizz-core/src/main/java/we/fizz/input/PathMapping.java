@@ -19,6 +19,7 @@ package we.fizz.input;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -39,10 +40,22 @@ import we.util.MapUtil;
  */
 public class PathMapping {
 	
-	private static final String GLOBAL_RESOURCE_PREFIX = "g.";
+	public static final String GLOBAL_RESOURCE_PREFIX = "g.";
 
-	private static List<String> typeList = Arrays.asList("Integer", "int", "Boolean", "boolean", "Float", "float",
-			"Double", "double", "String", "string", "Long", "long", "Number", "number");
+	private static final int MAX_CACHED = 10_000;
+
+	/**
+	 * Compiled mapping rules, the configs are parsed for each request, so the plans are cached by the rules
+	 */
+	private static final Map<Map<String, Object>, MappingPlan> plans = new ConcurrentHashMap<>();
+
+	private static final Map<String, MappingPlan.Selector> selectors = new ConcurrentHashMap<>();
+
+	/**
+	 * Converted fixed values, by whether multi levels supported
+	 */
+	private static final Map<Map<String, Object>, ONode> fixedNodes = new ConcurrentHashMap<>(),
+	                                                      fixedFlatNodes = new ConcurrentHashMap<>();
 	
 	public static ONode toONode(Object obj) {
 		ONode o = null;
@@ -52,8 +65,16 @@ public class PathMapping {
 		return o;
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public static void setByPath(ONode target, String path, Object obj, boolean supportMultiLevels) {
+		String[] keys = CommonConstants.WILDCARD_STAR.equals(path) ? null : supportMultiLevels ? path.split("\\.") : new String[] { path };
+		setByPath(target, path, keys, obj);
+	}
+
+	/**
+	 * @param keys the path split by dot if multi levels supported, or the path only
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static void setByPath(ONode target, String path, String[] keys, Object obj) {
 		if (CommonConstants.WILDCARD_STAR.equals(path)) {
 			if (obj instanceof ONode) {
 				ONode node = (ONode) obj;
@@ -64,10 +85,6 @@ public class PathMapping {
 				target.setAll((Map) obj);
 			}
 		} else {
-			String[] keys = path.split("\\.");
-			if (!supportMultiLevels) {
-				keys = new String[] { path };
-			}
 			ONode cur = target;
 			for (int i = 0; i < keys.length - 1; i++) {
 				cur = cur.get(keys[i]);
@@ -111,134 +128,44 @@ public class PathMapping {
 		return target.toObject(Map.class);
 	}
 
-	@SuppressWarnings("unchecked")
 	public static ONode transform(ONode ctxNode, Map<String, Object> rules, boolean supportMultiLevels) {
-		ONode target = ONode.load(new HashMap());
 		if (rules.isEmpty()) {
-			return target;
-		}
-
-		Map<String, Object> rs = new HashMap<>();
-		Map<String, Object> types = new HashMap<>();
-		for (Entry<String, Object> entry : rules.entrySet()) {
-			if (entry.getValue() instanceof String) {
-				String val = (String) entry.getValue();
-				Optional<String> optType = typeList.stream().filter(s -> val.startsWith(s + " ")).findFirst();
-				if (optType.isPresent()) {
-					rs.put(entry.getKey(), val.substring(optType.get().length() + 1));
-					types.put(entry.getKey(), optType.get());
-				} else {
-					rs.put(entry.getKey(), val);
-				}
-			} else if (entry.getValue() instanceof List) {
-				List<Object> values = (List<Object>) entry.getValue();
-				List<String> vList = new ArrayList<>();
-				List<String> tList = new ArrayList<>();
-				for (Object v : values) {
-					if (v instanceof String) {
-						String val = (String) v;
-						Optional<String> optType = typeList.stream().filter(s -> val.startsWith(s + " ")).findFirst();
-						if (optType.isPresent()) {
-							vList.add(val.substring(optType.get().length() + 1));
-							tList.add(optType.get());
-						} else {
-							vList.add(val);
-							tList.add(null);
-						}
-					}
-				}
-				rs.put(entry.getKey(), vList);
-				types.put(entry.getKey(), tList);
-			}
-		}
-
-		if (rs.isEmpty()) {
-			return target;
+			return ONode.load(new HashMap());
 		}
+		return getPlan(rules).transform(ctxNode, supportMultiLevels);
+	}
 
-		// wildcard star entry 
-		Object starValObj = null;
-		String starEntryKey = null;
-		
-		for (Entry<String, Object> entry : rs.entrySet()) {
-			if (entry.getValue() instanceof String) {
-				String path = (String) entry.getValue();
-				String type = (String) types.get(entry.getKey());
-				Object obj = getRefValue(ctxNode, type, path);
-				if (CommonConstants.WILDCARD_STAR.equals(entry.getKey())) {
-					starValObj = obj;
-					starEntryKey = entry.getKey();
-				} else {
-					setByPath(target, entry.getKey(), obj, supportMultiLevels);
-				}
-			} else if (entry.getValue() instanceof List) {
-				List<String> refs = (List<String>) entry.getValue();
-				List<String> tList = (List<String>) types.get(entry.getKey());
-				List<Object> refValList = new ArrayList<>();
-				for (int i = 0; i < refs.size(); i++) {
-					String path = refs.get(i);
-					String type = tList.get(i);
-					Object obj = getRefValue(ctxNode, type, path);
-					// Only header form-data and query Parameter support multiple values, merge result into
-					// one a list
-					if (obj instanceof List) {
-						refValList.addAll((List<Object>) obj);
-					} else {
-						refValList.add(obj);
-					}
-				}
-				setByPath(target, entry.getKey(), refValList, supportMultiLevels);
+	static MappingPlan getPlan(Map<String, Object> rules) {
+		MappingPlan plan = plans.get(rules);
+		if (plan == null) {
+			plan = MappingPlan.compile(rules);
+			if (plans.size() >= MAX_CACHED) {
+				plans.clear();
 			}
+			plans.put(new HashMap<>(rules), plan);
 		}
-		
-		if(starEntryKey != null) {
-			setByPath(target, starEntryKey, starValObj, supportMultiLevels);
-		}
-		return target;
+		return plan;
 	}
-	
+
 	private static Object getRefValue(ONode ctxNode, String type, String path) {
-		if (StringUtils.isBlank(path)) {
+		if (type != null) {
+			return MappingPlan.Selector.of(type, path).get(ctxNode);
+		}
+		if (path == null) {
 			return null;
 		}
-		Object obj = null;
-		// check if it is a function
-		if (path.startsWith(IFunc.NAME_SPACE_PREFIX)) {
-			obj = FuncExecutor.getInstance().exec(ctxNode, path);
-			if (obj != null && type != null) {
-				obj = cast(obj, type, path);
-			}
-		} else {
-			try {
-				String p = path;
-				String defaultValue = null;
-				if (path.indexOf("|") != -1) {
-					p = path.substring(0, path.indexOf("|"));
-					defaultValue = path.substring(path.indexOf("|") + 1);
-				}
-				ONode val = null;
-				if (p.startsWith(GLOBAL_RESOURCE_PREFIX)) {
-					val = select(GlobalResourceService.resNode, p.substring(GLOBAL_RESOURCE_PREFIX.length()));
-				} else {
-					val = select(ctxNode, handlePath(p));
-				}
-				if (val != null && !val.isNull()) {
-					obj = val;
-				} else {
-					obj = defaultValue;
-				}
-				if (obj != null && type != null) {
-					obj = cast(obj, type, path);
-				}
-			} catch (Exception e) {
-				// e.printStackTrace();
-				throw new FizzRuntimeException(String.format("path mapping errer: %s , path mapping data: %s %s", e.getMessage(), type, path), e);
+		MappingPlan.Selector selector = selectors.get(path);
+		if (selector == null) {
+			selector = MappingPlan.Selector.of(null, path);
+			if (selectors.size() >= MAX_CACHED) {
+				selectors.clear();
 			}
+			selectors.put(path, selector);
 		}
-		return obj;
+		return selector.get(ctxNode);
 	}
 	
-	private static Object cast(Object obj, String type, String path) {
+	static Object cast(Object obj, String type, String path) {
 		try {
 			switch (type) {
 			case "Integer":
@@ -555,9 +482,17 @@ public class PathMapping {
 			}
 			if (mappingRules != null) {
 				// 路径映射
-				ONode target = transform(ctxNode, mappingRules, supportMultiLevels);
-				// 脚本转换
-				Map<String, Object> scriptRules = getScriptRules(mappingRules);
+				ONode target;
+				Map<String, Object> scriptRules;
+				if (mappingRules.isEmpty()) {
+					target = ONode.load(new HashMap());
+					scriptRules = Collections.emptyMap();
+				} else {
+					MappingPlan plan = getPlan(mappingRules);
+					target = plan.transform(ctxNode, supportMultiLevels);
+					// 脚本转换
+					scriptRules = plan.getScriptRules();
+				}
 				Map<String, Object> scriptResult = ScriptHelper.executeScripts(target, scriptRules, ctxNode, stepContext, supportMultiLevels);
 				if (scriptResult != null && !scriptResult.isEmpty()) {
 					result = MapUtil.merge(result, scriptResult);
@@ -570,10 +505,24 @@ public class PathMapping {
 	}
 	
 	public static Map<String, Object> convertPath(Map<String, Object> fixed, boolean supportMultiLevels) {
-		ONode target = ONode.load(new HashMap());
 		if (fixed.isEmpty()) {
-			return target.toObject(Map.class);
+			return new HashMap<>();
 		}
+		Map<Map<String, Object>, ONode> nodes = supportMultiLevels ? fixedNodes : fixedFlatNodes;
+		ONode target = nodes.get(fixed);
+		if (target == null) {
+			target = toFixedNode(fixed, supportMultiLevels);
+			if (nodes.size() >= MAX_CACHED) {
+				nodes.clear();
+			}
+			nodes.put(new HashMap<>(fixed), target);
+		}
+		// a new map converted from the immutable node
+		return target.toObject(Map.class);
+	}
+
+	private static ONode toFixedNode(Map<String, Object> fixed, boolean supportMultiLevels) {
+		ONode target = ONode.load(new HashMap());
 
 		// wildcard star entry 
 		Object starValObj = null;
@@ -590,7 +539,6 @@ public class PathMapping {
 		if(starEntryKey != null) {
 			setByPath(target, starEntryKey, starValObj, supportMultiLevels);
 		}
-
-		return target.toObject(Map.class);
+		return target;
 	}
 }
@@ -18,10 +18,8 @@
 package we.fizz.input.extension.request;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.script.ScriptException;
 
@@ -29,14 +27,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.noear.snack.ONode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.ClientResponse;
-import org.springframework.web.util.UriComponents;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import com.alibaba.fastjson.JSON;
 
@@ -44,6 +41,7 @@ import reactor.core.publisher.Mono;
 import we.config.SystemConfig;
 import we.constants.CommonConstants;
 import we.exception.ExecuteScriptException;
+import we.fizz.AggregateTracer;
 import we.fizz.StepContext;
 import we.fizz.StepResponse;
 import we.fizz.input.IInput;
@@ -64,7 +62,6 @@ import we.util.MapUtil;
 import we.util.TypeUtils;
 import we.xml.JsonToXml;
 import we.xml.XmlToJson;
-import we.xml.XmlToJson.Builder;
 
 /**
  * 
@@ -92,15 +89,27 @@ public class RequestInput extends RPCInput implements IInput{
 
 	private static final String CONTENT_TYPE = "content-type";
 
-	private static final Integer SERVICE_TYPE_DISCOVERY = 1;
-	private static final Integer SERVICE_TYPE_HTTP = 2;
+	static final Integer SERVICE_TYPE_DISCOVERY = 1;
+	static final Integer SERVICE_TYPE_HTTP = 2;
+
+	/**
+	 * The beans used by each request, looked up once
+	 */
+	private static final class Beans {
+		final ConfigurableApplicationContext ctx;
+		final Map<Class<?>, Object> beans = new ConcurrentHashMap<>();
+
+		Beans(ConfigurableApplicationContext ctx) {
+			this.ctx = ctx;
+		}
+	}
+
+	private static volatile Beans beans;
 	
 	private String respContentType;
 	private String reqContentType;
 	
-	private String[] xmlArrPaths;
-	
-	private static Pattern PATH_VAR_PATTERN = Pattern.compile("(\\{)([^/]*)(\\})");
+	private String xmlArrPaths;
 	
 	public InputType getType() {
 		return type;
@@ -130,8 +139,8 @@ public class RequestInput extends RPCInput implements IInput{
 		HttpMethod method = HttpMethod.valueOf(config.getMethod().toUpperCase());
 		request.put("method", method);
 
-		Map<String, Object> params = new HashMap<>();
-		params.putAll(MapUtil.toHashMap(config.getQueryParams()));
+		UrlTemplate urlTemplate = UrlTemplate.of(config);
+		Map<String, Object> params = urlTemplate.getQueryParams();
 		request.put("params", params);
 
 		ONode ctxNode = null;
@@ -199,53 +208,38 @@ public class RequestInput extends RPCInput implements IInput{
 			}
 		}
 		
-		if (config.isNewVersion()) {
-			String host = config.getServiceName();
-
-			if (SERVICE_TYPE_HTTP.equals(config.getServiceType().intValue())) {
-				HttpInstanceService httpInstanceService = this.getCurrentApplicationContext()
-						.getBean(HttpInstanceService.class);
-				String instance = httpInstanceService.getInstance(config.getServiceName());
-				if (instance != null) {
-					host = instance;
-				}
-			} else if (SERVICE_TYPE_DISCOVERY.equals(config.getServiceType())) {
-				if (StringUtils.isNotBlank(config.getRegistryName())) {
-					// support choosing registry center
-					host = RegistryCenterService.getServiceNameSpace(config.getRegistryName(), host);
-				}
-			}
-			StringBuffer sb = new StringBuffer();
-			sb.append(config.getProtocol()).append("://").append(host)
-					.append(config.getPath().startsWith("/") ? "" : "/").append(setPathVariable(ctxNode, config.getPath()));
-
-			UriComponents uriComponents = UriComponentsBuilder.fromUriString(sb.toString())
-					.queryParams(MapUtil.toMultiValueMap(params)).build();
-
-			request.put("url", uriComponents.toUriString());
-		} else {
-			UriComponents uriComponents = UriComponentsBuilder.fromUriString(config.getBaseUrl() + setPathVariable(ctxNode, config.getPath()))
-					.queryParams(MapUtil.toMultiValueMap(params)).build();
-			request.put("url", uriComponents.toUriString());
+		String host = null;
+		switch (urlTemplate.hostResolution) {
+		case HTTP_INSTANCE:
+			String instance = getBean(HttpInstanceService.class).getInstance(urlTemplate.serviceName);
+			host = instance != null ? instance : urlTemplate.serviceName;
+			break;
+		case REGISTRY_NAMESPACE:
+			// support choosing registry center
+			host = RegistryCenterService.getServiceNameSpace(urlTemplate.registryName, urlTemplate.serviceName);
+			break;
+		case SERVICE_NAME:
+			host = urlTemplate.serviceName;
+			break;
+		default:
+			break;
 		}
+		request.put("url", urlTemplate.build(host, ctxNode, params));
 	}
-	
-	private String setPathVariable(ONode ctxNode, String path) {
-		if (ctxNode == null || StringUtils.isBlank(path)) {
-			return path;
+
+	private <T> T getBean(Class<T> type) {
+		ConfigurableApplicationContext ctx = this.getCurrentApplicationContext();
+		Beans b = beans;
+		if (b == null || b.ctx != ctx) {
+			b = new Beans(ctx);
+			beans = b;
 		}
-		String[] paths = path.split("/");
-		for (int i = 0; i < paths.length; i++) {
-			Matcher matcher = PATH_VAR_PATTERN.matcher(paths[i]);
-			if (matcher.find()) {
-				String jsonPath = matcher.group(2);
-				Object val = PathMapping.getValueByPath(ctxNode, jsonPath);
-				if (val != null && !(val instanceof Map) && !(val instanceof List)) {
-					paths[i] = matcher.replaceAll(String.valueOf(val));
-				}
-			}
+		Object bean = b.beans.get(type);
+		if (bean == null) {
+			bean = ctx.getBean(type);
+			b.beans.put(type, bean);
 		}
-		return String.join("/", paths);
+		return (T) bean;
 	}
 
 	@Override
@@ -261,7 +255,7 @@ public class RequestInput extends RPCInput implements IInput{
 				cfgContentType = (String) responseMapping.get("contentType");
 				String paths = (String) responseMapping.get("xmlArrPaths");
 				if (StringUtils.isNotBlank(paths)) {
-					xmlArrPaths = paths.split(",");
+					xmlArrPaths = paths;
 				}
 			}
 		}
@@ -363,7 +357,7 @@ public class RequestInput extends RPCInput implements IInput{
 		}
 		
 		// add default headers
-		SystemConfig systemConfig = this.getCurrentApplicationContext().getBean(SystemConfig.class);
+		SystemConfig systemConfig = getBean(SystemConfig.class);
 		for (String hdr : systemConfig.getProxySetHeaders()) {
 			if(inputContext.getStepContext().getInputReqHeader(hdr) != null) {
 				headers.addIfAbsent(hdr, (String) inputContext.getStepContext().getInputReqHeader(hdr));
@@ -384,16 +378,19 @@ public class RequestInput extends RPCInput implements IInput{
 			} else {
 				jsonStr = JSON.toJSONString(request.get("body"));
 			}
-			LOGGER.info("jsonBody={}", jsonStr);
 			if (jsonStr.startsWith("{") || jsonStr.startsWith("[")) {
-				JsonToXml jsonToXml = new JsonToXml.Builder(jsonStr).build();
+				Object jsonBody = request.get("body");
+				JsonToXml jsonToXml = jsonBody instanceof Map ? new JsonToXml.Builder((Map<String, Object>) jsonBody).build()
+						: new JsonToXml.Builder(jsonStr).build();
 				body = jsonToXml.toString();
 			} else {
 				body = jsonStr;
 			}
 			request.put("body", body);
-			LOGGER.info("body={}", body);
-			LOGGER.info("headers={}", JSON.toJSONString(headers));
+			if (inputContext.getStepContext().isDebug()) {
+				AggregateTracer.of(this.getCurrentApplicationContext()).trace(inputContext.getStepContext().getTraceId(),
+						"{} xml request jsonBody={} body={} headers={}", prefix, jsonStr, body, headers);
+			}
 		} else if (CONTENT_TYPE_MULTIPART_FORM_DATA.equals(reqContentType)) {
 			MultiValueMap<String, Object> mpDataMap = MapUtil
 					.toMultipartDataMap((Map<String, Object>) request.get("body"));
@@ -410,13 +407,7 @@ public class RequestInput extends RPCInput implements IInput{
 			}
 		}
 		
-		HttpMethod aggrMethod = HttpMethod.valueOf(inputContext.getStepContext().getInputReqAttr("method").toString());
-		String aggrPath = (String)inputContext.getStepContext().getInputReqAttr("path");
-		String aggrService = aggrPath.split("\\/")[2];
-		
-		FizzWebClient client = this.getCurrentApplicationContext().getBean(FizzWebClient.class);
-		// Mono<ClientResponse> clientResponse = client.aggrSend(aggrService, aggrMethod, aggrPath, null, method, url,
-		// 		headers, body, (long)timeout);
+		FizzWebClient client = getBean(FizzWebClient.class);
 
 		Mono<ClientResponse> clientResponse = client.send(inputContext.getStepContext().getTraceId(), method, url, 
 				headers, body, (long)timeout, numRetries, retryInterval);
@@ -492,14 +483,7 @@ public class RequestInput extends RPCInput implements IInput{
 					break;
 				case CONTENT_TYPE_XML:
 				case CONTENT_TYPE_TEXT_XML:
-					Builder builder = new XmlToJson.Builder(responseBody);
-					if (this.xmlArrPaths != null && this.xmlArrPaths.length > 0) {
-						for (int j = 0; j < this.xmlArrPaths.length; j++) {
-							String p = this.xmlArrPaths[j];
-							builder = builder.forceList(p);
-						}
-					}
-					body = builder.build().toJson().toMap();
+					body = XmlToJson.converter(this.xmlArrPaths).convert(responseBody);
 					break;
 				case CONTENT_TYPE_HTML:
 					body = responseBody;
@@ -520,10 +504,9 @@ public class RequestInput extends RPCInput implements IInput{
 
 	protected void doOnBodySuccess(Object resp, long elapsedMillis) {
 		if(inputContext.getStepContext().isDebug()) {
-			LogService.setBizId(inputContext.getStepContext().getTraceId());
-			LOGGER.info("{} 耗时:{}ms URL={}, reqHeader={} req={} resp={}", prefix, elapsedMillis, request.get("url"),
-					JSON.toJSONString(this.request.get("headers")),
-					JSON.toJSONString(this.request.get("body")), resp);
+			AggregateTracer.of(this.getCurrentApplicationContext()).trace(inputContext.getStepContext().getTraceId(),
+					"{} 耗时:{}ms URL={}, reqHeader={} req={} resp={}", prefix, elapsedMillis, request.get("url"),
+					this.request.get("headers"), this.request.get("body"), resp);
 		}
 	}
 
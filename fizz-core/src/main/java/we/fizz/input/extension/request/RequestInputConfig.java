@@ -141,6 +141,10 @@ public class RequestInputConfig extends InputConfig {
 		return url.getPath();
 	}
 
+	public URL getUrl() {
+		return url;
+	}
+
 	public void setUrl(String string) {
 		try {
 			url = new URL(string);
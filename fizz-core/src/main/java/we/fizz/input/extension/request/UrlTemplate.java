@@ -0,0 +1,312 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz.input.extension.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.noear.snack.ONode;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import we.fizz.input.PathMapping;
+import we.util.MapUtil;
+
+/**
+ * The URL of a request input compiled once: how the host is resolved, the literal path segments and the path variables,
+ * like /users/{step1.request1.responseBody.id}, and the query params of the URL.
+ * <p>
+ * The URL is rendered the same as {@link UriComponentsBuilder#fromUriString} and {@code toUriString()} do, and rendered
+ * by them if the host or the path has the characters they treat specially.
+ *
+ * @author zhongjie
+ */
+final class UrlTemplate {
+
+	private static final int     MAX_CACHED       = 10_000;
+
+	private static final Pattern PATH_VAR_PATTERN = Pattern.compile("(\\{)([^/]*)(\\})");
+
+	private static final Map<String, UrlTemplate> templates = new ConcurrentHashMap<>();
+
+	enum HostResolution {
+
+		/**
+		 * An instance of the HTTP service
+		 */
+		HTTP_INSTANCE,
+
+		/**
+		 * The service name in the namespace of the registry center
+		 */
+		REGISTRY_NAMESPACE,
+
+		SERVICE_NAME,
+
+		BASE_URL
+	}
+
+	private static final class Segment {
+
+		final String  literal;
+
+		/**
+		 * The path variable, null if the segment is literal
+		 */
+		final String  jsonPath;
+
+		final String  prefix;
+
+		final String  suffix;
+
+		Segment(String literal) {
+			this.literal = literal;
+			Matcher matcher = PATH_VAR_PATTERN.matcher(literal);
+			if (matcher.find()) {
+				jsonPath = matcher.group(2);
+				prefix   = literal.substring(0, matcher.start());
+				suffix   = literal.substring(matcher.end());
+			} else {
+				jsonPath = null;
+				prefix   = null;
+				suffix   = null;
+			}
+		}
+
+		void appendTo(StringBuilder b, ONode ctxNode) {
+			if (jsonPath == null) {
+				b.append(literal);
+				return;
+			}
+			Object val = PathMapping.getValueByPath(ctxNode, jsonPath);
+			if (val == null || val instanceof Map || val instanceof List) {
+				b.append(literal);
+				return;
+			}
+			String s = String.valueOf(val);
+			if (s.indexOf('$') != -1 || s.indexOf('\\') != -1) {
+				// a replacement with group references
+				b.append(PATH_VAR_PATTERN.matcher(literal).replaceAll(s));
+			} else {
+				b.append(prefix).append(s).append(suffix);
+			}
+		}
+	}
+
+	final HostResolution                  hostResolution;
+
+	final String                          serviceName;
+
+	final String                          registryName;
+
+	private final String                  scheme;
+
+	/**
+	 * Scheme, host and port of the URL of the old version config
+	 */
+	private final String                  baseUrl;
+
+	private final String                  path;
+
+	private final Segment[]               segments;
+
+	private final boolean                 leadingSlash;
+
+	private final MultiValueMap<String, String> queryParams;
+
+	/**
+	 * Whether the scheme or the base URL is rendered as is
+	 */
+	private final boolean                 simplePrefix;
+
+	private UrlTemplate(RequestInputConfig config) {
+		if (config.isNewVersion()) {
+			if (RequestInput.SERVICE_TYPE_HTTP.equals(config.getServiceType())) {
+				hostResolution = HostResolution.HTTP_INSTANCE;
+			} else if (RequestInput.SERVICE_TYPE_DISCOVERY.equals(config.getServiceType()) && StringUtils.isNotBlank(config.getRegistryName())) {
+				hostResolution = HostResolution.REGISTRY_NAMESPACE;
+			} else {
+				hostResolution = HostResolution.SERVICE_NAME;
+			}
+			serviceName  = config.getServiceName();
+			registryName = config.getRegistryName();
+			scheme       = config.getProtocol();
+			baseUrl      = null;
+			queryParams  = null;
+		} else {
+			hostResolution = HostResolution.BASE_URL;
+			serviceName    = null;
+			registryName   = null;
+			scheme         = null;
+			baseUrl        = config.getBaseUrl();
+			queryParams    = config.getQueryParams();
+		}
+		simplePrefix = baseUrl == null ? isSimple(scheme, false) : isSimpleBase(baseUrl);
+		path = config.getPath();
+		leadingSlash = config.isNewVersion() && !path.startsWith("/");
+		if (StringUtils.isBlank(path)) {
+			segments = null;
+		} else {
+			String[] paths = path.split("/");
+			segments = new Segment[paths.length];
+			for (int i = 0; i < paths.length; i++) {
+				segments[i] = new Segment(paths[i]);
+			}
+		}
+	}
+
+	static UrlTemplate of(RequestInputConfig config) {
+		String key;
+		if (config.isNewVersion()) {
+			key = config.getServiceType() + " " + config.getProtocol() + "://" + config.getServiceName() + ' ' + config.getRegistryName() + ' ' + config.getPath();
+		} else {
+			key = config.getUrl().toString();
+		}
+		UrlTemplate t = templates.get(key);
+		if (t == null) {
+			t = new UrlTemplate(config);
+			if (templates.size() >= MAX_CACHED) {
+				templates.clear();
+			}
+			templates.put(key, t);
+		}
+		return t;
+	}
+
+	/**
+	 * @return the query params of the old version config, a copy can be changed
+	 */
+	Map<String, Object> getQueryParams() {
+		Map<String, Object> m = MapUtil.toHashMap(queryParams);
+		for (Entry<String, Object> e : m.entrySet()) {
+			if (e.getValue() instanceof List) {
+				e.setValue(new ArrayList<>((List<?>) e.getValue()));
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * @param host    the resolved host, null for the old version config
+	 * @param ctxNode to resolve the path variables, the path is not changed if null
+	 * @param params  the query params
+	 */
+	String build(String host, ONode ctxNode, Map<String, Object> params) {
+		StringBuilder b = new StringBuilder(128);
+		boolean simple;
+		int pathStart;
+		if (baseUrl == null) {
+			b.append(scheme).append("://").append(host);
+			simple = simplePrefix && isSimple(host, true);
+			pathStart = b.length();
+			if (leadingSlash) {
+				b.append('/');
+			}
+		} else {
+			b.append(baseUrl);
+			simple = simplePrefix;
+			pathStart = b.length();
+		}
+		if (ctxNode == null || segments == null) {
+			if (path != null) {
+				b.append(path);
+			}
+		} else {
+			for (int i = 0; i < segments.length; i++) {
+				if (i > 0) {
+					b.append('/');
+				}
+				segments[i].appendTo(b, ctxNode);
+			}
+		}
+		if (!simple || indexOf(b, pathStart, '?') != -1 || indexOf(b, pathStart, '#') != -1) {
+			return UriComponentsBuilder.fromUriString(b.toString()).queryParams(MapUtil.toMultiValueMap(params)).build().toUriString();
+		}
+		// the path is sanitized by the builder
+		for (int i = b.indexOf("//", pathStart); i != -1; i = b.indexOf("//", i)) {
+			b.deleteCharAt(i);
+		}
+		appendQuery(b, params);
+		return b.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void appendQuery(StringBuilder b, Map<String, Object> params) {
+		if (params == null || params.isEmpty()) {
+			return;
+		}
+		int start = b.length();
+		for (Entry<String, Object> entry : params.entrySet()) {
+			Object val = entry.getValue();
+			if (val instanceof List) {
+				for (Object v : (List<Object>) val) {
+					if (v != null) {
+						appendParam(b, start, entry.getKey(), v);
+					}
+				}
+			} else if (val != null) {
+				appendParam(b, start, entry.getKey(), val);
+			}
+		}
+	}
+
+	private static void appendParam(StringBuilder b, int start, String name, Object value) {
+		b.append(b.length() == start ? '?' : '&').append(name).append('=').append(value);
+	}
+
+	private static int indexOf(StringBuilder b, int from, char c) {
+		for (int i = from; i < b.length(); i++) {
+			if (b.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isSimpleBase(String baseUrl) {
+		int i = baseUrl.indexOf("://");
+		return i > 0 && isSimple(baseUrl.substring(0, i), false) && isSimple(baseUrl.substring(i + 3), true);
+	}
+
+	/**
+	 * @return true if the scheme or host, with an optional port, is rendered as is
+	 */
+	private static boolean isSimple(String s, boolean host) {
+		if (s == null || s.isEmpty()) {
+			return false;
+		}
+		int port = -1;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == ':' && host && port == -1) {
+				port = i;
+			} else if (c == ':' || c == '/' || c == '?' || c == '#' || c == '@' || c == '[' || c == ']' || c == '{' || c == '}'
+					|| c == '%' || Character.isWhitespace(c) || (port != -1 && !Character.isDigit(c))) {
+				return false;
+			}
+		}
+		// the port is parsed as an int
+		return port != 0 && port != s.length() - 1 && (port == -1 || s.length() - port <= 6);
+	}
+}
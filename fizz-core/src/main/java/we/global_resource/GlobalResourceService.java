@@ -25,6 +25,7 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
 import we.fizz.input.PathMapping;
 import we.util.JacksonUtils;
 import we.util.Result;
@@ -53,6 +54,9 @@ public class GlobalResourceService {
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
     @PostConstruct
     public void init() throws Throwable {
         Result<?> result = initGlobalResource();
@@ -73,7 +77,7 @@ public class GlobalResourceService {
 
     private Result<?> initGlobalResource() {
         Result<?> result = Result.succ();
-        Flux<Map.Entry<Object, Object>> resources = rt.opsForHash().entries("fizz_global_resource");
+        Flux<Map.Entry<Object, Object>> resources = ConfigPreloader.entries(configPreloader, rt, "fizz_global_resource", null);
         resources.collectList()
                  .defaultIfEmpty(Collections.emptyList())
                  .flatMap(
@@ -16,6 +16,7 @@
  */
 package we.log;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.*;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
 import org.apache.logging.log4j.core.config.Property;
@@ -84,11 +85,30 @@ public class LogSendAppenderWithLog4j2 extends AbstractAppender {
             }
         }
 
+        if (!logSendService.sample(toSampleLevel(event.getLevel()))) {
+            return;
+        }
         LogSend logSend = new LogSend(this.getBizId(event.getMessage().getParameters()), NetworkUtils.getServerIp(),
                 event.getLevel().intLevel(), event.getTimeMillis(), new String(this.getLayout().toByteArray(event)));
         logSendService.send(logSend);
     }
 
+    private static int toSampleLevel(Level level) {
+        switch (level.getStandardLevel()) {
+            case FATAL:
+            case ERROR:
+                return LogSendBatcher.LEVEL_ERROR;
+            case WARN:
+                return LogSendBatcher.LEVEL_WARN;
+            case INFO:
+                return LogSendBatcher.LEVEL_INFO;
+            case DEBUG:
+                return LogSendBatcher.LEVEL_DEBUG;
+            default:
+                return LogSendBatcher.LEVEL_TRACE;
+        }
+    }
+
     private String getBizId(Object[] parameters) {
         Object bizId = LogService.getBizId();
         if (parameters != null) {
@@ -1,5 +1,6 @@
 package we.log;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.AppenderBase;
 import ch.qos.logback.core.Layout;
@@ -64,6 +65,9 @@ public class LogSendAppenderWithLogback extends AppenderBase<ILoggingEvent> {
                 }
             }
 
+            if (!logSendService.sample(toSampleLevel(event.getLevel().levelInt))) {
+                return;
+            }
             LogSend logSend = new LogSend(this.getBizId(event.getArgumentArray()), NetworkUtils.getServerIp(),
                     event.getLevel().levelInt, event.getTimeStamp(), this.getLayout().doLayout(event));
             logSendService.send(logSend);
@@ -72,6 +76,19 @@ public class LogSendAppenderWithLogback extends AppenderBase<ILoggingEvent> {
         }
     }
 
+    private static int toSampleLevel(int levelInt) {
+        if (levelInt >= Level.ERROR_INT) {
+            return LogSendBatcher.LEVEL_ERROR;
+        } else if (levelInt >= Level.WARN_INT) {
+            return LogSendBatcher.LEVEL_WARN;
+        } else if (levelInt >= Level.INFO_INT) {
+            return LogSendBatcher.LEVEL_INFO;
+        } else if (levelInt >= Level.DEBUG_INT) {
+            return LogSendBatcher.LEVEL_DEBUG;
+        }
+        return LogSendBatcher.LEVEL_TRACE;
+    }
+
     private String getBizId(Object[] parameters) {
         Object bizId = LogService.getBizId();
         if (parameters != null) {
@@ -0,0 +1,262 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.log;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffers the {@link LogSend}s in a lock-free ring buffer, and publishes them in batches in a background thread,
+ * so the logging thread, which is often an event loop, doesn't serialize and send the logs itself.
+ * <p>
+ * The buffer is bounded by both the number and the size of the logs, the logs beyond are dropped and counted,
+ * the INFO, DEBUG and TRACE logs can be sampled.
+ *
+ * @author zhongjie
+ */
+public class LogSendBatcher {
+
+    /**
+     * Publishes a batch of logs, called in the background thread only.
+     */
+    public interface Publisher {
+        void publish(List<LogSend> batch) throws Throwable;
+    }
+
+    public static final int LEVEL_ERROR = 0;
+
+    public static final int LEVEL_WARN  = 1;
+
+    public static final int LEVEL_INFO  = 2;
+
+    public static final int LEVEL_DEBUG = 3;
+
+    public static final int LEVEL_TRACE = 4;
+
+    /**
+     * approximate memory taken by a {@link LogSend} besides its content
+     */
+    private static final int        LOG_OVERHEAD_BYTES = 128;
+
+    private final Queue<LogSend>    buffer;
+
+    private final long              maxBufferedBytes;
+
+    private final int               batchSize;
+
+    private final long              lingerNanos;
+
+    /**
+     * keep one of every n logs of the level
+     */
+    private final int[]             sampleRates;
+
+    private final AtomicLong[]      sampleCounters     = new AtomicLong[LEVEL_TRACE + 1];
+
+    private final Publisher         publisher;
+
+    private final AtomicLong        bufferedBytes      = new AtomicLong();
+
+    private final AtomicLong        dropped            = new AtomicLong();
+
+    private final AtomicLong        sampledOut         = new AtomicLong();
+
+    private final AtomicLong        published          = new AtomicLong();
+
+    private final AtomicLong        publishFailed      = new AtomicLong();
+
+    private final AtomicLong        batches            = new AtomicLong();
+
+    private final Thread            thread;
+
+    private volatile boolean        closed             = false;
+
+    /**
+     * the background thread is parked or about to park, and should be unparked by an offer
+     */
+    private volatile boolean        waiting            = false;
+
+    /**
+     * @param bufferSize       max logs buffered, rounded up to power of 2
+     * @param maxBufferedBytes max size of logs buffered
+     * @param batchSize        max logs published in a batch
+     * @param lingerMillis     max time to wait for more logs to fill a batch
+     * @param sampleRates      keep one of every n logs of INFO, DEBUG and TRACE level, 1 to keep all
+     */
+    public LogSendBatcher(int bufferSize, long maxBufferedBytes, int batchSize, long lingerMillis, int[] sampleRates, Publisher publisher) {
+        this.buffer           = PlatformDependent.newFixedMpscQueue(bufferSize);
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.batchSize        = batchSize;
+        this.lingerNanos      = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.sampleRates      = new int[LEVEL_TRACE + 1];
+        for (int i = 0; i <= LEVEL_TRACE; i++) {
+            int rate = i < LEVEL_INFO || sampleRates == null || i - LEVEL_INFO >= sampleRates.length ? 1 : sampleRates[i - LEVEL_INFO];
+            this.sampleRates[i] = Math.max(1, rate);
+            sampleCounters[i] = new AtomicLong();
+        }
+        this.publisher = publisher;
+        thread = new Thread(this::run, "fizz-log-send");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param level one of the LEVEL_ constants
+     * @return false if the log of the level is sampled out or the buffer is full, so it needn't be rendered
+     */
+    public boolean sample(int level) {
+        return sample(level, sampleRates[level]);
+    }
+
+    /**
+     * @param rate keep one of every n logs of the level, instead of the rate given on construction, for the rate which can be changed
+     */
+    public boolean sample(int level, int rate) {
+        if (closed || bufferedBytes.get() >= maxBufferedBytes) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (rate > 1 && sampleCounters[level].getAndIncrement() % rate != 0) {
+            sampledOut.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the log is dropped because the buffer is full
+     */
+    public boolean offer(LogSend logSend) {
+        long size = size(logSend);
+        if (closed || bufferedBytes.addAndGet(size) > maxBufferedBytes || !buffer.offer(logSend)) {
+            bufferedBytes.addAndGet(-size);
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    private static long size(LogSend logSend) {
+        String content = logSend.getContent();
+        return LOG_OVERHEAD_BYTES + (content == null ? 0 : content.length() * 2L);
+    }
+
+    private void run() {
+        List<LogSend> batch = new ArrayList<>(batchSize);
+        while (!closed || !buffer.isEmpty()) {
+            long deadline = 0;
+            while (batch.size() < batchSize) {
+                LogSend logSend = buffer.poll();
+                if (logSend != null) {
+                    bufferedBytes.addAndGet(-size(logSend));
+                    batch.add(logSend);
+                    if (batch.size() == 1) {
+                        deadline = System.nanoTime() + lingerNanos;
+                    }
+                } else if (closed) {
+                    break;
+                } else if (batch.isEmpty()) {
+                    park(0);
+                } else {
+                    long linger = deadline - System.nanoTime();
+                    if (linger <= 0) {
+                        break;
+                    }
+                    park(linger);
+                }
+            }
+            if (!batch.isEmpty()) {
+                publish(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * @param nanos max time to park, 0 to park until an offer or close
+     */
+    private void park(long nanos) {
+        // an offer after the waiting flag is set sees it and unparks the thread, one before is seen by the check here
+        waiting = true;
+        if (buffer.isEmpty() && !closed) {
+            if (nanos > 0) {
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        waiting = false;
+    }
+
+    private void publish(List<LogSend> batch) {
+        try {
+            publisher.publish(batch);
+            published.addAndGet(batch.size());
+        } catch (Throwable t) {
+            // don't log, or the log would be sent again
+            publishFailed.addAndGet(batch.size());
+        }
+        batches.incrementAndGet();
+    }
+
+    /**
+     * Stop accepting logs and publish the buffered ones.
+     */
+    public void close(long timeoutMillis) throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(thread);
+        thread.join(timeoutMillis);
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public int getBuffered() {
+        return buffer.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.get();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getPublishFailed() {
+        return publishFailed.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+}
@@ -27,4 +27,12 @@ public interface LogSendService {
      * @param logSend log data
      */
     void send(LogSend logSend);
+
+    /**
+     * @param level one of the {@link LogSendBatcher} LEVEL_ constants
+     * @return false if the log of the level would be dropped, so the appender needn't render it
+     */
+    default boolean sample(int level) {
+        return true;
+    }
 }
@@ -18,31 +18,93 @@ package we.log;
 
 import com.alibaba.fastjson.JSON;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
 import we.config.AggregateRedisConfig;
 import we.config.AggregateRedisConfigProperties;
 
+import java.time.Duration;
+import java.util.List;
+
 /**
- * {@link LogSendService} impl class, using redis channel to send log
+ * {@link LogSendService} impl class, using redis channel to send log.
+ * <p>
+ * The logs are buffered by {@link LogSendBatcher} and published in background, pipelined on the redis connection,
+ * a message per log, or a JSON array of at most {@code send-log.frame-size} logs per message if it's greater than 1.
+ * <p>
+ * The frame size, publish timeout and sample rates are read from the refreshable {@link AggregateRedisConfigProperties} when used,
+ * the buffer size, max buffered bytes, batch size and linger of the batcher are read once on construction.
  *
  * @author zhongjie
  */
 public class RedisLogSendServiceImpl implements LogSendService {
 
+    /**
+     * max publish commands in flight
+     */
+    private static final int PIPELINE = 64;
+
     public RedisLogSendServiceImpl(AggregateRedisConfigProperties aggregateRedisConfigProperties,
                                    AggregateRedisConfig aggregateRedisConfig, ReactiveStringRedisTemplate reactiveStringRedisTemplate) {
         this.aggregateRedisConfigProperties = aggregateRedisConfigProperties;
         this.aggregateRedisConfig = aggregateRedisConfig;
         this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.logSendBatcher = new LogSendBatcher(aggregateRedisConfigProperties.getSendLogBufferSize(),
+                aggregateRedisConfigProperties.getSendLogMaxBufferedBytes(), aggregateRedisConfigProperties.getSendLogBatchSize(),
+                aggregateRedisConfigProperties.getSendLogLingerMillis(),
+                new int[]{aggregateRedisConfigProperties.getSendLogInfoSampleRate(), aggregateRedisConfigProperties.getSendLogDebugSampleRate(),
+                          aggregateRedisConfigProperties.getSendLogTraceSampleRate()},
+                this::publish);
     }
 
     private AggregateRedisConfigProperties aggregateRedisConfigProperties;
     private AggregateRedisConfig aggregateRedisConfig;
     private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final LogSendBatcher logSendBatcher;
+
+    @Override
+    public boolean sample(int level) {
+        return aggregateRedisConfigProperties.isSendLogOpen() && logSendBatcher.sample(level, sampleRate(level));
+    }
+
+    private int sampleRate(int level) {
+        switch (level) {
+            case LogSendBatcher.LEVEL_INFO:  return aggregateRedisConfigProperties.getSendLogInfoSampleRate();
+            case LogSendBatcher.LEVEL_DEBUG: return aggregateRedisConfigProperties.getSendLogDebugSampleRate();
+            case LogSendBatcher.LEVEL_TRACE: return aggregateRedisConfigProperties.getSendLogTraceSampleRate();
+            default:                         return 1;
+        }
+    }
 
     @Override
     public void send(LogSend logSend) {
         if (aggregateRedisConfigProperties.isSendLogOpen()) {
-            reactiveStringRedisTemplate.convertAndSend(aggregateRedisConfigProperties.getSendLogChannel(), JSON.toJSONString(logSend)).subscribe();
+            logSendBatcher.offer(logSend);
         }
     }
+
+    private void publish(List<LogSend> batch) {
+        String channel = aggregateRedisConfigProperties.getSendLogChannel();
+        int frameSize = aggregateRedisConfigProperties.getSendLogFrameSize();
+        Flux<String> messages;
+        if (frameSize > 1) {
+            messages = Flux.range(0, (batch.size() + frameSize - 1) / frameSize)
+                           .map(i -> JSON.toJSONString(batch.subList(i * frameSize, Math.min(batch.size(), (i + 1) * frameSize))));
+        } else {
+            messages = Flux.fromIterable(batch).map(JSON::toJSONString);
+        }
+        messages.flatMap(m -> reactiveStringRedisTemplate.convertAndSend(channel, m), PIPELINE)
+                .then()
+                .block(Duration.ofMillis(aggregateRedisConfigProperties.getSendLogPublishTimeoutMillis()));
+    }
+
+    /**
+     * Stop accepting logs and publish the buffered ones.
+     */
+    public void close(long timeoutMillis) throws InterruptedException {
+        logSendBatcher.close(timeoutMillis);
+    }
+
+    public LogSendBatcher getLogSendBatcher() {
+        return logSendBatcher;
+    }
 }
@@ -28,6 +28,10 @@ import we.util.Consts;
 import we.util.ThreadContext;
 
 import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * @author hongqiaowei
@@ -49,6 +53,8 @@ public class FizzMonitorService {
     private static final String _desc      = "\"desc\":";
     private static final String _timestamp = "\"timestamp\":";
 
+    private static final int MAX_PATHS_PER_SERVICE = 1000;
+
     @Value("${fizz.monitor.alarm.enable:true}")
     private boolean alarmEnable;
 
@@ -58,11 +64,28 @@ public class FizzMonitorService {
     @Value("${fizz.monitor.alarm.queue:fizz_alarm_channel}")
     private String queue;
 
+    /**
+     * send at most one alarm of a type for a service path in the interval, 0 to send all
+     */
+    @Value("${fizz.monitor.alarm.min-interval-millis:1000}")
+    private long alarmMinIntervalMillis = 1000;
+
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
 
+    /**
+     * service to path to last alarm time of each type
+     */
+    private final Map<String, Map<String, AtomicLongArray>> lastAlarmTimes = new ConcurrentHashMap<>();
+
+    private final AtomicLong suppressedAlarms = new AtomicLong();
+
     public void sendAlarm(String service, String path, byte type, String desc, long timestamp) {
         if (alarmEnable) {
+            if (!permit(service, path, type, timestamp)) {
+                suppressedAlarms.incrementAndGet();
+                return;
+            }
             StringBuilder b = ThreadContext.getStringBuilder();
             b.append(Consts.S.LEFT_BRACE);
                 b.append(_service);   toJsonStrVal(b, service);       b.append(Consts.S.COMMA);
@@ -84,6 +107,49 @@ public class FizzMonitorService {
         }
     }
 
+    private boolean permit(String service, String path, byte type, long timestamp) {
+        if (alarmMinIntervalMillis <= 0) {
+            return true;
+        }
+        if (service == null) {
+            service = Consts.S.EMPTY;
+        }
+        if (path == null) {
+            path = Consts.S.EMPTY;
+        }
+        Map<String, AtomicLongArray> path2times = lastAlarmTimes.get(service);
+        if (path2times == null) {
+            path2times = new ConcurrentHashMap<>();
+            Map<String, AtomicLongArray> prev = lastAlarmTimes.putIfAbsent(service, path2times);
+            if (prev != null) {
+                path2times = prev;
+            }
+        }
+        AtomicLongArray times = path2times.get(path);
+        if (times == null) {
+            if (path2times.size() >= MAX_PATHS_PER_SERVICE) {
+                path2times.clear();
+            }
+            times = new AtomicLongArray(CIRCUIT_BREAK_ALARM + 1);
+            AtomicLongArray prev = path2times.putIfAbsent(path, times);
+            if (prev != null) {
+                times = prev;
+            }
+        }
+        long last = times.get(type);
+        if (last != 0 && timestamp - last < alarmMinIntervalMillis) {
+            return false;
+        }
+        return times.compareAndSet(type, last, timestamp);
+    }
+
+    /**
+     * @return number of alarms not sent because of the min interval
+     */
+    public long getSuppressedAlarms() {
+        return suppressedAlarms.get();
+    }
+
     private static void toJsonStrVal(StringBuilder b, String value) {
         b.append(Consts.S.DOUBLE_QUOTE).append(value).append(Consts.S.DOUBLE_QUOTE);
     }
@@ -20,8 +20,6 @@ package we.plugin;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
-import we.Fizz;
-import we.FizzAppContext;
 import we.proxy.Route;
 import we.util.ReactorUtils;
 import we.util.WebUtils;
@@ -55,13 +53,13 @@ public final class FizzPluginFilterChain {
         }
         if (it.hasNext()) {
             PluginConfig pc = it.next();
-            FizzPluginFilter pf = Fizz.context.getBean(pc.plugin, FizzPluginFilter.class);
+            FizzPluginFilter pf = pc.filter();
             Mono<Void> m = pf.filter(exchange, pc.config);
             if (pf instanceof PluginFilter) {
                 boolean f = false;
                 while (it.hasNext()) {
                     PluginConfig pc0 = it.next();
-                    FizzPluginFilter pf0 = Fizz.context.getBean(pc0.plugin, FizzPluginFilter.class);
+                    FizzPluginFilter pf0 = pc0.filter();
                     m = m.thenReturn(ReactorUtils.Void).flatMap(
                                                                v -> {
                                                                    return pf0.filter(exchange, pc0.config);
@@ -18,6 +18,7 @@
 package we.plugin;
 
 import org.apache.commons.lang3.StringUtils;
+import we.Fizz;
 import we.util.JacksonUtils;
 
 import java.util.Collections;
@@ -40,6 +41,20 @@ public class PluginConfig implements Comparable<PluginConfig> {
 
     public int                 order;
 
+    private volatile FizzPluginFilter filter;
+
+    /**
+     * @return the plugin filter bean, which is resolved once for this config.
+     */
+    public FizzPluginFilter filter() {
+        FizzPluginFilter f = filter;
+        if (f == null) {
+            f = Fizz.context.getBean(plugin, FizzPluginFilter.class);
+            filter = f;
+        }
+        return f;
+    }
+
     public void setConfig(String confJson) {
         if (StringUtils.isNotBlank(confJson)) {
             Map m = JacksonUtils.readValue(confJson, Map.class);
@@ -24,6 +24,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.server.ServerWebExchange;
 import we.plugin.PluginConfig;
+import we.proxy.OutlierDetector;
 import we.proxy.Route;
 import we.util.Consts;
 import we.util.JacksonUtils;
@@ -31,6 +32,7 @@ import we.util.UrlTransformUtils;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -92,7 +94,7 @@ public class ApiConfig {
     @JsonProperty("proxyMode")
     public  byte               type               = Type.SERVICE_DISCOVERY;
 
-    private int                counter            = 0;
+    private AtomicInteger      counter            = new AtomicInteger(0);
 
     public  List<String>       httpHostPorts;
 
@@ -118,6 +120,10 @@ public class ApiConfig {
 
     public  long               retryInterval      = 0;
 
+    private volatile GatewayGroupPluginConfigs gatewayGroupPluginConfigs;
+
+    private volatile UrlTransformUtils.BackendPathTemplate backendPathTemplate;
+
     public void setDeleted(int v) {
         if (v == 1) {
             isDeleted = true;
@@ -177,6 +183,11 @@ public class ApiConfig {
         }
     }
 
+    public void setPluginConfigs(List<PluginConfig> pcs) {
+        pluginConfigs = pcs;
+        gatewayGroupPluginConfigs = null;
+    }
+
     public void setAppEnable(int v) {
         if (v == 1) {
             checkApp = true;
@@ -191,20 +202,40 @@ public class ApiConfig {
 
     @JsonIgnore
     public String getNextHttpHostPort() {
-        int i = counter++;
-        if (i < 0) {
-            i = Math.abs(i);
-        }
+        int i = counter.getAndIncrement();
         return httpHostPorts.get(
-            i % httpHostPorts.size()
+            Math.floorMod(i, httpHostPorts.size())
         );
     }
 
+    /**
+     * @return the next http host port not ejected by outlier detector, or the next one if all are ejected
+     */
+    public String getNextHttpHostPort(OutlierDetector outlierDetector) {
+        int n = httpHostPorts.size();
+        String first = null;
+        for (int j = 0; j < n; j++) {
+            String hostPort = getNextHttpHostPort();
+            if (!outlierDetector.isEjected(OutlierDetector.address(hostPort))) {
+                return hostPort;
+            }
+            if (first == null) {
+                first = hostPort;
+            }
+        }
+        return first;
+    }
+
     public String transform(String reqPath) {
         if (exactMatch) {
             return backendPath;
         }
-        return UrlTransformUtils.transform(path, backendPath, reqPath);
+        UrlTransformUtils.BackendPathTemplate t = backendPathTemplate;
+        if (t == null || t.getBackendPath() != backendPath) {
+            t = UrlTransformUtils.BackendPathTemplate.compile(backendPath);
+            backendPathTemplate = t;
+        }
+        return UrlTransformUtils.transform(path, t, reqPath);
     }
 
     @Override
@@ -240,11 +271,7 @@ public class ApiConfig {
         if (gatewayGroupPluginConfigs == null || gatewayGroupPluginConfigs.isEmpty()) {
             r.pluginConfigs = this.pluginConfigs;
         } else {
-            List<PluginConfig> pcs = new ArrayList<>(gatewayGroupPluginConfigs.size() + this.pluginConfigs.size());
-            pcs.addAll(gatewayGroupPluginConfigs);
-            pcs.addAll(this.pluginConfigs);
-            pcs.sort(null);
-            r.pluginConfigs = pcs;
+            r.pluginConfigs = getPluginConfigs(gatewayGroupPluginConfigs);
         }
 
         if (this.type == Type.REVERSE_PROXY) {
@@ -254,6 +281,39 @@ public class ApiConfig {
         return r;
     }
 
+    /**
+     * @return gateway group plugin configs merged with this api's ones, the result is reused until the gateway group plugin configs
+     * or this api's ones are replaced.
+     */
+    private List<PluginConfig> getPluginConfigs(List<PluginConfig> gatewayGroupPluginConfigs) {
+        GatewayGroupPluginConfigs ggpcs = this.gatewayGroupPluginConfigs;
+        List<PluginConfig> apiPluginConfigs = this.pluginConfigs;
+        if (ggpcs == null || ggpcs.gatewayGroupPluginConfigs != gatewayGroupPluginConfigs || ggpcs.apiPluginConfigs != apiPluginConfigs) {
+            List<PluginConfig> pcs = new ArrayList<>(gatewayGroupPluginConfigs.size() + apiPluginConfigs.size());
+            pcs.addAll(gatewayGroupPluginConfigs);
+            pcs.addAll(apiPluginConfigs);
+            pcs.sort(null);
+            ggpcs = new GatewayGroupPluginConfigs(gatewayGroupPluginConfigs, apiPluginConfigs, Collections.unmodifiableList(pcs));
+            this.gatewayGroupPluginConfigs = ggpcs;
+        }
+        return ggpcs.merged;
+    }
+
+    private static final class GatewayGroupPluginConfigs {
+
+        final List<PluginConfig> gatewayGroupPluginConfigs;
+
+        final List<PluginConfig> apiPluginConfigs;
+
+        final List<PluginConfig> merged;
+
+        GatewayGroupPluginConfigs(List<PluginConfig> gatewayGroupPluginConfigs, List<PluginConfig> apiPluginConfigs, List<PluginConfig> merged) {
+            this.gatewayGroupPluginConfigs = gatewayGroupPluginConfigs;
+            this.apiPluginConfigs = apiPluginConfigs;
+            this.merged = merged;
+        }
+    }
+
     @Override
     public String toString() {
         return JacksonUtils.writeValueAsString(this);
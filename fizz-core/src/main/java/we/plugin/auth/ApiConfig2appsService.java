@@ -21,12 +21,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Mono;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuples;
 import we.config.AggregateRedisConfig;
 import we.flume.clients.log4j2appender.LogService;
 import we.util.Consts;
 import we.util.JacksonUtils;
-import we.util.ReactorUtils;
 import we.util.ThreadContext;
 
 import javax.annotation.PostConstruct;
@@ -48,6 +48,11 @@ public class ApiConfig2appsService {
 
     private static final String fizzApiConfigAppChannel   = "fizz_api_config_app_channel";
 
+    /**
+     * the app sets are fetched concurrently rather than one after another
+     */
+    private static final int    appSetFetchConcurrency    = 32;
+
     private Map<Integer/* api config id */, Set<String/* app */>> apiConfig2appsMap = new HashMap<>(128);
 
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
@@ -66,44 +71,40 @@ public class ApiConfig2appsService {
         Map<Integer, Set<String>> apiConfig2appsMapTmp = new HashMap<>(128);
         rt.opsForHash().entries(fizzApiConfigAppSetSize)
                 .collectList()
-                .map(
+                .flatMapMany(
                     es -> {
                         log(es);
-                        Mono initiateFlux = ReactorUtils.getInitiateMono();
-                        for (Map.Entry<Object, Object> e : es) {
-                            Integer apiConfigId = Integer.parseInt( (String) e.getKey()   );
-                            int     appSetCount = Integer.parseInt( (String) e.getValue() );
-                            for (int i = 0; i < appSetCount; i++) {
-                                int iFinal = i;
-                                initiateFlux = initiateFlux.flatMap(
-                                    o -> {
-                                        return
-                                        rt.opsForSet().members(fizzApiConfigAppKeyPrefix + apiConfigId + '_' + iFinal)
-                                                      .collectList()
-                                                      .map(
-                                                          as -> {
-                                                              save(apiConfigId, as, apiConfig2appsMapTmp);
-                                                              return ReactorUtils.NULL;
-                                                          }
-                                                      )
-                                                      ;
-                                    }
-                                );
-                            }
-                        }
-                        return initiateFlux;
+                        return Flux.fromIterable(es);
+                    }
+                )
+                .concatMap(
+                    e -> {
+                        Integer apiConfigId = Integer.parseInt( (String) e.getKey()   );
+                        int     appSetCount = Integer.parseInt( (String) e.getValue() );
+                        return Flux.range(0, appSetCount).map(i -> Tuples.of(apiConfigId, fizzApiConfigAppKeyPrefix + apiConfigId + '_' + i));
+                    }
+                )
+                .flatMap(
+                    t -> {
+                        return rt.opsForSet().members(t.getT2()).collectList().map(as -> Tuples.of(t.getT1(), as));
+                    },
+                    appSetFetchConcurrency
+                )
+                .doOnNext(
+                    t -> {
+                        save(t.getT1(), t.getT2(), apiConfig2appsMapTmp);
                     }
                 )
                 .subscribe(
-                    m -> {
-                        m.subscribe(
-                            e -> {
-                                apiConfig2appsMap = apiConfig2appsMapTmp;
-                                if (doAfterLoadCache != null) {
-                                    doAfterLoadCache.run();
-                                }
-                            }
-                        );
+                    null,
+                    t -> {
+                        log.error("init api config to apps error", t);
+                    },
+                    () -> {
+                        apiConfig2appsMap = apiConfig2appsMapTmp;
+                        if (doAfterLoadCache != null) {
+                            doAfterLoadCache.run();
+                        }
                     }
                 );
     }
@@ -34,6 +34,8 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
+import we.config.ConfigDeltaReconciler;
 import we.config.SystemConfig;
 import we.flume.clients.log4j2appender.LogService;
 import we.plugin.FizzPluginFilter;
@@ -70,6 +72,9 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate         rt;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
     @Resource
     private AppService                          appService;
 
@@ -85,6 +90,8 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
     @Autowired(required = false)
     private CustomAuth                          customAuth;
 
+    private ConfigDeltaReconciler               configDeltaReconciler;
+
 
     @PostConstruct
     public void init() throws Throwable {
@@ -101,8 +108,9 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
     private void init(Supplier<Mono<Throwable>> doAfterLoadCache) throws Throwable {
         Map<Integer, ApiConfig> apiConfigMapTmp = new HashMap<>(128);
         Map<String,  ServiceConfig> serviceConfigMapTmp = new HashMap<>(128);
+        Map<String,  String> jsonMapTmp = new HashMap<>(128);
         final Throwable[] throwable = new Throwable[1];
-        Throwable error = Mono.just(Objects.requireNonNull(rt.opsForHash().entries(apiConfigServiceProperties.getFizzApiConfig())
+        Throwable error = Mono.just(Objects.requireNonNull(ConfigPreloader.entries(configPreloader, rt, apiConfigServiceProperties.getFizzApiConfig(), this::reconcileLocalCache)
                 .defaultIfEmpty(new AbstractMap.SimpleEntry<>(ReactorUtils.OBJ, ReactorUtils.OBJ)).onErrorStop().doOnError(t -> log.info(null, t))
                 .concatMap(e -> {
                     Object k = e.getKey();
@@ -113,6 +121,7 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
                     log.info("init api config: {}", json, LogService.BIZ_ID, k.toString());
                     try {
                         ApiConfig ac = JacksonUtils.readValue(json, ApiConfig.class);
+                        jsonMapTmp.put(k.toString(), json);
                         apiConfigMapTmp.put(ac.id, ac);
                         updateServiceConfigMap(ac, serviceConfigMapTmp);
                         return Flux.just(e);
@@ -138,6 +147,50 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
         }
         this.apiConfigMap = apiConfigMapTmp;
         this.serviceConfigMap = serviceConfigMapTmp;
+        getConfigDeltaReconciler().loaded(jsonMapTmp);
+    }
+
+    /**
+     * apply the changed configs in redis to local cache
+     */
+    public void reconcileLocalCache() throws Throwable {
+        getConfigDeltaReconciler().reconcile();
+        initPlugin();
+    }
+
+    public ConfigDeltaReconciler getConfigDeltaReconciler() {
+        if (configDeltaReconciler == null) {
+            configDeltaReconciler = new ConfigDeltaReconciler(apiConfigServiceProperties.getFizzApiConfig(), rt,
+                    new ConfigDeltaReconciler.Handler() {
+                        @Override
+                        public void onChange(String field, String json) {
+                            log.info("reconcile api config: {}", json, LogService.BIZ_ID, field);
+                            updateApiConfig(JacksonUtils.readValue(json, ApiConfig.class));
+                        }
+                        @Override
+                        public void onRemove(String field, String json) {
+                            log.info("reconcile removed api config: {}", json, LogService.BIZ_ID, field);
+                            ApiConfig ac = JacksonUtils.readValue(json, ApiConfig.class);
+                            ac.isDeleted = true;
+                            updateApiConfig(ac);
+                        }
+                    });
+        }
+        return configDeltaReconciler;
+    }
+
+    private synchronized void updateApiConfig(ApiConfig ac) {
+        ApiConfig r = apiConfigMap.remove(ac.id);
+        if (!ac.isDeleted && r != null) {
+            r.isDeleted = true;
+            updateServiceConfigMap(r, serviceConfigMap);
+        }
+        updateServiceConfigMap(ac, serviceConfigMap);
+        if (!ac.isDeleted) {
+            apiConfigMap.put(ac.id, ac);
+        } else {
+            apiConfig2AppsService.remove(ac.id);
+        }
     }
 
     // TODO: no need like this
@@ -159,17 +212,7 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
             log.info("api config change: {}", json, LogService.BIZ_ID, "acc" + System.currentTimeMillis());
             try {
                 ApiConfig ac = JacksonUtils.readValue(json, ApiConfig.class);
-                ApiConfig r = apiConfigMap.remove(ac.id);
-                if (!ac.isDeleted && r != null) {
-                    r.isDeleted = true;
-                    updateServiceConfigMap(r, serviceConfigMap);
-                }
-                updateServiceConfigMap(ac, serviceConfigMap);
-                if (!ac.isDeleted) {
-                    apiConfigMap.put(ac.id, ac);
-                } else {
-                    apiConfig2AppsService.remove(ac.id);
-                }
+                updateApiConfig(ac);
             } catch (Throwable t) {
                 log.error("deser {}", json, t);
             }
@@ -192,7 +235,7 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
     private Result<?> initPlugin() {
         Result<?> result = Result.succ();
         String key = apiConfigServiceProperties.getFizzPluginConfig();
-        Flux<Map.Entry<Object, Object>> plugins = rt.opsForHash().entries(key);
+        Flux<Map.Entry<Object, Object>> plugins = ConfigPreloader.entries(configPreloader, rt, key, null);
         plugins.collectList()
                .defaultIfEmpty(Collections.emptyList())
                .flatMap(
@@ -388,43 +431,47 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
             b.append(service).append(" don't have api config matching ").append(gatewayGroups).append(" group ").append(method).append(" method ").append(path).append(" path");
             return Result.fail(b.toString());
         }
-        List<ApiConfig> clientCanAccess = ThreadContext.getArrayList();
-        for (int i = 0; i < apiConfigs.size(); i++) {
-            ApiConfig ac = apiConfigs.get(i);
-            if (!dedicatedLineRequest && ac.checkApp) {
-                if (StringUtils.isNotBlank(app) && apiConfig2AppsService.contains(ac.id, app)) {
+        ArrayList<ApiConfig> clientCanAccess = ThreadContext.borrowArrayList();
+        try {
+            for (int i = 0; i < apiConfigs.size(); i++) {
+                ApiConfig ac = apiConfigs.get(i);
+                if (!dedicatedLineRequest && ac.checkApp) {
+                    if (StringUtils.isNotBlank(app) && apiConfig2AppsService.contains(ac.id, app)) {
+                        clientCanAccess.add(ac);
+                    }
+                } else {
                     clientCanAccess.add(ac);
                 }
-            } else {
-                clientCanAccess.add(ac);
             }
-        }
-        if (clientCanAccess.isEmpty()) {
-            StringBuilder b = ThreadContext.getStringBuilder();
-            b.append("app ").append(app).append(" can't access ").append(JacksonUtils.writeValueAsString(apiConfigs));
-            return Result.fail(b.toString());
-        }
-        ApiConfig bestOne = clientCanAccess.get(0);
-        if (clientCanAccess.size() != 1) {
-            clientCanAccess.sort(new ApiConfigPathPatternComparator(path)); // singleton ?
-            ApiConfig ac0 = clientCanAccess.get(0);
-            bestOne = ac0;
-            ApiConfig ac1 = clientCanAccess.get(1);
-            if (ac0.path.equals(ac1.path)) {
-                if (ac0.fizzMethod == ac1.fizzMethod) {
-                    if (StringUtils.isNotBlank(app)) {
-                        if (!ac0.checkApp) {
+            if (clientCanAccess.isEmpty()) {
+                StringBuilder b = ThreadContext.getStringBuilder();
+                b.append("app ").append(app).append(" can't access ").append(JacksonUtils.writeValueAsString(apiConfigs));
+                return Result.fail(b.toString());
+            }
+            ApiConfig bestOne = clientCanAccess.get(0);
+            if (clientCanAccess.size() != 1) {
+                clientCanAccess.sort(new ApiConfigPathPatternComparator(path)); // singleton ?
+                ApiConfig ac0 = clientCanAccess.get(0);
+                bestOne = ac0;
+                ApiConfig ac1 = clientCanAccess.get(1);
+                if (ac0.path.equals(ac1.path)) {
+                    if (ac0.fizzMethod == ac1.fizzMethod) {
+                        if (StringUtils.isNotBlank(app)) {
+                            if (!ac0.checkApp) {
+                                bestOne = ac1;
+                            }
+                        }
+                    } else {
+                        if (ac0.fizzMethod == ApiConfig.ALL_METHOD) {
                             bestOne = ac1;
                         }
                     }
-                } else {
-                    if (ac0.fizzMethod == ApiConfig.ALL_METHOD) {
-                        bestOne = ac1;
-                    }
                 }
             }
+            return Result.succ(bestOne);
+        } finally {
+            ThreadContext.returnArrayList(clientCanAccess);
         }
-        return Result.succ(bestOne);
     }
 
     public Mono<Result<ApiConfig>> auth(ServerWebExchange exchange) {
@@ -517,11 +564,7 @@ public class ApiConfigService implements ApplicationListener<ContextRefreshedEve
     }
 
     private boolean validate(String app, String timestamp, String secretKey, String sign) {
-        StringBuilder b = ThreadContext.getStringBuilder();
-        b.append(app)      .append(Consts.S.UNDER_LINE)
-         .append(timestamp).append(Consts.S.UNDER_LINE)
-         .append(secretKey);
-        return sign.equalsIgnoreCase(DigestUtils.md532(b.toString()));
+        return SignUtils.checkMd5IgnoreCase(app, timestamp, secretKey, sign);
     }
 
     private Mono<Result<ApiConfig>> authSecretKey(App a, String sign, Result<ApiConfig> r) {
@@ -24,6 +24,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
+import we.config.ConfigDeltaReconciler;
 import we.flume.clients.log4j2appender.LogService;
 import we.util.JacksonUtils;
 import we.util.ReactorUtils;
@@ -57,6 +59,11 @@ public class AppService {
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
+    private ConfigDeltaReconciler configDeltaReconciler;
+
     @PostConstruct
     public void init() throws Throwable {
         this.init(this::lsnAppChange);
@@ -69,8 +76,9 @@ public class AppService {
     private void init(Supplier<Mono<Throwable>> doAfterLoadCache) throws Throwable {
         Map<String, App> appMapTmp = new HashMap<>(32);
         Map<Integer, App> oldAppMapTmp = new HashMap<>(32);
+        Map<String, String> jsonMapTmp = new HashMap<>(32);
         final Throwable[] throwable = new Throwable[1];
-        Throwable error = Mono.just(Objects.requireNonNull(rt.opsForHash().entries(fizzApp)
+        Throwable error = Mono.just(Objects.requireNonNull(ConfigPreloader.entries(configPreloader, rt, fizzApp, this::reconcileLocalCache)
                 .defaultIfEmpty(new AbstractMap.SimpleEntry<>(ReactorUtils.OBJ, ReactorUtils.OBJ)).onErrorStop().doOnError(t -> {
                     log.info(null, t);
                 })
@@ -83,6 +91,7 @@ public class AppService {
                     log.info("init app: {}", json, LogService.BIZ_ID, k.toString());
                     try {
                         App app = JacksonUtils.readValue(json, App.class);
+                        jsonMapTmp.put(k.toString(), json);
                         oldAppMapTmp.put(app.id, app);
                         updateAppMap(app, appMapTmp);
                         return Flux.just(e);
@@ -109,6 +118,46 @@ public class AppService {
 
         appMap = appMapTmp;
         oldAppMap = oldAppMapTmp;
+        getConfigDeltaReconciler().loaded(jsonMapTmp);
+    }
+
+    /**
+     * apply the changed configs in redis to local cache
+     */
+    public void reconcileLocalCache() throws Throwable {
+        getConfigDeltaReconciler().reconcile();
+    }
+
+    public ConfigDeltaReconciler getConfigDeltaReconciler() {
+        if (configDeltaReconciler == null) {
+            configDeltaReconciler = new ConfigDeltaReconciler(fizzApp, rt,
+                    new ConfigDeltaReconciler.Handler() {
+                        @Override
+                        public void onChange(String field, String json) {
+                            log.info("reconcile app: " + json, LogService.BIZ_ID, field);
+                            updateApp(JacksonUtils.readValue(json, App.class));
+                        }
+                        @Override
+                        public void onRemove(String field, String json) {
+                            log.info("reconcile removed app: " + json, LogService.BIZ_ID, field);
+                            App app = JacksonUtils.readValue(json, App.class);
+                            app.isDeleted = true;
+                            updateApp(app);
+                        }
+                    });
+        }
+        return configDeltaReconciler;
+    }
+
+    private synchronized void updateApp(App app) {
+        App r = oldAppMap.remove(app.id);
+        if (!app.isDeleted && r != null) {
+            appMap.remove(r.app);
+        }
+        updateAppMap(app, appMap);
+        if (!app.isDeleted) {
+            oldAppMap.put(app.id, app);
+        }
     }
 
     private Mono<Throwable> lsnAppChange() {
@@ -128,14 +177,7 @@ public class AppService {
             log.info("app change: " + json, LogService.BIZ_ID, "ac" + System.currentTimeMillis());
             try {
                 App app = JacksonUtils.readValue(json, App.class);
-                App r = oldAppMap.remove(app.id);
-                if (!app.isDeleted && r != null) {
-                    appMap.remove(r.app);
-                }
-                updateAppMap(app, appMap);
-                if (!app.isDeleted) {
-                    oldAppMap.put(app.id, app);
-                }
+                updateApp(app);
             } catch (Throwable t) {
                 log.info(json, t);
             }
@@ -55,6 +55,7 @@ public class AuthPluginFilter extends PluginFilter {
                         String traceId = WebUtils.getTraceId(exchange);
                         log.debug("{} req auth: {}", traceId, r, LogService.BIZ_ID, traceId);
                     }
+                    WebUtils.setAuthResult(exchange, r);
                     Map<String, Object> data = Collections.singletonMap(RESULT, r);
                     return WebUtils.transmitSuccessFilterResultAndEmptyMono(exchange, AUTH_PLUGIN_FILTER, data);
                 }
@@ -25,6 +25,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
+import we.config.ConfigDeltaReconciler;
 import we.flume.clients.log4j2appender.LogService;
 import we.util.JacksonUtils;
 import we.util.NetworkUtils;
@@ -60,6 +62,11 @@ public class GatewayGroupService {
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
+    private ConfigDeltaReconciler configDeltaReconciler;
+
     @Resource
     private Environment environment;
 
@@ -75,9 +82,10 @@ public class GatewayGroupService {
     private void init(Supplier<Mono<Throwable>> doAfterLoadCache) throws Throwable {
         Map<String, GatewayGroup>  gatewayGroupMapTmp = new HashMap<>(8);
         Map<Integer, GatewayGroup> oldGatewayGroupMapTmp = new HashMap<>(8);
+        Map<String, String> jsonMapTmp = new HashMap<>(32);
         Set<String> currentGatewayGroupSetTmp = Stream.of(GatewayGroup.DEFAULT).collect(Collectors.toSet());
         final Throwable[] throwable = new Throwable[1];
-        Throwable error = Mono.just(Objects.requireNonNull(rt.opsForHash().entries(fizzGatewayGroup)
+        Throwable error = Mono.just(Objects.requireNonNull(ConfigPreloader.entries(configPreloader, rt, fizzGatewayGroup, this::reconcileLocalCache)
                 .defaultIfEmpty(new AbstractMap.SimpleEntry<>(ReactorUtils.OBJ, ReactorUtils.OBJ)).onErrorStop().doOnError(t -> {
                     log.info(null, t);
                 })
@@ -90,6 +98,7 @@ public class GatewayGroupService {
                     log.info(json, LogService.BIZ_ID, k.toString());
                     try {
                         GatewayGroup gg = JacksonUtils.readValue(json, GatewayGroup.class);
+                        jsonMapTmp.put(k.toString(), json);
                         oldGatewayGroupMapTmp.put(gg.id, gg);
                         updateGatewayGroupMap(gg, gatewayGroupMapTmp, currentGatewayGroupSetTmp);
                         return Flux.just(e);
@@ -117,6 +126,46 @@ public class GatewayGroupService {
         gatewayGroupMap = gatewayGroupMapTmp;
         oldGatewayGroupMap = oldGatewayGroupMapTmp;
         currentGatewayGroupSet = currentGatewayGroupSetTmp;
+        getConfigDeltaReconciler().loaded(jsonMapTmp);
+    }
+
+    /**
+     * apply the changed configs in redis to local cache
+     */
+    public void reconcileLocalCache() throws Throwable {
+        getConfigDeltaReconciler().reconcile();
+    }
+
+    public ConfigDeltaReconciler getConfigDeltaReconciler() {
+        if (configDeltaReconciler == null) {
+            configDeltaReconciler = new ConfigDeltaReconciler(fizzGatewayGroup, rt,
+                    new ConfigDeltaReconciler.Handler() {
+                        @Override
+                        public void onChange(String field, String json) {
+                            log.info("reconcile gateway group: " + json, LogService.BIZ_ID, field);
+                            updateGatewayGroup(JacksonUtils.readValue(json, GatewayGroup.class));
+                        }
+                        @Override
+                        public void onRemove(String field, String json) {
+                            log.info("reconcile removed gateway group: " + json, LogService.BIZ_ID, field);
+                            GatewayGroup gg = JacksonUtils.readValue(json, GatewayGroup.class);
+                            gg.isDeleted = true;
+                            updateGatewayGroup(gg);
+                        }
+                    });
+        }
+        return configDeltaReconciler;
+    }
+
+    private synchronized void updateGatewayGroup(GatewayGroup gg) {
+        GatewayGroup r = oldGatewayGroupMap.remove(gg.id);
+        if (!gg.isDeleted && r != null) {
+            gatewayGroupMap.remove(r.group);
+        }
+        updateGatewayGroupMap(gg, gatewayGroupMap, currentGatewayGroupSet);
+        if (!gg.isDeleted) {
+            oldGatewayGroupMap.put(gg.id, gg);
+        }
     }
 
     private Mono<Throwable> lsnGatewayGroupChange() {
@@ -136,14 +185,7 @@ public class GatewayGroupService {
             log.info(json, LogService.BIZ_ID, "gg" + System.currentTimeMillis());
             try {
                 GatewayGroup gg = JacksonUtils.readValue(json, GatewayGroup.class);
-                GatewayGroup r = oldGatewayGroupMap.remove(gg.id);
-                if (!gg.isDeleted && r != null) {
-                    gatewayGroupMap.remove(r.group);
-                }
-                updateGatewayGroupMap(gg, gatewayGroupMap, currentGatewayGroupSet);
-                if (!gg.isDeleted) {
-                    oldGatewayGroupMap.put(gg.id, gg);
-                }
+                updateGatewayGroup(gg);
             } catch (Throwable t) {
                 log.info(json, t);
             }
@@ -17,6 +17,7 @@
 
 package we.proxy;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import we.util.Consts;
 import we.util.ThreadContext;
 
@@ -27,6 +28,12 @@ import we.util.ThreadContext;
  */
 abstract public class AbstractDiscoveryClientUriSelector implements DiscoveryClientUriSelector {
 
+    @Autowired(required = false)
+    protected LoadBalancer    loadBalancer;
+
+    @Autowired(required = false)
+    protected OutlierDetector outlierDetector;
+
     protected String buildUri(String ipAddr, int port, String path) {
         StringBuilder b = ThreadContext.getStringBuilder();
         return b.append(Consts.S.HTTP_PROTOCOL_PREFIX).append(ipAddr).append(Consts.S.COLON).append(port).append(path).toString();
@@ -48,6 +48,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 /**
@@ -94,14 +95,28 @@ public class CallbackService {
 			Mono send;
 			if (r.type == ApiConfig.Type.SERVICE_DISCOVERY) {
 				ServiceInstance si = service2instMap.get(r.service);
+				// each receiver has its own retained view of the body, which is released by reactor netty once written,
+				// or here if the request ends before it is written
+				DataBuffer slice = NettyDataBufferUtils.retainedSlice(body);
+				AtomicBoolean written = new AtomicBoolean(false);
+				Mono<DataBuffer> sliceBody = slice == null ? null : Mono.fromSupplier(() -> written.compareAndSet(false, true) ? slice : null);
 				if (si == null) {
-					send = fizzWebClient.send2service(traceId, method, r.service, r.path, headers, body)
+					send = fizzWebClient.send2service(traceId, method, r.service, r.path, headers, sliceBody)
 							            .onErrorResume(	crError(exchange, r, method, headers, body) );
 				} else {
 					String uri = buildUri(req, si, r.path);
-					send = fizzWebClient.send(traceId, method, uri, headers, body)
+					send = fizzWebClient.send(traceId, method, uri, headers, sliceBody)
 							            .onErrorResume( crError(exchange, r, method, headers, body)	);
 				}
+				if (slice != null) {
+					send = send.doFinally(
+							s -> {
+								if (written.compareAndSet(false, true)) {
+									NettyDataBufferUtils.release(slice);
+								}
+							}
+					);
+				}
 			} else {
 				send = aggregateService.request(WebUtils.getTraceId(exchange), WebUtils.getClientReqPathPrefix(exchange), method.name(), r.service, r.path, req.getQueryParams(), headers, body)
 						               .onErrorResume( arError(exchange, r, method, headers, body) );
@@ -24,6 +24,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
+import we.util.Consts;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
@@ -75,6 +76,12 @@ public class EurekaUriSelector extends AbstractDiscoveryClientUriSelector {
         if (insts == null || insts.isEmpty()) {
             throw new RuntimeException("eureka no " + service, null, false, false) {};
         }
+        if (outlierDetector != null) {
+            insts = outlierDetector.filter(insts, inst -> inst.getIPAddr() + Consts.S.COLON + inst.getPort());
+        }
+        if (loadBalancer != null) {
+            return loadBalancer.choose(service, insts, inst -> inst.getIPAddr() + Consts.S.COLON + inst.getPort());
+        }
         Applications apps = eurekaClient.getApplications();
         int index = (int) (apps.getNextIndex(service.toUpperCase(), false).incrementAndGet() % insts.size());
         return insts.get(index);
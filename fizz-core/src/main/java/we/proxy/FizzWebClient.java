@@ -18,8 +18,10 @@
 package we.proxy;
 
 import org.apache.commons.lang3.StringUtils;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -29,8 +31,8 @@ import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import reactor.util.retry.Retry;
 import we.config.ProxyWebClientConfig;
 import we.config.SystemConfig;
@@ -72,6 +74,12 @@ public class FizzWebClient {
     @Resource(name = ProxyWebClientConfig.proxyWebClient)
     private WebClient webClient;
 
+    @Autowired(required = false)
+    private LoadBalancer loadBalancer;
+
+    @Autowired(required = false)
+    private OutlierDetector outlierDetector;
+
     public Mono<ClientResponse> send(String traceId,
                                   HttpMethod method, String uriOrSvc, @Nullable HttpHeaders headers, @Nullable Object body) {
 
@@ -196,8 +204,8 @@ public class FizzWebClient {
         if (body != null) {
 			if (body instanceof BodyInserter) {
 				req.body((BodyInserter) body);
-			} else if (body instanceof Flux) {
-				Flux<DataBuffer> db = (Flux<DataBuffer>) body;
+			} else if (body instanceof Publisher) {
+				Publisher<DataBuffer> db = (Publisher<DataBuffer>) body;
 				req.body(BodyInserters.fromDataBuffers(db));
 			} else {
 				req.bodyValue(body);
@@ -213,10 +221,45 @@ public class FizzWebClient {
         if (timeout > 0) {
             cr = cr.timeout(Duration.ofMillis(timeout));
         }
+        if (loadBalancer != null || outlierDetector != null) {
+            cr = feedInstanceStats(uri, cr);
+        }
 
         return cr;
     }
 
+    Mono<ClientResponse> feedInstanceStats(String uri, Mono<ClientResponse> cr) {
+        String address = OutlierDetector.address(uri);
+        return Mono.defer(
+                () -> {
+                    long start = loadBalancer == null ? 0 : loadBalancer.start(address);
+                    // success, failure
+                    boolean[] result = {false, false};
+                    return cr.doOnNext(resp -> result[resp.rawStatusCode() < 500 ? 0 : 1] = true)
+                             .doOnError(t -> result[1] = true)
+                             .doFinally(
+                                     s -> {
+                                         if (loadBalancer != null) {
+                                             // a cancel, like a client disconnect, is not the fault of the instance, as OutlierDetector ignores it
+                                             if (s == SignalType.CANCEL && !result[0] && !result[1]) {
+                                                 loadBalancer.cancel(address, start);
+                                             } else {
+                                                 loadBalancer.complete(address, start, result[0]);
+                                             }
+                                         }
+                                         if (outlierDetector != null) {
+                                             if (result[0]) {
+                                                 outlierDetector.onSuccess(address);
+                                             } else if (result[1]) {
+                                                 outlierDetector.onFailure(address);
+                                             }
+                                         }
+                                     }
+                             );
+                }
+        );
+    }
+
     private void setHostHeader(String uri, HttpHeaders headers) {
         boolean domain = false;
         int begin = uri.indexOf(Consts.S.FORWARD_SLASH) + 2;
@@ -0,0 +1,127 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import we.config.ProxyWebClientConfig;
+import we.plugin.auth.ApiConfig;
+import we.plugin.auth.ApiConfigService;
+import we.util.Consts;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Active health check of the http host ports of reverse proxy api configs and the HTTP RPC instances,
+ * the result is reported to {@link OutlierDetector}, and a successful check ends the ejection of instance.
+ *
+ * @author zhongjie
+ */
+@ConditionalOnExpression("${fizz.proxy.outlier-detection.enabled:false} and ${fizz.proxy.health-check.enabled:false}")
+@Service
+public class InstanceHealthChecker {
+
+    private static final Logger log         = LoggerFactory.getLogger(InstanceHealthChecker.class);
+
+    private static final int    CONCURRENCY = 32;
+
+    private final OutlierDetector    outlierDetector;
+
+    private final ApiConfigService   apiConfigService;
+
+    private final RpcInstanceService rpcInstanceService;
+
+    private final WebClient          webClient;
+
+    private final String             path;
+
+    private final Duration           timeout;
+
+    public InstanceHealthChecker(OutlierDetector outlierDetector, ApiConfigService apiConfigService, RpcInstanceService rpcInstanceService,
+                                 @Qualifier(ProxyWebClientConfig.proxyWebClient) WebClient webClient,
+                                 @Value("${fizz.proxy.health-check.path:/}")            String path,
+                                 @Value("${fizz.proxy.health-check.timeout-millis:3000}") long   timeoutMillis) {
+        this.outlierDetector    = outlierDetector;
+        this.apiConfigService   = apiConfigService;
+        this.rpcInstanceService = rpcInstanceService;
+        this.webClient          = webClient;
+        this.path               = path;
+        this.timeout            = Duration.ofMillis(timeoutMillis);
+    }
+
+    @Scheduled(initialDelayString = "${fizz.proxy.health-check.interval-millis:10000}",
+               fixedRateString    = "${fizz.proxy.health-check.interval-millis:10000}")
+    public void healthCheck() {
+        Map<String, String> targets = new HashMap<>();
+        for (ApiConfig ac : apiConfigService.getApiConfigMap().values()) {
+            List<String> httpHostPorts = ac.httpHostPorts;
+            if (ac.type == ApiConfig.Type.REVERSE_PROXY && httpHostPorts != null) {
+                for (String hostPort : httpHostPorts) {
+                    targets.putIfAbsent(OutlierDetector.address(hostPort), hostPort);
+                }
+            }
+        }
+        for (String instance : rpcInstanceService.getInstances(RpcInstanceService.RpcTypeEnum.HTTP)) {
+            String address = OutlierDetector.address(instance);
+            targets.putIfAbsent(address, address.equals(instance) ? Consts.S.HTTP_PROTOCOL_PREFIX + instance : instance);
+        }
+        check(targets).subscribe();
+    }
+
+    /**
+     * @param targets instance address to the base url of instance, like http://ip:port
+     */
+    public Mono<Void> check(Map<String, String> targets) {
+        return Flux.fromIterable(targets.entrySet())
+                   .flatMap(e -> probe(e.getKey(), e.getValue()), CONCURRENCY)
+                   .then();
+    }
+
+    private Mono<Boolean> probe(String address, String baseUrl) {
+        String url = baseUrl.endsWith(Consts.S.FORWARD_SLASH_STR) && path.startsWith(Consts.S.FORWARD_SLASH_STR) ? baseUrl + path.substring(1) : baseUrl + path;
+        return webClient.get().uri(url).exchange()
+                        .flatMap(resp -> resp.releaseBody().thenReturn(resp.rawStatusCode() < 500))
+                        .timeout(timeout)
+                        .onErrorResume(
+                                t -> {
+                                    log.debug("health check {} fail", url, t);
+                                    return Mono.just(false);
+                                }
+                        )
+                        .doOnNext(
+                                healthy -> {
+                                    if (healthy) {
+                                        outlierDetector.onProbeSuccess(address);
+                                    } else {
+                                        outlierDetector.onFailure(address);
+                                    }
+                                }
+                        );
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.proxy;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A {@code LoadBalancer} chooses the instance for the next request among the instances of a service,
+ * and is told when the request to the instance starts and completes by {@link FizzWebClient},
+ * so it can take the latency and load of instances into account.
+ * <p>
+ * If a {@code LoadBalancer} bean exists, it is used by {@link DiscoveryClientUriSelector} and, for HTTP services only,
+ * by {@link RpcInstanceService}, otherwise they select the instance by their own way.
+ *
+ * @author zhongjie
+ */
+public interface LoadBalancer {
+
+    /**
+     * @param service    service name
+     * @param candidates instances of service, not empty
+     * @param addressOf  the ip:port of instance, which is the same as the one passed to {@link #start(String)}
+     * @return the instance for the next request
+     */
+    <T> T choose(String service, List<T> candidates, Function<T, String> addressOf);
+
+    /**
+     * Starts keeping stats of the candidates not tracked yet, so the requests to them are measured from now on.
+     *
+     * @param candidates instances of service, not empty
+     * @param addressOf  the ip:port of instance, which is the same as the one passed to {@link #start(String)}
+     * @return false if none of the candidates is measured yet, then the caller may select the instance by its own way
+     */
+    default <T> boolean track(List<T> candidates, Function<T, String> addressOf) {
+        return true;
+    }
+
+    /**
+     * @param address ip:port of the instance the request is sent to
+     * @return the start time of request, passed to {@link #complete(String, long, boolean)}
+     */
+    long start(String address);
+
+    /**
+     * @param address ip:port of the instance the request is sent to
+     * @param start   the value returned by {@link #start(String)}
+     * @param success false if request failed, timeout or got 5xx response
+     */
+    void complete(String address, long start, boolean success);
+
+    /**
+     * The request is cancelled before it completes, e.g. by a client disconnect, which says nothing about the instance,
+     * so no latency sample should be taken from it; the instance has one request less in flight.
+     *
+     * @param address ip:port of the instance the request is sent to
+     * @param start   the value returned by {@link #start(String)}
+     */
+    default void cancel(String address, long start) {
+    }
+}
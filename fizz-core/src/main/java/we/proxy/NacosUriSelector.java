@@ -27,6 +27,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import we.service_registry.ServiceInstances;
+import we.util.Consts;
 
 import javax.annotation.PostConstruct;
 import java.util.Collections;
@@ -82,6 +84,9 @@ public class NacosUriSelector extends AbstractDiscoveryClientUriSelector {
     }
 
     private Instance selectOneHealthyInstance(String service) {
+        if (loadBalancer != null || outlierDetector != null) {
+            return selectOneHealthyInstanceFromAll(service);
+        }
         Instance instance = null;
         try {
             if (useGroupName && userClusterName) {
@@ -103,4 +108,34 @@ public class NacosUriSelector extends AbstractDiscoveryClientUriSelector {
 
         return instance;
     }
+
+    private Instance selectOneHealthyInstanceFromAll(String service) {
+        List<Instance> instances = null;
+        try {
+            if (useGroupName && userClusterName) {
+                instances = naming.selectInstances(service, groupName, clusterNameList, true);
+            } else if (useGroupName) {
+                instances = naming.selectInstances(service, groupName, true);
+            } else if (userClusterName) {
+                instances = naming.selectInstances(service, clusterNameList, true);
+            } else {
+                instances = naming.selectInstances(service, true);
+            }
+        } catch (NacosException e) {
+            log.warn("Nacos selectInstances({}) exception", service, e);
+        }
+
+        if (instances == null || instances.isEmpty()) {
+            throw new RuntimeException("Nacos no " + service, null, false, false) {};
+        }
+
+        if (outlierDetector != null) {
+            instances = outlierDetector.filter(instances, inst -> inst.getIp() + Consts.S.COLON + inst.getPort());
+        }
+        if (loadBalancer == null) {
+            // by the weights of the instances, as naming.selectOneHealthyInstance
+            return ServiceInstances.weightedRandom(instances, Instance::getWeight);
+        }
+        return loadBalancer.choose(service, instances, inst -> inst.getIp() + Consts.S.COLON + inst.getPort());
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import we.util.Consts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Passive outlier detection of instances, an instance is ejected after consecutive failed, timeout or 5xx requests
+ * reported by {@link FizzWebClient} or {@link InstanceHealthChecker}, the ejection time is doubled on each ejection
+ * of the instance up to the max, and reset if the instance works well for twice the max ejection time.
+ * <p>
+ * Selectors skip ejected instances, unless all instances of a service are ejected.
+ *
+ * @author zhongjie
+ */
+@ConditionalOnProperty(name = "fizz.proxy.outlier-detection.enabled", havingValue = "true")
+@Service
+public class OutlierDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(OutlierDetector.class);
+
+    private static final int    MAX_INSTANCES = 10_000;
+
+    private final Map<String, InstanceState> instanceStateMap = new ConcurrentHashMap<>(64);
+
+    /**
+     * instance address to the time the ejection ends
+     */
+    private final Map<String, Long>          ejectedMap       = new ConcurrentHashMap<>(16);
+
+    private final int                        consecutiveErrors;
+
+    private final long                       baseEjectionMillis;
+
+    private final long                       maxEjectionMillis;
+
+    @Autowired
+    public OutlierDetector(@Value("${fizz.proxy.outlier-detection.consecutive-errors:5}")        int  consecutiveErrors,
+                           @Value("${fizz.proxy.outlier-detection.base-ejection-millis:30000}")  long baseEjectionMillis,
+                           @Value("${fizz.proxy.outlier-detection.max-ejection-millis:300000}")  long maxEjectionMillis) {
+        this.consecutiveErrors  = consecutiveErrors;
+        this.baseEjectionMillis = baseEjectionMillis;
+        this.maxEjectionMillis  = maxEjectionMillis;
+    }
+
+    /**
+     * @return the ip:port or host:port of uri like http://ip:port/path, or the address itself
+     */
+    public static String address(String uriOrAddress) {
+        int begin = uriOrAddress.indexOf(Consts.S.FORWARD_SLASH);
+        if (begin == -1) {
+            return uriOrAddress;
+        }
+        begin += 2;
+        int end = uriOrAddress.indexOf(Consts.S.FORWARD_SLASH, begin);
+        return end == -1 ? uriOrAddress.substring(begin) : uriOrAddress.substring(begin, end);
+    }
+
+    public boolean isEjected(String address) {
+        if (ejectedMap.isEmpty()) {
+            return false;
+        }
+        Long until = ejectedMap.get(address);
+        if (until == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() >= until) {
+            ejectedMap.remove(address, until);
+            log.info("{} ejection ends", address);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param addressOf the address of candidate, see {@link #address(String)}
+     * @return candidates not ejected, or all candidates if all are ejected
+     */
+    public <T> List<T> filter(List<T> candidates, Function<T, String> addressOf) {
+        if (ejectedMap.isEmpty()) {
+            return candidates;
+        }
+        List<T> result = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            T c = candidates.get(i);
+            if (isEjected(addressOf.apply(c))) {
+                if (result == null) {
+                    result = new ArrayList<>(candidates.subList(0, i));
+                }
+            } else if (result != null) {
+                result.add(c);
+            }
+        }
+        if (result == null || result.isEmpty()) {
+            return candidates;
+        }
+        return result;
+    }
+
+    public void onSuccess(String address) {
+        InstanceState state = instanceStateMap.get(address);
+        if (state != null) {
+            state.consecutiveErrors.set(0);
+            if (state.ejections == 0 || System.currentTimeMillis() - state.lastEjection > maxEjectionMillis * 2) {
+                instanceStateMap.remove(address, state);
+            }
+        }
+    }
+
+    /**
+     * Called when the active health check of ejected instance succeeds, which ends the ejection
+     */
+    public void onProbeSuccess(String address) {
+        onSuccess(address);
+        if (ejectedMap.remove(address) != null) {
+            log.info("{} ejection ends by health check", address);
+        }
+    }
+
+    public void onFailure(String address) {
+        InstanceState state = instanceStateMap.get(address);
+        if (state == null) {
+            if (instanceStateMap.size() >= MAX_INSTANCES) {
+                return;
+            }
+            state = instanceStateMap.computeIfAbsent(address, a -> new InstanceState());
+        }
+        if (state.consecutiveErrors.incrementAndGet() >= consecutiveErrors) {
+            eject(address, state);
+        }
+    }
+
+    private void eject(String address, InstanceState state) {
+        synchronized (state) {
+            if (state.consecutiveErrors.get() < consecutiveErrors || isEjected(address)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long millis = Math.min(baseEjectionMillis << Math.min(state.ejections, 16), maxEjectionMillis);
+            state.ejections++;
+            state.lastEjection = now;
+            state.consecutiveErrors.set(0);
+            ejectedMap.put(address, now + millis);
+            log.warn("eject {} for {} millis after {} consecutive errors", address, millis, consecutiveErrors);
+        }
+    }
+
+    public int getEjectedCount() {
+        return ejectedMap.size();
+    }
+
+    private static class InstanceState {
+
+        final AtomicInteger consecutiveErrors = new AtomicInteger(0);
+
+        volatile int        ejections         = 0;
+
+        volatile long       lastEjection;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.proxy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Power of two choices load balancer, picks two random instances and chooses the one with lower cost,
+ * the cost is the peak EWMA latency of instance multiplied by its in-flight requests plus one.
+ * <p>
+ * The peak EWMA jumps to a latency sample higher than it and decays to lower samples and over time,
+ * so a degraded instance is avoided quickly and probed again once it has been idle for a while.
+ *
+ * @author zhongjie
+ */
+@ConditionalOnProperty(name = "fizz.proxy.load-balancer", havingValue = P2cEwmaLoadBalancer.NAME)
+@Service
+public class P2cEwmaLoadBalancer implements LoadBalancer {
+
+    public  static final String NAME          = "p2c-ewma";
+
+    /**
+     * latency sample of failed request at least, and cost of instance without sample but with requests in flight
+     */
+    private static final long   PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int    MAX_INSTANCES = 10_000;
+
+    private static final long   IDLE_NANOS    = TimeUnit.MINUTES.toNanos(10);
+
+    private final Map<String, InstanceStats> instanceStatsMap = new ConcurrentHashMap<>(64);
+
+    private final double       decayNanos;
+
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public P2cEwmaLoadBalancer(@Value("${fizz.proxy.load-balancer-decay-millis:10000}") long decayMillis) {
+        this(decayMillis, System::nanoTime);
+    }
+
+    P2cEwmaLoadBalancer(long decayMillis, LongSupplier nanoClock) {
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMillis);
+        this.nanoClock  = nanoClock;
+    }
+
+    @Override
+    public <T> T choose(String service, List<T> candidates, Function<T, String> addressOf) {
+        int n = candidates.size();
+        if (n == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(n);
+        int j = random.nextInt(n - 1);
+        if (j >= i) {
+            j++;
+        }
+        T a = candidates.get(i);
+        T b = candidates.get(j);
+        long now = nanoClock.getAsLong();
+        double ca = getInstanceStats(addressOf.apply(a), now).cost(now);
+        double cb = getInstanceStats(addressOf.apply(b), now).cost(now);
+        return ca <= cb ? a : b;
+    }
+
+    @Override
+    public <T> boolean track(List<T> candidates, Function<T, String> addressOf) {
+        long now = nanoClock.getAsLong();
+        boolean sampled = false;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (getInstanceStats(addressOf.apply(candidates.get(i)), now).sampled) {
+                sampled = true;
+            }
+        }
+        return sampled;
+    }
+
+    @Override
+    public long start(String address) {
+        long now = nanoClock.getAsLong();
+        InstanceStats stats = instanceStatsMap.get(address);
+        if (stats != null) {
+            stats.inflight.incrementAndGet();
+            stats.lastUse = now;
+        }
+        return now;
+    }
+
+    @Override
+    public void complete(String address, long start, boolean success) {
+        InstanceStats stats = instanceStatsMap.get(address);
+        if (stats != null) {
+            long now = nanoClock.getAsLong();
+            stats.inflight.updateAndGet(v -> v > 0 ? v - 1 : 0);
+            long sample = now - start;
+            if (!success && sample < PENALTY_NANOS) {
+                sample = PENALTY_NANOS;
+            }
+            stats.observe(sample, now);
+        }
+    }
+
+    @Override
+    public void cancel(String address, long start) {
+        InstanceStats stats = instanceStatsMap.get(address);
+        if (stats != null) {
+            stats.inflight.updateAndGet(v -> v > 0 ? v - 1 : 0);
+        }
+    }
+
+    /**
+     * @return the cost of instance, or -1 if instance unknown
+     */
+    public double cost(String address) {
+        InstanceStats stats = instanceStatsMap.get(address);
+        return stats == null ? -1 : stats.cost(nanoClock.getAsLong());
+    }
+
+    private InstanceStats getInstanceStats(String address, long now) {
+        InstanceStats stats = instanceStatsMap.get(address);
+        if (stats == null) {
+            if (instanceStatsMap.size() >= MAX_INSTANCES) {
+                removeIdleInstanceStats(now);
+            }
+            stats = instanceStatsMap.computeIfAbsent(address, a -> new InstanceStats());
+        }
+        stats.lastUse = now;
+        return stats;
+    }
+
+    private void removeIdleInstanceStats(long now) {
+        instanceStatsMap.entrySet().removeIf(
+                e -> {
+                    InstanceStats stats = e.getValue();
+                    return stats.inflight.get() == 0 && now - stats.lastUse > IDLE_NANOS;
+                }
+        );
+    }
+
+    private class InstanceStats {
+
+        final AtomicInteger inflight = new AtomicInteger(0);
+
+        volatile long       lastUse;
+
+        volatile boolean    sampled  = false;
+
+        volatile double     ewma;
+
+        volatile long       stamp;
+
+        synchronized void observe(long sample, long now) {
+            if (!sampled) {
+                ewma    = sample;
+                sampled = true;
+            } else if (sample > ewma) {
+                ewma = sample;
+            } else {
+                double w = Math.exp(-Math.max(0, now - stamp) / decayNanos);
+                ewma = ewma * w + sample * (1 - w);
+            }
+            stamp = now;
+        }
+
+        double cost(long now) {
+            int n = inflight.get();
+            if (!sampled) {
+                return n == 0 ? 0 : PENALTY_NANOS + n;
+            }
+            double e = ewma * Math.exp(-Math.max(0, now - stamp) / decayNanos);
+            return e * (n + 1);
+        }
+    }
+}
@@ -16,6 +16,8 @@
  */
 package we.proxy;
 
+import java.util.Set;
+
 /**
  * RPC instance service interface
  *
@@ -51,6 +53,14 @@ public interface RpcInstanceService {
      */
     String getInstance(RpcTypeEnum rpcTypeEnum, String service);
 
+    /**
+     * get all instances of the RPC type
+     *
+     * @param rpcTypeEnum RPC type
+     * @return instances of all services
+     */
+    Set<String> getInstances(RpcTypeEnum rpcTypeEnum);
+
     /**
      * refresh local cache
      * @throws Throwable any error
@@ -18,12 +18,14 @@ package we.proxy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
 import we.flume.clients.log4j2appender.LogService;
 import we.util.Consts;
 import we.util.JacksonUtils;
@@ -34,9 +36,11 @@ import javax.annotation.Resource;
 import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -77,6 +81,15 @@ public class RpcInstanceServiceImpl implements RpcInstanceService {
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate redisTemplate;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
+    @Autowired(required = false)
+    private LoadBalancer loadBalancer;
+
+    @Autowired(required = false)
+    private OutlierDetector outlierDetector;
+
     @PostConstruct
     public void init() throws Throwable {
         this.init(this::lsnRpcServiceChange);
@@ -94,7 +107,7 @@ public class RpcInstanceServiceImpl implements RpcInstanceService {
         Map<String, AtomicLong> serviceToCountMapTmp = new ConcurrentHashMap<>(32);
 
         final Throwable[] throwable = new Throwable[1];
-        Throwable error = Mono.just(Objects.requireNonNull(redisTemplate.opsForHash().entries(RPC_SERVICE_HASH_KEY)
+        Throwable error = Mono.just(Objects.requireNonNull(ConfigPreloader.entries(configPreloader, redisTemplate, RPC_SERVICE_HASH_KEY, this::refreshLocalCache)
                 .defaultIfEmpty(new AbstractMap.SimpleEntry<>(ReactorUtils.OBJ, ReactorUtils.OBJ)).onErrorStop().doOnError(t -> LOGGER.info(null, t))
                 .concatMap(e -> {
                     Object k = e.getKey();
@@ -140,6 +153,16 @@ public class RpcInstanceServiceImpl implements RpcInstanceService {
 
     @Override
     public String getInstance(RpcTypeEnum rpcTypeEnum, String service) {
+        // only requests to HTTP services are measured by FizzWebClient, so the load balancer knows nothing about gRPC ones
+        if (loadBalancer != null && rpcTypeEnum == RpcTypeEnum.HTTP) {
+            List<String> instanceList = this.getAllInstance(rpcTypeEnum, service);
+            if (CollectionUtils.isEmpty(instanceList)) {
+                return null;
+            }
+            if (loadBalancer.track(instanceList, OutlierDetector::address)) {
+                return loadBalancer.choose(this.getServiceKey(rpcTypeEnum.getType(), service), instanceList, OutlierDetector::address);
+            }
+        }
         Byte loadBalanceType = serviceToLoadBalanceTypeMap.get(this.getServiceKey(rpcTypeEnum.getType(), service));
         if (LOAD_BALANCE_TYPE_RANDOM.equals(loadBalanceType)) {
             LOGGER.debug("type:{} service:{} get instance random", rpcTypeEnum, service);
@@ -177,7 +200,22 @@ public class RpcInstanceServiceImpl implements RpcInstanceService {
     }
 
     private List<String> getAllInstance(RpcTypeEnum rpcTypeEnum, String service) {
-        return serviceToInstancesMap.get(this.getServiceKey(rpcTypeEnum.getType(), service));
+        List<String> instanceList = serviceToInstancesMap.get(this.getServiceKey(rpcTypeEnum.getType(), service));
+        if (outlierDetector != null && instanceList != null) {
+            instanceList = outlierDetector.filter(instanceList, OutlierDetector::address);
+        }
+        return instanceList;
+    }
+
+    @Override
+    public Set<String> getInstances(RpcTypeEnum rpcTypeEnum) {
+        Set<String> instances = new HashSet<>();
+        for (RpcService rpcService : idToRpcServiceMap.values()) {
+            if (rpcTypeEnum.getType().equals(rpcService.getType()) && rpcService.getInstance() != null) {
+                instances.addAll(Arrays.asList(rpcService.getInstance().split(",")));
+            }
+        }
+        return instances;
     }
 
     private Mono<Throwable> lsnRpcServiceChange() {
@@ -25,10 +25,13 @@ import org.springframework.context.ApplicationContext;
 import we.service_registry.eureka.FizzEurekaHelper;
 import we.service_registry.nacos.FizzNacosHelper;
 import we.util.PropertiesUtils;
+import we.util.Utils;
 import we.util.YmlUtils;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author hongqiaowei
@@ -58,6 +61,11 @@ public abstract class FizzServiceRegistration {
 
     private   ServiceRegistry serviceRegistry;
 
+    /**
+     * The instances of the services looked up, kept up to date by the registry center change events
+     */
+    protected final Map<String, ServiceInstances> serviceInstancesMap = new ConcurrentHashMap<>();
+
     public static FizzServiceRegistration getFizzServiceRegistration(ApplicationContext applicationContext, Type type, ConfigFormat configFormat, String config) {
         Properties configProperties;
         if (configFormat == ConfigFormat.YML) {
@@ -95,11 +103,34 @@ public abstract class FizzServiceRegistration {
 
     public void deregister() {
         serviceRegistry.deregister(registration);
+        serviceInstancesMap.clear();
     }
 
     public abstract ServerStatus          getServerStatus();
 
     public abstract List<String>          getServices();
 
-    public abstract String                getInstance(String service);
+    /**
+     * @return the ip:port of an instance of the service
+     */
+    public String getInstance(String service) {
+        ServiceInstances instances = serviceInstancesMap.get(service);
+        if (instances == null) {
+            instances = loadInstances(service);
+            ServiceInstances prev = serviceInstancesMap.putIfAbsent(service, instances);
+            if (prev != null) {
+                instances = prev;
+            }
+        }
+        String instance = instances.select();
+        if (instance == null) {
+            throw Utils.runtimeExceptionWithoutStack(id + ' ' + type.name().toLowerCase() + " no " + service);
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the instances of the service from the registry center, and lsn the changes of them if the registry center notifies.
+     */
+    protected abstract ServiceInstances   loadInstances(String service);
 }
@@ -27,16 +27,19 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
 import we.util.Consts;
 import we.util.JacksonUtils;
 import we.util.Result;
 import we.util.ThreadContext;
+import we.util.VersionedIndex;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author hongqiaowei
@@ -47,7 +50,17 @@ public class RegistryCenterService implements ApplicationListener<ContextRefresh
 
     private static final Logger log = LoggerFactory.getLogger(RegistryCenterService.class);
 
-    private Map<String, RegistryCenter> registryCenterMap = new HashMap<>();
+    private static final int    MAX_CACHED_SERVICE_NAME_SPACES = 10_000;
+
+    /**
+     * registry center -> service -> service name space
+     */
+    private static final Map<String, Map<String, String>> serviceNameSpaces = new ConcurrentHashMap<>();
+
+    /**
+     * name -> registry center, swapped as a whole when a registry center changes
+     */
+    private final VersionedIndex<String, RegistryCenter> registryCenterMap = new VersionedIndex<>();
 
     @Resource
     private ReactiveWebServerApplicationContext applicationContext;
@@ -55,6 +68,9 @@ public class RegistryCenterService implements ApplicationListener<ContextRefresh
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
     @Override
     public void onApplicationEvent(ContextRefreshedEvent event) {
         Result<?> result = initRegistryCenter();
@@ -69,18 +85,19 @@ public class RegistryCenterService implements ApplicationListener<ContextRefresh
 
     private Result<?> initRegistryCenter() {
         Result<?> result = Result.succ();
-        Flux<Map.Entry<Object, Object>> registryCenterEntries = rt.opsForHash().entries("fizz_registry");
+        Flux<Map.Entry<Object, Object>> registryCenterEntries = ConfigPreloader.entries(configPreloader, rt, "fizz_registry", null);
         registryCenterEntries.collectList()
                              .defaultIfEmpty(Collections.emptyList())
                              .flatMap(
                                      es -> {
                                          if (!es.isEmpty()) {
                                              String json = null;
+                                             Map<String, RegistryCenter> registryCenters = new HashMap<>();
                                              try {
                                                  for (Map.Entry<Object, Object> e : es) {
                                                      json = (String) e.getValue();
                                                      RegistryCenter rc = JacksonUtils.readValue(json, RegistryCenter.class);
-                                                     registryCenterMap.put(rc.name, rc);
+                                                     registryCenters.put(rc.name, rc);
                                                      log.info("init registry center {}", rc.name);
                                                      rc.initFizzServiceRegistration(applicationContext);
                                                      rc.getFizzServiceRegistration().register();
@@ -89,6 +106,9 @@ public class RegistryCenterService implements ApplicationListener<ContextRefresh
                                                  result.code = Result.FAIL;
                                                  result.msg  = "init registry center error, json: " + json;
                                                  result.t    = t;
+                                             } finally {
+                                                 // the registered ones are kept even if the rest fail, as before
+                                                 registryCenterMap.replace(registryCenters);
                                              }
                                          } else {
                                              log.info("no registry center");
@@ -166,7 +186,23 @@ public class RegistryCenterService implements ApplicationListener<ContextRefresh
         if (registryCenter == null) {
             return service;
         }
-        StringBuilder b = ThreadContext.getStringBuilder(ThreadContext.sb0);
-        return b.append(registryCenter).append(Consts.S.COMMA).append(service).toString();
+        Map<String, String> service2nameSpace = serviceNameSpaces.get(registryCenter);
+        if (service2nameSpace == null) {
+            service2nameSpace = new ConcurrentHashMap<>();
+            Map<String, String> prev = serviceNameSpaces.putIfAbsent(registryCenter, service2nameSpace);
+            if (prev != null) {
+                service2nameSpace = prev;
+            }
+        }
+        String nameSpace = service2nameSpace.get(service);
+        if (nameSpace == null) {
+            StringBuilder b = ThreadContext.getStringBuilder(ThreadContext.sb0);
+            nameSpace = b.append(registryCenter).append(Consts.S.COMMA).append(service).toString();
+            if (service2nameSpace.size() >= MAX_CACHED_SERVICE_NAME_SPACES) {
+                service2nameSpace.clear();
+            }
+            service2nameSpace.put(service, nameSpace);
+        }
+        return nameSpace;
     }
 }
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.service_registry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The instances of a service resolved from a registry center, rendered as ip:port once and replaced as a whole
+ * when the registry center notifies a change, so selecting an instance takes no lock and creates nothing.
+ *
+ * @author zhongjie
+ */
+
+public final class ServiceInstances {
+
+    private final String[]      endpoints;
+
+    /**
+     * The cumulative weights of the endpoints, null if the endpoints are selected in turn or have the same weight
+     */
+    private final double[]      weights;
+
+    private final boolean       random;
+
+    /**
+     * Shared by the snapshots of the service, so the turn goes on after a change
+     */
+    private final AtomicInteger next;
+
+    private ServiceInstances(String[] endpoints, double[] weights, boolean random, AtomicInteger next) {
+        this.endpoints = endpoints;
+        this.weights   = weights;
+        this.random    = random;
+        this.next      = next;
+    }
+
+    /**
+     * @param prev the previous snapshot of the service, returned if the endpoints are not changed
+     */
+    public static ServiceInstances roundRobin(String[] endpoints, ServiceInstances prev) {
+        if (prev != null && !prev.random && Arrays.equals(prev.endpoints, endpoints)) {
+            return prev;
+        }
+        return new ServiceInstances(endpoints, null, false, prev == null ? new AtomicInteger() : prev.next);
+    }
+
+    /**
+     * The endpoints are selected randomly by weight.
+     */
+    public static ServiceInstances weightedRandom(String[] endpoints, double[] weights) {
+        boolean same = true;
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum = sum + weights[i];
+            cumulative[i] = sum;
+            if (weights[i] != weights[0]) {
+                same = false;
+            }
+        }
+        return new ServiceInstances(endpoints, same ? null : cumulative, true, null);
+    }
+
+    /**
+     * Picks one of the instances randomly by weight, like {@link #weightedRandom(String[], double[])} but without a snapshot,
+     * for the instances filtered per request.
+     *
+     * @return null if no instance
+     */
+    public static <T> T weightedRandom(List<T> instances, ToDoubleFunction<? super T> weight) {
+        int n = instances.size();
+        if (n < 2) {
+            return n == 0 ? null : instances.get(0);
+        }
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum = sum + Math.max(0, weight.applyAsDouble(instances.get(i)));
+        }
+        if (!(sum > 0)) {
+            return instances.get(ThreadLocalRandom.current().nextInt(n));
+        }
+        double r = ThreadLocalRandom.current().nextDouble(sum);
+        T last = null;
+        for (int i = 0; i < n; i++) {
+            T inst = instances.get(i);
+            double w = Math.max(0, weight.applyAsDouble(inst));
+            if (w > 0) {
+                r = r - w;
+                if (r < 0) {
+                    return inst;
+                }
+                last = inst;
+            }
+        }
+        // rounding
+        return last;
+    }
+
+    public int size() {
+        return endpoints.length;
+    }
+
+    /**
+     * @return the ip:port of an instance, null if no instance
+     */
+    public String select() {
+        int n = endpoints.length;
+        if (n == 0) {
+            return null;
+        }
+        if (n == 1) {
+            return endpoints[0];
+        }
+        if (!random) {
+            return endpoints[(next.getAndIncrement() & Integer.MAX_VALUE) % n];
+        }
+        if (weights == null) {
+            return endpoints[ThreadLocalRandom.current().nextInt(n)];
+        }
+        double r = ThreadLocalRandom.current().nextDouble(weights[n - 1]);
+        int i = Arrays.binarySearch(weights, r);
+        if (i < 0) {
+            i = -i - 1;
+        } else {
+            i++;
+        }
+        return endpoints[Math.min(i, n - 1)];
+    }
+}
@@ -18,6 +18,7 @@
 package we.service_registry.eureka;
 
 import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.CacheRefreshedEvent;
 import com.netflix.discovery.DiscoveryClient;
 import com.netflix.discovery.EurekaClientConfig;
 import com.netflix.discovery.shared.Application;
@@ -28,6 +29,7 @@ import org.springframework.cloud.netflix.eureka.serviceregistry.EurekaRegistrati
 import org.springframework.cloud.netflix.eureka.serviceregistry.EurekaServiceRegistry;
 import org.springframework.util.CollectionUtils;
 import we.service_registry.FizzServiceRegistration;
+import we.service_registry.ServiceInstances;
 import we.util.Consts;
 import we.util.Utils;
 
@@ -49,6 +51,13 @@ public class FizzEurekaServiceRegistration extends FizzServiceRegistration {
         super(id, Type.EUREKA, registration, serviceRegistry);
         this.client = client;
         renewalInterval = this.client.getApplicationInfoManager().getInfo().getLeaseInfo().getRenewalIntervalInSecs() * 1000L;
+        this.client.registerEventListener(
+                event -> {
+                    if (event instanceof CacheRefreshedEvent) {
+                        refreshInstances();
+                    }
+                }
+        );
     }
 
     public DiscoveryClient getDiscoveryClient() {
@@ -172,9 +181,35 @@ public class FizzEurekaServiceRegistration extends FizzServiceRegistration {
     }
 
     @Override
-    public String getInstance(String service) {
-        InstanceInfo inst = getInstanceInfo(service);
-        return inst.getIPAddr() + Consts.S.COLON + inst.getPort();
+    protected ServiceInstances loadInstances(String service) {
+        return ServiceInstances.roundRobin(getEndpoints(service), null);
+    }
+
+    /**
+     * Replaces the instances of the services looked up after the client fetches the registry,
+     * the instances not changed are kept.
+     */
+    private void refreshInstances() {
+        for (Map.Entry<String, ServiceInstances> e : serviceInstancesMap.entrySet()) {
+            ServiceInstances prev = e.getValue();
+            ServiceInstances instances = ServiceInstances.roundRobin(getEndpoints(e.getKey()), prev);
+            if (instances != prev) {
+                serviceInstancesMap.replace(e.getKey(), prev, instances);
+            }
+        }
+    }
+
+    private String[] getEndpoints(String service) {
+        List<InstanceInfo> insts = client.getInstancesByVipAddress(service, false);
+        if (CollectionUtils.isEmpty(insts)) {
+            return new String[0];
+        }
+        String[] endpoints = new String[insts.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            InstanceInfo inst = insts.get(i);
+            endpoints[i] = inst.getIPAddr() + Consts.S.COLON + inst.getPort();
+        }
+        return endpoints;
     }
 
     public InstanceInfo getInstanceInfo(String service) {
@@ -20,17 +20,24 @@ package we.service_registry.nacos;
 import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
 import com.alibaba.cloud.nacos.registry.NacosRegistration;
 import com.alibaba.cloud.nacos.registry.NacosServiceRegistry;
+import com.alibaba.nacos.api.common.Constants;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.alibaba.nacos.api.naming.pojo.ListView;
 import org.springframework.util.StringUtils;
 import we.service_registry.FizzServiceRegistration;
+import we.service_registry.ServiceInstances;
 import we.util.Consts;
 import we.util.Utils;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author hongqiaowei
@@ -48,6 +55,15 @@ public class FizzNacosServiceRegistration extends FizzServiceRegistration {
 
     private boolean       userCluster;
 
+    /**
+     * The group and clusters the instances are selected from, the defaults of the naming service if not configured
+     */
+    private final String       selectGroup;
+
+    private final List<String> selectClusters;
+
+    private final Map<String, EventListener> listeners = new ConcurrentHashMap<>();
+
     public FizzNacosServiceRegistration(String id, NacosRegistration registration, NacosServiceRegistry serviceRegistry, NamingService namingService) {
         super(id, Type.NACOS, registration, serviceRegistry);
         this.namingService = namingService;
@@ -61,6 +77,8 @@ public class FizzNacosServiceRegistration extends FizzServiceRegistration {
             userCluster = true;
             clusters = Collections.singletonList(cluster);
         }
+        selectGroup    = useGroup    ? group    : Constants.DEFAULT_GROUP;
+        selectClusters = userCluster ? clusters : Collections.emptyList();
     }
 
     public NamingService getNamingService() {
@@ -102,9 +120,60 @@ public class FizzNacosServiceRegistration extends FizzServiceRegistration {
     }
 
     @Override
-    public String getInstance(String service) {
-        Instance instance = getInstanceInfo(service);
-        return instance.getIp() + Consts.S.COLON + instance.getPort();
+    protected ServiceInstances loadInstances(String service) {
+        if (!listeners.containsKey(service)) {
+            EventListener listener = event -> {
+                if (event instanceof NamingEvent) {
+                    serviceInstancesMap.put(service, toServiceInstances(((NamingEvent) event).getInstances()));
+                }
+            };
+            if (listeners.putIfAbsent(service, listener) == null) {
+                try {
+                    namingService.subscribe(service, selectGroup, selectClusters, listener);
+                } catch (NacosException e) {
+                    listeners.remove(service, listener);
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        try {
+            return toServiceInstances(namingService.selectInstances(service, selectGroup, selectClusters, true, true));
+        } catch (NacosException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The instances are selected as {@link NamingService#selectOneHealthyInstance} does: randomly by weight from the healthy ones.
+     */
+    private static ServiceInstances toServiceInstances(List<Instance> instances) {
+        List<Instance> hosts = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            if (instance.isHealthy() && instance.isEnabled() && instance.getWeight() > 0) {
+                hosts.add(instance);
+            }
+        }
+        String[] endpoints = new String[hosts.size()];
+        double[] weights = new double[hosts.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            Instance instance = hosts.get(i);
+            endpoints[i] = instance.getIp() + Consts.S.COLON + instance.getPort();
+            weights[i] = instance.getWeight();
+        }
+        return ServiceInstances.weightedRandom(endpoints, weights);
+    }
+
+    @Override
+    public void deregister() {
+        for (Map.Entry<String, EventListener> e : listeners.entrySet()) {
+            try {
+                namingService.unsubscribe(e.getKey(), selectGroup, selectClusters, e.getValue());
+            } catch (NacosException ex) {
+                LOGGER.warn("nacos {} unsubscribe {} error", getId(), e.getKey(), ex);
+            }
+        }
+        listeners.clear();
+        super.deregister();
     }
 
     public Instance getInstanceInfo(String service) {
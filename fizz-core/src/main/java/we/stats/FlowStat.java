@@ -18,6 +18,7 @@
 package we.stats;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -37,6 +38,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ServerWebExchange;
 import we.stats.circuitbreaker.CircuitBreakManager;
 import we.stats.circuitbreaker.CircuitBreaker;
+import we.util.Consts;
 import we.util.ResourceIdUtils;
 import we.util.WebUtils;
 
@@ -72,6 +74,16 @@ public class FlowStat {
 
 	private CircuitBreakManager circuitBreakManager;
 
+	/**
+	 * Tracks the app, ip and host resources without limit, null if all resources are tracked
+	 */
+	private HeavyHitters heavyHitters;
+
+	/**
+	 * Resources not tracked any more, whose stats are merged to the other resource once idle
+	 */
+	private Set<String> untracked = new HashSet<>();
+
 	public FlowStat() {
 		runScheduleJob();
 	}
@@ -85,6 +97,23 @@ public class FlowStat {
 		this.circuitBreakManager = circuitBreakManager;
 	}
 
+	/**
+	 * Bound the resource stats by tracking only the configured resources and the top K app, ip and host resources without limit
+	 * by request count, the requests of the other app, ip and host resources are counted to {@link ResourceIdUtils#OTHER_RESOURCE}.
+	 * The stats of the resources which are not tracked any more are merged to the other resource once idle.
+	 *
+	 * @param k max app, ip and host resources without limit tracked, zero or negative for no bound
+	 */
+	public void setHeavyHitters(int k) {
+		w.lock();
+		try {
+			heavyHitters = k > 0 ? new HeavyHitters(k) : null;
+			untracked.clear();
+		} finally {
+			w.unlock();
+		}
+	}
+
 	private void runScheduleJob() {
 		pool.submit(new HousekeepJob(this));
 		pool.submit(new PeakConcurrentJob(this));
@@ -163,8 +192,7 @@ public class FlowStat {
 										resourceConfigs);
 								if (parentResCfgs != null && parentResCfgs.size() > 0) {
 									for (ResourceConfig pResCfg : parentResCfgs) {
-										getResourceStat(pResCfg.getResourceId())
-												.incrTotalBlockRequestToTimeSlot(curTimeSlotId);
+										resolveResourceStat(pResCfg).incrTotalBlockRequestToTimeSlot(curTimeSlotId);
 									}
 								}
 							}
@@ -183,8 +211,7 @@ public class FlowStat {
 										resourceConfigs);
 								if (parentResCfgs != null && parentResCfgs.size() > 0) {
 									for (ResourceConfig pResCfg : parentResCfgs) {
-										getResourceStat(pResCfg.getResourceId())
-												.incrTotalBlockRequestToTimeSlot(curTimeSlotId);
+										resolveResourceStat(pResCfg).incrTotalBlockRequestToTimeSlot(curTimeSlotId);
 									}
 								}
 							}
@@ -196,7 +223,7 @@ public class FlowStat {
 
 			// increase request and concurrent request
 			for (ResourceConfig resourceConfig : resourceConfigs) {
-				ResourceStat resourceStat = getResourceStat(resourceConfig.getResourceId());
+				ResourceStat resourceStat = resolveResourceStat(resourceConfig);
 				long cons = resourceStat.getConcurrentRequests().incrementAndGet();
 				resourceStat.getTimeSlot(curTimeSlotId).updatePeakConcurrentReqeusts(cons);
 				resourceStat.getTimeSlot(curTimeSlotId).incr();
@@ -230,8 +257,7 @@ public class FlowStat {
 										resourceConfigs);
 								if (parentResCfgs != null && parentResCfgs.size() > 0) {
 									for (ResourceConfig pResCfg : parentResCfgs) {
-										getResourceStat(pResCfg.getResourceId())
-												.incrTotalBlockRequestToTimeSlot(curTimeSlotId);
+										resolveResourceStat(pResCfg).incrTotalBlockRequestToTimeSlot(curTimeSlotId);
 									}
 								}
 							}
@@ -250,8 +276,7 @@ public class FlowStat {
 										resourceConfigs);
 								if (parentResCfgs != null && parentResCfgs.size() > 0) {
 									for (ResourceConfig pResCfg : parentResCfgs) {
-										getResourceStat(pResCfg.getResourceId())
-												.incrTotalBlockRequestToTimeSlot(curTimeSlotId);
+										resolveResourceStat(pResCfg).incrTotalBlockRequestToTimeSlot(curTimeSlotId);
 									}
 								}
 							}
@@ -262,7 +287,7 @@ public class FlowStat {
 			}
 
 			for (ResourceConfig resourceConfig : resourceConfigs) {
-				getResourceStat(resourceConfig.getResourceId());
+				resolveResourceStat(resourceConfig);
 			}
 
 			String service = WebUtils.getClientService(exchange);
@@ -275,7 +300,7 @@ public class FlowStat {
 
 			// increase request and concurrent request
 			for (ResourceConfig resourceConfig : resourceConfigs) {
-				ResourceStat resourceStat = getResourceStat(resourceConfig.getResourceId());
+				ResourceStat resourceStat = resolveResourceStat(resourceConfig);
 				long cons = resourceStat.getConcurrentRequests().incrementAndGet();
 				resourceStat.getTimeSlot(curTimeSlotId).updatePeakConcurrentReqeusts(cons);
 				resourceStat.getTimeSlot(curTimeSlotId).incr();
@@ -299,7 +324,11 @@ public class FlowStat {
 			return;
 		}
 		for (int i = resourceConfigs.size() - 1; i >= 0; i--) {
-			ResourceStat resourceStat = getResourceStat(resourceConfigs.get(i).getResourceId());
+			ResourceConfig resourceConfig = resourceConfigs.get(i);
+			ResourceStat resourceStat = resourceConfig.resourceStat;
+			if (resourceStat == null) {
+				resourceStat = getResourceStat(resourceConfig.getResourceId());
+			}
 			resourceStat.decrConcurrentRequest(timeSlotId);
 			resourceStat.addRequestRT(timeSlotId, rt, isSuccess);
 
@@ -390,6 +419,81 @@ public class FlowStat {
 		resourceStat.addRequestRT(timeSlotId, rt, isSuccess);
 	}
 
+	/**
+	 * Resolve the stat of the resource for the request once, so the request is counted to the same stat from start to end,
+	 * even if the resource is tracked or untracked meanwhile. Called with the write lock held.
+	 */
+	private ResourceStat resolveResourceStat(ResourceConfig resourceConfig) {
+		ResourceStat resourceStat = resourceConfig.resourceStat;
+		if (resourceStat == null) {
+			String resourceId = resourceConfig.getResourceId();
+			if (heavyHitters != null && resourceConfig.getMaxCon() <= 0 && resourceConfig.getMaxQPS() <= 0 && isClientResource(resourceId)) {
+				if (heavyHitters.add(resourceId)) {
+					String evicted = heavyHitters.getEvicted();
+					if (evicted != null && !removeIdleResourceStat(evicted)) {
+						untracked.add(evicted);
+					}
+				} else {
+					resourceId = ResourceIdUtils.OTHER_RESOURCE;
+				}
+			}
+			resourceStat = getResourceStat(resourceId);
+			resourceConfig.resourceStat = resourceStat;
+		}
+		return resourceStat;
+	}
+
+	/**
+	 * @return true if the resource is app, ip or host resource, which is as many as the clients
+	 */
+	static boolean isClientResource(String resourceId) {
+		int appEnd = resourceId.indexOf(Consts.S.SQUARE);
+		if (appEnd < 0) {
+			return false;
+		}
+		if (appEnd > 0) {
+			return true;
+		}
+		int ipEnd = resourceId.indexOf(Consts.S.SQUARE, 1);
+		if (ipEnd != 1) {
+			return ipEnd > 1;
+		}
+		int nodeEnd = resourceId.indexOf(Consts.S.SQUARE, 2);
+		return nodeEnd > 2 && !(nodeEnd - 2 == ResourceIdUtils.NODE.length() && resourceId.startsWith(ResourceIdUtils.NODE, 2))
+				&& !(nodeEnd - 2 == ResourceIdUtils.OTHER.length() && resourceId.startsWith(ResourceIdUtils.OTHER, 2));
+	}
+
+	private boolean removeIdleResourceStat(String resourceId) {
+		ResourceStat resourceStat = resourceStats.get(resourceId);
+		if (resourceStat == null) {
+			return true;
+		}
+		if (resourceStat.getConcurrentRequests().get() <= 0 && resourceStats.remove(resourceId, resourceStat)) {
+			ResourceStat other = getResourceStat(ResourceIdUtils.OTHER_RESOURCE);
+			for (TimeSlot timeSlot : resourceStat.getTimeSlots().values()) {
+				other.getTimeSlot(timeSlot.getId()).merge(timeSlot);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Decay the frequencies of the tracked resources and merge the stats of the idle resources not tracked any more to the other resource.
+	 */
+	void decayHeavyHitters() {
+		w.lock();
+		try {
+			if (heavyHitters == null) {
+				return;
+			}
+			heavyHitters.decay(untracked);
+			untracked.removeIf(resourceId -> heavyHitters.isTracked(resourceId) || removeIdleResourceStat(resourceId));
+		} finally {
+			w.unlock();
+		}
+	}
+
 	public ResourceStat getResourceStat(String resourceId) {
 		ResourceStat resourceStat = null;
 		if (resourceStats.containsKey(resourceId)) {
@@ -584,6 +688,7 @@ public class FlowStat {
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
+				stat.decayHeavyHitters();
 			}
 		}
 	}
@@ -0,0 +1,186 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.stats;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Top-K most frequent keys, the frequencies are estimated by a count-min sketch with conservative update,
+ * a key is tracked if its estimated frequency exceeds the least one of the tracked keys, which is evicted then.
+ * <p>
+ * The memory is bounded by the capacity and the sketch width, no matter how many distinct keys are added.
+ * The frequencies are halved by {@link #decay}, so the keys which are not frequent any more can be evicted.
+ * <p>
+ * Not thread safe.
+ *
+ * @author zhongjie
+ */
+class HeavyHitters {
+
+	private static final int    DEPTH = 4;
+
+	private static final int[]  SEEDS = {0x9E3779B9, 0x7F4A7C15, 0x1B873593, 0x27D4EB2F};
+
+	private static class Counter {
+		long count;
+	}
+
+	private final int                  capacity;
+
+	private final int[][]              sketch;
+
+	private final int                  mask;
+
+	private final Map<String, Counter> tracked;
+
+	/**
+	 * Lower bound of the least count of the tracked keys
+	 */
+	private long                       minCount = 0;
+
+	private String                     evicted;
+
+	/**
+	 * @param capacity max keys tracked
+	 */
+	HeavyHitters(int capacity) {
+		this.capacity = capacity;
+		int width = Integer.highestOneBit(Math.max(1024, capacity * 16) - 1) << 1;
+		sketch  = new int[DEPTH][width];
+		mask    = width - 1;
+		tracked = new HashMap<>(capacity * 4 / 3 + 1);
+	}
+
+	/**
+	 * Count the key once.
+	 *
+	 * @return true if the key is tracked
+	 */
+	boolean add(String key) {
+		evicted = null;
+		Counter c = tracked.get(key);
+		long estimate = increment(key);
+		if (c != null) {
+			c.count++;
+			return true;
+		}
+		if (tracked.size() < capacity) {
+			track(key, estimate);
+			return true;
+		}
+		if (estimate <= minCount) {
+			return false;
+		}
+		String minKey = null;
+		long min = Long.MAX_VALUE;
+		for (Map.Entry<String, Counter> e : tracked.entrySet()) {
+			long count = e.getValue().count;
+			if (count < min) {
+				min = count;
+				minKey = e.getKey();
+			}
+		}
+		minCount = min;
+		if (estimate <= min) {
+			return false;
+		}
+		tracked.remove(minKey);
+		evicted = minKey;
+		track(key, estimate);
+		return true;
+	}
+
+	private void track(String key, long estimate) {
+		Counter c = new Counter();
+		c.count = estimate;
+		tracked.put(key, c);
+	}
+
+	private long increment(String key) {
+		int h = key.hashCode();
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < DEPTH; i++) {
+			int v = sketch[i][index(h, i)];
+			if (v < min) {
+				min = v;
+			}
+		}
+		if (min == Integer.MAX_VALUE) {
+			return min;
+		}
+		for (int i = 0; i < DEPTH; i++) {
+			int idx = index(h, i);
+			if (sketch[i][idx] == min) {
+				sketch[i][idx] = min + 1;
+			}
+		}
+		return min + 1;
+	}
+
+	private int index(int h, int row) {
+		h ^= SEEDS[row];
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h & mask;
+	}
+
+	/**
+	 * @return the key evicted by the last {@link #add}, or null
+	 */
+	String getEvicted() {
+		return evicted;
+	}
+
+	boolean isTracked(String key) {
+		return tracked.containsKey(key);
+	}
+
+	int size() {
+		return tracked.size();
+	}
+
+	/**
+	 * Halve the frequencies, the tracked keys whose count drops to zero are untracked.
+	 *
+	 * @param untracked to add the untracked keys to
+	 */
+	void decay(Collection<String> untracked) {
+		for (int[] row : sketch) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] >>>= 1;
+			}
+		}
+		Iterator<Map.Entry<String, Counter>> it = tracked.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Counter> e = it.next();
+			Counter c = e.getValue();
+			c.count >>>= 1;
+			if (c.count == 0) {
+				it.remove();
+				untracked.add(e.getKey());
+			}
+		}
+		minCount = 0;
+	}
+}
@@ -0,0 +1,349 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.stats;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpResources;
+import we.config.ConfigDeltaReconciler;
+import we.filter.CallbackFilter;
+import we.filter.CallbackReqPusher;
+import we.log.LogSendAppender;
+import we.log.LogSendBatcher;
+import we.log.LogSendService;
+import we.log.RedisLogSendServiceImpl;
+import we.proxy.OutlierDetector;
+import we.stats.circuitbreaker.CircuitBreakManager;
+import we.stats.circuitbreaker.CircuitBreaker;
+import we.util.ResourceIdUtils;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exports the stats of resources, circuit breakers, event loops, buffer pool and config caches in Prometheus text format.
+ * <p>
+ * Resource metrics are of the last complete second, only the resources with most requests are exported
+ * if there are more than {@code fizz.metrics.max-resources}, and the output is rendered chunk by chunk
+ * when the response is written, so the cost of a scrape is bounded for lots of resources.
+ *
+ * @author Francis Dong
+ */
+@Service
+public class MetricsExporter {
+
+	private static final Logger log          = LoggerFactory.getLogger(MetricsExporter.class);
+
+	public  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final int    CHUNK        = 256;
+
+	private static final Family[] RESOURCE_FAMILIES = {
+			new Family("fizz_resource_requests",              "Requests of resource in the last second",                   s -> s.requests),
+			new Family("fizz_resource_concurrent_requests",   "Concurrent requests of resource",                           s -> s.concurrents),
+			new Family("fizz_resource_errors",                "Failed requests of resource in the last second",            s -> s.errors),
+			new Family("fizz_resource_blocked_requests",      "Requests blocked by flow control in the last second",       s -> s.blocked),
+			new Family("fizz_resource_rt_avg_milliseconds",   "Average response time of resource in the last second",      s -> s.avgRt),
+			new Family("fizz_resource_rt_max_milliseconds",   "Max response time of resource in the last second",          s -> s.maxRt),
+			new Family("fizz_resource_circuit_breaks",        "Requests rejected by circuit breaker in the last second",   s -> s.circuitBreaks)
+	};
+
+	@Autowired(required = false)
+	private FlowStat            flowStat;
+
+	@Resource
+	private CircuitBreakManager circuitBreakManager;
+
+	@Autowired(required = false)
+	private OutlierDetector     outlierDetector;
+
+	@Autowired(required = false)
+	private CallbackFilter      callbackFilter;
+
+	@Value("${fizz.metrics.max-resources:1000}")
+	private int                 maxResources = 1000;
+
+	public Flux<DataBuffer> scrape(DataBufferFactory bufferFactory) {
+		return Flux.defer(
+				() -> {
+					long timeSlot = flowStat == null ? 0 : flowStat.currentTimeSlotId() - FlowStat.INTERVAL;
+					return scrape(bufferFactory, timeSlot);
+				}
+		);
+	}
+
+	Flux<DataBuffer> scrape(DataBufferFactory bufferFactory, long timeSlot) {
+		int[] total = {0};
+		List<ResourceSnapshot> snapshots = flowStat == null ? new ArrayList<>() : topResources(timeSlot, total);
+		Mono<DataBuffer> head = Mono.fromSupplier(
+				() -> {
+					StringBuilder b = new StringBuilder(4096);
+					gauge(b, "fizz_metrics_resources", "Resources in flow stat", total[0]);
+					gauge(b, "fizz_metrics_resources_exported", "Resources exported", snapshots.size());
+					writeNodeMetrics(b);
+					return toDataBuffer(bufferFactory, b);
+				}
+		);
+		Flux<DataBuffer> resources = Flux.fromArray(RESOURCE_FAMILIES).concatMap(
+				family -> {
+					int chunks = (snapshots.size() + CHUNK - 1) / CHUNK;
+					return Flux.range(0, chunks).map(
+							c -> {
+								StringBuilder b = new StringBuilder(CHUNK * 64);
+								if (c == 0) {
+									header(b, family.name, family.help, "gauge");
+								}
+								int end = Math.min(snapshots.size(), (c + 1) * CHUNK);
+								for (int i = c * CHUNK; i < end; i++) {
+									ResourceSnapshot s = snapshots.get(i);
+									sample(b, family.name, "resource", s.resource, family.value.applyAsLong(s));
+								}
+								return toDataBuffer(bufferFactory, b);
+							}
+					);
+				}
+		);
+		Mono<DataBuffer> circuitBreakers = Mono.fromSupplier(
+				() -> {
+					StringBuilder b = new StringBuilder(1024);
+					writeCircuitBreakers(b);
+					return toDataBuffer(bufferFactory, b);
+				}
+		);
+		return Flux.concat(head, resources, circuitBreakers);
+	}
+
+	/**
+     * @return the node resource and the resources with most requests in the time slot, at most max resources
+     */
+	private List<ResourceSnapshot> topResources(long timeSlot, int[] total) {
+		PriorityQueue<ResourceSnapshot> top = new PriorityQueue<>(Math.max(1, maxResources), (a, b) -> Long.compare(a.requests, b.requests));
+		ResourceSnapshot node = null;
+		int n = 0;
+		for (ResourceStat rs : flowStat.resourceStats.values()) {
+			n++;
+			if (ResourceIdUtils.NODE_RESOURCE.equals(rs.getResourceId())) {
+				node = new ResourceSnapshot(rs, timeSlot);
+				continue;
+			}
+			TimeSlot ts = rs.getTimeSlots().get(timeSlot);
+			long requests = ts == null ? 0 : ts.getCounter().get();
+			if (top.size() < maxResources) {
+				top.add(new ResourceSnapshot(rs, timeSlot));
+			} else if (maxResources > 0 && top.peek().requests < requests) {
+				top.poll();
+				top.add(new ResourceSnapshot(rs, timeSlot));
+			}
+		}
+		total[0] = n;
+		ResourceSnapshot[] snapshots = top.toArray(new ResourceSnapshot[0]);
+		Arrays.sort(snapshots, (a, b) -> Long.compare(b.requests, a.requests));
+		List<ResourceSnapshot> result = new ArrayList<>(snapshots.length + 1);
+		if (node != null) {
+			result.add(node);
+		}
+		result.addAll(Arrays.asList(snapshots));
+		return result;
+	}
+
+	private void writeNodeMetrics(StringBuilder b) {
+		try {
+			EventLoopGroup group = HttpResources.get().onServer(true);
+			header(b, "fizz_event_loop_pending_tasks", "Pending tasks of event loop", "gauge");
+			int i = 0;
+			for (EventExecutor executor : group) {
+				if (executor instanceof SingleThreadEventExecutor) {
+					sample(b, "fizz_event_loop_pending_tasks", "loop", String.valueOf(i), ((SingleThreadEventExecutor) executor).pendingTasks());
+				}
+				i++;
+			}
+		} catch (Throwable t) {
+			log.warn("export event loop metrics", t);
+		}
+
+		if (ByteBufAllocator.DEFAULT instanceof ByteBufAllocatorMetricProvider) {
+			ByteBufAllocatorMetric metric = ((ByteBufAllocatorMetricProvider) ByteBufAllocator.DEFAULT).metric();
+			gauge(b, "fizz_buffer_pool_used_direct_bytes", "Direct memory used by buffer pool", metric.usedDirectMemory());
+			gauge(b, "fizz_buffer_pool_used_heap_bytes",   "Heap memory used by buffer pool",   metric.usedHeapMemory());
+		}
+		gauge(b, "fizz_direct_memory_used_bytes", "Direct memory used by netty", PlatformDependent.usedDirectMemory());
+
+		List<ConfigDeltaReconciler> reconcilers = new ArrayList<>(ConfigDeltaReconciler.getReconcilers());
+		if (!reconcilers.isEmpty()) {
+			header(b, "fizz_config_cache_entries", "Configs in local cache", "gauge");
+			reconcilers.forEach(r -> sample(b, "fizz_config_cache_entries", "hash_key", r.getHashKey(), r.getSize()));
+			header(b, "fizz_config_reconciles_total", "Reconciliations of local config cache", "counter");
+			reconcilers.forEach(r -> sample(b, "fizz_config_reconciles_total", "hash_key", r.getHashKey(), r.getReconciles()));
+			header(b, "fizz_config_full_reloads_total", "Full reloads of local config cache", "counter");
+			reconcilers.forEach(r -> sample(b, "fizz_config_full_reloads_total", "hash_key", r.getHashKey(), r.getFullReloads()));
+			header(b, "fizz_config_changed_total", "Configs changed by reconciliation", "counter");
+			reconcilers.forEach(r -> sample(b, "fizz_config_changed_total", "hash_key", r.getHashKey(), r.getTotalChanged()));
+			header(b, "fizz_config_removed_total", "Configs removed by reconciliation", "counter");
+			reconcilers.forEach(r -> sample(b, "fizz_config_removed_total", "hash_key", r.getHashKey(), r.getTotalRemoved()));
+			header(b, "fizz_config_last_reconcile_milliseconds", "Time of last reconciliation", "gauge");
+			reconcilers.forEach(r -> sample(b, "fizz_config_last_reconcile_milliseconds", "hash_key", r.getHashKey(), r.getLastReconcileMillis()));
+		}
+
+		if (outlierDetector != null) {
+			gauge(b, "fizz_outlier_ejected_instances", "Instances ejected by outlier detector", outlierDetector.getEjectedCount());
+		}
+
+		LogSendService logSendService = LogSendAppender.logSendService;
+		if (logSendService instanceof RedisLogSendServiceImpl) {
+			LogSendBatcher batcher = ((RedisLogSendServiceImpl) logSendService).getLogSendBatcher();
+			gauge(b,   "fizz_log_send_buffered_bytes",       "Size of logs buffered to send",           batcher.getBufferedBytes());
+			counter(b, "fizz_log_send_published_total",      "Logs sent",                               batcher.getPublished());
+			counter(b, "fizz_log_send_dropped_total",        "Logs dropped because buffer full",        batcher.getDropped());
+			counter(b, "fizz_log_send_sampled_out_total",    "Logs dropped by sampling",                batcher.getSampledOut());
+			counter(b, "fizz_log_send_publish_failed_total", "Logs failed to send",                     batcher.getPublishFailed());
+		}
+
+		if (callbackFilter != null && callbackFilter.getCallbackReqPusher() != null) {
+			CallbackReqPusher pusher = callbackFilter.getCallbackReqPusher();
+			gauge(b,   "fizz_callback_push_buffered_bytes",       "Size of callback requests buffered to push to manager", pusher.getBufferedBytes());
+			counter(b, "fizz_callback_push_published_total",      "Callback requests pushed to manager",                   pusher.getPublished());
+			counter(b, "fizz_callback_push_dropped_total",        "Callback requests dropped because buffer full",         pusher.getDropped());
+			counter(b, "fizz_callback_push_publish_failed_total", "Callback requests failed to push",                      pusher.getPublishFailed());
+		}
+	}
+
+	private void writeCircuitBreakers(StringBuilder b) {
+		List<CircuitBreaker> circuitBreakers;
+		try {
+			circuitBreakers = new ArrayList<>(circuitBreakManager.getResource2circuitBreakerMap().values());
+		} catch (Throwable t) {
+			// the map is being updated
+			log.debug("export circuit breaker metrics", t);
+			return;
+		}
+		if (circuitBreakers.isEmpty()) {
+			return;
+		}
+		header(b, "fizz_circuit_breaker_state", "State of circuit breaker, 0 closed, 1 open, 2 resume gradually, 3 resume detective", "gauge");
+		int n = Math.min(circuitBreakers.size(), maxResources);
+		for (int i = 0; i < n; i++) {
+			CircuitBreaker cb = circuitBreakers.get(i);
+			sample(b, "fizz_circuit_breaker_state", "resource", cb.resource, cb.stateRef.get().ordinal());
+		}
+	}
+
+	private static void gauge(StringBuilder b, String name, String help, long value) {
+		header(b, name, help, "gauge");
+		b.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void counter(StringBuilder b, String name, String help, long value) {
+		header(b, name, help, "counter");
+		b.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void header(StringBuilder b, String name, String help, String type) {
+		b.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		b.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(StringBuilder b, String name, String label, String labelValue, long value) {
+		b.append(name).append('{').append(label).append("=\"");
+		for (int i = 0; i < labelValue.length(); i++) {
+			char c = labelValue.charAt(i);
+			if (c == '\\' || c == '"') {
+				b.append('\\').append(c);
+			} else if (c == '\n') {
+				b.append("\\n");
+			} else {
+				b.append(c);
+			}
+		}
+		b.append("\"} ").append(value).append('\n');
+	}
+
+	private static DataBuffer toDataBuffer(DataBufferFactory bufferFactory, StringBuilder b) {
+		byte[] bytes = b.toString().getBytes(StandardCharsets.UTF_8);
+		return bufferFactory.wrap(bytes);
+	}
+
+	private static class Family {
+
+		final String                           name;
+
+		final String                           help;
+
+		final ToLongFunction<ResourceSnapshot> value;
+
+		Family(String name, String help, ToLongFunction<ResourceSnapshot> value) {
+			this.name  = name;
+			this.help  = help;
+			this.value = value;
+		}
+	}
+
+	private static class ResourceSnapshot {
+
+		final String resource;
+
+		final long   requests;
+
+		final long   concurrents;
+
+		long         errors;
+
+		long         blocked;
+
+		long         avgRt;
+
+		long         maxRt;
+
+		long         circuitBreaks;
+
+		ResourceSnapshot(ResourceStat rs, long timeSlot) {
+			resource    = rs.getResourceId();
+			concurrents = rs.getConcurrentRequests().get();
+			TimeSlot ts = rs.getTimeSlots().get(timeSlot);
+			if (ts == null) {
+				requests = 0;
+			} else {
+				requests      = ts.getCounter().get();
+				errors        = ts.getErrors().get();
+				blocked       = ts.getBlockRequests().get();
+				long compReqs = ts.getCompReqs().get();
+				avgRt         = compReqs == 0 ? 0 : ts.getTotalRt().get() / compReqs;
+				maxRt         = compReqs == 0 ? 0 : ts.getMax();
+				circuitBreaks = ts.getCircuitBreakNum().get();
+			}
+		}
+	}
+}
@@ -17,9 +17,13 @@
 
 package we.stats;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
  * 
@@ -91,4 +95,12 @@ public class ResourceConfig {
 	 * Recovery time window(second)，not null when recovery strategy is 2-recover gradually
 	 */
 	private Integer recoveryTimeWindow;
+
+	/**
+	 * Stat of the resource resolved by {@link FlowStat} for the request, may be the other resource stat
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@ToString.Exclude
+	transient ResourceStat resourceStat;
 }
@@ -168,6 +168,27 @@ public class TimeSlot {
 		max = rt > max ? rt : max;
 	}
 
+	/**
+	 * Add the requests of the time slot of another resource to this time slot, the peak concurrent requests and circuit breaker
+	 * state are not merged
+	 *
+	 * @param other time slot with the same ID
+	 */
+	public synchronized void merge(TimeSlot other) {
+		counter.addAndGet(other.counter.get());
+		errors.addAndGet(other.errors.get());
+		totalRt.addAndGet(other.totalRt.get());
+		compReqs.addAndGet(other.compReqs.get());
+		min = other.min < min ? other.min : min;
+		max = other.max > max ? other.max : max;
+		blockRequests.addAndGet(other.blockRequests.get());
+		totalBlockRequests.addAndGet(other.totalBlockRequests.get());
+		_2xxStatusCount.addAndGet(other._2xxStatusCount.get());
+		_4xxStatusCount.addAndGet(other._4xxStatusCount.get());
+		_5xxStatusCount.addAndGet(other._5xxStatusCount.get());
+		_504StatusCount.addAndGet(other._504StatusCount.get());
+	}
+
 	/**
 	 * Update peak concurrent requests of this time slot
 	 * 
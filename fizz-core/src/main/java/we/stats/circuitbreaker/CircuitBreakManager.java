@@ -25,6 +25,7 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
 import we.flume.clients.log4j2appender.LogService;
 import we.stats.FlowStat;
 import we.util.JacksonUtils;
@@ -35,6 +36,7 @@ import we.util.WebUtils;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author hongqiaowei
@@ -53,9 +55,14 @@ public class CircuitBreakManager {
 
     private final Set<String>                 circuitBreakersFromServiceDefault = new HashSet<>(64);
 
+    private final AtomicLong                  version                           = new AtomicLong();
+
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
     @PostConstruct
     public void init() {
         Result<?> result = initCircuitBreakers();
@@ -72,7 +79,7 @@ public class CircuitBreakManager {
 
     private Result<?> initCircuitBreakers() {
         Result<?> result = Result.succ();
-        Flux<Map.Entry<Object, Object>> circuitBreakerConfigs = rt.opsForHash().entries("fizz_degrade_rule");
+        Flux<Map.Entry<Object, Object>> circuitBreakerConfigs = ConfigPreloader.entries(configPreloader, rt, "fizz_degrade_rule", null);
         circuitBreakerConfigs.collectList()
                              .defaultIfEmpty(Collections.emptyList())
                              .flatMap(
@@ -85,6 +92,7 @@ public class CircuitBreakManager {
                                                      CircuitBreaker cb = JacksonUtils.readValue(json, CircuitBreaker.class);
                                                      circuitBreakerMap.put(cb.id, cb);
                                                      resource2circuitBreakerMap.put(cb.resource, cb);
+                                                     version.incrementAndGet();
                                                      // updateParentResourceMap(cb);
                                                      LOGGER.info("init circuit breaker {}", cb);
                                                  }
@@ -158,6 +166,7 @@ public class CircuitBreakManager {
                                   circuitBreakersFromServiceDefault.clear();
                               // }
                           }
+                          version.incrementAndGet();
                       } catch (Throwable t) {
                           LOGGER.error("update circuit breaker error, {}", message, t);
                       }
@@ -245,6 +254,7 @@ public class CircuitBreakManager {
 
         resource2circuitBreakerMap.put(resource, cb);
         circuitBreakersFromServiceDefault.add(resource);
+        version.incrementAndGet();
 
         return cb;
     }
@@ -316,6 +326,13 @@ public class CircuitBreakManager {
         return resource2circuitBreakerMap;
     }
 
+    /**
+     * @return the version of the circuit breakers, increased whenever a circuit breaker is added, changed or removed
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     /*public Map<String, String> getParentResourceMap() {
         return parentResourceMap;
     }*/
@@ -24,6 +24,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.config.AggregateRedisConfig;
+import we.config.ConfigPreloader;
+import we.config.ConfigDeltaReconciler;
 import we.flume.clients.log4j2appender.LogService;
 import we.util.JacksonUtils;
 import we.util.ReactorUtils;
@@ -33,6 +35,7 @@ import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 /**
@@ -55,6 +58,13 @@ public class ResourceRateLimitConfigService {
     @Resource(name = AggregateRedisConfig.AGGREGATE_REACTIVE_REDIS_TEMPLATE)
     private ReactiveStringRedisTemplate rt;
 
+    @Resource
+    private ConfigPreloader configPreloader;
+
+    private ConfigDeltaReconciler configDeltaReconciler;
+
+    private final AtomicLong version = new AtomicLong();
+
     @PostConstruct
     public void init() throws Throwable {
         this.init(this::lsnResourceRateLimitConfigChange);
@@ -67,8 +77,9 @@ public class ResourceRateLimitConfigService {
     private void init(Supplier<Mono<Throwable>> doAfterLoadCache) throws Throwable {
         Map<String, ResourceRateLimitConfig> resourceRateLimitConfigMapTmp = new HashMap<>(32);
         Map<Integer, ResourceRateLimitConfig> oldResourceRateLimitConfigMapTmp = new HashMap<>(32);
+        Map<String, String> jsonMapTmp = new HashMap<>(32);
         final Throwable[] throwable = new Throwable[1];
-        Throwable error = Mono.just(Objects.requireNonNull(rt.opsForHash().entries(fizzRateLimit)
+        Throwable error = Mono.just(Objects.requireNonNull(ConfigPreloader.entries(configPreloader, rt, fizzRateLimit, this::reconcileLocalCache)
                 .defaultIfEmpty(new AbstractMap.SimpleEntry<>(ReactorUtils.OBJ, ReactorUtils.OBJ)).onErrorStop().doOnError(t -> {
                     log.info(null, t);
                 })
@@ -81,6 +92,7 @@ public class ResourceRateLimitConfigService {
                     log.info("rateLimitConfig: " + json, LogService.BIZ_ID, k.toString());
                     try {
                         ResourceRateLimitConfig rrlc = JacksonUtils.readValue(json, ResourceRateLimitConfig.class);
+                        jsonMapTmp.put(k.toString(), json);
                         oldResourceRateLimitConfigMapTmp.put(rrlc.id, rrlc);
                         updateResourceRateLimitConfigMap(rrlc, resourceRateLimitConfigMapTmp);
                         return Flux.just(e);
@@ -106,6 +118,48 @@ public class ResourceRateLimitConfigService {
         }
         resourceRateLimitConfigMap = resourceRateLimitConfigMapTmp;
         oldResourceRateLimitConfigMap = oldResourceRateLimitConfigMapTmp;
+        version.incrementAndGet();
+        getConfigDeltaReconciler().loaded(jsonMapTmp);
+    }
+
+    /**
+     * apply the changed configs in redis to local cache
+     */
+    public void reconcileLocalCache() throws Throwable {
+        getConfigDeltaReconciler().reconcile();
+    }
+
+    public ConfigDeltaReconciler getConfigDeltaReconciler() {
+        if (configDeltaReconciler == null) {
+            configDeltaReconciler = new ConfigDeltaReconciler(fizzRateLimit, rt,
+                    new ConfigDeltaReconciler.Handler() {
+                        @Override
+                        public void onChange(String field, String json) {
+                            log.info("reconcile rate limit config: " + json, LogService.BIZ_ID, field);
+                            updateResourceRateLimitConfig(JacksonUtils.readValue(json, ResourceRateLimitConfig.class));
+                        }
+                        @Override
+                        public void onRemove(String field, String json) {
+                            log.info("reconcile removed rate limit config: " + json, LogService.BIZ_ID, field);
+                            ResourceRateLimitConfig rrlc = JacksonUtils.readValue(json, ResourceRateLimitConfig.class);
+                            rrlc.isDeleted = true;
+                            updateResourceRateLimitConfig(rrlc);
+                        }
+                    });
+        }
+        return configDeltaReconciler;
+    }
+
+    private synchronized void updateResourceRateLimitConfig(ResourceRateLimitConfig rrlc) {
+        ResourceRateLimitConfig r = oldResourceRateLimitConfigMap.remove(rrlc.id);
+        if (!rrlc.isDeleted && r != null) {
+            resourceRateLimitConfigMap.remove(r.getResourceId());
+        }
+        updateResourceRateLimitConfigMap(rrlc, resourceRateLimitConfigMap);
+        if (!rrlc.isDeleted) {
+            oldResourceRateLimitConfigMap.put(rrlc.id, rrlc);
+        }
+        version.incrementAndGet();
     }
 
     private Mono<Throwable> lsnResourceRateLimitConfigChange() {
@@ -125,14 +179,7 @@ public class ResourceRateLimitConfigService {
             log.info("channel recv rate limit config: " + json, LogService.BIZ_ID, "rrlc" + System.currentTimeMillis());
             try {
                 ResourceRateLimitConfig rrlc = JacksonUtils.readValue(json, ResourceRateLimitConfig.class);
-                ResourceRateLimitConfig r = oldResourceRateLimitConfigMap.remove(rrlc.id);
-                if (!rrlc.isDeleted && r != null) {
-                    resourceRateLimitConfigMap.remove(r.getResourceId());
-                }
-                updateResourceRateLimitConfigMap(rrlc, resourceRateLimitConfigMap);
-                if (!rrlc.isDeleted) {
-                    oldResourceRateLimitConfigMap.put(rrlc.id, rrlc);
-                }
+                updateResourceRateLimitConfig(rrlc);
             } catch (Throwable t) {
                 log.info(json, t);
             }
@@ -180,6 +227,13 @@ public class ResourceRateLimitConfigService {
         return resourceRateLimitConfigMap;
     }
 
+    /**
+     * @return the version of the configs, increased whenever a config changes
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     // _global, service, app, app+service, ip, ip+service
     // public void getParentsTo(String resource, List<String> parentList) {
     //     String app = null, ip = null, node = null, service = null, path = null;
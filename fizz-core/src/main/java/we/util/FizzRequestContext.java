@@ -0,0 +1,182 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import org.springframework.web.server.ServerWebExchange;
+import we.filter.FilterResult;
+import we.plugin.auth.ApiConfig;
+import we.proxy.Route;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The state of a request kept by the gateway, created once per exchange and bound to it as one attribute,
+ * so reading a value is a field access rather than an attribute lookup, and the derived values are computed once.
+ * <p>
+ * The values are read and written by {@link WebUtils}, which computes the derived ones from the exchange.
+ *
+ * @author zhongjie
+ */
+
+public final class FizzRequestContext {
+
+    private static final String  ATTRIBUTE = "frctx@";
+
+    boolean                      adminReq;
+
+    boolean                      fizzReq;
+
+    String                       traceId;
+
+    String                       clientService;
+
+    String                       clientReqPath;
+
+    String                       clientReqPathPrefix;
+
+    /**
+     * {@link #clientReqQuery} is resolved, it's null if the request has no query
+     */
+    boolean                      clientReqQueryResolved;
+
+    String                       clientReqQuery;
+
+    String                       originIp;
+
+    String                       backendService;
+
+    String                       backendPath;
+
+    Route                        route;
+
+    Map<String, String>          appendHeaders;
+
+    Result<ApiConfig>            authResult;
+
+    Object                       directResponse;
+
+    private FilterResult         prevFilterResult;
+
+    private FilterResult[]       filterResults;
+
+    private int                  filterResultCount;
+
+    /**
+     * The filter results by filter, built only if asked
+     */
+    private Map<String, FilterResult> filterContext;
+
+    private FizzRequestContext() {
+    }
+
+    public static FizzRequestContext get(ServerWebExchange exchange) {
+        Map<String, Object> attributes = exchange.getAttributes();
+        FizzRequestContext ctx = (FizzRequestContext) attributes.get(ATTRIBUTE);
+        if (ctx == null) {
+            ctx = new FizzRequestContext();
+            attributes.put(ATTRIBUTE, ctx);
+        }
+        return ctx;
+    }
+
+    public boolean isAdminReq() {
+        return adminReq;
+    }
+
+    public boolean isFizzReq() {
+        return fizzReq;
+    }
+
+    /**
+     * @return the headers appended to the request to the backend, null if none is appended
+     */
+    public Map<String, String> getAppendHeaders() {
+        return appendHeaders;
+    }
+
+    public FilterResult getPrevFilterResult() {
+        return prevFilterResult;
+    }
+
+    /**
+     * Starts the filter results of the request.
+     */
+    public void setPrevFilterResult(FilterResult fr) {
+        prevFilterResult = fr;
+        if (filterContext != null) {
+            filterContext.put(WebUtils.PREV_FILTER_RESULT, fr);
+        }
+    }
+
+    public void bindFilterResult(String filter, FilterResult fr) {
+        int i = indexOf(filter);
+        if (i == -1) {
+            if (filterResults == null) {
+                filterResults = new FilterResult[4];
+            } else if (filterResultCount == filterResults.length) {
+                FilterResult[] frs = new FilterResult[filterResultCount << 1];
+                System.arraycopy(filterResults, 0, frs, 0, filterResultCount);
+                filterResults = frs;
+            }
+            i = filterResultCount++;
+        }
+        filterResults[i] = fr;
+        if (filterContext != null) {
+            filterContext.put(filter, fr);
+        }
+        setPrevFilterResult(fr);
+    }
+
+    public FilterResult getFilterResult(String filter) {
+        if (filterContext != null) {
+            return filterContext.get(filter);
+        }
+        if (WebUtils.PREV_FILTER_RESULT.equals(filter)) {
+            return prevFilterResult;
+        }
+        int i = indexOf(filter);
+        return i == -1 ? null : filterResults[i];
+    }
+
+    /**
+     * @return the filter results by filter and the previous one by {@link WebUtils#PREV_FILTER_RESULT}, null if no filter result
+     */
+    public Map<String, FilterResult> getFilterContext() {
+        if (filterContext == null) {
+            if (prevFilterResult == null) {
+                return null;
+            }
+            filterContext = new HashMap<>();
+            for (int i = 0; i < filterResultCount; i++) {
+                filterContext.put(filterResults[i].id, filterResults[i]);
+            }
+            filterContext.put(WebUtils.PREV_FILTER_RESULT, prevFilterResult);
+        }
+        return filterContext;
+    }
+
+    private int indexOf(String filter) {
+        for (int i = 0; i < filterResultCount; i++) {
+            if (filterResults[i].id.equals(filter)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
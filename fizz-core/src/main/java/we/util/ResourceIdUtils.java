@@ -28,6 +28,10 @@ public class ResourceIdUtils {
 
     public  static final String NODE_RESOURCE              = buildResourceId(null, null, NODE, null, null);
 
+    public  static final String OTHER                      = "_other";
+
+    public  static final String OTHER_RESOURCE             = buildResourceId(null, null, OTHER, null, null);
+
     public  static final String SERVICE_DEFAULT            = "service_default";
 
     public  static final String SERVICE_DEFAULT_RESOURCE   = buildResourceId(null, null, null, SERVICE_DEFAULT, null);
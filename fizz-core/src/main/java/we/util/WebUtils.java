@@ -39,12 +39,11 @@ import we.plugin.auth.ApiConfig;
 import we.plugin.auth.AuthPluginFilter;
 import we.proxy.Route;
 
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URLDecoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -71,8 +70,6 @@ public abstract class WebUtils {
 
     private  static  final  String       binaryAddress                = "0:0:0:0:0:0:0:1";
 
-    private  static  final  String       directResponse               = "dr@";
-
     private  static  final  String       response                     = " response ";
 
     private  static  final  String       originIp                     = "oi@";
@@ -91,26 +88,66 @@ public abstract class WebUtils {
 
     private  static         List<String> timestampHeaders             = Stream.of(SystemConfig.FIZZ_TIMESTAMP).collect(Collectors.toList());
 
+    /**
+     * @deprecated not put into the exchange attributes any more, only read when no trace id is set,
+     * use {@link #getTraceId(ServerWebExchange)} and {@link #setTraceId(ServerWebExchange, String)}
+     */
+    @Deprecated
     public   static  final  String       TRACE_ID                     = "traid@";
 
+    /**
+     * @deprecated not put into the exchange attributes any more, only read when no backend service is set,
+     * use {@link #getBackendService(ServerWebExchange)} and {@link #setBackendService(ServerWebExchange, String)}
+     */
+    @Deprecated
     public   static  final  String       BACKEND_SERVICE              = "bs@";
 
+    /**
+     * @deprecated not put into the exchange attributes any more,
+     * use {@link FizzRequestContext#getFilterResult(String)} and {@link FizzRequestContext#bindFilterResult(String, FilterResult)}
+     */
+    @Deprecated
     public   static  final  String       FILTER_CONTEXT               = "fc@";
 
+    /**
+     * @deprecated not put into the exchange attributes any more,
+     * use {@link #getAppendHeaders(ServerWebExchange)} and {@link #appendHeader(ServerWebExchange, String, String)}
+     */
+    @Deprecated
     public   static  final  String       APPEND_HEADERS               = "ahs@";
 
     public   static  final  String       PREV_FILTER_RESULT           = "pfr@";
 
+    /**
+     * @deprecated not put into the exchange attributes any more, only read when no backend path is set,
+     * use {@link #getBackendPath(ServerWebExchange)} and {@link #setBackendPath(ServerWebExchange, String)}
+     */
+    @Deprecated
     public   static  final  String       BACKEND_PATH                 = "bp@";
 
+    /**
+     * @deprecated not put into the exchange attributes any more, only read when no route is set,
+     * use {@link #getRoute(ServerWebExchange)} and {@link #setRoute(ServerWebExchange, Route)}
+     */
+    @Deprecated
     public   static  final  String       ROUTE                        = "rout@";
 
     public   static         boolean      LOG_RESPONSE_BODY            = false;
 
     public   static         Set<String>  LOG_HEADER_SET               = Collections.emptySet();
 
+    /**
+     * @deprecated not put into the exchange attributes any more,
+     * use {@link #isAdminReq(ServerWebExchange)} and {@link #setAdminReq(ServerWebExchange)}
+     */
+    @Deprecated
     public   static  final  String       ADMIN_REQUEST                = "ar@";
 
+    /**
+     * @deprecated not put into the exchange attributes any more,
+     * use {@link #isFizzReq(ServerWebExchange)} and {@link #setFizzReq(ServerWebExchange)}
+     */
+    @Deprecated
     public   static  final  String       FIZZ_REQUEST                 = "fr@";
 
     public   static  final  String       BODY_ENCRYPT                 = "b-ecyt";
@@ -121,12 +158,24 @@ public abstract class WebUtils {
     private WebUtils() {
     }
 
+    public static FizzRequestContext getRequestContext(ServerWebExchange exchange) {
+        return FizzRequestContext.get(exchange);
+    }
+
     public static boolean isAdminReq(ServerWebExchange exchange) {
-        return exchange.getAttribute(ADMIN_REQUEST) != null;
+        return FizzRequestContext.get(exchange).isAdminReq();
+    }
+
+    public static void setAdminReq(ServerWebExchange exchange) {
+        FizzRequestContext.get(exchange).adminReq = true;
     }
 
     public static boolean isFizzReq(ServerWebExchange exchange) {
-        return exchange.getAttribute(FIZZ_REQUEST) != null;
+        return FizzRequestContext.get(exchange).isFizzReq();
+    }
+
+    public static void setFizzReq(ServerWebExchange exchange) {
+        FizzRequestContext.get(exchange).fizzReq = true;
     }
 
     public static void setGatewayPrefix(String p) {
@@ -204,7 +253,11 @@ public abstract class WebUtils {
     }
  
     public static String getClientService(ServerWebExchange exchange) {
-        String svc = exchange.getAttribute(clientService);
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        String svc = ctx.clientService;
+        if (svc == null) {
+            svc = exchange.getAttribute(clientService);
+        }
         if (svc == null) {
             String p = exchange.getRequest().getPath().value();
             int secFS = p.indexOf(Consts.S.FORWARD_SLASH, 1);
@@ -219,17 +272,21 @@ public abstract class WebUtils {
                     throw Utils.runtimeExceptionWithoutStack("wrong prefix " + prefix);
                 }
             }
-            exchange.getAttributes().put(clientService, svc);
         }
+        ctx.clientService = svc;
         return svc;
     }
 
     public static void setBackendService(ServerWebExchange exchange, String service) {
-        exchange.getAttributes().put(BACKEND_SERVICE, service);
+        FizzRequestContext.get(exchange).backendService = service;
     }
 
     public static String getBackendService(ServerWebExchange exchange) {
-        return exchange.getAttribute(BACKEND_SERVICE);
+        String service = FizzRequestContext.get(exchange).backendService;
+        if (service == null) {
+            service = exchange.getAttribute(BACKEND_SERVICE);
+        }
+        return service;
     }
 
     public static byte getApiConfigType(ServerWebExchange exchange) {
@@ -242,15 +299,38 @@ public abstract class WebUtils {
     }
 
     public static ApiConfig getApiConfig(ServerWebExchange exchange) {
-        Result<ApiConfig> authRes = (Result<ApiConfig>) getFilterResultDataItem(exchange, AuthPluginFilter.AUTH_PLUGIN_FILTER, AuthPluginFilter.RESULT);
+        Result<ApiConfig> authRes = getAuthResult(exchange);
         if (authRes == null) {
             return null;
         }
         return authRes.data;
     }
 
+    public static void setAuthResult(ServerWebExchange exchange, Result<ApiConfig> authRes) {
+        FizzRequestContext.get(exchange).authResult = authRes;
+    }
+
+    public static Result<ApiConfig> getAuthResult(ServerWebExchange exchange) {
+        Result<ApiConfig> authRes = FizzRequestContext.get(exchange).authResult;
+        if (authRes == null) {
+            FilterResult fr = getFilterResult(exchange, AuthPluginFilter.AUTH_PLUGIN_FILTER);
+            if (fr != null && fr.data != null) {
+                authRes = (Result<ApiConfig>) fr.data.get(AuthPluginFilter.RESULT);
+            }
+        }
+        return authRes;
+    }
+
+    public static void setRoute(ServerWebExchange exchange, Route route) {
+        FizzRequestContext.get(exchange).route = route;
+    }
+
     public static Route getRoute(ServerWebExchange exchange) {
-        return exchange.getAttribute(ROUTE);
+        Route route = FizzRequestContext.get(exchange).route;
+        if (route == null) {
+            route = exchange.getAttribute(ROUTE);
+        }
+        return route;
     }
 
     public static Mono<Void> response(ServerWebExchange exchange, HttpStatus status, HttpHeaders headers, String body) {
@@ -321,13 +401,15 @@ public abstract class WebUtils {
     }
 
     private static void bind(ServerWebExchange exchange, String filter, FilterResult fr) {
-        Map<String, FilterResult> fc = getFilterContext(exchange);
-        fc.put(filter, fr);
-        fc.put(PREV_FILTER_RESULT, fr);
+        FizzRequestContext.get(exchange).bindFilterResult(filter, fr);
     }
 
     public static String getClientReqPath(ServerWebExchange exchange) {
-        String p = exchange.getAttribute(clientRequestPath);
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        String p = ctx.clientReqPath;
+        if (p == null) {
+            p = exchange.getAttribute(clientRequestPath);
+        }
         if (p == null) {
             p = exchange.getRequest().getPath().value();
             int secFS = p.indexOf(Consts.S.FORWARD_SLASH, 1);
@@ -342,21 +424,29 @@ public abstract class WebUtils {
                     throw Utils.runtimeExceptionWithoutStack("wrong prefix " + prefix);
                 }
             }
-            exchange.getAttributes().put(clientRequestPath, p);
         }
+        ctx.clientReqPath = p;
         return p;
     }
 
     public static void setBackendPath(ServerWebExchange exchange, String path) {
-        exchange.getAttributes().put(BACKEND_PATH, path);
+        FizzRequestContext.get(exchange).backendPath = path;
     }
 
     public static String getBackendPath(ServerWebExchange exchange) {
-        return exchange.getAttribute(BACKEND_PATH);
+        String path = FizzRequestContext.get(exchange).backendPath;
+        if (path == null) {
+            path = exchange.getAttribute(BACKEND_PATH);
+        }
+        return path;
     }
 
     public static String getClientReqPathPrefix(ServerWebExchange exchange) {
-        String prefix = exchange.getAttribute(clientRequestPathPrefix);
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        String prefix = ctx.clientReqPathPrefix;
+        if (prefix == null) {
+            prefix = exchange.getAttribute(clientRequestPathPrefix);
+        }
         if (prefix == null) {
             if (StringUtils.isBlank(gatewayPrefix) || Consts.S.FORWARD_SLASH_STR.equals(gatewayPrefix)) {
                 prefix = Consts.S.FORWARD_SLASH_STR;
@@ -370,30 +460,28 @@ public abstract class WebUtils {
                     throw Utils.runtimeExceptionWithoutStack("wrong prefix " + prefix);
                 }
             }
-            exchange.getAttributes().put(clientRequestPathPrefix, prefix);
         }
+        ctx.clientReqPathPrefix = prefix;
         return prefix;
     }
 
     public static String getClientReqQuery(ServerWebExchange exchange) {
-        String qry = exchange.getAttribute(clientRequestQuery);
-        if (qry != null && StringUtils.EMPTY.equals(qry)) {
-            return null;
-        } else {
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        if (!ctx.clientReqQueryResolved) {
+            String qry = exchange.getAttribute(clientRequestQuery);
             if (qry == null) {
                 URI uri = exchange.getRequest().getURI();
                 qry = uri.getQuery();
-                if (qry == null) {
-                    exchange.getAttributes().put(clientRequestQuery, StringUtils.EMPTY);
-                } else {
-                    if (StringUtils.indexOfAny(qry, Consts.S.LEFT_BRACE, Consts.S.FORWARD_SLASH, Consts.S.HASH) > 0) {
-                        qry = uri.getRawQuery();
-                    }
-                    exchange.getAttributes().put(clientRequestQuery, qry);
+                if (qry != null && StringUtils.indexOfAny(qry, Consts.S.LEFT_BRACE, Consts.S.FORWARD_SLASH, Consts.S.HASH) > 0) {
+                    qry = uri.getRawQuery();
                 }
+            } else if (StringUtils.EMPTY.equals(qry)) {
+                qry = null;
             }
-            return qry;
+            ctx.clientReqQuery = qry;
+            ctx.clientReqQueryResolved = true;
         }
+        return ctx.clientReqQuery;
     }
 
     public static String getClientReqPathQuery(ServerWebExchange exchange) {
@@ -421,13 +509,17 @@ public abstract class WebUtils {
     }
 
     public static Map<String, String> getAppendHeaders(ServerWebExchange exchange) {
-        return (Map<String, String>) exchange.getAttribute(APPEND_HEADERS);
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        if (ctx.appendHeaders == null) {
+            ctx.appendHeaders = new HashMap<>(8);
+        }
+        return ctx.appendHeaders;
     }
 
     public static HttpHeaders mergeAppendHeaders(ServerWebExchange exchange) {
         ServerHttpRequest req = exchange.getRequest();
-        Map<String, String> appendHeaders = getAppendHeaders(exchange);
-        if (appendHeaders.isEmpty()) {
+        Map<String, String> appendHeaders = FizzRequestContext.get(exchange).appendHeaders;
+        if (appendHeaders == null || appendHeaders.isEmpty()) {
             return req.getHeaders();
         }
         HttpHeaders hdrs = new HttpHeaders();
@@ -554,7 +646,11 @@ public abstract class WebUtils {
     }
 
     public static String getOriginIp(ServerWebExchange exchange) {
-        String ip = exchange.getAttribute(originIp);
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        String ip = ctx.originIp;
+        if (ip == null) {
+            ip = exchange.getAttribute(originIp);
+        }
         if (ip == null) {
             ServerHttpRequest req = exchange.getRequest();
             String v = req.getHeaders().getFirst(xForwardedFor);
@@ -568,15 +664,22 @@ public abstract class WebUtils {
                     ip = loopBack;
                 }
             }
-            exchange.getAttributes().put(originIp, ip);
         }
+        ctx.originIp = ip;
         return ip;
     }
 
+    public static void setTraceId(ServerWebExchange exchange, String traceId) {
+        FizzRequestContext.get(exchange).traceId = traceId;
+    }
+
     public static String getTraceId(ServerWebExchange exchange) {
-        String id = exchange.getAttribute(TRACE_ID);
+        String id = FizzRequestContext.get(exchange).traceId;
         if (id == null) {
-            id = exchange.getRequest().getId();
+            id = exchange.getAttribute(TRACE_ID);
+            if (id == null) {
+                id = exchange.getRequest().getId();
+            }
         }
         return id;
     }
@@ -630,58 +733,49 @@ public abstract class WebUtils {
         StringBuilder b = ThreadContext.getStringBuilder(ThreadContext.sb0);
         Set<Map.Entry<String, List<String>>> params = queryParams.entrySet();
         int ps = params.size(), cnt = 0;
-        try {
-            for (Map.Entry<String, List<String>> param : params) {
-                String name = param.getKey();
-                List<String> values = param.getValue();
-                if (values.isEmpty()) {
+        for (Map.Entry<String, List<String>> param : params) {
+            String name = param.getKey();
+            List<String> values = param.getValue();
+            if (values.isEmpty()) {
+                b.append(name);
+            } else {
+                int vs = values.size();
+                for (int i = 0; i < vs; ) {
                     b.append(name);
-                } else {
-                    int vs = values.size();
-                    for (int i = 0; i < vs; ) {
-                        b.append(name);
-                        String v = values.get(i);
-                        if (v != null) {
-                            b.append(Consts.S.EQUAL);
-                            if (!Consts.S.EMPTY.equals(v)) {
-                                /*if (StringUtils.indexOfAny(v, Consts.S.LEFT_BRACE, Consts.S.FORWARD_SLASH, Consts.S.HASH, Consts.S.EQUAL) > -1) {
-                                    b.append(URLEncoder.encode(v, Consts.C.UTF8));
-                                } else {
-                                    b.append(v);
-                                }*/
-                                b.append(URLDecoder.decode(v, Consts.C.UTF8));
-                            }
-                        }
-                        if ((++i) != vs) {
-                            b.append(Consts.S.AND);
+                    String v = values.get(i);
+                    if (v != null) {
+                        b.append(Consts.S.EQUAL);
+                        if (!Consts.S.EMPTY.equals(v)) {
+                            FormUrlEncodedCodec.appendDecoded(b, v, StandardCharsets.UTF_8);
                         }
                     }
-                }
-                if ((++cnt) != ps) {
-                    b.append(Consts.S.AND);
+                    if ((++i) != vs) {
+                        b.append(Consts.S.AND);
+                    }
                 }
             }
-            return b.toString();
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException(e);
+            if ((++cnt) != ps) {
+                b.append(Consts.S.AND);
+            }
         }
+        return b.toString();
     }
 
     // the method below will be deprecated.
 
     @Deprecated
     public static Mono<Void> getDirectResponse(ServerWebExchange exchange) {
-        return exchange.getAttribute(WebUtils.directResponse);
+        return (Mono<Void>) FizzRequestContext.get(exchange).directResponse;
     }
 
     @Deprecated
     public static Map<String, FilterResult> getFilterContext(ServerWebExchange exchange) {
-        return exchange.getAttribute(FILTER_CONTEXT);
+        return FizzRequestContext.get(exchange).getFilterContext();
     }
 
     @Deprecated
     public static FilterResult getFilterResult(ServerWebExchange exchange, String filter) {
-        return getFilterContext(exchange).get(filter);
+        return FizzRequestContext.get(exchange).getFilterResult(filter);
     }
 
     @Deprecated
@@ -742,7 +836,7 @@ public abstract class WebUtils {
     @Deprecated
     public static Mono buildDirectResponseAndBindContext(ServerWebExchange exchange, HttpStatus status, HttpHeaders headers, String bodyContent) {
         Mono<Void> mv = buildDirectResponse(exchange, status, headers, bodyContent);
-        exchange.getAttributes().put(WebUtils.directResponse, mv);
+        FizzRequestContext.get(exchange).directResponse = mv;
         return mv;
     }
 
@@ -781,7 +875,7 @@ public abstract class WebUtils {
 
     @Deprecated
     public static FilterResult getPrevFilterResult(ServerWebExchange exchange) {
-        return getFilterContext(exchange).get(PREV_FILTER_RESULT);
+        return FizzRequestContext.get(exchange).getPrevFilterResult();
     }
 
     @Deprecated
@@ -0,0 +1,113 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.config;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import we.redis.RedisProperties;
+import we.redis.RedisServerConfiguration;
+import we.redis.RedisTemplateConfiguration;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author zhongjie
+ */
+
+@TestPropertySource("/application.properties")
+@SpringJUnitConfig(classes = {RedisProperties.class, RedisTemplateConfiguration.class, RedisServerConfiguration.class})
+public class ConfigDeltaReconcilerTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigDeltaReconcilerTests.class);
+
+    private static final int ENTRIES = 10_000;
+
+    @Resource
+    StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Test
+    void reconcileByContentTest() throws Throwable {
+        String key = "fizz_test_delta_config";
+        stringRedisTemplate.delete(key);
+        Map<String, String> configs = new HashMap<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            configs.put(String.valueOf(i), config(i, 0));
+        }
+        stringRedisTemplate.opsForHash().putAll(key, configs);
+
+        Map<String, String> local = new HashMap<>(configs);
+        ConfigDeltaReconciler reconciler = new ConfigDeltaReconciler(key, reactiveStringRedisTemplate, handler(local));
+        reconciler.loaded(configs);
+
+        reconciler.reconcile();
+        assertEquals(0, reconciler.getLastChanged());
+        assertEquals(0, reconciler.getLastRemoved());
+
+        for (int i = 0; i < 10; i++) {
+            stringRedisTemplate.opsForHash().put(key, String.valueOf(i), config(i, 1));
+        }
+        for (int i = 10; i < 15; i++) {
+            stringRedisTemplate.opsForHash().delete(key, String.valueOf(i));
+        }
+        for (int i = ENTRIES; i < ENTRIES + 5; i++) {
+            stringRedisTemplate.opsForHash().put(key, String.valueOf(i), config(i, 0));
+        }
+        reconciler.reconcile();
+        LOGGER.info("reconcile {} entries by content in {} millis", ENTRIES, reconciler.getLastReconcileMillis());
+
+        assertEquals(ENTRIES, reconciler.getLastFetched());
+        assertEquals(15, reconciler.getLastChanged());
+        assertEquals(5, reconciler.getLastRemoved());
+        assertEquals(config(1, 1), local.get("1"));
+        assertNull(local.get("12"));
+        assertEquals(config(ENTRIES, 0), local.get(String.valueOf(ENTRIES)));
+        assertEquals(ENTRIES, local.size());
+
+        stringRedisTemplate.delete(key);
+    }
+
+    private static ConfigDeltaReconciler.Handler handler(Map<String, String> local) {
+        return new ConfigDeltaReconciler.Handler() {
+            @Override
+            public void onChange(String field, String json) {
+                local.put(field, json);
+            }
+            @Override
+            public void onRemove(String field, String json) {
+                assertEquals(local.remove(field), json);
+            }
+        };
+    }
+
+    private static String config(int id, int version) {
+        return "{\"id\":" + id + ",\"service\":\"service" + id + "\",\"path\":\"/path" + id + "\",\"version\":" + version + "}";
+    }
+}
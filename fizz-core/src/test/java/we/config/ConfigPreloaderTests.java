@@ -0,0 +1,268 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.ReflectionTestUtils;
+import we.plugin.auth.ApiConfigServiceProperties;
+import we.redis.RedisProperties;
+import we.redis.RedisServerConfiguration;
+import we.redis.RedisTemplateConfiguration;
+import we.util.JacksonUtils;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hongqiaowei
+ */
+
+@TestPropertySource("/application.properties")
+@SpringJUnitConfig(classes = {RedisProperties.class, RedisTemplateConfiguration.class, RedisServerConfiguration.class})
+public class ConfigPreloaderTests {
+
+    private static final Logger   LOGGER  = LoggerFactory.getLogger(ConfigPreloaderTests.class);
+
+    private static final String[] KEYS    = {"fizz_api_config", "fizz_app", "fizz_gateway_group", "fizz_rate_limit", "fizz_rpc_service", "fizz_aggregate_config"};
+
+    private static final int      ENTRIES = 5_000;
+
+    @Resource
+    StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Resource
+    RedisProperties redisProperties;
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void clean() {
+        stringRedisTemplate.delete(Arrays.asList(KEYS));
+    }
+
+    @Test
+    void concurrentPrefetchTest() {
+        putConfigs();
+        ConfigPreloader preloader = preloader(reactiveStringRedisTemplate, false);
+        for (String key : KEYS) {
+            assertEquals(ENTRIES, load(preloader.entries(key, () -> {}).collectList().block()));
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void concurrentPrefetchBenchmark() throws Throwable {
+        putConfigs();
+
+        // redis in another data center
+        try (DelayProxy proxy = new DelayProxy(redisProperties.getHost(), redisProperties.getPort(), 20)) {
+            LettuceConnectionFactory cf = new LettuceConnectionFactory("localhost", proxy.getPort());
+            cf.setDatabase(redisProperties.getDatabase());
+            cf.afterPropertiesSet();
+            ReactiveStringRedisTemplate rt = new ReactiveStringRedisTemplate(cf);
+            try {
+                for (int i = 0; i < 3; i++) {
+                    long start = System.currentTimeMillis();
+                    for (String key : KEYS) {
+                        assertEquals(ENTRIES, load(ConfigPreloader.entries(null, rt, key, null).collectList().block()));
+                    }
+                    long sequential = System.currentTimeMillis() - start;
+
+                    start = System.currentTimeMillis();
+                    ConfigPreloader preloader = preloader(rt, false);
+                    for (String key : KEYS) {
+                        assertEquals(ENTRIES, load(preloader.entries(key, () -> {}).collectList().block()));
+                    }
+                    long prefetched = System.currentTimeMillis() - start;
+                    LOGGER.info("load {} hashes of {} configs with 20ms rtt, one by one: {} millis, prefetched: {} millis",
+                            KEYS.length, ENTRIES, sequential, prefetched);
+                }
+            } finally {
+                cf.destroy();
+            }
+        }
+    }
+
+    @Test
+    void snapshotTest() throws Throwable {
+        for (String key : KEYS) {
+            stringRedisTemplate.opsForHash().put(key, "1", config(key, 1));
+        }
+        ConfigPreloader preloader = preloader(reactiveStringRedisTemplate, false);
+        for (String key : KEYS) {
+            assertEquals(1, preloader.entries(key, () -> {}).collectList().block().size());
+            assertFalse(preloader.isLoadedFromSnapshot(key));
+        }
+        preloader.saveSnapshot();
+        Map<String, Map<String, String>> snapshot = ConfigPreloader.readSnapshot(dir.resolve("snapshot.json.gz"));
+        assertEquals(KEYS.length, snapshot.size());
+        assertEquals(config("fizz_app", 1), snapshot.get("fizz_app").get("1"));
+        // the configs are in plaintext, only the owner can read
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(dir.resolve("snapshot.json.gz")));
+        }
+
+        // start from snapshot
+        stringRedisTemplate.opsForHash().put("fizz_app", "2", config("fizz_app", 2));
+        preloader = preloader(reactiveStringRedisTemplate, true);
+        assertEquals(1, preloader.entries("fizz_app", () -> {}).collectList().block().size());
+        assertTrue(preloader.isLoadedFromSnapshot("fizz_app"));
+        assertEquals(2, preloader.entries("fizz_app", () -> {}).collectList().block().size());
+
+        // redis unavailable
+        LettuceConnectionFactory cf;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            cf = new LettuceConnectionFactory("localhost", ss.getLocalPort());
+        }
+        cf.afterPropertiesSet();
+        try {
+            ConfigPreloader down = preloader(new ReactiveStringRedisTemplate(cf), false);
+            AtomicInteger reloads = new AtomicInteger();
+            List<Map.Entry<Object, Object>> es = down.entries("fizz_app", reloads::incrementAndGet).collectList().block();
+            assertEquals(1, es.size());
+            assertEquals(config("fizz_app", 1), es.get(0).getValue());
+            assertTrue(down.isLoadedFromSnapshot("fizz_app"));
+            assertThrows(Throwable.class, () -> down.entries("fizz_plugin_config", null).collectList().block());
+
+            down.reconcile();
+            assertEquals(1, reloads.get());
+            assertFalse(down.isLoadedFromSnapshot("fizz_app"));
+        } finally {
+            cf.destroy();
+        }
+    }
+
+    private ConfigPreloader preloader(ReactiveStringRedisTemplate rt, boolean startFromSnapshot) {
+        ApiConfigServiceProperties apiConfigServiceProperties = new ApiConfigServiceProperties();
+        apiConfigServiceProperties.setFizzApiConfig("fizz_api_config");
+        apiConfigServiceProperties.setFizzPluginConfig("fizz_plugin_config");
+        ConfigPreloader preloader = new ConfigPreloader();
+        ReflectionTestUtils.setField(preloader, "rt", rt);
+        ReflectionTestUtils.setField(preloader, "apiConfigServiceProperties", apiConfigServiceProperties);
+        ReflectionTestUtils.setField(preloader, "snapshotEnabled", true);
+        ReflectionTestUtils.setField(preloader, "snapshotFile", dir.resolve("snapshot.json.gz").toString());
+        ReflectionTestUtils.setField(preloader, "startFromSnapshot", startFromSnapshot);
+        ReflectionTestUtils.setField(preloader, "redisTimeoutMillis", 2000L);
+        preloader.init();
+        return preloader;
+    }
+
+    private void putConfigs() {
+        for (String key : KEYS) {
+            Map<String, String> configs = new HashMap<>();
+            for (int i = 0; i < ENTRIES; i++) {
+                configs.put(String.valueOf(i), config(key, i));
+            }
+            stringRedisTemplate.opsForHash().putAll(key, configs);
+        }
+    }
+
+    private static int load(List<Map.Entry<Object, Object>> es) {
+        int n = 0;
+        for (Map.Entry<Object, Object> e : es) {
+            JacksonUtils.readValue((String) e.getValue(), HashMap.class);
+            n++;
+        }
+        return n;
+    }
+
+    private static String config(String key, int id) {
+        return "{\"id\":" + id + ",\"type\":\"" + key + "\",\"service\":\"service" + id + "\",\"path\":\"/path" + id + "\",\"method\":\"GET\"}";
+    }
+
+    /**
+     * Forwards to redis, the commands are delayed to simulate the round trip time.
+     */
+    private static class DelayProxy implements AutoCloseable {
+
+        private final ServerSocket server;
+
+        DelayProxy(String host, int port, long rttMillis) throws IOException {
+            server = new ServerSocket(0);
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket client = server.accept();
+                        Socket redis = new Socket(host, port);
+                        pump(client, redis, rttMillis);
+                        pump(redis, client, 0);
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private static void pump(Socket from, Socket to, long delayMillis) {
+            Thread t = new Thread(() -> {
+                byte[] buf = new byte[64 * 1024];
+                try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                    int n;
+                    while ((n = in.read(buf)) != -1) {
+                        if (delayMillis > 0) {
+                            Thread.sleep(delayMillis);
+                        }
+                        out.write(buf, 0, n);
+                        out.flush();
+                    }
+                } catch (Exception e) {
+                    // closed
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
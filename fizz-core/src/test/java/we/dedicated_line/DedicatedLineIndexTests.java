@@ -0,0 +1,144 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.dedicated_line;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import we.util.JacksonUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class DedicatedLineIndexTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DedicatedLineIndexTests.class);
+
+    private static final int LINES = 1_000;
+
+    @Test
+    void authTest() {
+        DedicatedLineService service = new DedicatedLineService();
+        service.update(line(1, 0, false));
+        assertTrue(service.auth("p1", HttpMethod.GET, "s1", "/user/1"));
+        assertTrue(service.auth("p1", HttpMethod.POST, "s1", "/order/1/2"));
+        assertTrue(service.auth("p1", HttpMethod.DELETE, "s1", "/order/1"));
+        assertFalse(service.auth("p1", HttpMethod.POST, "s1", "/user/1"));
+        assertFalse(service.auth("p1", HttpMethod.GET, "s1", "/user/1/2"));
+        assertFalse(service.auth("p1", HttpMethod.GET, "s2", "/user/1"));
+        assertTrue(service.auth("p1", HttpMethod.GET, "free", "/any"));
+        assertFalse(service.auth("p2", HttpMethod.GET, "s1", "/user/1"));
+        assertEquals("k1-0", service.getSignSecretKey("p1"));
+        long version = service.getVersion();
+        service.update(line(1, 0, true));
+        assertNull(service.getSignSecretKey("p1"));
+        assertEquals(version + 1, service.getVersion());
+
+        DedicatedLineInfoService infoService = new DedicatedLineInfoService();
+        DedicatedLineInfo info = JacksonUtils.readValue("{\"services\":[\"a\",\"b\"],\"pairCodeId\":\"p1\",\"deleted\":0}", DedicatedLineInfo.class);
+        infoService.update(info);
+        assertSame(info, infoService.get("a"));
+        assertSame(info, infoService.get("b"));
+        info.isDeleted = true;
+        infoService.update(info);
+        assertNull(infoService.get("a"));
+        assertNull(infoService.get("b"));
+    }
+
+    /**
+     * Request threads auth the requests of 1k dedicated lines, while the config listener updates the lines,
+     * a line updated is always found and consistent, with the secret key and the paths of the same update,
+     * and a line deleted and added again is found or not as a whole.
+     */
+    @Test
+    void concurrentUpdateTest() throws InterruptedException {
+        DedicatedLineService service = new DedicatedLineService();
+        for (int i = 0; i < LINES; i++) {
+            service.update(line(i, 0, false));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicLong auths = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(
+                    () -> {
+                        Random random = new Random();
+                        try {
+                            while (!stop.get()) {
+                                int i = random.nextInt(LINES);
+                                String pairCodeId = "p" + i;
+                                String secretKey = service.getSignSecretKey(pairCodeId);
+                                if (i % 10 != 0) {
+                                    // updated, never deleted
+                                    assertNotNull(secretKey, pairCodeId);
+                                    assertTrue(service.auth(pairCodeId, HttpMethod.GET, "s" + i, "/user/1"));
+                                    assertFalse(service.auth(pairCodeId, HttpMethod.GET, "s" + i, "/admin/1"));
+                                } else if (secretKey != null) {
+                                    assertTrue(secretKey.startsWith("k" + i + "-"));
+                                }
+                                auths.incrementAndGet();
+                            }
+                        } catch (Throwable t) {
+                            error.compareAndSet(null, t);
+                        }
+                    }
+            );
+            reader.start();
+            readers.add(reader);
+        }
+
+        Random random = new Random(9);
+        long version = service.getVersion();
+        int updates = 1_000;
+        long start = System.nanoTime();
+        for (int u = 1; u <= updates && error.get() == null; u++) {
+            int i = random.nextInt(LINES);
+            service.update(line(i, u, i % 10 == 0 && u % 2 == 0));
+        }
+        long took = System.nanoTime() - start;
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        assertEquals(version + updates, service.getVersion());
+        assertTrue(auths.get() > 0);
+        LOGGER.info("{} updates of {} lines took {}us each, {} auths meanwhile", updates, LINES, took / updates / 1000, auths.get());
+    }
+
+    private static DedicatedLine line(int i, int generation, boolean deleted) {
+        String json = "{\"pairCodeId\":\"p" + i + "\",\"secretKey\":\"k" + i + "-" + generation + "\",\"deleted\":" + (deleted ? 1 : 0)
+                + ",\"services\":[\"free\"],\"docs\":[{\"service\":\"s" + i + "\",\"apis\":["
+                + "{\"method\":\"GET\",\"path\":\"/user/{id}\"},{\"method\":\"POST\",\"path\":\"/user\"},{\"method\":\"ALL\",\"path\":\"/order/**\"}]}]}";
+        return JacksonUtils.readValue(json, DedicatedLine.class);
+    }
+}
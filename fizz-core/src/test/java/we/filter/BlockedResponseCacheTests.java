@@ -0,0 +1,193 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.filter;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import we.stats.circuitbreaker.CircuitBreakManager;
+import we.stats.circuitbreaker.CircuitBreaker;
+import we.stats.ratelimit.ResourceRateLimitConfig;
+import we.stats.ratelimit.ResourceRateLimitConfigService;
+import we.util.JacksonUtils;
+import we.util.ReflectionUtils;
+import we.util.ResourceIdUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+public class BlockedResponseCacheTests {
+
+    private static final Logger    LOGGER = LoggerFactory.getLogger(BlockedResponseCacheTests.class);
+
+    ResourceRateLimitConfigService resourceRateLimitConfigService;
+
+    CircuitBreakManager            circuitBreakManager;
+
+    FlowControlFilterProperties    flowControlFilterProperties;
+
+    BlockedResponseCache           cache;
+
+    @BeforeEach
+    void beforeEach() {
+        resourceRateLimitConfigService = new ResourceRateLimitConfigService();
+        circuitBreakManager            = new CircuitBreakManager();
+        flowControlFilterProperties    = new FlowControlFilterProperties();
+        flowControlFilterProperties.setDegradeDefaultResponseContentType("application/json");
+        flowControlFilterProperties.setDegradeDefaultResponseContent("{\"msg\":\"degraded\"}");
+        cache = new BlockedResponseCache(resourceRateLimitConfigService, circuitBreakManager, flowControlFilterProperties);
+    }
+
+    @Test
+    void rateLimitResponseTest() {
+        String pathResource = ResourceIdUtils.buildResourceId(null, null, null, "xservice", "/ypath");
+        putRateLimitConfig("{\"concurrents\":66,\"enable\":1,\"id\":1,\"isDeleted\":0,\"resource\":\"_global\",\"type\":1,"
+                           + "\"responseType\":\"text/plain\",\"responseContent\":\"global blocked\"}");
+
+        BlockedResponseCache.BlockedResponse resp = cache.getRateLimitResponse(pathResource);
+        assertEquals(HttpStatus.OK, resp.status);
+        assertEquals("text/plain", resp.contentType);
+        assertEquals("global blocked", resp.getContent());
+        assertSame(resp, cache.getRateLimitResponse(pathResource));
+
+        putRateLimitConfig("{\"concurrents\":33,\"enable\":1,\"id\":2,\"isDeleted\":0,\"service\":\"xservice\",\"path\":\"/ypath\",\"type\":4,"
+                           + "\"responseContent\":\"path blocked\"}");
+        resp = cache.getRateLimitResponse(pathResource);
+        assertEquals("text/plain", resp.contentType);
+        assertEquals("path blocked", resp.getContent());
+    }
+
+    @Test
+    void circuitBreakResponseTest() {
+        String pathResource = ResourceIdUtils.buildResourceId(null, null, null, "xservice", "/ypath");
+
+        BlockedResponseCache.BlockedResponse resp = cache.getCircuitBreakResponse(pathResource, "xservice");
+        assertEquals(HttpStatus.FORBIDDEN, resp.status);
+        assertEquals("{\"msg\":\"degraded\"}", resp.getContent());
+
+        CircuitBreaker serviceDefault = new CircuitBreaker();
+        serviceDefault.responseContentType = "text/plain";
+        serviceDefault.responseContent     = "service default";
+        putCircuitBreaker(ResourceIdUtils.SERVICE_DEFAULT_RESOURCE, serviceDefault);
+        resp = cache.getCircuitBreakResponse(pathResource, "xservice");
+        assertEquals("text/plain", resp.contentType);
+        assertEquals("service default", resp.getContent());
+
+        CircuitBreaker service = new CircuitBreaker();
+        service.responseContentType = "application/xml";
+        service.responseContent     = "<msg>xservice</msg>";
+        putCircuitBreaker(ResourceIdUtils.buildResourceId(null, null, null, "xservice", null), service);
+        resp = cache.getCircuitBreakResponse(pathResource, "xservice");
+        assertEquals("<msg>xservice</msg>", resp.getContent());
+        assertSame(resp, cache.getCircuitBreakResponse(pathResource, "xservice"));
+
+        flowControlFilterProperties.setDegradeDefaultResponseContent("{\"msg\":\"refreshed\"}");
+        assertNotSame(resp, cache.getCircuitBreakResponse(pathResource, "xservice"));
+    }
+
+    @Test
+    void writeTest() {
+        putRateLimitConfig("{\"concurrents\":66,\"enable\":1,\"id\":1,\"isDeleted\":0,\"resource\":\"_global\",\"type\":1,"
+                           + "\"responseType\":\"application/json\",\"responseContent\":\"{\\\"code\\\":429}\"}");
+        BlockedResponseCache.BlockedResponse resp = cache.getRateLimitResponse(ResourceIdUtils.NODE_RESOURCE);
+        for (int i = 0; i < 3; i++) {
+            MockServerHttpResponse r = new MockServerHttpResponse(new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT));
+            resp.writeTo(r, "t" + i).block();
+            assertEquals(HttpStatus.OK, r.getStatusCode());
+            HttpHeaders headers = r.getHeaders();
+            assertEquals("application/json", headers.getFirst(HttpHeaders.CONTENT_TYPE));
+            assertEquals(12, headers.getContentLength());
+            assertEquals("t" + i, headers.getFirst("traceId"));
+            assertEquals("{\"code\":429}", r.getBodyAsString().block());
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        StringBuilder content = new StringBuilder("{\"code\":429,\"msg\":\"");
+        for (int i = 0; i < 50; i++) {
+            content.append("too many requests ");
+        }
+        content.append("\"}");
+        putRateLimitConfig("{\"concurrents\":66,\"enable\":1,\"id\":1,\"isDeleted\":0,\"resource\":\"_global\",\"type\":1,"
+                           + "\"responseType\":\"application/json\",\"responseContent\":" + JacksonUtils.writeValueAsString(content.toString()) + "}");
+        String pathResource = ResourceIdUtils.buildResourceId(null, null, null, "xservice", "/ypath");
+        NettyDataBufferFactory factory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int n = 200_000;
+        for (int r = 0; r < 2; r++) {
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                ResourceRateLimitConfig c = resourceRateLimitConfigService.getResourceRateLimitConfig(ResourceIdUtils.NODE_RESOURCE);
+                String rt = c.responseType, rc = c.responseContent;
+                c = resourceRateLimitConfigService.getResourceRateLimitConfig(pathResource);
+                if (c != null) {
+                    rt = c.responseType;
+                }
+                DataBuffer b = factory.wrap(rc.getBytes());
+                DataBufferUtils.release(b);
+            }
+            long legacy = System.nanoTime() - start;
+            long legacyAllocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+
+            allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                DataBuffer b = cache.getRateLimitResponse(pathResource).body(factory);
+                DataBufferUtils.release(b);
+            }
+            long cached = System.nanoTime() - start;
+            long cachedAllocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+
+            LOGGER.info("render {} bytes rate limit response {} times, legacy: {}ns/op {}B/op, pre-rendered: {}ns/op {}B/op",
+                        content.length(), n, legacy / n, legacyAllocated / n, cached / n, cachedAllocated / n);
+            if (r == 1) {
+                assertTrue(cachedAllocated < legacyAllocated / 4);
+            }
+        }
+    }
+
+    private void putRateLimitConfig(String json) {
+        ResourceRateLimitConfig c = JacksonUtils.readValue(json, ResourceRateLimitConfig.class);
+        resourceRateLimitConfigService.getResourceRateLimitConfigMap().put(c.getResourceId(), c);
+        ((AtomicLong) ReflectionUtils.get(resourceRateLimitConfigService, "version")).incrementAndGet();
+    }
+
+    private void putCircuitBreaker(String resource, CircuitBreaker cb) {
+        circuitBreakManager.getResource2circuitBreakerMap().put(resource, cb);
+        ((AtomicLong) ReflectionUtils.get(circuitBreakManager, "version")).incrementAndGet();
+    }
+}
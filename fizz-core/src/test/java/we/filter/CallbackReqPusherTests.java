@@ -0,0 +1,178 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.filter;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Mono;
+import we.util.NettyDataBufferUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+public class CallbackReqPusherTests {
+
+    private static final NettyDataBufferFactory factory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private static final String HEAD = "{\"id\":\"t1\",\"gatewayGroup\":\"default\"";
+
+    @Test
+    void textBodyTest() throws Exception {
+        List<String> messages = new CopyOnWriteArrayList<>();
+        CallbackReqPusher pusher = new CallbackReqPusher(16, 1 << 20, CallbackReqPusher.BODY_ENCODING_TEXT, m -> {
+            messages.add(m.toString(StandardCharsets.UTF_8));
+            return Mono.empty();
+        });
+
+        String body = "{\"a\":\"x\\\"y\",\n\t\"b\":\"中文\u0001\"}";
+        NettyDataBuffer b = pooled(body.getBytes(StandardCharsets.UTF_8));
+        assertTrue(pusher.push(HEAD, NettyDataBufferUtils.retainedSlice(b)));
+        assertTrue(pusher.push(HEAD, null));
+        pusher.close(5000);
+
+        assertEquals(2, messages.size());
+        JSONObject m = JSON.parseObject(messages.get(0));
+        assertEquals("t1", m.getString("id"));
+        assertEquals(body, m.getString("body"));
+        assertNull(m.getString("bodyEncoding"));
+        assertEquals(HEAD + "}", messages.get(1));
+        assertEquals(2, pusher.getPublished());
+        assertEquals(0, pusher.getBufferedBytes());
+
+        // the slice is released, the body is still owned by the caller
+        assertEquals(1, b.getNativeBuffer().refCnt());
+        b.release();
+    }
+
+    @Test
+    void base64BodyTest() throws Exception {
+        List<String> messages = new CopyOnWriteArrayList<>();
+        CallbackReqPusher pusher = new CallbackReqPusher(16, 1 << 20, CallbackReqPusher.BODY_ENCODING_BASE64, m -> {
+            messages.add(m.toString(StandardCharsets.UTF_8));
+            return Mono.empty();
+        });
+
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        NettyDataBuffer b = pooled(bytes);
+        pusher.push(HEAD, b);
+        pusher.close(5000);
+
+        JSONObject m = JSON.parseObject(messages.get(0));
+        assertEquals("base64", m.getString("bodyEncoding"));
+        assertArrayEquals(bytes, Base64.getDecoder().decode(m.getString("body")));
+        assertEquals(0, b.getNativeBuffer().refCnt());
+    }
+
+    @Test
+    void boundedTest() throws Exception {
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch resume     = new CountDownLatch(1);
+        CallbackReqPusher pusher = new CallbackReqPusher(2, 1 << 20, CallbackReqPusher.BODY_ENCODING_TEXT, m -> {
+            publishing.countDown();
+            try {
+                resume.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Mono.empty();
+        });
+
+        pusher.push(HEAD, null);
+        assertTrue(publishing.await(5, TimeUnit.SECONDS));
+
+        // 2 in queue, the others dropped
+        int dropped = 0;
+        NettyDataBuffer b = pooled(new byte[1024]);
+        for (int i = 0; i < 5; i++) {
+            if (!pusher.push(HEAD, NettyDataBufferUtils.retainedSlice(b))) {
+                dropped++;
+            }
+        }
+        assertEquals(3, dropped);
+        assertEquals(3, pusher.getDropped());
+        // 1 + 2 slices queued
+        assertEquals(3, b.getNativeBuffer().refCnt());
+
+        // exceed max buffered bytes
+        NettyDataBuffer big = pooled(new byte[2 << 20]);
+        assertFalse(pusher.push(HEAD, big));
+        assertEquals(0, big.getNativeBuffer().refCnt());
+
+        resume.countDown();
+        pusher.close(5000);
+        assertEquals(3, pusher.getPublished());
+        assertEquals(1, b.getNativeBuffer().refCnt());
+        b.release();
+    }
+
+    /**
+     * The background thread parks while the queue is empty, the pushes from several threads, some after it parked, are all published.
+     */
+    @Test
+    void wakeUpTest() throws Exception {
+        CountDownLatch published = new CountDownLatch(4 * 500);
+        CallbackReqPusher pusher = new CallbackReqPusher(4096, 1 << 20, CallbackReqPusher.BODY_ENCODING_TEXT, m -> {
+            published.countDown();
+            return Mono.empty();
+        });
+
+        Thread[] pushers = new Thread[4];
+        for (int t = 0; t < pushers.length; t++) {
+            pushers[t] = new Thread(
+                    () -> {
+                        for (int i = 0; i < 500; i++) {
+                            assertTrue(pusher.push(HEAD, null));
+                            if (i % 50 == 0) {
+                                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                            }
+                        }
+                    }
+            );
+            pushers[t].start();
+        }
+        for (Thread t : pushers) {
+            t.join();
+        }
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        pusher.close(5000);
+        assertEquals(4 * 500, pusher.getPublished());
+    }
+
+    private static NettyDataBuffer pooled(byte[] bytes) {
+        NettyDataBuffer b = factory.allocateBuffer(bytes.length);
+        b.write(bytes);
+        return b;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import we.filter.AggregateFilterProperties;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class AggregateTracerTests {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AggregateTracerTests.class);
+
+	@Test
+	void sampleTest() {
+		AggregateFilterProperties properties = new AggregateFilterProperties();
+		properties.setTraceSampleEvery(2);
+		properties.setTraceMaxPerSecond(3);
+		AggregateTracer tracer = new AggregateTracer(properties);
+		try {
+			int sampled = 0;
+			for (int i = 0; i < 10; i++) {
+				sampled += tracer.sample("POST /a", 1_000) ? 1 : 0;
+			}
+			assertEquals(3, sampled);
+			assertTrue(tracer.sample("POST /b", 1_000));
+			assertTrue(tracer.sample("POST /a", 2_000));
+			assertFalse(tracer.sample("POST /a", 2_000));
+
+			properties.setTraceSampleEvery(1);
+			properties.setTraceMaxPerSecond(0);
+			for (int i = 0; i < 100; i++) {
+				assertTrue(tracer.sample("POST /c", 3_000));
+			}
+		} finally {
+			tracer.shutdown();
+		}
+		assertEquals("abc", AggregateTracer.truncate("abc", 3));
+		assertEquals("ab...(3 chars)", AggregateTracer.truncate("abc", 2));
+		assertEquals("abc", AggregateTracer.truncate("abc", 0));
+	}
+
+	@Test
+	void boundedTest() throws InterruptedException {
+		AggregateFilterProperties properties = new AggregateFilterProperties();
+		properties.setTraceQueueSize(2);
+		AggregateTracer tracer = new AggregateTracer(properties);
+		try {
+			CountDownLatch serializing = new CountDownLatch(1), release = new CountDownLatch(1);
+			assertTrue(tracer.trace("t1", "blocked {}", new Blocking(serializing, release)));
+			assertTrue(serializing.await(5, TimeUnit.SECONDS));
+			assertTrue(tracer.trace("t2", "queued {}", "a"));
+			assertTrue(tracer.trace("t3", "queued {}", "b"));
+			assertFalse(tracer.trace("t4", "dropped {}", "c"));
+			assertEquals(1, tracer.getDropped());
+			release.countDown();
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (tracer.getTraced() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(3, tracer.getTraced());
+		} finally {
+			tracer.shutdown();
+		}
+	}
+
+	@Test
+	void snapshotTest() throws InterruptedException {
+		AggregateTracer tracer = new AggregateTracer(new AggregateFilterProperties());
+		try {
+			CountDownLatch serializing = new CountDownLatch(1), release = new CountDownLatch(1);
+			assertTrue(tracer.trace("t1", "blocked {}", new Blocking(serializing, release)));
+			assertTrue(serializing.await(5, TimeUnit.SECONDS));
+			// the request changes the map after it's queued
+			Map<String, Object> request = new HashMap<>();
+			request.put("a", "1");
+			assertTrue(tracer.trace("t2", "request {}", request));
+			request.put("b", new Failing());
+			assertTrue(tracer.trace("t3", "failing {}", new Failing()));
+			release.countDown();
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (tracer.getTraced() + tracer.getFailed() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, tracer.getTraced());
+			assertEquals(1, tracer.getFailed());
+			assertEquals(0, tracer.getDropped());
+		} finally {
+			tracer.shutdown();
+		}
+	}
+
+	/**
+	 * An event loop runs the requests of an aggregate API in debug mode, each traces a big request body,
+	 * the latencies of the requests are compared with no tracing and with serializing the body in the event loop as before.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void eventLoopLatencyBenchmark() throws Exception {
+		Map<String, Object> body = new HashMap<>();
+		for (int i = 0; i < 5_000; i++) {
+			body.put("field" + i, "value-" + i);
+		}
+		AggregateFilterProperties properties = new AggregateFilterProperties();
+		properties.setTraceMaxPayloadLength(64);
+		properties.setTraceQueueSize(16);
+		AggregateTracer tracer = new AggregateTracer(properties);
+		EventLoop eventLoop = new DefaultEventLoop();
+		try {
+			for (int round = 0; round < 2; round++) {
+				long[] none  = run(eventLoop, 500, () -> body.size());
+				long[] trace = run(eventLoop, 500, () -> tracer.trace("trace", "req={}", body) ? 1 : 0);
+				long[] sync  = run(eventLoop, 500, () -> JSON.toJSONString(body).length());
+				LOGGER.info("round {}, request latency p50/p99, no trace: {}/{}ns, background trace: {}/{}ns, serialized in event loop: {}/{}ns, dropped {}",
+						round, none[0], none[1], trace[0], trace[1], sync[0], sync[1], tracer.getDropped());
+			}
+		} finally {
+			eventLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+			tracer.shutdown();
+		}
+	}
+
+	private interface Request {
+		int handle();
+	}
+
+	/**
+	 * @return the p50 and p99 latencies
+	 */
+	private static long[] run(EventLoop eventLoop, int n, Request request) throws Exception {
+		long[] latencies = new long[n];
+		for (int i = 0; i < n; i++) {
+			int j = i;
+			eventLoop.submit(() -> {
+				long start = System.nanoTime();
+				request.handle();
+				latencies[j] = System.nanoTime() - start;
+			}).get();
+		}
+		Arrays.sort(latencies);
+		return new long[]{latencies[n / 2], latencies[n * 99 / 100]};
+	}
+
+	public static class Failing {
+
+		public String getValue() {
+			throw new IllegalStateException("changed");
+		}
+	}
+
+	public static class Blocking {
+
+		private final CountDownLatch serializing;
+
+		private final CountDownLatch release;
+
+		Blocking(CountDownLatch serializing, CountDownLatch release) {
+			this.serializing = serializing;
+			this.release = release;
+		}
+
+		public String getValue() throws InterruptedException {
+			serializing.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return "v";
+		}
+	}
+}
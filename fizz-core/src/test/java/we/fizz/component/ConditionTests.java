@@ -17,9 +17,13 @@
 package we.fizz.component;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -28,12 +32,26 @@ import java.util.Map.Entry;
 
 import javax.validation.constraints.AssertTrue;
 
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.noear.snack.ONode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import we.fizz.Step;
+import we.fizz.StepContext;
+import we.fizz.StepResponse;
 import we.fizz.component.condition.Condition;
+import we.fizz.component.condition.ConditionContext;
 import we.fizz.component.condition.ConditionValue;
+import we.fizz.exception.FizzRuntimeException;
 import we.fizz.field.FixedDataTypeEnum;
 import we.fizz.field.RefDataTypeEnum;
 import we.fizz.field.ValueTypeEnum;
@@ -49,9 +67,13 @@ class ConditionTests {
 	void contextLoads() {
 	}
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConditionTests.class);
+
 	private static final Boolean TRUE = true;
 	private static final Boolean FALSE = false;
 
+	private StepContext<String, Object> stepContext;
+
 	@Test
 	void testExec() {
 		ONode ctxNode = ONode.load(new HashMap());
@@ -101,6 +123,17 @@ class ConditionTests {
 		PathMapping.setByPath(ctxNode, "data.floatList", floatList, true);
 		PathMapping.setByPath(ctxNode, "data.emptyList", new ArrayList<>(), true);
 
+		// the same data in step context, which is read directly
+		Map<String, Object> data = new HashMap<>();
+		data.put("m", m);
+		data.put("list1", list1);
+		data.put("list2", list2);
+		data.put("intList", intList);
+		data.put("floatList", floatList);
+		data.put("emptyList", new ArrayList<>());
+		stepContext = new StepContext<>();
+		stepContext.put("data", data);
+
 		// boolean
 		this.run(ctxNode, new Object[] { ValueTypeEnum.FIXED, FixedDataTypeEnum.BOOLEAN, TRUE, ValueTypeEnum.FIXED,
 				FixedDataTypeEnum.BOOLEAN, TRUE, OperatorEnum.EQ, TRUE });
@@ -306,6 +339,196 @@ class ConditionTests {
 
 	}
 
+	@Test
+	void testExecParity() {
+		StepContext<String, Object> ctx = stepContext(5);
+		String[] paths = { "step1.request1.responseBody.id", "step1.request1.responseBody.name",
+				"step1.request1.responseBody.price", "step1.request1.responseBody.rate", "step1.request1.responseBody.ok",
+				"step1.request1.responseBody.tags", "step1.request1.responseBody.ids", "step1.request1.responseBody.tags[0]",
+				"step1.request1.responseBody.items[1].id", "step1.request1.responseBody.items[5].id",
+				"step1.request1.responseBody.items", "step1.request1.responseBody.nested", "step1.request1.responseBody.empty",
+				"step1.request1.responseBody.single.k",
+				"step1.request1.responseBody.missing|7", "step1.request1.responseBody.missing",
+				"step1.request1.responseBody.name.x", "step1.request1.responseBody.tags.x", "step1.request1.responseBody.id[0]",
+				"step1.request1.responseHeaders.content-type", "step1.request1.responseHeaders.x-token[0]",
+				"step1.request1.responseHeaders.x-ids[0]", "step1.result.total", "step1.stop", "step1.stepName",
+				"input.request.body.userId", "input.requestHeaders.host", "step2.request1.responseBody.id", "" };
+		RefDataTypeEnum[] refTypes = { null, RefDataTypeEnum.STRING, RefDataTypeEnum.INT, RefDataTypeEnum.DOUBLE,
+				RefDataTypeEnum.BOOLEAN, RefDataTypeEnum.ARRAY };
+		Object[] fixedValues = { 12, 12L, "Fizz", true, 3.1, 3.1f, null };
+
+		Configurator.setLevel(Condition.class.getName(), Level.OFF);
+		try {
+			ONode ctxNode = ComponentHelper.toONode(ctx);
+			int n = 0;
+			for (String path : paths) {
+				for (RefDataTypeEnum refType : refTypes) {
+					ConditionValue ref = new ConditionValue(ValueTypeEnum.REF, refType, path);
+					for (OperatorEnum op : OperatorEnum.values()) {
+						for (Object fixed : fixedValues) {
+							ConditionValue fixedValue = new ConditionValue(ValueTypeEnum.FIXED, (FixedDataTypeEnum) null, fixed);
+							assertParity(new Condition(null, ref, op, fixedValue), ctxNode, ctx);
+							assertParity(new Condition(null, fixedValue, op, ref), ctxNode, ctx);
+							n += 2;
+						}
+						for (String path2 : paths) {
+							assertParity(new Condition(null, ref, op, new ConditionValue(ValueTypeEnum.REF, refType, path2)),
+									ctxNode, ctx);
+							n++;
+						}
+					}
+				}
+			}
+			LOGGER.info("{} conditions evaluated with the same result", n);
+		} finally {
+			Configurator.setLevel(Condition.class.getName(), Level.INFO);
+		}
+	}
+
+	private void assertParity(Condition c, ONode ctxNode, StepContext<String, Object> ctx) {
+		assertEquals(exec(c, ctxNode), exec(c, new ConditionContext(ctx)), c.toString());
+	}
+
+	private static String exec(Condition c, Object ctx) {
+		try {
+			return String.valueOf(ctx instanceof ONode ? c.exec((ONode) ctx) : c.exec((ConditionContext) ctx));
+		} catch (Exception e) {
+			// the message of an implicit exception may be omitted once the code is compiled
+			return e.getClass().getName() + (e instanceof FizzRuntimeException ? ": " + e.getMessage() : "");
+		}
+	}
+
+	@Test
+	void testBuildComponents() {
+		List<Map<String, Object>> config = new ArrayList<>();
+		Map<String, Object> m = JSON.parseObject("{\"type\":\"condition\",\"desc\":\"c1\",\"operator\":\"notContain\","
+				+ "\"value1\":{\"type\":\"ref\",\"refDataType\":\"array\",\"value\":\"step1.request1.responseBody.tags\"},"
+				+ "\"value2\":{\"type\":\"fixed\",\"fixedDataType\":\"string\",\"value\":\"a\"}}");
+		config.add(m);
+		List<IComponent> components = ComponentHelper.buildComponents(config);
+		Condition c = (Condition) components.get(0);
+		assertEquals(OperatorEnum.NOTCONTAIN, c.getOperator());
+		assertEquals(RefDataTypeEnum.ARRAY, c.getValue1().getRefDataType());
+		Assertions.assertFalse(c.exec(new ConditionContext(stepContext(1))));
+
+		// parsed once and shared
+		config.set(0, JSON.parseObject(JSON.toJSONString(m)));
+		assertSame(c, ComponentHelper.buildComponents(config).get(0));
+		Assertions.assertFalse(JSON.toJSONString(c).contains("compiled"));
+	}
+
+	@Test
+	void testExecOnLargeStepContext() {
+		StepContext<String, Object> ctx = stepContext(200);
+		ONode ctxNode = ComponentHelper.toONode(ctx);
+		ConditionContext cctx = new ConditionContext(ctx);
+		for (Condition c : conditions()) {
+			assertTrue(c.exec(ctxNode), c.toString());
+			assertTrue(c.exec(cctx), c.toString());
+		}
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmark() {
+		StepContext<String, Object> ctx = stepContext(200);
+		List<Condition> conditions = conditions();
+
+		int n = 20_000;
+		for (int r = 0; r < 2; r++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				ONode ctxNode = ComponentHelper.toONode(ctx);
+				for (Condition c : conditions) {
+					assertTrue(c.exec(ctxNode));
+				}
+			}
+			long onode = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				ConditionContext cctx = new ConditionContext(ctx);
+				for (Condition c : conditions) {
+					assertTrue(c.exec(cctx));
+				}
+			}
+			long direct = System.nanoTime() - start;
+			LOGGER.info("{} conditions on a step context with a 200 fields response body, converted to ONode: {}ns/op, compiled: {}ns/op",
+					conditions.size(), onode / n, direct / n);
+		}
+	}
+
+	/**
+	 * @return the conditions true on the step context
+	 */
+	private static List<Condition> conditions() {
+		List<Condition> conditions = new ArrayList<>();
+		conditions.add(condition(ValueTypeEnum.REF, RefDataTypeEnum.INT, "step1.request1.responseBody.id", OperatorEnum.GE, 10));
+		conditions.add(condition(ValueTypeEnum.REF, RefDataTypeEnum.STRING, "step1.request1.responseBody.name", OperatorEnum.EQ, "Fizz"));
+		conditions.add(condition(ValueTypeEnum.REF, RefDataTypeEnum.BOOLEAN, "step1.request1.responseBody.ok", OperatorEnum.EQ, true));
+		conditions.add(condition(ValueTypeEnum.REF, RefDataTypeEnum.ARRAY, "step1.request1.responseBody.tags", OperatorEnum.CONTAINS, "b"));
+		conditions.add(condition(ValueTypeEnum.REF, RefDataTypeEnum.INT, "step1.result.total|0", OperatorEnum.LT, 1000));
+		conditions.add(condition(ValueTypeEnum.REF, null, "input.request.body.userId", OperatorEnum.ISNOTBLANK, null));
+		conditions.add(condition(ValueTypeEnum.FIXED, null, 1, OperatorEnum.LT, 2));
+		return conditions;
+	}
+
+	private static Condition condition(ValueTypeEnum type, RefDataTypeEnum refType, Object value1, OperatorEnum op, Object value2) {
+		return new Condition(null, new ConditionValue(type, refType, value1), op,
+				new ConditionValue(ValueTypeEnum.FIXED, (FixedDataTypeEnum) null, value2));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static StepContext<String, Object> stepContext(int fields) {
+		StepContext<String, Object> ctx = new StepContext<>();
+		StepResponse stepResponse = new StepResponse(new Step.Builder().read(new HashMap<>(), null), new HashMap<>(), new HashMap<>());
+		stepResponse.setStepName("step1");
+		stepResponse.getResult().put("total", 100);
+		ctx.put("step1", stepResponse);
+
+		JSONObject body = new JSONObject();
+		body.put("id", 12);
+		body.put("name", "Fizz");
+		body.put("price", new BigDecimal("9.90"));
+		body.put("rate", 3.1f);
+		body.put("ok", true);
+		body.put("tags", new ArrayList<>(Arrays.asList("a", "b", "12")));
+		body.put("ids", new JSONArray(new ArrayList<>(Arrays.asList(1, 12, 3))));
+		List<Map<String, Object>> items = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Map<String, Object> item = new HashMap<>();
+			item.put("id", i);
+			items.add(item);
+		}
+		body.put("items", items);
+		Map<String, Object> nested = new LinkedHashMap<>();
+		nested.put("a", 1);
+		body.put("nested", nested);
+		body.put("empty", new HashMap<>());
+		body.put("single", Collections.singletonMap("k", "v"));
+		for (int i = 0; i < fields; i++) {
+			body.put("field" + i, "value" + i);
+		}
+		ctx.setStepRespBody("step1", "request1", null, null);
+		Map<String, Object> response = (Map<String, Object>) stepResponse.getRequests().get("request1").get("response");
+		response.put("body", body);
+		ctx.setStepRespHeader("step1", "request1", "content-type", "application/json");
+		ctx.setStepRespHeader("step1", "request1", "x-token", "abc");
+		ctx.setStepRespHeader("step1", "request1", "x-ids", new ArrayList<>(Arrays.asList("1", "2")));
+
+		Map<String, Object> input = new HashMap<>();
+		Map<String, Object> request = new HashMap<>();
+		Map<String, Object> reqBody = new HashMap<>();
+		reqBody.put("userId", "u1");
+		request.put("body", reqBody);
+		Map<String, Object> headers = new HashMap<>();
+		headers.put("HOST", "localhost");
+		request.put("headers", headers);
+		input.put("request", request);
+		ctx.put("input", input);
+		return ctx;
+	}
+
 	private void run(ONode ctxNode, Object[] item) {
 		ConditionValue bValue1 = null;
 		if (item[1] instanceof FixedDataTypeEnum) {
@@ -325,6 +548,9 @@ class ConditionTests {
 		boolean rs = c.exec(ctxNode);
 		boolean expected = (boolean) item[7];
 		assertEquals(expected, rs);
+		if (stepContext != null) {
+			assertEquals(expected, c.exec(new ConditionContext(stepContext)));
+		}
 	}
 
 }
\ No newline at end of file
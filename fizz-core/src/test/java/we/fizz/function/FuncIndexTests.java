@@ -0,0 +1,50 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz.function;
+
+import org.junit.jupiter.api.Test;
+import org.reflections.Reflections;
+import we.fizz.input.Input;
+import we.util.SubTypeIndex;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 
+ * @author Francis Dong
+ *
+ */
+class FuncIndexTests {
+
+	@Test
+	void indexParityTest() {
+		Set<Class<? extends IFunc>> scanned = new Reflections("we.fizz.function").getSubTypesOf(IFunc.class);
+		Set<Class<? extends IFunc>> indexed = SubTypeIndex.getSubTypes(IFunc.class, "we.fizz.function");
+		assertNotNull(indexed);
+		assertEquals(scanned, new HashSet<>(indexed));
+
+		Set<Class<? extends Input>> scannedInputs = new Reflections("we.fizz.input").getSubTypesOf(Input.class);
+		Set<Class<? extends Input>> indexedInputs = SubTypeIndex.getSubTypes(Input.class, "we.fizz.input");
+		assertNotNull(indexedInputs);
+		assertEquals(scannedInputs, new HashSet<>(indexedInputs));
+	}
+}
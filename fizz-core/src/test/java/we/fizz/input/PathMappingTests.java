@@ -12,7 +12,10 @@ import java.util.Map.Entry;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.noear.snack.ONode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -20,6 +23,9 @@ import we.global_resource.GlobalResourceService;
 
 
 class PathMappingTests {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PathMappingTests.class);
+
 	@Test
 	void contextLoads() {
 	}
@@ -220,5 +226,107 @@ class PathMappingTests {
 		Object abcVal2 = PathMapping.getValueByPath(emptyCtx, "g.data.arr[-1]");
 		assertEquals("4", (String)abcVal2);
 	}
-	
-}
\ No newline at end of file
+
+	private ONode transformCtx() {
+		ONode ctxNode = PathMapping.toONode(new HashMap<>());
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.id", "12", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.price", "9.5", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.ok", "true", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.headers.X-TOKEN", "t1", true);
+		List<String> vals = new ArrayList<>();
+		vals.add("a");
+		vals.add("b");
+		PathMapping.setByPath(ctxNode, "input.request.params.tags", vals, true);
+		Map<String, Object> user = new HashMap<>();
+		user.put("name", "ken");
+		user.put("age", 18);
+		PathMapping.setByPath(ctxNode, "input.request.body.user", user, true);
+		return ctxNode;
+	}
+
+	private Map<String, Object> transformRules() {
+		Map<String, Object> rules = new HashMap<>();
+		rules.put("id", "int step1.request1.responseBody.id");
+		rules.put("price", "double step1.request1.responseBody.price");
+		rules.put("ok", "boolean step1.request1.responseBody.ok");
+		rules.put("token", "step1.request1.responseHeaders.x-token[0]");
+		rules.put("missing", "long step1.request1.responseBody.missing|7");
+		rules.put("blank", "string ");
+		rules.put("data.name", "input.requestBody.user.name");
+		List<Object> tags = new ArrayList<>();
+		tags.add("input.requestParams.tags");
+		tags.add("string step1.request1.responseBody.id");
+		rules.put("tags", tags);
+		rules.put("*", "input.requestBody.user");
+		return rules;
+	}
+
+	@Test
+	void testTransform() {
+		ONode ctxNode = transformCtx();
+		for (int i = 0; i < 2; i++) {
+			// compiled, then cached
+			Map<String, Object> result = PathMapping.transformToMap(ctxNode, transformRules(), true);
+			assertEquals(12L, result.get("id"));
+			assertEquals(9.5, result.get("price"));
+			// a string value is false
+			assertEquals(false, result.get("ok"));
+			assertEquals("t1", result.get("token"));
+			assertEquals(7L, result.get("missing"));
+			assertTrue(result.containsKey("blank"));
+			assertEquals(null, result.get("blank"));
+			assertEquals("ken", ((Map) result.get("data")).get("name"));
+			assertEquals(2, ((List) result.get("tags")).size());
+			assertEquals("12", ((List) result.get("tags")).get(1));
+			assertEquals("ken", result.get("name"));
+			assertEquals(18L, result.get("age"));
+		}
+
+		Map<String, Object> result = PathMapping.transformToMap(ctxNode, transformRules(), false);
+		assertEquals("ken", result.get("data.name"));
+		assertEquals(MappingPlan.compile(transformRules()).transform(ctxNode, false).toObject(Map.class), result);
+
+		Map<String, Object> fixed = new HashMap<>();
+		fixed.put("a.b", "1");
+		fixed.put("c", "2");
+		for (int i = 0; i < 2; i++) {
+			Map<String, Object> m = PathMapping.convertPath(fixed, true);
+			assertEquals("1", ((Map) m.get("a")).get("b"));
+			// the converted map is not shared
+			m.put("c", "3");
+			assertEquals("1", PathMapping.convertPath(fixed, false).get("a.b"));
+		}
+		assertEquals("2", PathMapping.convertPath(fixed, true).get("c"));
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmark() {
+		ONode ctxNode = transformCtx();
+		Map<String, Object> rules = new HashMap<>();
+		for (int i = 0; i < 50; i++) {
+			switch (i % 5) {
+			case 0:  rules.put("r" + i, "int step1.request1.responseBody.id"); break;
+			case 1:  rules.put("r" + i, "step1.request1.responseHeaders.x-token[0]"); break;
+			case 2:  rules.put("d.r" + i, "input.requestBody.user.name"); break;
+			case 3:  rules.put("r" + i, "long step1.request1.responseBody.missing|7"); break;
+			default: rules.put("r" + i, "input.requestParams.tags");
+			}
+		}
+		int n = 20_000;
+		for (int r = 0; r < 3; r++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				MappingPlan.compile(new HashMap<>(rules)).transform(ctxNode, true);
+			}
+			long uncached = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				PathMapping.transform(ctxNode, new HashMap<>(rules), true);
+			}
+			long compiled = System.nanoTime() - start;
+			LOGGER.info("transform 50 rules, parsed each time: {}ns/op, compiled once: {}ns/op", uncached / n, compiled / n);
+		}
+	}
+}
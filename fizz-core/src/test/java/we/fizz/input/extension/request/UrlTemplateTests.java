@@ -0,0 +1,239 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.fizz.input.extension.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.noear.snack.ONode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import we.fizz.input.PathMapping;
+import we.util.MapUtil;
+
+/**
+ * @author zhongjie
+ */
+public class UrlTemplateTests {
+
+	private static final Logger  LOGGER           = LoggerFactory.getLogger(UrlTemplateTests.class);
+
+	private static final Pattern PATH_VAR_PATTERN = Pattern.compile("(\\{)([^/]*)(\\})");
+
+	@Test
+	void buildTest() {
+		ONode ctxNode = ONode.load(new HashMap<>());
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.id", 12, true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.name", "a b", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.slash", "/x//y", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.query", "x?y=1", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.hash", "x#y", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.dollar", "x$1", true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.list", Arrays.asList(1, 2), true);
+
+		String[] paths = { "/users/{step1.request1.responseBody.id}", "users/{step1.request1.responseBody.id}/",
+				"/a/{step1.request1.responseBody.name}-x/b", "/a//b/", "/", "/{step1.request1.responseBody.slash}",
+				"/{step1.request1.responseBody.query}", "/{step1.request1.responseBody.hash}/c",
+				"/p{step1.request1.responseBody.dollar}", "/{step1.request1.responseBody.list}",
+				"/{step1.request1.responseBody.missing}", "/{a}-{step1.request1.responseBody.id}", "/a?b=1", "/a#f" };
+		String[] hosts = { "service1", "10.0.0.1:8080", "10.0.0.1:", "h:99999999999", "user@h", "[::1]:80", "ns-1.service1" };
+		List<Map<String, Object>> paramsList = new ArrayList<>();
+		paramsList.add(new HashMap<>());
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("a", 1);
+		params.put("b", Arrays.asList("x", null, "y"));
+		params.put("c", null);
+		params.put("d", "v#1");
+		paramsList.add(params);
+
+		int n = 0;
+		for (String path : paths) {
+			for (String protocol : new String[] { "http", "https" }) {
+				Map<String, Object> cfg = new HashMap<>();
+				cfg.put("serviceType", 1);
+				cfg.put("protocol", protocol);
+				cfg.put("serviceName", "service1");
+				cfg.put("path", path);
+				RequestInputConfig config = new RequestInputConfig(cfg);
+				UrlTemplate template = UrlTemplate.of(config);
+				for (String host : hosts) {
+					for (Map<String, Object> p : paramsList) {
+						for (ONode node : new ONode[] { ctxNode, null }) {
+							String base = protocol + "://" + host + (path.startsWith("/") ? "" : "/");
+							assertEquals(result(() -> legacy(base, node, path, p)), result(() -> template.build(host, node, p)),
+									path + " " + host);
+							n++;
+						}
+					}
+				}
+			}
+			for (String base : new String[] { "http://h", "http://10.0.0.1:8080", "http://[::1]:80" }) {
+				if (path.contains("?") || path.contains("#") || !path.startsWith("/")) {
+					continue;
+				}
+				Map<String, Object> cfg = new HashMap<>();
+				cfg.put("url", base + path + "?q=1&q=2&r");
+				RequestInputConfig config = new RequestInputConfig(cfg);
+				UrlTemplate template = UrlTemplate.of(config);
+				for (ONode node : new ONode[] { ctxNode, null }) {
+					Map<String, Object> p = template.getQueryParams();
+					Map<String, Object> legacyParams = MapUtil.toHashMap(config.getQueryParams());
+					assertEquals(legacyParams, p);
+					p.put("a", 1);
+					legacyParams.put("a", 1);
+					assertEquals(legacy(config.getBaseUrl(), node, config.getPath(), legacyParams), template.build(null, node, p));
+					n++;
+				}
+			}
+		}
+		LOGGER.info("{} urls built the same", n);
+	}
+
+	@Test
+	void cacheTest() {
+		Map<String, Object> cfg = new HashMap<>();
+		cfg.put("url", "http://h/a?q=1&q=2");
+		UrlTemplate template = UrlTemplate.of(new RequestInputConfig(cfg));
+		assertSame(template, UrlTemplate.of(new RequestInputConfig(new HashMap<>(cfg))));
+		((List<Object>) template.getQueryParams().get("q")).add("3");
+		assertEquals(Arrays.asList("1", "2"), template.getQueryParams().get("q"));
+	}
+
+	@Test
+	void buildWithParamsTest() {
+		ONode ctxNode = orgUserCtx();
+		for (Map<String, Object> cfg : orgUserConfigs()) {
+			// the query params may be in another order
+			UriComponents expected = UriComponentsBuilder.fromUriString(legacyBuild(cfg, ctxNode)).build();
+			UriComponents actual = UriComponentsBuilder.fromUriString(build(cfg, ctxNode)).build();
+			assertEquals(expected.getHost(), actual.getHost());
+			assertEquals(expected.getPath(), actual.getPath());
+			assertEquals(expected.getQueryParams(), actual.getQueryParams());
+		}
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmark() {
+		ONode ctxNode = orgUserCtx();
+		int n = 100_000;
+		for (Map<String, Object> cfg : orgUserConfigs()) {
+			String name = cfg.containsKey("url") ? "base url" : "service discovery";
+			for (int r = 0; r < 2; r++) {
+				long start = System.nanoTime();
+				for (int i = 0; i < n; i++) {
+					legacyBuild(cfg, ctxNode);
+				}
+				long legacy = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < n; i++) {
+					build(cfg, ctxNode);
+				}
+				long compiled = System.nanoTime() - start;
+				LOGGER.info("{} input url built {} times, legacy: {}ns/op, compiled: {}ns/op", name, n, legacy / n, compiled / n);
+			}
+		}
+	}
+
+	private static ONode orgUserCtx() {
+		ONode ctxNode = ONode.load(new HashMap<>());
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.id", 12, true);
+		PathMapping.setByPath(ctxNode, "step1.requests.request1.response.body.org", "fizz", true);
+		return ctxNode;
+	}
+
+	private static List<Map<String, Object>> orgUserConfigs() {
+		Map<String, Object> discovery = new HashMap<>();
+		discovery.put("serviceType", 1);
+		discovery.put("protocol", "http");
+		discovery.put("serviceName", "user-service");
+		discovery.put("path", "/orgs/{step1.request1.responseBody.org}/users/{step1.request1.responseBody.id}/orders");
+		Map<String, Object> baseUrl = new HashMap<>();
+		baseUrl.put("url", "http://10.0.0.1:8080/orgs/{step1.request1.responseBody.org}/users/{step1.request1.responseBody.id}?v=1");
+		return Arrays.asList(discovery, baseUrl);
+	}
+
+	private static void putPageParams(Map<String, Object> params) {
+		params.put("page", 1);
+		params.put("size", 20);
+		params.put("sort", "name");
+	}
+
+	private static String legacyBuild(Map<String, Object> cfg, ONode ctxNode) {
+		RequestInputConfig config = new RequestInputConfig(cfg);
+		Map<String, Object> p = new HashMap<>(MapUtil.toHashMap(config.getQueryParams()));
+		putPageParams(p);
+		String base = config.isNewVersion() ? config.getProtocol() + "://" + config.getServiceName() : config.getBaseUrl();
+		return legacy(base, ctxNode, config.getPath(), p);
+	}
+
+	private static String build(Map<String, Object> cfg, ONode ctxNode) {
+		UrlTemplate template = UrlTemplate.of(new RequestInputConfig(cfg));
+		Map<String, Object> p = template.getQueryParams();
+		putPageParams(p);
+		return template.build(template.serviceName, ctxNode, p);
+	}
+
+	private static String result(Supplier<String> url) {
+		try {
+			return url.get();
+		} catch (RuntimeException e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private static String legacy(String base, ONode ctxNode, String path, Map<String, Object> params) {
+		return UriComponentsBuilder.fromUriString(base + setPathVariable(ctxNode, path))
+				.queryParams(MapUtil.toMultiValueMap(params)).build().toUriString();
+	}
+
+	private static String setPathVariable(ONode ctxNode, String path) {
+		if (ctxNode == null || StringUtils.isBlank(path)) {
+			return path;
+		}
+		String[] paths = path.split("/");
+		for (int i = 0; i < paths.length; i++) {
+			Matcher matcher = PATH_VAR_PATTERN.matcher(paths[i]);
+			if (matcher.find()) {
+				String jsonPath = matcher.group(2);
+				Object val = PathMapping.getValueByPath(ctxNode, jsonPath);
+				if (val != null && !(val instanceof Map) && !(val instanceof List)) {
+					paths[i] = matcher.replaceAll(String.valueOf(val));
+				}
+			}
+		}
+		return String.join("/", paths);
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.log;
+
+import com.alibaba.fastjson.JSON;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import reactor.core.Disposable;
+import we.config.AggregateRedisConfigProperties;
+import we.redis.RedisProperties;
+import we.redis.RedisServerConfiguration;
+import we.redis.RedisTemplateConfiguration;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+@TestPropertySource("/application.properties")
+@SpringJUnitConfig(classes = {RedisProperties.class, RedisTemplateConfiguration.class, RedisServerConfiguration.class})
+public class LogSendBatcherTests {
+
+    private static final Logger LOGGER  = LoggerFactory.getLogger(LogSendBatcherTests.class);
+
+    private static final String CONTENT = "2021-06-01 12:00:00.000 [reactor-http-epoll-1] INFO  we.filter.FlowControlFilter - 127.0.0.1 GET /proxy/xservice/ypath 200 12ms";
+
+    @Resource
+    ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Test
+    void concurrentOfferTest() throws Throwable {
+        int n = 10_000, producers = 2;
+        AtomicLong published = new AtomicLong();
+        LogSendBatcher batcher = new LogSendBatcher(16384, 16 * 1024 * 1024, 256, 20, null, batch -> published.addAndGet(batch.size()));
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < n / producers; i++) {
+                    assertTrue(batcher.sample(LogSendBatcher.LEVEL_INFO) && batcher.offer(logSend(i)));
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        batcher.close(10_000);
+        assertEquals(n, batcher.getPublished());
+        assertEquals(n, published.get());
+        assertEquals(0, batcher.getDropped());
+        assertEquals(0, batcher.getBufferedBytes());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void throughputBenchmark() throws Throwable {
+        int rate = 100_000, seconds = 2, n = rate * seconds, producers = 2;
+        AtomicLong serialized = new AtomicLong();
+
+        // send on logging thread like before
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            serialized.addAndGet(JSON.toJSONString(logSend(i)).length());
+        }
+        long sync = System.nanoTime() - start;
+
+        LogSendBatcher batcher = new LogSendBatcher(8192, 16 * 1024 * 1024, 256, 20, null,
+                batch -> batch.forEach(l -> serialized.addAndGet(JSON.toJSONString(l).length())));
+        long[] producerNanos = new long[producers];
+        Thread[] threads = new Thread[producers];
+        long begin = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            int pFinal = p;
+            threads[p] = new Thread(() -> {
+                // 100 logs per millisecond in total
+                int perMillis = rate / 1000 / producers;
+                for (int i = 0; i < n / producers; i++) {
+                    if (i % perMillis == 0) {
+                        long due = begin + TimeUnit.MILLISECONDS.toNanos(i / perMillis);
+                        while (System.nanoTime() < due) {
+                            Thread.yield();
+                        }
+                    }
+                    long s = System.nanoTime();
+                    if (batcher.sample(LogSendBatcher.LEVEL_INFO)) {
+                        batcher.offer(logSend(i));
+                    }
+                    producerNanos[pFinal] += System.nanoTime() - s;
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        batcher.close(10_000);
+        long elapsed = System.nanoTime() - begin;
+        long async = producerNanos[0] + producerNanos[1];
+
+        LOGGER.info("{} logs at {}/s, serialize on logging thread: {}ns/log, enqueue: {}ns/log, {} published in {} batches, {} dropped, took {}ms",
+                n, rate, sync / n, async / n, batcher.getPublished(), batcher.getBatches(), batcher.getDropped(), elapsed / 1_000_000);
+        assertEquals(n, batcher.getPublished() + batcher.getDropped());
+        assertTrue(batcher.getPublished() > n * 0.99);
+        assertEquals(0, batcher.getBufferedBytes());
+    }
+
+    @Test
+    void boundedMemoryTest() throws Throwable {
+        CountDownLatch blocked = new CountDownLatch(1);
+        long maxBytes = 64 * 1024;
+        LogSendBatcher batcher = new LogSendBatcher(1024, maxBytes, 16, 1, null, batch -> blocked.await());
+        int accepted = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (batcher.sample(LogSendBatcher.LEVEL_ERROR) && batcher.offer(logSend(i))) {
+                accepted++;
+            }
+            assertTrue(batcher.getBufferedBytes() <= maxBytes);
+        }
+        assertTrue(batcher.getDropped() > 0);
+        assertEquals(10_000, accepted + batcher.getDropped());
+        blocked.countDown();
+        batcher.close(10_000);
+        assertEquals(accepted, batcher.getPublished());
+    }
+
+    @Test
+    void sampleTest() throws Throwable {
+        LogSendBatcher batcher = new LogSendBatcher(1024, 1024 * 1024, 16, 1, new int[]{10, 100}, batch -> {});
+        int info = 0, debug = 0, warn = 0;
+        for (int i = 0; i < 1000; i++) {
+            info  += batcher.sample(LogSendBatcher.LEVEL_INFO)  ? 1 : 0;
+            debug += batcher.sample(LogSendBatcher.LEVEL_DEBUG) ? 1 : 0;
+            warn  += batcher.sample(LogSendBatcher.LEVEL_WARN)  ? 1 : 0;
+        }
+        assertEquals(100, info);
+        assertEquals(10, debug);
+        assertEquals(1000, warn);
+        assertTrue(batcher.sample(LogSendBatcher.LEVEL_TRACE));
+        assertEquals(900 + 990, batcher.getSampledOut());
+        batcher.close(1000);
+
+        // the rates of the service follow the refreshed properties
+        AggregateRedisConfigProperties properties = new AggregateRedisConfigProperties();
+        properties.setSendLogOpen(true);
+        properties.setSendLogBufferSize(1024);
+        properties.setSendLogMaxBufferedBytes(1024 * 1024);
+        properties.setSendLogBatchSize(16);
+        properties.setSendLogLingerMillis(1);
+        properties.setSendLogInfoSampleRate(1);
+        RedisLogSendServiceImpl service = new RedisLogSendServiceImpl(properties, null, reactiveStringRedisTemplate);
+        info = 0;
+        for (int i = 0; i < 100; i++) {
+            info += service.sample(LogSendBatcher.LEVEL_INFO) ? 1 : 0;
+        }
+        assertEquals(100, info);
+        properties.setSendLogInfoSampleRate(10);
+        info = 0;
+        for (int i = 0; i < 100; i++) {
+            info += service.sample(LogSendBatcher.LEVEL_INFO) ? 1 : 0;
+        }
+        assertEquals(10, info);
+        service.close(1000);
+    }
+
+    @Test
+    void parkTest() throws Throwable {
+        List<Long> published = new CopyOnWriteArrayList<>();
+        LogSendBatcher batcher = new LogSendBatcher(1024, 1024 * 1024, 16, 20, null, batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                published.add(System.nanoTime());
+            }
+        });
+        // the idle thread parks until a log is offered, and publishes it after the linger
+        Thread.sleep(100);
+        long start = System.nanoTime();
+        assertTrue(batcher.offer(logSend(0)));
+        while (published.isEmpty() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, published.size());
+        assertTrue(published.get(0) - start >= TimeUnit.MILLISECONDS.toNanos(20));
+
+        // the logs buffered, more than a batch, are published on close, then the logs are dropped
+        for (int i = 0; i < 16 + 5; i++) {
+            assertTrue(batcher.offer(logSend(i)));
+        }
+        batcher.close(1000);
+        assertEquals(1 + 16 + 5, batcher.getPublished());
+        assertFalse(batcher.offer(logSend(0)));
+        assertFalse(batcher.sample(LogSendBatcher.LEVEL_ERROR));
+        assertEquals(2, batcher.getDropped());
+    }
+
+    @Test
+    void redisTest() throws Throwable {
+        for (int frameSize : new int[]{1, 50}) {
+            String channel = "fizz_log_channel_test_" + frameSize;
+            AggregateRedisConfigProperties properties = new AggregateRedisConfigProperties();
+            properties.setSendLogOpen(true);
+            properties.setSendLogChannel(channel);
+            properties.setSendLogBufferSize(16384);
+            properties.setSendLogMaxBufferedBytes(16 * 1024 * 1024);
+            properties.setSendLogBatchSize(256);
+            properties.setSendLogLingerMillis(5);
+            properties.setSendLogFrameSize(frameSize);
+            properties.setSendLogPublishTimeoutMillis(5000);
+            RedisLogSendServiceImpl service = new RedisLogSendServiceImpl(properties, null, reactiveStringRedisTemplate);
+
+            int n = 1_000;
+            AtomicLong received = new AtomicLong();
+            CountDownLatch done = new CountDownLatch(1);
+            CountDownLatch subscribed = new CountDownLatch(1);
+            Disposable subscription = reactiveStringRedisTemplate.listenToChannel(channel)
+                    .doOnSubscribe(s -> subscribed.countDown())
+                    .subscribe(
+                            m -> {
+                                String msg = m.getMessage();
+                                int logs = frameSize > 1 ? JSON.parseArray(msg, LogSend.class).size() : 1;
+                                if (received.addAndGet(logs) == n) {
+                                    done.countDown();
+                                }
+                            }
+                    );
+            subscribed.await();
+            Thread.sleep(500);
+
+            for (int i = 0; i < n; i++) {
+                if (service.sample(LogSendBatcher.LEVEL_INFO)) {
+                    service.send(logSend(i));
+                }
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS), received.get() + " received");
+            subscription.dispose();
+            // the last batch may be received before its publish returns and is counted
+            service.close(1000);
+            assertEquals(n, service.getLogSendBatcher().getPublished());
+        }
+    }
+
+    private static LogSend logSend(int i) {
+        return new LogSend("biz" + (i & 1023), "127.0.0.1", 400, System.currentTimeMillis(), CONTENT);
+    }
+}
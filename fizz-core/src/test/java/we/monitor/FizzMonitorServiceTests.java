@@ -0,0 +1,63 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.monitor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import we.util.ReflectionUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author zhongjie
+ */
+public class FizzMonitorServiceTests {
+
+    @Test
+    void sendAlarmIntervalTest() {
+        ReactiveStringRedisTemplate rt = mock(ReactiveStringRedisTemplate.class);
+        when(rt.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
+        FizzMonitorService fizzMonitorService = new FizzMonitorService();
+        ReflectionUtils.set(fizzMonitorService, "alarmEnable", true);
+        ReflectionUtils.set(fizzMonitorService, "dest", "redis");
+        ReflectionUtils.set(fizzMonitorService, "queue", "fizz_alarm_channel");
+        ReflectionUtils.set(fizzMonitorService, "rt", rt);
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 10_000; i++) {
+            fizzMonitorService.sendAlarm("xservice", "/ypath", FizzMonitorService.RATE_LIMIT_ALARM, "qps", now + i / 10);
+        }
+        // one per second
+        verify(rt, times(1)).convertAndSend(anyString(), anyString());
+        assertEquals(9_999, fizzMonitorService.getSuppressedAlarms());
+
+        fizzMonitorService.sendAlarm("xservice", "/ypath", FizzMonitorService.CIRCUIT_BREAK_ALARM, null, now);
+        fizzMonitorService.sendAlarm("xservice", "/zpath", FizzMonitorService.RATE_LIMIT_ALARM, "qps", now);
+        fizzMonitorService.sendAlarm("xservice", "/ypath", FizzMonitorService.RATE_LIMIT_ALARM, "qps", now + 1000);
+        verify(rt, times(4)).convertAndSend(anyString(), anyString());
+
+        ReflectionUtils.set(fizzMonitorService, "alarmMinIntervalMillis", 0L);
+        for (int i = 0; i < 10; i++) {
+            fizzMonitorService.sendAlarm("xservice", "/ypath", FizzMonitorService.RATE_LIMIT_ALARM, "qps", now);
+        }
+        verify(rt, times(14)).convertAndSend(anyString(), anyString());
+    }
+}
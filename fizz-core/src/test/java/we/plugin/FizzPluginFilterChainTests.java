@@ -0,0 +1,144 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import we.Fizz;
+import we.plugin.auth.ApiConfig;
+import we.proxy.Route;
+import we.util.ReactorUtils;
+import we.util.WebUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author hongqiaowei
+ */
+
+public class FizzPluginFilterChainTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FizzPluginFilterChainTests.class);
+
+    @Test
+    void fivePluginRouteTest() {
+        fivePluginRoute(100);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void fivePluginRouteBenchmark() {
+        int n = 100_000;
+        long cost = fivePluginRoute(n);
+        LOGGER.info("5 plugin route, {} requests: {}ms, {}ns/req", n, cost / 1000000, cost / n);
+    }
+
+    /**
+     * @param n requests sent through the route after as many warm-up ones
+     * @return the nanos the requests took
+     */
+    @SuppressWarnings("unchecked")
+    private static long fivePluginRoute(int n) {
+        AtomicInteger getBeanCount = new AtomicInteger(0);
+        GenericApplicationContext context = new GenericApplicationContext() {
+            @Override
+            public <T> T getBean(String name, Class<T> requiredType) throws BeansException {
+                getBeanCount.incrementAndGet();
+                return super.getBean(name, requiredType);
+            }
+        };
+        AtomicInteger filterCount = new AtomicInteger(0);
+        FizzPluginFilter plugin = (exchange, config) -> {
+            filterCount.incrementAndGet();
+            Mono next = FizzPluginFilterChain.next(exchange);
+            return next.defaultIfEmpty(ReactorUtils.NULL).flatMap(v -> Mono.empty());
+        };
+
+        List<PluginConfig> gatewayGroupPluginConfigs = new ArrayList<>();
+        ApiConfig apiConfig = new ApiConfig();
+        apiConfig.pluginConfigs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String name = "plugin" + i;
+            context.registerBean(name, FizzPluginFilter.class, () -> plugin);
+            PluginConfig pc = new PluginConfig();
+            pc.plugin = name;
+            pc.order  = i;
+            if (i % 2 == 0) {
+                gatewayGroupPluginConfigs.add(pc);
+            } else {
+                apiConfig.pluginConfigs.add(pc);
+            }
+        }
+        context.refresh();
+
+        ConfigurableApplicationContext prev = Fizz.context;
+        Fizz.context = context;
+        try {
+            WebFilterChain chain = exchange -> Mono.empty();
+            List<PluginConfig> pcs = null;
+            long start = 0;
+            for (int i = 0; i < n * 2; i++) {
+                if (i == n) {
+                    start = System.nanoTime();
+                }
+                MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/xservice/ypath").build());
+                Route route = apiConfig.getRoute(exchange, gatewayGroupPluginConfigs);
+                if (pcs == null) {
+                    pcs = route.pluginConfigs;
+                }
+                assertSame(pcs, route.pluginConfigs);
+                WebUtils.setRoute(exchange, route);
+                exchange.getAttributes().put(FizzPluginFilterChain.WEB_FILTER_CHAIN, chain);
+                FizzPluginFilterChain.next(exchange).block();
+            }
+            long cost = System.nanoTime() - start;
+
+            assertEquals(5, pcs.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals("plugin" + i, pcs.get(i).plugin);
+            }
+            assertEquals(5, getBeanCount.get());
+            assertEquals(n * 2 * 5, filterCount.get());
+
+            // the merged configs follow the api's plugin configs replaced
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/xservice/ypath").build());
+            apiConfig.setPluginConfigs(Collections.singletonList(apiConfig.pluginConfigs.get(0)));
+            assertEquals(4, apiConfig.getRoute(exchange, gatewayGroupPluginConfigs).pluginConfigs.size());
+            apiConfig.pluginConfigs = new ArrayList<>();
+            assertEquals(3, apiConfig.getRoute(exchange, gatewayGroupPluginConfigs).pluginConfigs.size());
+            return cost;
+        } finally {
+            Fizz.context = prev;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package we.proxy;
 
+import io.netty.buffer.PooledByteBufAllocator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -11,17 +17,30 @@ import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import we.fizz.AggregateService;
 import we.plugin.auth.ApiConfig;
 import we.plugin.auth.ApiConfigService;
 import we.plugin.auth.CallbackConfig;
+import we.filter.CallbackReqPusher;
 import we.plugin.auth.Receiver;
+import we.util.NettyDataBufferUtils;
 import we.util.ReflectionUtils;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -31,6 +50,8 @@ import static org.mockito.Mockito.when;
 
 public class CallbackServiceTests {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CallbackServiceTests.class);
+
     FizzWebClient    mockFizzWebClient;
 
     AggregateService mockAggregateService;
@@ -102,4 +123,166 @@ public class CallbackServiceTests {
 
         // if test pass, there will be a '{request id} response 410 GONE' log in console
     }
+
+    @Test
+    void fanOutHeapTest() throws Exception {
+        int bodySize = 5 << 20, receivers = 5, requests = 10;
+
+        AtomicLong received = new AtomicLong();
+        when(mockFizzWebClient.send2service(any(), any(), anyString(), anyString(), any(), any()))
+        .thenAnswer(
+                invocation -> {
+                    Mono<DataBuffer> body = invocation.getArgument(5);
+                    return body.map(
+                            b -> {
+                                // written and released as reactor netty does
+                                received.addAndGet(b.readableByteCount());
+                                b.readPosition(b.writePosition());
+                                DataBufferUtils.release(b);
+                                return ClientResponse.create(HttpStatus.OK, ExchangeStrategies.withDefaults()).body("ok").build();
+                            }
+                    );
+                }
+        );
+
+        CallbackConfig callbackConfig = new CallbackConfig();
+        callbackConfig.receivers = new ArrayList<>();
+        for (int i = 0; i < receivers; i++) {
+            Receiver r = new Receiver();
+            r.service = "s" + i;
+            r.type = ApiConfig.Type.SERVICE_DISCOVERY;
+            r.path = "/p" + i;
+            callbackConfig.receivers.add(r);
+        }
+
+        AtomicLong pushed = new AtomicLong();
+        CallbackReqPusher pusher = new CallbackReqPusher(64, 256 << 20, CallbackReqPusher.BODY_ENCODING_TEXT, m -> {
+            pushed.addAndGet(m.readableBytes());
+            return Mono.empty();
+        });
+
+        NettyDataBufferFactory factory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        byte[] chunk = new byte[8192];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) ('a' + i % 26);
+        }
+
+        System.gc();
+        resetHeapPeak();
+        long heapBefore = heapUsed();
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        List<NettyDataBuffer> bodies = new ArrayList<>();
+        for (int n = 0; n < requests; n++) {
+            // the request body arrives in pooled chunks and is joined as the filter does
+            Flux<DataBuffer> chunks = Flux.range(0, bodySize / chunk.length).map(i -> {
+                NettyDataBuffer b = factory.allocateBuffer(chunk.length);
+                return b.write(chunk);
+            });
+            DataBuffer body = DataBufferUtils.join(chunks).block();
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://127.0.0.1:8600/proxy/xservice/callback").build());
+            HttpHeaders headers = new HttpHeaders();
+            try {
+                pusher.push("{\"id\":\"" + n + "\"", NettyDataBufferUtils.retainedSlice(body));
+                callbackService.requestBackends(exchange, headers, body, callbackConfig, Collections.emptyMap()).block();
+            } finally {
+                NettyDataBufferUtils.release(body);
+            }
+            bodies.add((NettyDataBuffer) body);
+        }
+        pusher.close(10000);
+        for (NettyDataBuffer body : bodies) {
+            assertEquals(0, body.getNativeBuffer().refCnt());
+        }
+
+        long allocated = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+        long heapPeak = heapPeak() - heapBefore;
+        LOGGER.info("{} requests of {}MB body to {} receivers, heap allocated by request thread: {}KB/request, peak heap growth: {}MB, legacy: {}KB/request",
+                    requests, bodySize >> 20, receivers, allocated / requests >> 10, heapPeak >> 20, legacyAllocatedBytes(factory, bodySize) >> 10);
+
+        assertEquals((long) bodySize * receivers * requests, received.get());
+        assertEquals(requests, pusher.getPublished());
+        assertTrue(pushed.get() >= (long) bodySize * requests);
+        // the heap numbers depend on the machine and the collector, they are logged for comparison, not asserted
+    }
+
+    @Test
+    void unwrittenBodyReleaseTest() {
+        // the receiver fails before its body is written, like no instance of the service
+        when(mockFizzWebClient.send2service(any(), any(), anyString(), anyString(), any(), any()))
+        .thenReturn(Mono.error(new RuntimeException("no instance")));
+
+        CallbackConfig callbackConfig = new CallbackConfig();
+        callbackConfig.receivers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Receiver r = new Receiver();
+            r.service = "s" + i;
+            r.type = ApiConfig.Type.SERVICE_DISCOVERY;
+            r.path = "/p" + i;
+            callbackConfig.receivers.add(r);
+        }
+
+        NettyDataBuffer body = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT).allocateBuffer(16);
+        body.write("callback".getBytes());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://127.0.0.1:8600/proxy/xservice/callback").build());
+        try {
+            callbackService.requestBackends(exchange, new HttpHeaders(), body, callbackConfig, Collections.emptyMap()).block();
+        } catch (RuntimeException e) {
+            // the error of the first receiver
+        } finally {
+            NettyDataBufferUtils.release(body);
+        }
+        assertEquals(0, body.getNativeBuffer().refCnt());
+    }
+
+    /**
+     * heap allocated for the body per request before: a heap copy, the UTF-8 string and the JSON message
+     */
+    private static long legacyAllocatedBytes(NettyDataBufferFactory factory, int bodySize) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        NettyDataBuffer body = factory.allocateBuffer(bodySize);
+        while (body.writePosition() < bodySize) {
+            body.write((byte) 'a');
+        }
+        long start = threadMXBean.getThreadAllocatedBytes(id);
+        DataBuffer copy = NettyDataBufferUtils.copy2heap(body);
+        String bodyStr = copy.toString(StandardCharsets.UTF_8);
+        StringBuilder b = new StringBuilder();
+        b.append("{\"id\":\"1\",\"body\":").append(com.alibaba.fastjson.JSON.toJSONString(bodyStr)).append('}');
+        String msg = b.toString();
+        long allocated = threadMXBean.getThreadAllocatedBytes(id) - start;
+        assertTrue(msg.length() > bodySize);
+        NettyDataBufferUtils.release(body);
+        return allocated;
+    }
+
+    private static void resetHeapPeak() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long heapUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
 }
@@ -1,8 +1,19 @@
 package we.proxy;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import we.util.ReflectionUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author hongqiaowei
@@ -35,4 +46,26 @@ public class FizzWebClientTests {
         String r6 = fizzWebClient.extractServiceOrAddress("http://127.0.0.1:8600/apath");
         assertEquals(r6, "127.0.0.1:8600");
     }
+
+    @Test
+    void cancelledRequestTest() {
+        FizzWebClient fizzWebClient = new FizzWebClient();
+        AtomicLong clock = new AtomicLong(1);
+        P2cEwmaLoadBalancer lb = new P2cEwmaLoadBalancer(10_000, clock::get);
+        ReflectionUtils.set(fizzWebClient, "loadBalancer", lb);
+        String address = "127.0.0.1:8600";
+        lb.choose("svc", Arrays.asList(address, "127.0.0.1:8601"), Function.identity());
+        long start = lb.start(address);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        lb.complete(address, start, true);
+        double cost = lb.cost(address);
+
+        // the client disconnects while the response is slow
+        Mono<ClientResponse> slow = Mono.<ClientResponse>never().timeout(Duration.ofSeconds(10));
+        Disposable request = fizzWebClient.feedInstanceStats("http://" + address + "/apath", slow).subscribe();
+        assertTrue(lb.cost(address) > cost);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        request.dispose();
+        assertTrue(lb.cost(address) <= cost, "cost " + lb.cost(address) + " > " + cost);
+    }
 }
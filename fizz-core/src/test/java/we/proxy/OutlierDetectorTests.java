@@ -0,0 +1,150 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.proxy;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import we.config.SystemConfig;
+import we.plugin.auth.ApiConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class OutlierDetectorTests {
+
+    private HttpServer    a;
+
+    private HttpServer    b;
+
+    private AtomicBoolean aFail = new AtomicBoolean(false);
+
+    private FizzWebClient fizzWebClient;
+
+    private OutlierDetector outlierDetector;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        a = stubServer(aFail);
+        b = stubServer(new AtomicBoolean(false));
+        outlierDetector = new OutlierDetector(3, 60_000, 300_000);
+        fizzWebClient = new FizzWebClient();
+        ReflectionTestUtils.setField(fizzWebClient, "systemConfig",    new SystemConfig());
+        ReflectionTestUtils.setField(fizzWebClient, "webClient",       WebClient.create());
+        ReflectionTestUtils.setField(fizzWebClient, "outlierDetector", outlierDetector);
+    }
+
+    @AfterEach
+    void tearDown() {
+        a.stop(0);
+        b.stop(0);
+    }
+
+    @Test
+    void ejectAndHealthCheckTest() {
+        String aAddr = "127.0.0.1:" + a.getAddress().getPort();
+        String bAddr = "127.0.0.1:" + b.getAddress().getPort();
+
+        aFail.set(true);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(500, send(aAddr).rawStatusCode());
+        }
+        assertFalse(outlierDetector.isEjected(aAddr));
+        assertEquals(200, send(bAddr).rawStatusCode());
+        assertEquals(500, send(aAddr).rawStatusCode());
+        assertTrue(outlierDetector.isEjected(aAddr));
+        assertFalse(outlierDetector.isEjected(bAddr));
+
+        ApiConfig ac = new ApiConfig();
+        ac.httpHostPorts = Arrays.asList("http://" + aAddr, "http://" + bAddr);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("http://" + bAddr, ac.getNextHttpHostPort(outlierDetector));
+        }
+        List<String> instances = Arrays.asList(aAddr, bAddr);
+        assertEquals(Collections.singletonList(bAddr), outlierDetector.filter(instances, Function.identity()));
+        List<String> allEjected = Collections.singletonList(aAddr);
+        assertSame(allEjected, outlierDetector.filter(allEjected, Function.identity()));
+
+        InstanceHealthChecker checker = new InstanceHealthChecker(outlierDetector, null, null, WebClient.create(), "/health", 1000);
+        checker.check(Collections.singletonMap(aAddr, "http://" + aAddr)).block();
+        assertTrue(outlierDetector.isEjected(aAddr));
+
+        aFail.set(false);
+        checker.check(Collections.singletonMap(aAddr, "http://" + aAddr + "/")).block();
+        assertFalse(outlierDetector.isEjected(aAddr));
+        assertEquals(0, outlierDetector.getEjectedCount());
+    }
+
+    @Test
+    void connectionRefusedTest() throws IOException {
+        int port;
+        try (ServerSocket s = new ServerSocket(0)) {
+            port = s.getLocalPort();
+        }
+        String addr = "127.0.0.1:" + port;
+        InstanceHealthChecker checker = new InstanceHealthChecker(outlierDetector, null, null, WebClient.create(), "/", 1000);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(outlierDetector.isEjected(addr));
+            checker.check(Collections.singletonMap(addr, "http://" + addr)).block();
+        }
+        assertTrue(outlierDetector.isEjected(addr));
+
+        for (int i = 0; i < 3; i++) {
+            String uri = "http://" + addr + "/x";
+            assertThrows(Exception.class, () -> fizzWebClient.send2uri(null, HttpMethod.GET, uri, null, null).block());
+        }
+        assertTrue(outlierDetector.isEjected(addr));
+    }
+
+    private ClientResponse send(String address) {
+        ClientResponse resp = fizzWebClient.send2uri(null, HttpMethod.GET, "http://" + address + "/x", null, null).block();
+        resp.releaseBody().block();
+        return resp;
+    }
+
+    private static HttpServer stubServer(AtomicBoolean fail) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(fail.get() ? 500 : 200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.proxy;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author zhongjie
+ */
+
+public class P2cEwmaLoadBalancerTests {
+
+    private static final Logger LOGGER            = LoggerFactory.getLogger(P2cEwmaLoadBalancerTests.class);
+
+    private static final int  INSTANCES         = 10;
+
+    private static final int  REQUESTS          = 200_000;
+
+    private static final long ARRIVAL_NANOS     = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private static final long LATENCY_NANOS     = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final int  DEGRADED_FACTOR   = 20;
+
+    @Test
+    void unknownAddressTest() {
+        P2cEwmaLoadBalancer lb = new P2cEwmaLoadBalancer(10_000);
+        long start = lb.start("1.1.1.1:80");
+        lb.complete("1.1.1.1:80", start, true);
+        assertEquals(-1, lb.cost("1.1.1.1:80"));
+
+        List<String> instances = Arrays.asList("1.1.1.1:80", "2.2.2.2:80");
+        lb.choose("svc", instances, Function.identity());
+        assertEquals(0, lb.cost("1.1.1.1:80"));
+        lb.start("1.1.1.1:80");
+        assertTrue(lb.cost("1.1.1.1:80") > 0);
+    }
+
+    @Test
+    void trackTest() {
+        P2cEwmaLoadBalancer lb = new P2cEwmaLoadBalancer(10_000);
+        List<String> instances = Arrays.asList("1.1.1.1:80", "2.2.2.2:80");
+        assertFalse(lb.track(instances, Function.identity()));
+        assertEquals(0, lb.cost("2.2.2.2:80"));
+
+        long start = lb.start("2.2.2.2:80");
+        assertFalse(lb.track(instances, Function.identity()));
+        lb.complete("2.2.2.2:80", start, true);
+        assertTrue(lb.track(instances, Function.identity()));
+    }
+
+    /**
+     * Simulates requests to ten instances of a service, one of which is twenty times slower than others,
+     * and compares the latency percentiles of round robin and P2C + EWMA.
+     */
+    @Test
+    void degradedInstanceSimulation() {
+        long[] rr = simulate(null);
+        long[] lb = simulate(new long[1]);
+        LOGGER.info("round robin: {}", percentiles(rr));
+        LOGGER.info("p2c ewma:    {}", percentiles(lb));
+        assertTrue(percentile(lb, 0.99) * 3 < percentile(rr, 0.99));
+    }
+
+    /**
+     * @param clock null for round robin, otherwise the virtual clock of P2C + EWMA load balancer
+     * @return latencies of requests
+     */
+    private static long[] simulate(long[] clock) {
+        long[] now = clock == null ? new long[1] : clock;
+        P2cEwmaLoadBalancer lb = clock == null ? null : new P2cEwmaLoadBalancer(10_000, () -> now[0]);
+        List<String> instances = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            instances.add("10.0.0." + i + ":8080");
+        }
+        Random random = new Random(7);
+        PriorityQueue<long[]> completions = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        long[] latencies = new long[REQUESTS];
+        for (int r = 0; r < REQUESTS; r++) {
+            now[0] = r * ARRIVAL_NANOS;
+            while (!completions.isEmpty() && completions.peek()[0] <= now[0]) {
+                long[] c = completions.poll();
+                long t = now[0];
+                now[0] = c[0];
+                lb.complete(instances.get((int) c[1]), c[2], true);
+                now[0] = t;
+            }
+            String inst = lb == null ? instances.get(r % INSTANCES) : lb.choose("svc", instances, Function.identity());
+            int idx = instances.indexOf(inst);
+            double mean = idx == 0 ? LATENCY_NANOS * DEGRADED_FACTOR : LATENCY_NANOS;
+            long latency = (long) (mean * (0.5 - 0.5 * Math.log(1 - random.nextDouble())));
+            latencies[r] = latency;
+            if (lb != null) {
+                long start = lb.start(inst);
+                completions.add(new long[]{now[0] + latency, idx, start});
+            }
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) (sorted.length * p)];
+    }
+
+    private static String percentiles(long[] sorted) {
+        return "p50 " + TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.5)) + "ms, p99 " + TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.99))
+                + "ms, p99.9 " + TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.999)) + "ms";
+    }
+}
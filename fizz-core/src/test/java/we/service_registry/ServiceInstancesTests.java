@@ -0,0 +1,242 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.service_registry;
+
+import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
+import com.alibaba.cloud.nacos.registry.NacosRegistration;
+import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.alibaba.nacos.api.naming.pojo.ServiceInfo;
+import com.alibaba.nacos.client.naming.core.Balancer;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.CacheRefreshedEvent;
+import com.netflix.discovery.EurekaEventListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.netflix.eureka.CloudEurekaClient;
+import we.service_registry.eureka.FizzEurekaServiceRegistration;
+import we.service_registry.nacos.FizzNacosServiceRegistration;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class ServiceInstancesTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceInstancesTests.class);
+
+    @Test
+    void selectTest() {
+        assertNull(ServiceInstances.roundRobin(new String[0], null).select());
+        assertNull(ServiceInstances.weightedRandom(new String[0], new double[0]).select());
+
+        ServiceInstances rr = ServiceInstances.roundRobin(new String[]{"a:1", "b:2", "c:3"}, null);
+        assertEquals("a:1", rr.select());
+        assertEquals("b:2", rr.select());
+        assertSame(rr, ServiceInstances.roundRobin(new String[]{"a:1", "b:2", "c:3"}, rr));
+        ServiceInstances changed = ServiceInstances.roundRobin(new String[]{"a:1", "b:2", "d:4"}, rr);
+        assertNotSame(rr, changed);
+        assertEquals("d:4", changed.select());
+        assertEquals("a:1", changed.select());
+
+        ServiceInstances wr = ServiceInstances.weightedRandom(new String[]{"a:1", "b:2", "c:3"}, new double[]{1, 3, 0.000001});
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 40_000; i++) {
+            counts.merge(wr.select(), 1, Integer::sum);
+        }
+        assertEquals(10_000, counts.get("a:1"), 1_000);
+        assertEquals(30_000, counts.get("b:2"), 1_000);
+        assertTrue(counts.getOrDefault("c:3", 0) < 10);
+
+        List<Instance> instances = Arrays.asList(instance("10.0.0.1", 8080, 1, true), instance("10.0.0.2", 8080, 3, true), instance("10.0.0.3", 8080, 0, true));
+        counts.clear();
+        for (int i = 0; i < 40_000; i++) {
+            counts.merge(ServiceInstances.weightedRandom(instances, Instance::getWeight).getIp(), 1, Integer::sum);
+        }
+        assertEquals(10_000, counts.get("10.0.0.1"), 1_000);
+        assertEquals(30_000, counts.get("10.0.0.2"), 1_000);
+        assertNull(counts.get("10.0.0.3"));
+        assertNull(ServiceInstances.weightedRandom(Collections.<Instance>emptyList(), Instance::getWeight));
+    }
+
+    @Test
+    void nacosTest() {
+        NamingStub stub = new NamingStub();
+        stub.put("svc", instance("10.0.0.1", 8080, 1, true), instance("10.0.0.2", 8080, 1, false));
+        FizzNacosServiceRegistration registration = nacos(stub);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("10.0.0.1:8080", registration.getInstance("svc"));
+        }
+        assertEquals(1, stub.listeners.size());
+
+        stub.put("svc", instance("10.0.0.3", 8081, 1, true));
+        assertEquals("10.0.0.3:8081", registration.getInstance("svc"));
+
+        stub.put("svc");
+        RuntimeException e = assertThrows(RuntimeException.class, () -> registration.getInstance("svc"));
+        assertEquals("nacos nacos no svc", e.getMessage());
+
+        stub.put("svc", instance("10.0.0.4", 8082, 1, true));
+        assertEquals("10.0.0.4:8082", registration.getInstance("svc"));
+        assertEquals(1, stub.listeners.size());
+    }
+
+    @Test
+    void eurekaTest() {
+        Map<String, List<InstanceInfo>> apps = new ConcurrentHashMap<>();
+        apps.put("svc", Arrays.asList(instanceInfo("10.0.0.1", 8080), instanceInfo("10.0.0.2", 8080)));
+        CloudEurekaClient client = Mockito.mock(CloudEurekaClient.class, Mockito.RETURNS_DEEP_STUBS);
+        Mockito.when(client.getInstancesByVipAddress(Mockito.anyString(), Mockito.eq(false)))
+               .thenAnswer(invocation -> apps.get(invocation.<String>getArgument(0)));
+        FizzEurekaServiceRegistration registration = new FizzEurekaServiceRegistration("eureka", null, null, client);
+        ArgumentCaptor<EurekaEventListener> listener = ArgumentCaptor.forClass(EurekaEventListener.class);
+        Mockito.verify(client).registerEventListener(listener.capture());
+
+        assertEquals("10.0.0.1:8080", registration.getInstance("svc"));
+        assertEquals("10.0.0.2:8080", registration.getInstance("svc"));
+        assertEquals("10.0.0.1:8080", registration.getInstance("svc"));
+        RuntimeException e = assertThrows(RuntimeException.class, () -> registration.getInstance("unknown"));
+        assertEquals("eureka eureka no unknown", e.getMessage());
+
+        apps.put("svc", Arrays.asList(instanceInfo("10.0.0.1", 8080), instanceInfo("10.0.0.3", 8080)));
+        apps.put("unknown", Collections.singletonList(instanceInfo("10.0.0.4", 8080)));
+        assertEquals("10.0.0.2:8080", registration.getInstance("svc"));
+        listener.getValue().onEvent(new CacheRefreshedEvent());
+        assertEquals("10.0.0.1:8080", registration.getInstance("svc"));
+        assertEquals("10.0.0.3:8080", registration.getInstance("svc"));
+        assertEquals("10.0.0.4:8080", registration.getInstance("unknown"));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        int services = 500, instances = 50, n = 1_000_000;
+        NamingStub stub = new NamingStub();
+        String[] names = new String[services];
+        for (int s = 0; s < services; s++) {
+            names[s] = "service-" + s;
+            Instance[] insts = new Instance[instances];
+            for (int i = 0; i < instances; i++) {
+                insts[i] = instance("10.0." + s % 256 + '.' + i, 8000 + i, 1 + i % 3, i % 10 != 0);
+            }
+            stub.put(names[s], insts);
+        }
+        FizzNacosServiceRegistration registration = nacos(stub);
+
+        for (int round = 0; round < 2; round++) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                Instance inst = registration.getInstanceInfo(names[i % services]);
+                sink += (inst.getIp() + ':' + inst.getPort()).length();
+            }
+            long selectOneHealthyInstance = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink += registration.getInstance(names[i % services]).length();
+            }
+            long snapshot = System.nanoTime() - start;
+
+            LOGGER.info("round {}, {} services x {} instances, per lookup: selectOneHealthyInstance {}ns, snapshot {}ns, {}",
+                        round, services, instances, selectOneHealthyInstance / n, snapshot / n, sink);
+        }
+    }
+
+    private static FizzNacosServiceRegistration nacos(NamingStub stub) {
+        NacosDiscoveryProperties properties = new NacosDiscoveryProperties();
+        properties.setGroup("DEFAULT_GROUP");
+        properties.setClusterName("DEFAULT");
+        NacosRegistration registration = new NacosRegistration(null, properties, null);
+        return new FizzNacosServiceRegistration("nacos", registration, null, stub.namingService);
+    }
+
+    private static Instance instance(String ip, int port, double weight, boolean healthy) {
+        Instance instance = new Instance();
+        instance.setIp(ip);
+        instance.setPort(port);
+        instance.setWeight(weight);
+        instance.setHealthy(healthy);
+        instance.setClusterName("DEFAULT");
+        return instance;
+    }
+
+    private static InstanceInfo instanceInfo(String ip, int port) {
+        return InstanceInfo.Builder.newBuilder().setAppName("svc").setIPAddr(ip).setPort(port).build();
+    }
+
+    /**
+     * An in-memory naming service, the instance is selected by the nacos client balancer as the client does
+     */
+    @SuppressWarnings("unchecked")
+    private static class NamingStub {
+
+        final Map<String, ServiceInfo>   serviceInfos = new ConcurrentHashMap<>();
+
+        final Map<String, EventListener> listeners    = new ConcurrentHashMap<>();
+
+        final NamingService              namingService;
+
+        NamingStub() {
+            namingService = (NamingService) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class[]{NamingService.class},
+                    (proxy, method, args) -> {
+                        String service = (String) args[0];
+                        switch (method.getName()) {
+                            case "selectOneHealthyInstance":
+                                String key = args[1] + "@@" + service + "@@" + String.join(",", (List<String>) args[2]);
+                                return Balancer.RandomByWeight.selectHost(serviceInfos.get(key));
+                            case "selectInstances":
+                                return new ArrayList<>(serviceInfos.get(service).getHosts());
+                            case "subscribe":
+                                listeners.put(service, (EventListener) args[3]);
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+            );
+        }
+
+        void put(String service, Instance... instances) {
+            ServiceInfo serviceInfo = new ServiceInfo(service, "DEFAULT");
+            serviceInfo.setGroupName("DEFAULT_GROUP");
+            serviceInfo.setHosts(new ArrayList<>(Arrays.asList(instances)));
+            serviceInfos.put(service, serviceInfo);
+            serviceInfos.put("DEFAULT_GROUP@@" + service + "@@DEFAULT", serviceInfo);
+            EventListener listener = listeners.get(service);
+            if (listener != null) {
+                listener.onEvent(new NamingEvent(service, "DEFAULT_GROUP", "DEFAULT", serviceInfo.getHosts()));
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import we.util.ResourceIdUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+public class FlowStatHeavyHittersTests {
+
+	private static final Logger LOGGER  = LoggerFactory.getLogger(FlowStatHeavyHittersTests.class);
+
+	private static final String SERVICE = "xservice";
+
+	private static final String PATH    = "/ypath";
+
+	@Test
+	void clientResourceTest() {
+		assertTrue(FlowStat.isClientResource(ResourceIdUtils.buildResourceId("app1", null, null, null, null)));
+		assertTrue(FlowStat.isClientResource(ResourceIdUtils.buildResourceId(null, "10.0.0.1", null, SERVICE, null)));
+		assertTrue(FlowStat.isClientResource(ResourceIdUtils.buildResourceId(null, null, "host1", SERVICE, PATH)));
+		assertFalse(FlowStat.isClientResource(ResourceIdUtils.NODE_RESOURCE));
+		assertFalse(FlowStat.isClientResource(ResourceIdUtils.OTHER_RESOURCE));
+		assertFalse(FlowStat.isClientResource(ResourceIdUtils.buildResourceId(null, null, null, SERVICE, PATH)));
+		assertFalse(FlowStat.isClientResource("service1"));
+	}
+
+	@Test
+	void boundedTest() {
+		FlowStat stat = new FlowStat();
+		stat.setHeavyHitters(100);
+		long slot = stat.currentTimeSlotId();
+		String limited = ResourceIdUtils.buildResourceId(null, "10.0.0.1", null, null, null);
+
+		// the resource with limit is always tracked
+		for (int i = 0; i < 1000; i++) {
+			for (int j = i < 100 ? 4 : 1; j > 0; j--) {
+				List<ResourceConfig> rcs = resourceConfigs("10.1." + (i / 256) + '.' + (i % 256));
+				rcs.add(new ResourceConfig(limited, 0, 1_000_000));
+				request(stat, rcs, slot);
+			}
+		}
+		assertEquals(1300, stat.getResourceStat(limited).getTimeSlot(slot).getCounter().get());
+		assertEquals(1300, stat.getResourceStat(ResourceIdUtils.NODE_RESOURCE).getTimeSlot(slot).getCounter().get());
+		assertEquals(900, stat.getResourceStat(ResourceIdUtils.OTHER_RESOURCE).getTimeSlot(slot).getCounter().get());
+		assertEquals(2 + 1 + 100 + 1, stat.resourceStats.size());
+
+		// the tracked resources are dropped once not requested any more and idle
+		stat.decayHeavyHitters();
+		stat.decayHeavyHitters();
+		assertEquals(2 + 1 + 100 + 1, stat.resourceStats.size());
+		String busy = resourceConfigs("10.1.0.0").get(1).getResourceId();
+		stat.getResourceStat(busy).getConcurrentRequests().incrementAndGet();
+		stat.decayHeavyHitters();
+		assertEquals(2 + 1 + 1 + 1, stat.resourceStats.size());
+		stat.getResourceStat(busy).getConcurrentRequests().decrementAndGet();
+		stat.decayHeavyHitters();
+		assertEquals(2 + 1 + 1, stat.resourceStats.size());
+	}
+
+	@Test
+	void distinctIpsTest() {
+		int k = 1000, ips = 100_000, hitters = 10;
+		FlowStat stat = new FlowStat();
+		stat.setHeavyHitters(k);
+		int hitterRequests = requestDistinctIps(stat, ips, hitters);
+		assertTrue(stat.resourceStats.size() <= 2 + k + 1);
+		assertCounted(stat, ips, hitters, hitterRequests);
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void millionIpsBenchmark() {
+		int k = 1000, ips = 1_000_000, hitters = 10;
+		FlowStat stat = new FlowStat();
+		stat.setHeavyHitters(k);
+
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+		long start = System.nanoTime();
+		int hitterRequests = requestDistinctIps(stat, ips, hitters);
+		long elapsed = System.nanoTime() - start;
+		System.gc();
+		long retained = runtime.totalMemory() - runtime.freeMemory() - used;
+		LOGGER.info("{} distinct ips, {} requests, {}ns/request, {} resource stats, retained heap {}KB",
+		            ips, ips + hitterRequests, elapsed / (ips + hitterRequests), stat.resourceStats.size(), retained / 1024);
+		assertTrue(stat.resourceStats.size() <= 2 + k + 1);
+		assertCounted(stat, ips, hitters, hitterRequests);
+
+		// unbounded for comparison
+		FlowStat unbounded = new FlowStat();
+		long slot = unbounded.currentTimeSlotId();
+		int n = 20_000;
+		System.gc();
+		used = runtime.totalMemory() - runtime.freeMemory();
+		for (int i = 0; i < n; i++) {
+			request(unbounded, resourceConfigs("10.2." + (i >> 8) + '.' + (i & 0xff)), slot);
+		}
+		System.gc();
+		retained = runtime.totalMemory() - runtime.freeMemory() - used;
+		LOGGER.info("{} distinct ips unbounded, {} resource stats, retained heap {}KB", n, unbounded.resourceStats.size(), retained / 1024);
+	}
+
+	/**
+	 * Each of the ips requests once, spread over ten time slots, and every tenth request is followed by one of the hitters.
+	 *
+	 * @return the requests of hitters
+	 */
+	private static int requestDistinctIps(FlowStat stat, int ips, int hitters) {
+		long slot = stat.currentTimeSlotId();
+		int hitterRequests = 0;
+		for (int i = 0; i < ips; i++) {
+			String ip = ((i >> 16) & 0xff) + "." + ((i >> 8) & 0xff) + '.' + (i & 0xff) + ".1";
+			long s = slot + i / (ips / 10) * FlowStat.INTERVAL;
+			request(stat, resourceConfigs(ip), s);
+			if (i % 10 == 0) {
+				request(stat, resourceConfigs("hitter" + (i / 10 % hitters)), s);
+				hitterRequests++;
+			}
+		}
+		return hitterRequests;
+	}
+
+	private static void assertCounted(FlowStat stat, int ips, int hitters, int hitterRequests) {
+		long clientRequests = 0;
+		for (ResourceStat rs : stat.resourceStats.values()) {
+			if (FlowStat.isClientResource(rs.getResourceId()) || rs.getResourceId().equals(ResourceIdUtils.OTHER_RESOURCE)) {
+				clientRequests += total(rs);
+			}
+			assertEquals(0, rs.getConcurrentRequests().get());
+		}
+		assertEquals(ips + hitterRequests, clientRequests);
+		assertEquals(ips + hitterRequests, total(stat.getResourceStat(ResourceIdUtils.NODE_RESOURCE)));
+		for (int h = 0; h < hitters; h++) {
+			ResourceStat rs = stat.resourceStats.get(resourceConfigs("hitter" + h).get(1).getResourceId());
+			assertNotNull(rs);
+			assertEquals(hitterRequests / hitters, total(rs));
+		}
+	}
+
+	private static List<ResourceConfig> resourceConfigs(String ip) {
+		List<ResourceConfig> rcs = new ArrayList<>(3);
+		rcs.add(new ResourceConfig(ResourceIdUtils.NODE_RESOURCE, 0, 0));
+		rcs.add(new ResourceConfig(ResourceIdUtils.buildResourceId(null, ip, "host1", SERVICE, PATH), 0, 0));
+		rcs.add(new ResourceConfig(ResourceIdUtils.buildResourceId(null, null, null, SERVICE, PATH), 0, 0));
+		return rcs;
+	}
+
+	private static void request(FlowStat stat, List<ResourceConfig> rcs, long slot) {
+		assertTrue(stat.incrRequest(rcs, slot).isSuccess());
+		stat.addRequestRT(rcs, slot, 1, true, HttpStatus.OK);
+	}
+
+	private static long total(ResourceStat rs) {
+		long total = 0;
+		for (TimeSlot ts : rs.getTimeSlots().values()) {
+			total += ts.getCounter().get();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import we.stats.circuitbreaker.CircuitBreakManager;
+import we.util.ResourceIdUtils;
+
+/**
+ * 
+ * @author Francis Dong
+ *
+ */
+public class MetricsExporterTests {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetricsExporterTests.class);
+
+	@Test
+	public void testScrape() {
+		FlowStat stat = new FlowStat();
+		long slot = stat.currentTimeSlotId() - FlowStat.INTERVAL;
+		int resources = 10_000;
+		incrRequests(stat, slot, resources);
+
+		String text = scrape(exporter(stat), slot);
+
+		assertTrue(text.contains("fizz_metrics_resources " + (resources + 1) + "\n"));
+		assertTrue(text.contains("fizz_metrics_resources_exported 1001\n"));
+		assertTrue(text.contains("fizz_resource_requests{resource=\"" + ResourceIdUtils.NODE_RESOURCE + "\"} 1\n"));
+		assertTrue(text.contains("fizz_resource_requests{resource=\"service9@\\\"path\\\"\"} 10\n"));
+		assertTrue(text.contains("fizz_resource_errors{resource=\"service9@\\\"path\\\"\"} 1\n"));
+		assertTrue(text.contains("fizz_resource_rt_max_milliseconds{resource=\"service9@\\\"path\\\"\"} 19\n"));
+		long requestSamples = Arrays.stream(text.split("\n")).filter(l -> l.startsWith("fizz_resource_requests{")).count();
+		assertEquals(1001, requestSamples);
+		// only resources with 10 requests are exported besides the node
+		assertEquals(1000, Arrays.stream(text.split("\n")).filter(l -> l.startsWith("fizz_resource_requests{") && l.endsWith("} 10")).count());
+		assertEquals(1, Arrays.stream(text.split("\n")).filter(l -> l.equals("# TYPE fizz_resource_requests gauge")).count());
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	public void testScrape50kResourcesBenchmark() {
+		FlowStat stat = new FlowStat();
+		long slot = stat.currentTimeSlotId() - FlowStat.INTERVAL;
+		int resources = 50_000;
+		incrRequests(stat, slot, resources);
+		MetricsExporter exporter = exporter(stat);
+
+		String text = null;
+		long start = 0;
+		int n = 20;
+		for (int i = 0; i < n * 2; i++) {
+			if (i == n) {
+				start = System.nanoTime();
+			}
+			text = scrape(exporter, slot);
+		}
+		long cost = System.nanoTime() - start;
+		LOGGER.info("scrape {} resources: {}us, {} chars", resources, cost / n / 1000, text.length());
+	}
+
+	/**
+	 * Resource i gets i % 10 + 1 requests, the first of which fails.
+	 */
+	private static void incrRequests(FlowStat stat, long slot, int resources) {
+		for (int i = 0; i < resources; i++) {
+			String resource = "service" + i + "@\"path\"";
+			for (int j = 0; j <= i % 10; j++) {
+				stat.incrRequest(resource, slot, null, null);
+				stat.addRequestRT(resource, slot, 10 + j, j != 0);
+			}
+		}
+		stat.incrRequest(ResourceIdUtils.NODE_RESOURCE, slot, null, null);
+	}
+
+	private static MetricsExporter exporter(FlowStat stat) {
+		MetricsExporter exporter = new MetricsExporter();
+		ReflectionTestUtils.setField(exporter, "flowStat", stat);
+		ReflectionTestUtils.setField(exporter, "circuitBreakManager", new CircuitBreakManager());
+		ReflectionTestUtils.setField(exporter, "maxResources", 1000);
+		return exporter;
+	}
+
+	private static String scrape(MetricsExporter exporter, long slot) {
+		List<DataBuffer> buffers = exporter.scrape(new DefaultDataBufferFactory(), slot).collectList().block();
+		StringBuilder b = new StringBuilder();
+		for (DataBuffer buffer : buffers) {
+			b.append(buffer.toString(StandardCharsets.UTF_8));
+			DataBufferUtils.release(buffer);
+		}
+		return b.toString();
+	}
+}
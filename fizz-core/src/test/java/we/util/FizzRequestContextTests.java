@@ -0,0 +1,289 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import we.filter.FilterResult;
+import we.plugin.auth.ApiConfig;
+import we.proxy.Route;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author zhongjie
+ */
+
+public class FizzRequestContextTests {
+
+    private static final Logger       LOGGER     = LoggerFactory.getLogger(FizzRequestContextTests.class);
+
+    private static final FilterResult PREPROCESS = FilterResult.SUCCESS("preprocessFilter");
+
+    @Test
+    void accessorTest() {
+        WebUtils.setGatewayPrefix("/proxy");
+        MockServerWebExchange exchange = exchange();
+        assertSame(FizzRequestContext.get(exchange), WebUtils.getRequestContext(exchange));
+
+        assertFalse(WebUtils.isAdminReq(exchange));
+        assertFalse(WebUtils.isFizzReq(exchange));
+        WebUtils.setFizzReq(exchange);
+        assertTrue(WebUtils.isFizzReq(exchange));
+
+        assertEquals(exchange.getRequest().getId(), WebUtils.getTraceId(exchange));
+        WebUtils.setTraceId(exchange, "trace-1");
+        assertEquals("trace-1", WebUtils.getTraceId(exchange));
+
+        assertEquals("xservice", WebUtils.getClientService(exchange));
+        assertEquals("/ypath", WebUtils.getClientReqPath(exchange));
+        assertEquals("/proxy/", WebUtils.getClientReqPathPrefix(exchange));
+        assertEquals("a=b&c=d", WebUtils.getClientReqQuery(exchange));
+        assertEquals("1.1.1.1", WebUtils.getOriginIp(exchange));
+        assertNull(WebUtils.getClientReqQuery(exchange(MockServerHttpRequest.get("http://127.0.0.1:8600/proxy/xservice/ypath").build())));
+
+        // set by others as before
+        MockServerWebExchange other = exchange();
+        other.getAttributes().put("oi@", "6.6.6.6");
+        other.getAttributes().put(WebUtils.ROUTE, new Route());
+        assertEquals("6.6.6.6", WebUtils.getOriginIp(other));
+        assertSame(other.getAttribute(WebUtils.ROUTE), WebUtils.getRoute(other));
+
+        Route route = new Route();
+        WebUtils.setRoute(exchange, route);
+        WebUtils.setBackendService(exchange, "bservice");
+        WebUtils.setBackendPath(exchange, "/bpath");
+        assertSame(route, WebUtils.getRoute(exchange));
+        assertEquals("bservice", WebUtils.getBackendService(exchange));
+        assertEquals("/bpath", WebUtils.getBackendPath(exchange));
+
+        assertNull(FizzRequestContext.get(exchange).getAppendHeaders());
+        assertEquals(exchange.getRequest().getHeaders(), WebUtils.mergeAppendHeaders(exchange));
+        WebUtils.appendHeader(exchange, "h", "v");
+        assertEquals(Collections.singletonMap("h", "v"), FizzRequestContext.get(exchange).getAppendHeaders());
+        assertEquals("v", WebUtils.mergeAppendHeaders(exchange).getFirst("h"));
+    }
+
+    @Test
+    void filterResultTest() {
+        MockServerWebExchange exchange = exchange();
+        assertNull(WebUtils.getFilterContext(exchange));
+        assertNull(WebUtils.getPrevFilterResult(exchange));
+
+        FizzRequestContext ctx = FizzRequestContext.get(exchange);
+        ctx.setPrevFilterResult(PREPROCESS);
+        assertSame(PREPROCESS, WebUtils.getPrevFilterResult(exchange));
+        assertNull(WebUtils.getApiConfig(exchange));
+
+        for (int i = 0; i < 6; i++) {
+            WebUtils.transmitSuccessFilterResult(exchange, "filter" + i, Collections.singletonMap("k", i));
+        }
+        WebUtils.transmitSuccessFilterResult(exchange, "filter1", Collections.singletonMap("k", 10));
+        assertEquals(10, WebUtils.getFilterResultDataItem(exchange, "filter1", "k"));
+        assertEquals(5, WebUtils.getFilterResultDataItem(exchange, "filter5", "k"));
+        assertEquals("filter1", WebUtils.getPrevFilterResult(exchange).id);
+        assertNull(WebUtils.getFilterResult(exchange, "filter6"));
+
+        Map<String, FilterResult> fc = WebUtils.getFilterContext(exchange);
+        assertEquals(7, fc.size());
+        assertSame(fc.get(WebUtils.PREV_FILTER_RESULT), fc.get("filter1"));
+        WebUtils.transmitFailFilterResult(exchange, "filter6", new RuntimeException("fail"));
+        assertSame(fc.get("filter6"), WebUtils.getPrevFilterResult(exchange));
+        assertFalse(fc.get(WebUtils.PREV_FILTER_RESULT).success);
+
+        ApiConfig ac = new ApiConfig();
+        WebUtils.setAuthResult(exchange, Result.succ(ac));
+        assertSame(ac, WebUtils.getApiConfig(exchange));
+        MockServerWebExchange other = exchange();
+        FizzRequestContext.get(other).setPrevFilterResult(PREPROCESS);
+        WebUtils.transmitSuccessFilterResult(other, "authPlugin", Collections.singletonMap("result", Result.succ(ac)));
+        assertSame(ac, WebUtils.getApiConfig(other));
+
+        WebUtils.buildDirectResponseAndBindContext(exchange, org.springframework.http.HttpStatus.OK, null, "ok");
+        assertNotNull(WebUtils.getDirectResponse(exchange));
+    }
+
+    @Test
+    void requestParityTest() {
+        WebUtils.setGatewayPrefix("/proxy");
+        Route route = new Route();
+        Result<ApiConfig> auth = Result.succ(new ApiConfig());
+        assertEquals(legacyRequest(exchange(), route, auth), request(exchange(), route, auth));
+    }
+
+    /**
+     * The accessors called for a request on the way to the backend, by the context and by the exchange attributes as before,
+     * the exchanges are created out of the measurement.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        WebUtils.setGatewayPrefix("/proxy");
+        int batch = 1_000, batches = 100;
+        Route route = new Route();
+        Result<ApiConfig> auth = Result.succ(new ApiConfig());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+
+        for (int round = 0; round < 2; round++) {
+            long legacyNanos = 0, legacyBytes = 0, contextNanos = 0, contextBytes = 0, sink = 0;
+            for (int b = 0; b < batches; b++) {
+                MockServerWebExchange[] exchanges = new MockServerWebExchange[batch];
+                for (int i = 0; i < batch; i++) {
+                    exchanges[i] = exchange();
+                }
+                long bytes = threads.getThreadAllocatedBytes(tid);
+                long start = System.nanoTime();
+                for (MockServerWebExchange exchange : exchanges) {
+                    sink += legacyRequest(exchange, route, auth);
+                }
+                legacyNanos += System.nanoTime() - start;
+                legacyBytes += threads.getThreadAllocatedBytes(tid) - bytes;
+
+                for (int i = 0; i < batch; i++) {
+                    exchanges[i] = exchange();
+                }
+                bytes = threads.getThreadAllocatedBytes(tid);
+                start = System.nanoTime();
+                for (MockServerWebExchange exchange : exchanges) {
+                    sink += request(exchange, route, auth);
+                }
+                contextNanos += System.nanoTime() - start;
+                contextBytes += threads.getThreadAllocatedBytes(tid) - bytes;
+            }
+            int n = batch * batches;
+            LOGGER.info("round {}, per request, attributes / context: {}ns / {}ns, allocated {}B / {}B, {}",
+                        round, legacyNanos / n, contextNanos / n, legacyBytes / n, contextBytes / n, sink);
+            if (round == 1) {
+                // the times are close and depend on the machine, they are only logged
+                assertTrue(contextBytes < legacyBytes);
+            }
+        }
+    }
+
+    private static int request(ServerWebExchange exchange, Route route, Result<ApiConfig> auth) {
+        int sink = 0;
+        sink += WebUtils.getClientService(exchange).length();
+        WebUtils.setTraceId(exchange, "fizz-trace");
+        FizzRequestContext.get(exchange).setPrevFilterResult(PREPROCESS);
+        WebUtils.transmitSuccessFilterResult(exchange, "statPlugin", null);
+        WebUtils.setAuthResult(exchange, auth);
+        WebUtils.transmitSuccessFilterResult(exchange, "authPlugin", null);
+        sink += WebUtils.getAuthResult(exchange).code;
+        WebUtils.setRoute(exchange, route);
+        WebUtils.appendHeader(exchange, "X-Fizz", "1");
+        for (int f = 0; f < 5; f++) {
+            sink += WebUtils.isAdminReq(exchange) || WebUtils.isFizzReq(exchange) ? 0 : 1;
+            sink += WebUtils.getTraceId(exchange).length();
+        }
+        sink += WebUtils.getRoute(exchange) == route ? 1 : 0;
+        sink += WebUtils.getClientReqPath(exchange).length();
+        sink += WebUtils.getClientReqQuery(exchange).length();
+        sink += WebUtils.getOriginIp(exchange).length();
+        sink += WebUtils.getPrevFilterResult(exchange).success ? 1 : 0;
+        sink += FizzRequestContext.get(exchange).getAppendHeaders().size();
+        return sink;
+    }
+
+    /**
+     * What {@link #request} did by the exchange attributes
+     */
+    @SuppressWarnings("unchecked")
+    private static int legacyRequest(ServerWebExchange exchange, Route route, Result<ApiConfig> auth) {
+        Map<String, Object> eas = exchange.getAttributes();
+        int sink = 0;
+        sink += legacyCompute(exchange, "cs@", FizzRequestContextTests::service).length();
+        eas.put(WebUtils.TRACE_ID, "fizz-trace");
+        Map<String, FilterResult> fc = new HashMap<>();
+        fc.put(WebUtils.PREV_FILTER_RESULT, PREPROCESS);
+        eas.put(WebUtils.FILTER_CONTEXT, fc);
+        eas.put(WebUtils.APPEND_HEADERS, new HashMap<String, String>(8));
+        legacyBind(exchange, FilterResult.SUCCESS_WITH("statPlugin", null));
+        legacyBind(exchange, FilterResult.SUCCESS_WITH("authPlugin", Collections.singletonMap("result", auth)));
+        Map<String, FilterResult> c = (Map<String, FilterResult>) exchange.getAttribute(WebUtils.FILTER_CONTEXT);
+        sink += ((Result<ApiConfig>) c.get("authPlugin").data.get("result")).code;
+        eas.put(WebUtils.ROUTE, route);
+        ((Map<String, String>) exchange.getAttribute(WebUtils.APPEND_HEADERS)).put("X-Fizz", "1");
+        for (int f = 0; f < 5; f++) {
+            sink += exchange.getAttribute(WebUtils.ADMIN_REQUEST) != null || exchange.getAttribute(WebUtils.FIZZ_REQUEST) != null ? 0 : 1;
+            sink += ((String) exchange.getAttribute(WebUtils.TRACE_ID)).length();
+        }
+        sink += exchange.getAttribute(WebUtils.ROUTE) == route ? 1 : 0;
+        sink += legacyCompute(exchange, "crp@", FizzRequestContextTests::path).length();
+        sink += legacyCompute(exchange, "crq@", FizzRequestContextTests::query).length();
+        sink += legacyCompute(exchange, "oi@", e -> StringUtils.split(e.getRequest().getHeaders().getFirst("X-FORWARDED-FOR"), Consts.S.COMMA)[0].trim()).length();
+        sink += ((Map<String, FilterResult>) exchange.getAttribute(WebUtils.FILTER_CONTEXT)).get(WebUtils.PREV_FILTER_RESULT).success ? 1 : 0;
+        sink += ((Map<String, String>) exchange.getAttribute(WebUtils.APPEND_HEADERS)).size();
+        return sink;
+    }
+
+    private static String legacyCompute(ServerWebExchange exchange, String attribute, Function<ServerWebExchange, String> value) {
+        String v = exchange.getAttribute(attribute);
+        if (v == null) {
+            v = value.apply(exchange);
+            exchange.getAttributes().put(attribute, v);
+        }
+        return v;
+    }
+
+    private static String service(ServerWebExchange exchange) {
+        String p = exchange.getRequest().getPath().value();
+        int secFS = p.indexOf('/', 1);
+        return p.substring(secFS + 1, p.indexOf('/', secFS + 1));
+    }
+
+    private static String query(ServerWebExchange exchange) {
+        String qry = exchange.getRequest().getURI().getQuery();
+        if (StringUtils.indexOfAny(qry, Consts.S.LEFT_BRACE, Consts.S.FORWARD_SLASH, Consts.S.HASH) > 0) {
+            qry = exchange.getRequest().getURI().getRawQuery();
+        }
+        return qry;
+    }
+
+    private static String path(ServerWebExchange exchange) {
+        String p = exchange.getRequest().getPath().value();
+        int secFS = p.indexOf('/', 1);
+        return p.substring(p.indexOf('/', secFS + 1));
+    }
+
+    private static void legacyBind(ServerWebExchange exchange, FilterResult fr) {
+        Map<String, FilterResult> fc = exchange.getAttribute(WebUtils.FILTER_CONTEXT);
+        fc.put(fr.id, fr);
+        fc.put(WebUtils.PREV_FILTER_RESULT, fr);
+    }
+
+    private static MockServerWebExchange exchange() {
+        return exchange(MockServerHttpRequest.get("http://127.0.0.1:8600/proxy/xservice/ypath?a=b&c=d").header("X-Forwarded-For", "1.1.1.1").build());
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest request) {
+        return MockServerWebExchange.from(request);
+    }
+}
@@ -17,6 +17,8 @@
 
 package we.plugin.basicAuth;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +36,7 @@ import we.util.ReactorUtils;
 import we.util.WebUtils;
 
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -62,6 +65,11 @@ public class BasicAuthPluginFilter implements FizzPluginFilter {
 
 	private String customConfigCache = null;
 
+	/**
+	 * Route level users parsed from route config, the route config map is compared by reference
+	 */
+	private final Cache<Map<String, Object>, Map<String, String>> routeUsersCache = CacheBuilder.newBuilder().weakKeys().build();
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Mono<Void> filter(ServerWebExchange exchange, Map<String, Object> config) {
@@ -79,11 +87,17 @@ public class BasicAuthPluginFilter implements FizzPluginFilter {
 			}
 
 			// route level config
-			Map<String, String> routeUsers = new HashMap<>();
-			String routeLevelConfig = (String) config.get("users");
-			if (StringUtils.isNotBlank(routeLevelConfig)) {
-				Map<String, String> tmp = (Map<String, String>) JacksonUtils.readValue(routeLevelConfig, Map.class);
-				routeUsers.putAll(tmp);
+			Map<String, String> routeUsers = routeUsersCache.getIfPresent(config);
+			if (routeUsers == null) {
+				Map<String, String> users = new HashMap<>();
+				String routeLevelConfig = (String) config.get("users");
+				if (StringUtils.isNotBlank(routeLevelConfig)) {
+					Map<String, String> tmp = (Map<String, String>) JacksonUtils.readValue(routeLevelConfig, Map.class);
+					users.putAll(tmp);
+				}
+				// shared by the requests of the route
+				routeUsers = Collections.unmodifiableMap(users);
+				routeUsersCache.put(config, routeUsers);
 			}
 
 			// check header auth
@@ -1,5 +1,7 @@
 package we.plugin.core.filter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.http.server.reactive.ServerHttpRequest;
@@ -17,6 +19,7 @@ import we.util.WebUtils;
 
 import javax.annotation.Resource;
 import java.lang.reflect.ParameterizedType;
+import java.util.Collections;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -38,6 +41,16 @@ public abstract class AbstractFizzPlugin<RouterCfg, PluginCfg> implements FizzPl
     public final Function<String, String> nameExPlCfgParsed = in -> "fizz.pl.pl.cfg.parsed." + pluginName();
     @Resource
     private ApiConfigService apiConfigService;
+    // 解析后的配置，以原始配置对象为 key（按引用比较），配置更新后原始配置对象随之替换
+    private final Cache<Object, Object> parsedRouterCfgs = CacheBuilder.newBuilder().weakKeys().build();
+    private final Cache<Object, Object> parsedPluginCfgs = CacheBuilder.newBuilder().weakKeys().build();
+    private volatile Class<RouterCfg> routerCfgClass;
+    private volatile Class<PluginCfg> pluginCfgClass;
+    private String nameApiCfg;
+    private String nameRtCfg;
+    private String namePlCfg;
+    private String nameRtCfgParsed;
+    private String namePlCfgParsed;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, Map<String, Object> config) {
@@ -52,19 +65,27 @@ public abstract class AbstractFizzPlugin<RouterCfg, PluginCfg> implements FizzPl
      * 获取路由级别插件配置
      */
     public RouterCfg routerConfig(ServerWebExchange exchange) {
-        if (originRouterCfg(exchange) == null) {
+        Map<String, Object> originRouterCfg = originRouterCfg(exchange);
+        if (originRouterCfg == null) {
             return null;
         }
-        RouterCfg routerCfgInAttr = exchange.getAttribute(nameExRtCfgParsed.apply(pluginName()));
+        RouterCfg routerCfgInAttr = exchange.getAttribute(nameRtCfgParsed());
         if (routerCfgInAttr != null) {
             return routerCfgInAttr;
         }
-        Class<RouterCfg> cfgClass = (Class<RouterCfg>) ((ParameterizedType) getClass().getGenericSuperclass())
-                .getActualTypeArguments()[0];
-        FizzConfig fizzConfig = AnnotationUtils.findAnnotation(cfgClass, FizzConfig.class);
-        Class<? extends ContentParser> cfgParser = fizzConfig == null ? JsonParser.class : fizzConfig.contentParser();
-        RouterCfg routerCfg = Fizz.context.getBean(cfgParser).parseRouterCfg(originRouterCfg(exchange), cfgClass);
-        putAttr2exchange(exchange, nameExRtCfgParsed.apply(pluginName()), routerCfg);
+        RouterCfg routerCfg = (RouterCfg) parsedRouterCfgs.getIfPresent(originRouterCfg);
+        if (routerCfg == null) {
+            Class<RouterCfg> cfgClass = routerCfgClass;
+            if (cfgClass == null) {
+                cfgClass = (Class<RouterCfg>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+                routerCfgClass = cfgClass;
+            }
+            routerCfg = shared(contentParser(cfgClass).parseRouterCfg(originRouterCfg, cfgClass));
+            if (routerCfg != null) {
+                parsedRouterCfgs.put(originRouterCfg, routerCfg);
+            }
+        }
+        putAttr2exchange(exchange, nameRtCfgParsed(), routerCfg);
         return routerCfg;
     }
 
@@ -72,41 +93,65 @@ public abstract class AbstractFizzPlugin<RouterCfg, PluginCfg> implements FizzPl
      * 获取插件级别插件配置
      */
     public PluginCfg pluginConfig(ServerWebExchange exchange) {
-        if (originPluginCfg(exchange) == null) {
+        String originPluginCfg = originPluginCfg(exchange);
+        if (originPluginCfg == null) {
             return null;
         }
-        PluginCfg pluginCfgInAttr = exchange.getAttribute(nameExPlCfgParsed.apply(pluginName()));
+        PluginCfg pluginCfgInAttr = exchange.getAttribute(namePlCfgParsed());
         if (pluginCfgInAttr != null) {
             return pluginCfgInAttr;
         }
-        Class<PluginCfg> cfgClass = (Class<PluginCfg>) ((ParameterizedType) getClass().getGenericSuperclass())
-                .getActualTypeArguments()[1];
+        PluginCfg pluginCfg = (PluginCfg) parsedPluginCfgs.getIfPresent(originPluginCfg);
+        if (pluginCfg == null) {
+            Class<PluginCfg> cfgClass = pluginCfgClass;
+            if (cfgClass == null) {
+                cfgClass = (Class<PluginCfg>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[1];
+                pluginCfgClass = cfgClass;
+            }
+            pluginCfg = shared(contentParser(cfgClass).parsePluginCfg(originPluginCfg, cfgClass));
+            if (pluginCfg != null) {
+                parsedPluginCfgs.put(originPluginCfg, pluginCfg);
+            }
+        }
+        putAttr2exchange(exchange, namePlCfgParsed(), pluginCfg);
+        return pluginCfg;
+    }
+
+    /**
+     * 解析后的配置被路由的所有请求共享，Map 类型的配置以只读视图缓存，其它类型的配置不应被修改
+     */
+    private static <T> T shared(T cfg) {
+        if (cfg instanceof Map) {
+            return (T) Collections.unmodifiableMap((Map<?, ?>) cfg);
+        }
+        return cfg;
+    }
+
+    private ContentParser contentParser(Class<?> cfgClass) {
         FizzConfig fizzConfig = AnnotationUtils.findAnnotation(cfgClass, FizzConfig.class);
         Class<? extends ContentParser> cfgParser = fizzConfig == null ? JsonParser.class : fizzConfig.contentParser();
-        PluginCfg pluginCfg = Fizz.context.getBean(cfgParser).parsePluginCfg(originPluginCfg(exchange), cfgClass);
-        putAttr2exchange(exchange, nameExPlCfgParsed.apply(pluginName()), pluginCfg);
-        return pluginCfg;
+        return Fizz.context.getBean(cfgParser);
     }
 
     /**
      * 获取原始路由级别插件配置
      */
     public <T> T originRouterCfg(ServerWebExchange exchange) {
-        return exchange.getAttribute(nameExRtCfg.apply(pluginName()));
+        return exchange.getAttribute(nameRtCfg());
     }
 
     /**
      * 获取原始插件级别插件配置
      */
     public <T> T originPluginCfg(ServerWebExchange exchange) {
-        return exchange.getAttribute(nameExPlCfg.apply(pluginName()));
+        return exchange.getAttribute(namePlCfg());
     }
 
     /**
      * 获取路由配置
      */
     public ApiConfig apiConfig(ServerWebExchange exchange) {
-        return exchange.getAttribute(nameExApiCfg.apply(pluginName()));
+        return exchange.getAttribute(nameApiCfg());
     }
 
     protected void putAttr2exchange(ServerWebExchange exchange, String key, Object val) {
@@ -117,18 +162,57 @@ public abstract class AbstractFizzPlugin<RouterCfg, PluginCfg> implements FizzPl
     }
 
     private void initConfig(ServerWebExchange exchange, Map<String, Object> config) {
-        ServerHttpRequest req = exchange.getRequest();
-        ApiConfig apiConfig = apiConfigService.getApiConfig(WebUtils.getAppId(exchange),
-                WebUtils.getClientService(exchange), req.getMethod(), WebUtils.getClientReqPath(exchange));
+        // 复用鉴权时匹配的 api 配置，避免重复匹配
+        ApiConfig apiConfig = WebUtils.getApiConfig(exchange);
+        if (apiConfig == null) {
+            ServerHttpRequest req = exchange.getRequest();
+            apiConfig = apiConfigService.getApiConfig(WebUtils.getAppId(exchange),
+                    WebUtils.getClientService(exchange), req.getMethod(), WebUtils.getClientReqPath(exchange));
+        }
         String fixedConfig = (String) config.get(PluginConfig.CUSTOM_CONFIG);
         if (log.isTraceEnabled()) {
             log.trace("api config : {}", apiConfig);
             log.trace("router config : {}", config);
             log.trace("plugin config : {}", fixedConfig);
         }
-        putAttr2exchange(exchange, nameExApiCfg.apply(pluginName()), apiConfig);
-        putAttr2exchange(exchange, nameExRtCfg.apply(pluginName()), config);
-        putAttr2exchange(exchange, nameExPlCfg.apply(pluginName()), fixedConfig);
+        putAttr2exchange(exchange, nameApiCfg(), apiConfig);
+        putAttr2exchange(exchange, nameRtCfg(), config);
+        putAttr2exchange(exchange, namePlCfg(), fixedConfig);
+    }
+
+    private String nameApiCfg() {
+        if (nameApiCfg == null) {
+            nameApiCfg = nameExApiCfg.apply(pluginName());
+        }
+        return nameApiCfg;
+    }
+
+    private String nameRtCfg() {
+        if (nameRtCfg == null) {
+            nameRtCfg = nameExRtCfg.apply(pluginName());
+        }
+        return nameRtCfg;
+    }
+
+    private String namePlCfg() {
+        if (namePlCfg == null) {
+            namePlCfg = nameExPlCfg.apply(pluginName());
+        }
+        return namePlCfg;
+    }
+
+    private String nameRtCfgParsed() {
+        if (nameRtCfgParsed == null) {
+            nameRtCfgParsed = nameExRtCfgParsed.apply(pluginName());
+        }
+        return nameRtCfgParsed;
+    }
+
+    private String namePlCfgParsed() {
+        if (namePlCfgParsed == null) {
+            namePlCfgParsed = nameExPlCfgParsed.apply(pluginName());
+        }
+        return namePlCfgParsed;
     }
 
     /**
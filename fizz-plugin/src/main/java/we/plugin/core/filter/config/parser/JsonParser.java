@@ -33,7 +33,7 @@ public class JsonParser implements ContentParser {
             , BigDecimal.class
             , Boolean.class
     );
-    private static final Map<Class<?>, List<Field>> FIELD_CACHE = Maps.newHashMap();
+    private static final Map<Class<?>, List<Field>> FIELD_CACHE = Maps.newConcurrentMap();
     @Resource
     private ObjectMapper objectMapper;
 
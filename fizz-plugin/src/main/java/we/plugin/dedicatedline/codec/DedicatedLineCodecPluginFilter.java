@@ -17,16 +17,13 @@
 
 package we.plugin.dedicatedline.codec;
 
-import cn.hutool.crypto.SecureUtil;
 import cn.hutool.crypto.symmetric.SymmetricAlgorithm;
-import cn.hutool.crypto.symmetric.SymmetricCrypto;
 import org.apache.commons.lang3.StringUtils;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.NettyDataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -43,6 +40,7 @@ import we.spring.http.server.reactive.ext.FizzServerHttpRequestDecorator;
 import we.spring.http.server.reactive.ext.FizzServerHttpResponseDecorator;
 import we.util.Consts;
 import we.util.NettyDataBufferUtils;
+import we.util.SymmetricCryptoContext;
 import we.util.WebUtils;
 
 import javax.annotation.Resource;
@@ -60,6 +58,8 @@ public class DedicatedLineCodecPluginFilter extends RequestBodyPlugin {
 
     public static final String DEDICATED_LINE_CODEC_PLUGIN_FILTER = "dedicatedLineCodecPlugin";
 
+    private static final SymmetricCryptoContext aes = SymmetricCryptoContext.of(SymmetricAlgorithm.AES);
+
     @Resource
     private SystemConfig systemConfig;
 
@@ -92,9 +92,7 @@ public class DedicatedLineCodecPluginFilter extends RequestBodyPlugin {
                         } else {
                             if (StringUtils.isNotBlank(cryptoKey)) {
                                 getDelegate().getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
-                                byte[] bytes = remoteResponseBody.asByteBuffer().array();
-                                NettyDataBuffer from = NettyDataBufferUtils.from(encrypt(bytes, cryptoKey));
-                                return Mono.just(from);
+                                return Mono.just(aes.encrypt(cryptoKey, remoteResponseBody));
                             } else {
                                 return Mono.just(remoteResponseBody);
                             }
@@ -123,9 +121,7 @@ public class DedicatedLineCodecPluginFilter extends RequestBodyPlugin {
     }*/
 
     public byte[] encrypt(byte[] data, String secretKey) {
-        byte[] key = SecureUtil.decode(secretKey);
-        SymmetricCrypto symmetric = new SymmetricCrypto(SymmetricAlgorithm.AES, key);
-        return symmetric.encrypt(data);
+        return aes.encrypt(secretKey, data);
     }
 
     /*public String decrypt(String data, String secretKey) {
@@ -138,8 +134,6 @@ public class DedicatedLineCodecPluginFilter extends RequestBodyPlugin {
     }*/
 
     public byte[] decrypt(byte[] data, String secretKey) {
-        byte[] key = SecureUtil.decode(secretKey);
-        SymmetricCrypto symmetric = new SymmetricCrypto(SymmetricAlgorithm.AES, key);
-        return symmetric.decrypt(data);
+        return aes.decrypt(secretKey, data);
     }
 }
@@ -31,8 +31,9 @@ import we.dedicated_line.DedicatedLineService;
 import we.flume.clients.log4j2appender.LogService;
 import we.plugin.FizzPluginFilter;
 import we.plugin.FizzPluginFilterChain;
-import we.util.DigestUtils;
 import we.util.ReactorUtils;
+import we.util.ReplayCache;
+import we.util.SignUtils;
 import we.util.WebUtils;
 
 import javax.annotation.Resource;
@@ -49,6 +50,12 @@ public class DedicatedLinePairingPluginFilter implements FizzPluginFilter {
 
     public static final String DEDICATED_LINE_PAIRING_PLUGIN_FILTER = "dedicatedLinePairingPlugin";
 
+    private static final long   TIMESTAMP_OFFSET = 5 * 60 * 1000;
+
+    private static final int    MAX_REPLAY_CACHE_SIZE = 100_000;
+
+    private final ReplayCache replayCache = new ReplayCache(MAX_REPLAY_CACHE_SIZE, TIMESTAMP_OFFSET);
+
     @Resource
     private SystemConfig systemConfig;
 
@@ -96,24 +103,20 @@ public class DedicatedLinePairingPluginFilter implements FizzPluginFilter {
             return false;
         }
 
-        // SHA256(dedicatedLineId+_+ts+_+secretkey)
-        String data = dedicatedLineId + "_" + ts + "_" + secretkey;
-        if (!DigestUtils.sha256Hex(data).equals(sign)) {
+        // validate timestamp before the sign, which costs a digest
+        long now = System.currentTimeMillis();
+        if (!SignUtils.isTimestampValid(ts, now, TIMESTAMP_OFFSET)) {
+            log.warn("invalid or expired timestamp: {}", ts);
             return false;
         }
 
-        // validate timestamp
-        long t = 0;
-        try {
-            t = Long.valueOf(ts).longValue();
-        } catch (Exception e) {
-            log.warn("invalid timestamp: {}", ts);
+        // SHA256(dedicatedLineId+_+ts+_+secretkey)
+        if (!SignUtils.checkSha256(dedicatedLineId, ts, secretkey, sign)) {
             return false;
         }
-        long now = System.currentTimeMillis();
-        long offset = 5 * 60 * 1000;
-        if (t < now - offset || t > now + offset) {
-            log.warn("timestamp expired: {}", ts);
+
+        if (systemConfig.fizzDedicatedLineServerRequestReplayCheck() && !replayCache.firstSeen(dedicatedLineId, ts, sign, now)) {
+            log.warn("replayed request, dedicated line: {}, timestamp: {}", dedicatedLineId, ts);
             return false;
         }
 
@@ -34,6 +34,21 @@ public class GlobalConfig {
 	 */
 	private String publicKey;
 
+	/**
+	 * Max number of verified tokens to cache, 0 means verified token cache is disabled
+	 */
+	private int tokenCacheSize = 0;
+
+	/**
+	 * Max seconds a verified token is cached, a token is never cached beyond its exp claim
+	 */
+	private int tokenCacheTtl = 300;
+
+	/**
+	 * Seconds a rejected token is cached, 0 means rejected token is not cached
+	 */
+	private int rejectedTokenCacheTtl = 5;
+
 	public String getSecretKey() {
 		return secretKey;
 	}
@@ -50,4 +65,28 @@ public class GlobalConfig {
 		this.publicKey = publicKey;
 	}
 
-}
\ No newline at end of file
+	public int getTokenCacheSize() {
+		return tokenCacheSize;
+	}
+
+	public void setTokenCacheSize(int tokenCacheSize) {
+		this.tokenCacheSize = tokenCacheSize;
+	}
+
+	public int getTokenCacheTtl() {
+		return tokenCacheTtl;
+	}
+
+	public void setTokenCacheTtl(int tokenCacheTtl) {
+		this.tokenCacheTtl = tokenCacheTtl;
+	}
+
+	public int getRejectedTokenCacheTtl() {
+		return rejectedTokenCacheTtl;
+	}
+
+	public void setRejectedTokenCacheTtl(int rejectedTokenCacheTtl) {
+		this.rejectedTokenCacheTtl = rejectedTokenCacheTtl;
+	}
+
+}
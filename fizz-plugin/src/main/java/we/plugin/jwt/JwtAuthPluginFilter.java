@@ -35,10 +35,13 @@ import we.util.JacksonUtils;
 import we.util.PemUtils;
 import we.util.WebUtils;
 
+import java.io.IOException;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 
@@ -65,6 +68,12 @@ public class JwtAuthPluginFilter extends PluginFilter {
 
 	public static final String JWT_CLAIMS = "jwt.claims";
 
+	private static final String[] HMAC_ALGS = { "HS256", "HS384", "HS512" };
+
+	private static final String[] RSA_ALGS = { "RS256", "RS384", "RS512" };
+
+	private static final String[] EC_ALGS = { "ES256", "ES256K", "ES384", "ES512" };
+
 	/**
 	 * Plugin global custom config, example: <br/>
 	 * <br/>
@@ -74,29 +83,79 @@ public class JwtAuthPluginFilter extends PluginFilter {
 	 * }<br/>
 	 * <br/>
 	 */
-	private GlobalConfig globalConfig = null;
+	private volatile GlobalConfig globalConfig = null;
+
+	private volatile String fixedConfigCache = null;
+
+	/**
+	 * the global config may be blank, which is loaded as a null {@link #globalConfig}
+	 */
+	private volatile boolean globalConfigLoaded = false;
+
+	private static final int MAX_VERIFIERS_PER_ALG = 256;
+
+	/**
+	 * alg -> key -> verifier, verifier is thread-safe and reused across requests
+	 */
+	private final Map<String, Map<String, JWTVerifier>> verifiers = new ConcurrentHashMap<>();
+
+	private volatile VerifiedTokenCache tokenCache = null;
 
-	private String fixedConfigCache = null;
+	/**
+	 * Parse plugin global config, precompute verifiers of global keys and reset caches
+	 *
+	 * @param fixedConfig plugin global config
+	 */
+	public synchronized void refreshGlobalConfig(String fixedConfig) {
+		if (globalConfigLoaded && Objects.equals(fixedConfigCache, fixedConfig)) {
+			return;
+		}
+		GlobalConfig gc = null;
+		if (StringUtils.isNotBlank(fixedConfig)) {
+			gc = JacksonUtils.readValue(fixedConfig, GlobalConfig.class);
+		}
+		verifiers.clear();
+		tokenCache = null;
+		if (gc != null) {
+			try {
+				if (StringUtils.isNotBlank(gc.getSecretKey())) {
+					for (String alg : HMAC_ALGS) {
+						getVerifier(alg, gc.getSecretKey());
+					}
+				}
+				if (StringUtils.isNotBlank(gc.getPublicKey())) {
+					boolean rsa = PemUtils.readPublicKeyFromString(gc.getPublicKey(), RSA) != null;
+					for (String alg : rsa ? RSA_ALGS : EC_ALGS) {
+						getVerifier(alg, gc.getPublicKey());
+					}
+				}
+			} catch (Exception e) {
+				log.warn("JWT Auth plugin - precompute verifier exception", e);
+			}
+			if (gc.getTokenCacheSize() > 0) {
+				tokenCache = new VerifiedTokenCache(gc.getTokenCacheSize(), gc.getTokenCacheTtl(),
+						gc.getRejectedTokenCacheTtl());
+			}
+		}
+		globalConfig = gc;
+		fixedConfigCache = fixedConfig;
+		globalConfigLoaded = true;
+	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public Mono<Void> doFilter(ServerWebExchange exchange, Map<String, Object> config, String fixedConfig) {
 
 		try {
-			if (globalConfig == null || fixedConfigCache == null
-					|| (fixedConfigCache != null && !fixedConfigCache.equals(fixedConfig))) {
-				if (StringUtils.isNotBlank(fixedConfig)) {
-					globalConfig = JacksonUtils.readValue(fixedConfig, GlobalConfig.class);
-				} else {
-					globalConfig = null;
-				}
-				fixedConfigCache = fixedConfig;
+			if (!globalConfigLoaded || !Objects.equals(fixedConfigCache, fixedConfig)) {
+				refreshGlobalConfig(fixedConfig);
 			}
+			GlobalConfig gc = globalConfig;
 
 			String secretKey = (String) config.get(KEY);
 			String publicKey = (String) config.get(KEY);
-			secretKey = StringUtils.isBlank(secretKey) ? globalConfig.getSecretKey() : secretKey;
-			publicKey = StringUtils.isBlank(publicKey) ? globalConfig.getPublicKey() : publicKey;
+			secretKey = StringUtils.isBlank(secretKey) && gc != null ? gc.getSecretKey() : secretKey;
+			publicKey = StringUtils.isBlank(publicKey) && gc != null ? gc.getPublicKey() : publicKey;
 
 			Boolean passHeader = null;
 			List<Object> passHeaderList = (List<Object>) config.get(PASS_HEADER);
@@ -169,51 +228,41 @@ public class JwtAuthPluginFilter extends PluginFilter {
 	 * @throws Exception
 	 */
 	public DecodedJWT verify(String token, String secretKey, String publicKey) {
+		VerifiedTokenCache cache = tokenCache;
+		if (cache == null) {
+			return doVerify(token, secretKey, publicKey);
+		}
+		VerifiedTokenCache.Digest digest = VerifiedTokenCache.digest(token);
+		VerifiedTokenCache.Entry entry = cache.get(digest, secretKey, publicKey);
+		if (entry != null) {
+			return entry.jwt;
+		}
+		DecodedJWT jwt = doVerify(token, secretKey, publicKey);
+		if (jwt == null) {
+			cache.putRejected(digest, secretKey, publicKey);
+		} else {
+			cache.putVerified(digest, secretKey, publicKey, jwt);
+		}
+		return jwt;
+	}
+
+	private DecodedJWT doVerify(String token, String secretKey, String publicKey) {
 		try {
 			DecodedJWT jwt = JWT.decode(token);
 			String alg = jwt.getAlgorithm();
-			Algorithm algorithm = null;
-
-			switch (alg) {
-			case "HS256":
-				algorithm = Algorithm.HMAC256(secretKey);
-				break;
-			case "HS384":
-				algorithm = Algorithm.HMAC384(secretKey);
-				break;
-			case "HS512":
-				algorithm = Algorithm.HMAC512(secretKey);
-				break;
-			case "RS256":
-				algorithm = Algorithm.RSA256((RSAPublicKey) PemUtils.readPublicKeyFromString(publicKey, RSA), null);
-				break;
-			case "RS384":
-				algorithm = Algorithm.RSA384((RSAPublicKey) PemUtils.readPublicKeyFromString(publicKey, RSA), null);
-				break;
-			case "RS512":
-				algorithm = Algorithm.RSA512((RSAPublicKey) PemUtils.readPublicKeyFromString(publicKey, RSA), null);
-				break;
-			case "ES256":
-				algorithm = Algorithm.ECDSA256((ECPublicKey) PemUtils.readPublicKeyFromString(publicKey, EC), null);
-				break;
-			case "ES256K":
-				algorithm = Algorithm.ECDSA256K((ECPublicKey) PemUtils.readPublicKeyFromString(publicKey, EC), null);
-				break;
-			case "ES384":
-				algorithm = Algorithm.ECDSA384((ECPublicKey) PemUtils.readPublicKeyFromString(publicKey, EC), null);
-				break;
-			case "ES512":
-				algorithm = Algorithm.ECDSA512((ECPublicKey) PemUtils.readPublicKeyFromString(publicKey, EC), null);
-				break;
+			JWTVerifier verifier = null;
+			if (alg.startsWith("HS")) {
+				verifier = getVerifier(alg, secretKey);
+			} else {
+				verifier = getVerifier(alg, publicKey);
 			}
 
-			if (algorithm == null) {
+			if (verifier == null) {
 				// Algorithm NOT Supported
 				log.warn("{} Algorithm NOT Supported", alg);
 			} else {
-				JWTVerifier verifier = JWT.require(algorithm).build();
 				try {
-					return verifier.verify(token);
+					return verifier.verify(jwt);
 				} catch (JWTVerificationException e) {
 					// Verification failed
 					log.warn("JWT verification failed: {}", e.getMessage());
@@ -225,4 +274,62 @@ public class JwtAuthPluginFilter extends PluginFilter {
 		return null;
 	}
 
+	private JWTVerifier getVerifier(String alg, String key) throws IOException {
+		if (key == null) {
+			return buildVerifier(alg, key);
+		}
+		Map<String, JWTVerifier> algVerifiers = verifiers.get(alg);
+		if (algVerifiers == null) {
+			algVerifiers = verifiers.computeIfAbsent(alg, k -> new ConcurrentHashMap<>());
+		}
+		JWTVerifier verifier = algVerifiers.get(key);
+		if (verifier == null) {
+			verifier = buildVerifier(alg, key);
+			if (verifier != null) {
+				if (algVerifiers.size() >= MAX_VERIFIERS_PER_ALG) {
+					algVerifiers.clear();
+				}
+				algVerifiers.put(key, verifier);
+			}
+		}
+		return verifier;
+	}
+
+	private static JWTVerifier buildVerifier(String alg, String key) throws IOException {
+		Algorithm algorithm = null;
+		switch (alg) {
+		case "HS256":
+			algorithm = Algorithm.HMAC256(key);
+			break;
+		case "HS384":
+			algorithm = Algorithm.HMAC384(key);
+			break;
+		case "HS512":
+			algorithm = Algorithm.HMAC512(key);
+			break;
+		case "RS256":
+			algorithm = Algorithm.RSA256((RSAPublicKey) PemUtils.readPublicKeyFromString(key, RSA), null);
+			break;
+		case "RS384":
+			algorithm = Algorithm.RSA384((RSAPublicKey) PemUtils.readPublicKeyFromString(key, RSA), null);
+			break;
+		case "RS512":
+			algorithm = Algorithm.RSA512((RSAPublicKey) PemUtils.readPublicKeyFromString(key, RSA), null);
+			break;
+		case "ES256":
+			algorithm = Algorithm.ECDSA256((ECPublicKey) PemUtils.readPublicKeyFromString(key, EC), null);
+			break;
+		case "ES256K":
+			algorithm = Algorithm.ECDSA256K((ECPublicKey) PemUtils.readPublicKeyFromString(key, EC), null);
+			break;
+		case "ES384":
+			algorithm = Algorithm.ECDSA384((ECPublicKey) PemUtils.readPublicKeyFromString(key, EC), null);
+			break;
+		case "ES512":
+			algorithm = Algorithm.ECDSA512((ECPublicKey) PemUtils.readPublicKeyFromString(key, EC), null);
+			break;
+		}
+		return algorithm == null ? null : JWT.require(algorithm).build();
+	}
+
 }
@@ -0,0 +1,152 @@
+/*
+ *  Copyright (C) 2020 the original author or authors.
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package we.plugin.jwt;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of verification results keyed by the SHA-256 digest of token,
+ * a verified token is never returned after its exp claim,
+ * and a rejected token is cached for a short time only.
+ *
+ * @author Francis Dong
+ *
+ */
+class VerifiedTokenCache {
+
+	private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private final Cache<Digest, Entry> cache;
+
+	private final long ttlMillis;
+
+	private final long rejectedTtlMillis;
+
+	/**
+	 * @param maxSize          max number of cached tokens
+	 * @param ttlSeconds       max seconds a verified token is cached
+	 * @param rejectedTtlSeconds seconds a rejected token is cached
+	 */
+	VerifiedTokenCache(int maxSize, int ttlSeconds, int rejectedTtlSeconds) {
+		this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+		this.rejectedTtlMillis = TimeUnit.SECONDS.toMillis(rejectedTtlSeconds);
+		this.cache = CacheBuilder.newBuilder().maximumSize(maxSize)
+				.expireAfterWrite(Math.max(ttlSeconds, rejectedTtlSeconds), TimeUnit.SECONDS).build();
+	}
+
+	static Digest digest(String token) {
+		MessageDigest md = SHA256.get();
+		return new Digest(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	/**
+	 * @return the cached entry if it is verified or rejected by the same keys and not expired, otherwise null
+	 */
+	Entry get(Digest digest, String secretKey, String publicKey) {
+		Entry entry = cache.getIfPresent(digest);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() >= entry.expireAt) {
+			cache.invalidate(digest);
+			return null;
+		}
+		if (!Objects.equals(entry.secretKey, secretKey) || !Objects.equals(entry.publicKey, publicKey)) {
+			return null;
+		}
+		return entry;
+	}
+
+	void putVerified(Digest digest, String secretKey, String publicKey, DecodedJWT jwt) {
+		long expireAt = System.currentTimeMillis() + ttlMillis;
+		Date exp = jwt.getExpiresAt();
+		if (exp != null && exp.getTime() < expireAt) {
+			expireAt = exp.getTime();
+		}
+		cache.put(digest, new Entry(secretKey, publicKey, jwt, expireAt));
+	}
+
+	void putRejected(Digest digest, String secretKey, String publicKey) {
+		if (rejectedTtlMillis > 0) {
+			cache.put(digest, new Entry(secretKey, publicKey, null, System.currentTimeMillis() + rejectedTtlMillis));
+		}
+	}
+
+	long size() {
+		return cache.size();
+	}
+
+	static class Entry {
+
+		final String secretKey;
+
+		final String publicKey;
+
+		/**
+		 * null if the token is rejected
+		 */
+		final DecodedJWT jwt;
+
+		final long expireAt;
+
+		Entry(String secretKey, String publicKey, DecodedJWT jwt, long expireAt) {
+			this.secretKey = secretKey;
+			this.publicKey = publicKey;
+			this.jwt = jwt;
+			this.expireAt = expireAt;
+		}
+	}
+
+	static class Digest {
+
+		private final byte[] bytes;
+
+		private final int hash;
+
+		Digest(byte[] bytes) {
+			this.bytes = bytes;
+			this.hash = Arrays.hashCode(bytes);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o || (o instanceof Digest && Arrays.equals(bytes, ((Digest) o).bytes));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}